@@ -0,0 +1,71 @@
+package bankaccountadvanced;
+
+/**
+ * Measures deposit and withdrawal throughput as the number of threads
+ * grows, with every thread on one shared account (contended) and with
+ * each thread on its own account (uncontended), plus the bytes
+ * allocated by each operation.
+ * Code Reviewer: MarkSayson
+ */
+public final class AccountBenchmark {
+
+    /** Amount of each deposit and withdrawal, in centavos. */
+    private static final long AMOUNT_CENTS = 100L;
+
+    /** Operations run when measuring allocation. */
+    private static final long ALLOCATION_ITERATIONS = 1_000_000L;
+
+    /** Utility class; not instantiable. */
+    private AccountBenchmark() {
+    }
+
+    /**
+     * Deposits on even iterations and withdraws on odd ones, so the
+     * balance never runs out.
+     *
+     * @param account   the account to operate on
+     * @param iteration the caller's iteration counter
+     * @throws Exception if the operation is rejected
+     */
+    private static void depositOrWithdraw(final BankAccount account, final long iteration)
+            throws Exception {
+        if ((iteration & 1) == 0) {
+            account.depositCents(AMOUNT_CENTS);
+        } else {
+            account.withdrawCents(AMOUNT_CENTS);
+        }
+    }
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args optional maximum thread count
+     * @throws Exception if a benchmark fails
+     */
+    public static void main(final String[] args) throws Exception {
+        int maxThreads = args.length > 0
+                ? Integer.parseInt(args[0])
+                : Runtime.getRuntime().availableProcessors();
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            BankAccount shared = new SavingsAccount("Owner");
+            double ops = BenchmarkSupport.throughput(threads,
+                    (t, i) -> depositOrWithdraw(shared, i));
+            BenchmarkSupport.report("account.depositWithdraw.shared",
+                    "threads=" + threads, ops, "ops/s");
+
+            BankAccount[] own = new BankAccount[threads];
+            for (int t = 0; t < threads; t++) {
+                own[t] = new SavingsAccount("Owner");
+            }
+            ops = BenchmarkSupport.throughput(threads,
+                    (t, i) -> depositOrWithdraw(own[t], i));
+            BenchmarkSupport.report("account.depositWithdraw.perThread",
+                    "threads=" + threads, ops, "ops/s");
+        }
+
+        BankAccount account = new SavingsAccount("Owner");
+        BenchmarkSupport.report("account.depositWithdraw.alloc", "threads=1",
+                BenchmarkSupport.allocatedBytesPerOp(ALLOCATION_ITERATIONS,
+                        (t, i) -> depositOrWithdraw(account, i)), "B/op");
+    }
+}
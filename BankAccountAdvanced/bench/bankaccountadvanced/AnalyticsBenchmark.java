@@ -0,0 +1,92 @@
+package bankaccountadvanced;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Times the TransactionAnalytics queries over every account of a
+ * manager on ForkJoinPools of 1, 4 and 16 threads. The default data set
+ * is 100K accounts with 1K transactions each; run it with a heap of at
+ * least 4 GB, e.g. -Xmx4g.
+ * Code Reviewer: MarkSayson
+ */
+public final class AnalyticsBenchmark {
+
+    /** Default number of accounts. */
+    private static final int DEFAULT_ACCOUNTS = 100_000;
+
+    /** Default number of transactions per account. */
+    private static final int DEFAULT_TRANSACTIONS = 1_000;
+
+    /** Pool sizes to benchmark. */
+    private static final int[] THREADS = {1, 4, 16};
+
+    /** Largest generated deposit, in centavos. */
+    private static final long MAX_AMOUNT_CENTS = 1_000_000L;
+
+    /** Filter threshold selecting about 1% of deposits, in centavos. */
+    private static final long THRESHOLD_CENTS = 990_000L;
+
+    /** Number of timed runs averaged per query. */
+    private static final int RUNS = 3;
+
+    /** Utility class; not instantiable. */
+    private AnalyticsBenchmark() {
+    }
+
+    /**
+     * Reports the mean time of a query after one warm-up run.
+     *
+     * @param name    benchmark name
+     * @param threads pool size
+     * @param query   the query to run
+     * @throws Exception if the query fails
+     */
+    private static void measure(final String name, final int threads,
+            final BenchmarkSupport.Operation query) throws Exception {
+        query.run(0, 0);
+        double total = 0;
+        for (int i = 0; i < RUNS; i++) {
+            total += BenchmarkSupport.timeMillis(query);
+        }
+        BenchmarkSupport.report(name, "threads=" + threads, total / RUNS, "ms");
+    }
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args optional account count, then transactions per account
+     * @throws Exception if a benchmark fails
+     */
+    public static void main(final String[] args) throws Exception {
+        int accounts = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_ACCOUNTS;
+        int transactions = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_TRANSACTIONS;
+        BankAccountManager manager = new BankAccountManager();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        AccountOperation[] batch = new AccountOperation[transactions];
+        for (int a = 0; a < accounts; a++) {
+            for (int t = 0; t < transactions; t++) {
+                batch[t] = t % 10 == 9
+                        ? AccountOperation.withdrawCents(1)
+                        : AccountOperation.depositCents(1 + random.nextLong(MAX_AMOUNT_CENTS));
+            }
+            SavingsAccount account = new SavingsAccount("Owner");
+            account.applyBatch(batch);
+            manager.addAccount(account);
+        }
+        String size = accounts + "x" + transactions;
+        for (int threads : THREADS) {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            TransactionAnalytics analytics = manager.analytics(pool);
+            measure("analytics.filterAbove " + size, threads,
+                    (t, i) -> analytics.filterAboveCents(THRESHOLD_CENTS, null));
+            measure("analytics.topByAmount " + size, threads,
+                    (t, i) -> analytics.topByAmount(100, TransactionType.DEPOSIT));
+            measure("analytics.statisticsByType " + size, threads,
+                    (t, i) -> analytics.statisticsByType());
+            measure("analytics.totalByAccount " + size, threads,
+                    (t, i) -> analytics.totalCentsByAccount(null));
+            pool.shutdown();
+        }
+    }
+}
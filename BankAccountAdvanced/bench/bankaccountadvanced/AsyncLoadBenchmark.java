@@ -0,0 +1,167 @@
+package bankaccountadvanced;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Load test for AsyncBankAccountManager. Every client is a virtual thread
+ * that issues a mix of deposits, withdrawals, balance reads, transfers
+ * and history page reads, waiting for each response before sending the
+ * next. All clients start together, so the facade has as many requests
+ * in flight as there are clients. Reports throughput and the p50, p99
+ * and p99.9 latency of a request, in memory and with a GROUP_SYNC journal.
+ * Code Reviewer: MarkSayson
+ */
+public final class AsyncLoadBenchmark {
+
+    /** Default number of concurrent clients. */
+    private static final int CLIENTS = 100_000;
+
+    /** Requests each client sends. */
+    private static final int REQUESTS_PER_CLIENT = 10;
+
+    /** Number of accounts the requests are spread across. */
+    private static final int ACCOUNTS = 1_000;
+
+    /** Opening balance of every account in centavos. */
+    private static final long OPENING_CENTS = 1_000_000L;
+
+    /** Kinds of request in the mix. */
+    private static final int REQUEST_KINDS = 5;
+
+    /** Utility class; not instantiable. */
+    private AsyncLoadBenchmark() {
+    }
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args optional client count, then optional journal directory
+     * @throws Exception if a benchmark fails
+     */
+    public static void main(final String[] args) throws Exception {
+        int clients = args.length > 0 ? Integer.parseInt(args[0]) : CLIENTS;
+        Path dir = args.length > 1
+                ? Path.of(args[1]) : Files.createTempDirectory("async-bench");
+        run("memory", clients, new BankAccountManager());
+        Path file = dir.resolve("async-bench.journal");
+        Files.deleteIfExists(file);
+        try (AccountJournal journal = AccountJournal.open(file, DurabilityMode.GROUP_SYNC)) {
+            run("GROUP_SYNC", clients,
+                    new BankAccountManager(new ConcurrentAccountRegistry(), journal));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * Runs every client to completion against one manager and reports.
+     *
+     * @param param   the label of the configuration
+     * @param clients the number of concurrent clients
+     * @param manager the manager to load
+     * @throws Exception if a request fails unexpectedly
+     */
+    private static void run(final String param, final int clients,
+            final BankAccountManager manager) throws Exception {
+        int[] ids = new int[ACCOUNTS];
+        for (int i = 0; i < ACCOUNTS; i++) {
+            SavingsAccount account = new SavingsAccount("Owner");
+            account.depositCents(OPENING_CENTS);
+            ids[i] = manager.addAccount(account);
+        }
+        long[] latencies = new long[clients * REQUESTS_PER_CLIENT];
+        CountDownLatch start = new CountDownLatch(1);
+        long elapsed;
+        try (AsyncBankAccountManager facade = new AsyncBankAccountManager(manager);
+                ExecutorService clientThreads = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int c = 0; c < clients; c++) {
+                int client = c;
+                clientThreads.execute(() -> runClient(facade, ids, start,
+                        latencies, client * REQUESTS_PER_CLIENT));
+            }
+            long begin = System.nanoTime();
+            start.countDown();
+            clientThreads.shutdown();
+            while (!clientThreads.awaitTermination(1, TimeUnit.SECONDS)) {
+                Thread.onSpinWait();
+            }
+            elapsed = System.nanoTime() - begin;
+        }
+        AmountHistogram histogram = new AmountHistogram();
+        for (long latency : latencies) {
+            histogram.record(latency / 1_000L);
+        }
+        report("clients=" + clients + " " + param, histogram, latencies.length, elapsed);
+    }
+
+    /**
+     * Reports the results of one run.
+     *
+     * @param param     the label of the run
+     * @param histogram request latencies in microseconds
+     * @param requests  number of requests sent
+     * @param nanos     time taken by all clients
+     */
+    private static void report(final String param, final AmountHistogram histogram,
+            final long requests, final long nanos) {
+        BenchmarkSupport.report("async.requests", param,
+                requests * 1e9 / nanos, "ops/s");
+        BenchmarkSupport.report("async.latency.p50", param,
+                histogram.valueAtPercentile(50.0), "us");
+        BenchmarkSupport.report("async.latency.p99", param,
+                histogram.valueAtPercentile(99.0), "us");
+        BenchmarkSupport.report("async.latency.p999", param,
+                histogram.valueAtPercentile(99.9), "us");
+    }
+
+    /**
+     * Sends one client's requests, each after the previous one completed.
+     *
+     * @param facade    the facade under test
+     * @param ids       account IDs to pick from
+     * @param start     released when all clients have been started
+     * @param latencies where request latencies in nanoseconds are stored
+     * @param offset    index of this client's first latency slot
+     */
+    private static void runClient(final AsyncBankAccountManager facade, final int[] ids,
+            final CountDownLatch start, final long[] latencies, final int offset) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        try {
+            start.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        for (int r = 0; r < REQUESTS_PER_CLIENT; r++) {
+            int account = ids[random.nextInt(ACCOUNTS)];
+            int other = ids[random.nextInt(ACCOUNTS)];
+            long begin = System.nanoTime();
+            switch (random.nextInt(REQUEST_KINDS)) {
+                case 0:
+                    facade.depositCents(account, 1L).join();
+                    break;
+                case 1:
+                    facade.withdrawCents(account, 1L).join();
+                    break;
+                case 2:
+                    facade.getBalanceCents(account).join();
+                    break;
+                case 3:
+                    if (other != account) {
+                        facade.transferCents(account, other, 1L).join();
+                    }
+                    break;
+                default:
+                    facade.getTransactionPage(account, 0L, REQUESTS_PER_CLIENT).join();
+                    break;
+            }
+            latencies[offset + r] = System.nanoTime() - begin;
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package bankaccountadvanced;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Compares posting operations one call at a time with applyBatch at
+ * several batch sizes, on an in-memory account and on an account
+ * journaled with GROUP_SYNC. Results are in operations per second, so
+ * a batch of 1024 counts as 1024 operations.
+ * Code Reviewer: MarkSayson
+ */
+public final class BatchBenchmark {
+
+    /** Batch sizes to benchmark. */
+    private static final int[] BATCH_SIZES = {1, 64, 1_024, 65_536};
+
+    /** Amount of each deposit and withdrawal, in centavos. */
+    private static final long AMOUNT_CENTS = 100L;
+
+    /** Utility class; not instantiable. */
+    private BatchBenchmark() {
+    }
+
+    /**
+     * Builds a batch of alternating deposits and withdrawals.
+     *
+     * @param size the number of operations
+     * @return the batch
+     */
+    private static AccountOperation[] batch(final int size) {
+        AccountOperation[] operations = new AccountOperation[size];
+        for (int i = 0; i < size; i++) {
+            operations[i] = i % 2 == 0
+                    ? AccountOperation.depositCents(AMOUNT_CENTS)
+                    : AccountOperation.withdrawCents(AMOUNT_CENTS);
+        }
+        return operations;
+    }
+
+    /**
+     * Runs the per-call and batched measurements on fresh accounts.
+     *
+     * @param label   describes the account setup
+     * @param manager the manager to register accounts with
+     * @throws Exception if a benchmark fails
+     */
+    private static void run(final String label, final BankAccountManager manager)
+            throws Exception {
+        BankAccount single = new SavingsAccount("Owner");
+        single.depositCents(AMOUNT_CENTS);
+        manager.addAccount(single);
+        double ops = BenchmarkSupport.throughput(1, (t, i) -> {
+            if ((i & 1) == 0) {
+                single.depositCents(AMOUNT_CENTS);
+            } else {
+                single.withdrawCents(AMOUNT_CENTS);
+            }
+        });
+        BenchmarkSupport.report("account.perCall", label, ops, "ops/s");
+
+        for (int size : BATCH_SIZES) {
+            BankAccount account = new SavingsAccount("Owner");
+            account.depositCents(AMOUNT_CENTS);
+            manager.addAccount(account);
+            AccountOperation[] operations = batch(size);
+            double batches = BenchmarkSupport.throughput(1,
+                    (t, i) -> account.applyBatch(operations));
+            BenchmarkSupport.report("account.applyBatch",
+                    label + " size=" + size, batches * size, "ops/s");
+        }
+    }
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args optional directory for the journal
+     * @throws Exception if a benchmark fails
+     */
+    public static void main(final String[] args) throws Exception {
+        run("memory", new BankAccountManager());
+
+        Path dir = args.length > 0
+                ? Path.of(args[0]) : Files.createTempDirectory("batch-bench");
+        Path file = dir.resolve("batch.journal");
+        Files.deleteIfExists(file);
+        try (AccountJournal journal = AccountJournal.open(file, DurabilityMode.GROUP_SYNC)) {
+            run("GROUP_SYNC", new BankAccountManager(new ConcurrentAccountRegistry(), journal));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package bankaccountadvanced;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Entry point that runs benchmarks by name. With no arguments it runs
+ * the hot-path suite (account, registry and query benchmarks), whose
+ * output is kept in bench/baseline.txt for comparison. bench/run.sh
+ * compiles the sources and calls this class.
+ * <p>
+ * Usage: {@code BenchmarkMain [name ...]}, or {@code BenchmarkMain list}.
+ * Code Reviewer: MarkSayson
+ */
+public final class BenchmarkMain {
+
+    /**
+     * The main method of a benchmark class.
+     */
+    @FunctionalInterface
+    private interface Benchmark {
+
+        /**
+         * Runs the benchmark with its default arguments.
+         *
+         * @param args command-line arguments
+         * @throws Exception if the benchmark fails
+         */
+        void run(String[] args) throws Exception;
+    }
+
+    /** Benchmarks run when no names are given. */
+    private static final String[] DEFAULT_SUITE = {"account", "registry", "query"};
+
+    /** Every benchmark, by name. */
+    private static final Map<String, Benchmark> BENCHMARKS = new LinkedHashMap<>();
+
+    static {
+        BENCHMARKS.put("account", AccountBenchmark::main);
+        BENCHMARKS.put("registry", RegistryBenchmark::main);
+        BENCHMARKS.put("query", QueryBenchmark::main);
+        BENCHMARKS.put("analytics", AnalyticsBenchmark::main);
+        BENCHMARKS.put("batch", BatchBenchmark::main);
+        BENCHMARKS.put("index", IndexBenchmark::main);
+        BENCHMARKS.put("shard", ShardBenchmark::main);
+        BENCHMARKS.put("async", AsyncLoadBenchmark::main);
+        BENCHMARKS.put("sequencer", SequencerBenchmark::main);
+        BENCHMARKS.put("rejection", RejectionBenchmark::main);
+        BENCHMARKS.put("metrics", MetricsBenchmark::main);
+        BENCHMARKS.put("retention", RetentionBenchmark::main);
+        BENCHMARKS.put("replication", ReplicationBenchmark::main);
+        BENCHMARKS.put("bulk", BulkBenchmark::main);
+        BENCHMARKS.put("timeline", TimelineBenchmark::main);
+        BENCHMARKS.put("interest", InterestBenchmark::main);
+        BENCHMARKS.put("dedup", DedupBenchmark::main);
+        BENCHMARKS.put("transfer", TransferBenchmark::main);
+        BENCHMARKS.put("readWrite", ReadWriteBenchmark::main);
+        BENCHMARKS.put("fixedPoint", FixedPointBenchmark::main);
+        BENCHMARKS.put("ledgerMemory", LedgerMemoryBenchmark::main);
+        BENCHMARKS.put("mappedLedger", MappedLedgerBenchmark::main);
+        BENCHMARKS.put("journal", JournalBenchmark::main);
+        BENCHMARKS.put("startup", StartupBenchmark::main);
+    }
+
+    /** Utility class; not instantiable. */
+    private BenchmarkMain() {
+    }
+
+    /**
+     * Runs the named benchmarks, or the default suite.
+     *
+     * @param args benchmark names
+     * @throws Exception if a benchmark fails
+     */
+    public static void main(final String[] args) throws Exception {
+        if (args.length == 1 && "list".equals(args[0])) {
+            BENCHMARKS.keySet().forEach(System.out::println);
+            return;
+        }
+        String[] names = args.length > 0 ? args : DEFAULT_SUITE;
+        for (String name : names) {
+            if (!BENCHMARKS.containsKey(name)) {
+                throw new IllegalArgumentException("Unknown benchmark: " + name
+                        + "; expected one of " + BENCHMARKS.keySet());
+            }
+        }
+        System.out.printf("# java %s, %d processors, max heap %d MB%n",
+                System.getProperty("java.version"),
+                Runtime.getRuntime().availableProcessors(),
+                Runtime.getRuntime().maxMemory() / (1024 * 1024));
+        for (String name : names) {
+            System.out.println("# " + name);
+            BENCHMARKS.get(name).run(new String[0]);
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package bankaccountadvanced;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Minimal multi-threaded throughput harness shared by the benchmarks.
+ * Every thread runs the operation in a tight loop for a fixed time and
+ * the total number of completed operations is reported as ops/sec.
+ * Allocation is measured per operation on the calling thread, in the
+ * spirit of a GC profiler's normalized allocation rate.
+ * Code Reviewer: MarkSayson
+ */
+public final class BenchmarkSupport {
+
+    /** Default warm-up time per measurement in milliseconds. */
+    public static final long WARMUP_MILLIS = 500;
+
+    /** Default measurement time per measurement in milliseconds. */
+    public static final long MEASURE_MILLIS = 1_000;
+
+    /**
+     * Operation executed repeatedly by each benchmark thread.
+     */
+    @FunctionalInterface
+    public interface Operation {
+
+        /**
+         * Runs one operation.
+         *
+         * @param threadIndex index of the calling thread, from 0
+         * @param iteration   per-thread iteration counter
+         * @throws Exception if the operation fails
+         */
+        void run(int threadIndex, long iteration) throws Exception;
+    }
+
+    /** Utility class; not instantiable. */
+    private BenchmarkSupport() {
+    }
+
+    /**
+     * Measures throughput using the default warm-up and measurement times.
+     *
+     * @param threads   number of concurrent threads
+     * @param operation the operation to measure
+     * @return completed operations per second
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public static double throughput(final int threads, final Operation operation)
+            throws InterruptedException {
+        runFor(threads, WARMUP_MILLIS, operation);
+        return runFor(threads, MEASURE_MILLIS, operation);
+    }
+
+    /**
+     * Runs the operation on the given number of threads for a fixed time.
+     *
+     * @param threads   number of concurrent threads
+     * @param millis    how long to run, in milliseconds
+     * @param operation the operation to run
+     * @return completed operations per second
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public static double runFor(final int threads, final long millis,
+            final Operation operation) throws InterruptedException {
+        LongAdder completed = new LongAdder();
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(threads);
+        long[] deadline = new long[1];
+        for (int t = 0; t < threads; t++) {
+            final int threadIndex = t;
+            Thread worker = new Thread(() -> {
+                long ops = 0;
+                try {
+                    start.await();
+                    while (System.nanoTime() < deadline[0]) {
+                        operation.run(threadIndex, ops);
+                        ops++;
+                    }
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                } finally {
+                    completed.add(ops);
+                    done.countDown();
+                }
+            });
+            worker.setDaemon(true);
+            worker.start();
+        }
+        long begin = System.nanoTime();
+        deadline[0] = begin + millis * 1_000_000L;
+        start.countDown();
+        done.await();
+        long elapsed = System.nanoTime() - begin;
+        return completed.sum() * 1e9 / elapsed;
+    }
+
+    /**
+     * Times a single run of the given task.
+     *
+     * @param task the task to time
+     * @return elapsed time in milliseconds
+     * @throws Exception if the task fails
+     */
+    public static double timeMillis(final Operation task) throws Exception {
+        long begin = System.nanoTime();
+        task.run(0, 0);
+        return (System.nanoTime() - begin) / 1e6;
+    }
+
+    /**
+     * Measures the heap allocated per operation by the calling thread,
+     * after running the same number of iterations as a warm-up.
+     *
+     * @param iterations number of operations to run per pass
+     * @param operation  the operation to measure
+     * @return allocated bytes per operation
+     * @throws Exception if the operation fails
+     */
+    public static double allocatedBytesPerOp(final long iterations,
+            final Operation operation) throws Exception {
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        for (long i = 0; i < iterations; i++) {
+            operation.run(0, i);
+        }
+        long before = threads.getCurrentThreadAllocatedBytes();
+        for (long i = 0; i < iterations; i++) {
+            operation.run(0, i);
+        }
+        return (threads.getCurrentThreadAllocatedBytes() - before) / (double) iterations;
+    }
+
+    /**
+     * Prints one result row.
+     *
+     * @param name  benchmark name
+     * @param param parameter description, e.g. "threads=4"
+     * @param value measured value
+     * @param unit  unit of the value
+     */
+    public static void report(final String name, final String param,
+            final double value, final String unit) {
+        System.out.printf("%-40s %-24s %,16.1f %s%n", name, param, value, unit);
+    }
+}
@@ -0,0 +1,182 @@
+package bankaccountadvanced;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * Compares bulk account import with reading the same CSV line by line
+ * and adding each account and its opening deposit one at a time, and
+ * compares CSV and binary transaction export with writing
+ * Transaction.toString() per row. Reports rows per second. Run with a
+ * heap of at least 4 GB, e.g. -Xmx4g; an imported account with its
+ * opening deposit takes a few hundred bytes of heap.
+ * Code Reviewer: MarkSayson
+ */
+public final class BulkBenchmark {
+
+    /** Default number of accounts imported. */
+    private static final int DEFAULT_IMPORT_ROWS = 2_000_000;
+
+    /** Default number of transactions exported. */
+    private static final long DEFAULT_EXPORT_ROWS = 50_000_000L;
+
+    /** Accounts the exported transactions are spread over. */
+    private static final int EXPORT_ACCOUNTS = 1_000;
+
+    /** Bytes per megabyte. */
+    private static final double MB = 1024.0 * 1024.0;
+
+    /** Utility class; not instantiable. */
+    private BulkBenchmark() {
+    }
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args optional import rows, export rows and directory
+     * @throws Exception if a benchmark fails
+     */
+    public static void main(final String[] args) throws Exception {
+        int importRows = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_IMPORT_ROWS;
+        long exportRows = args.length > 1 ? Long.parseLong(args[1]) : DEFAULT_EXPORT_ROWS;
+        Path dir = args.length > 2 ? Path.of(args[2]) : Files.createTempDirectory("bulk");
+        Path csv = dir.resolve("accounts.csv");
+        Path out = dir.resolve("export.dat");
+        try {
+            writeAccounts(csv, importRows);
+            benchmarkImport(csv, importRows);
+            Files.delete(csv);
+            benchmarkExport(out, exportRows);
+        } finally {
+            Files.deleteIfExists(csv);
+            Files.deleteIfExists(out);
+            Files.delete(dir);
+        }
+    }
+
+    /**
+     * Writes an import file of random owners and balances.
+     *
+     * @param csv  the file
+     * @param rows number of accounts
+     * @throws Exception if the file cannot be written
+     */
+    private static void writeAccounts(final Path csv, final int rows) throws Exception {
+        Random random = new Random(42);
+        try (Writer writer = Files.newBufferedWriter(csv, StandardCharsets.UTF_8)) {
+            for (int i = 0; i < rows; i++) {
+                writer.write("Owner " + i + "," + random.nextInt(1_000_000) + "."
+                        + (10 + random.nextInt(90)) + "\n");
+            }
+        }
+    }
+
+    /**
+     * Times the bulk importer and the line-by-line baseline.
+     *
+     * @param csv  the import file
+     * @param rows number of accounts in it
+     * @throws Exception if an import fails
+     */
+    private static void benchmarkImport(final Path csv, final int rows) throws Exception {
+        String param = "rows=" + rows;
+        for (int round = 0; round < 2; round++) {
+            BankAccountManager[] manager = {new BankAccountManager()};
+            double millis = BenchmarkSupport.timeMillis((t, i) -> {
+                try (BufferedReader reader = Files.newBufferedReader(csv, StandardCharsets.UTF_8)) {
+                    for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                        int comma = line.lastIndexOf(',');
+                        BankAccount account = new SavingsAccount(line.substring(0, comma));
+                        manager[0].addAccount(account);
+                        account.deposit(Double.parseDouble(line.substring(comma + 1)));
+                    }
+                }
+            });
+            report("bulk.import.lineByLine", param, rows, millis, round);
+            manager[0] = new BankAccountManager();
+            millis = BenchmarkSupport.timeMillis((t, i) -> manager[0].importAccounts(csv));
+            report("bulk.import.parallel", param, rows, millis, round);
+            manager[0] = null;
+        }
+    }
+
+    /**
+     * Times CSV and binary export and the toString baseline.
+     *
+     * @param out  the export file
+     * @param rows number of transactions to export
+     * @throws Exception if an export fails
+     */
+    private static void benchmarkExport(final Path out, final long rows) throws Exception {
+        BankAccountManager manager = new BankAccountManager();
+        long perAccount = rows / EXPORT_ACCOUNTS;
+        for (int a = 0; a < EXPORT_ACCOUNTS; a++) {
+            BankAccount account = new SavingsAccount("Owner");
+            manager.addAccount(account);
+            for (long i = 0; i < perAccount; i++) {
+                account.depositCents(1 + i % 100_000);
+            }
+        }
+        String param = "rows=" + perAccount * EXPORT_ACCOUNTS;
+        for (int round = 0; round < 2; round++) {
+            double millis = BenchmarkSupport.timeMillis((t, i) -> {
+                try (BufferedWriter writer = Files.newBufferedWriter(out,
+                        StandardCharsets.US_ASCII)) {
+                    for (int id = 1; id <= EXPORT_ACCOUNTS; id++) {
+                        for (Transaction transaction
+                                : manager.getAccount(id).getTransactionHistory()) {
+                            writer.write(id + "," + transaction.toString() + ","
+                                    + transaction.getTimestamp() + "\n");
+                        }
+                    }
+                }
+            });
+            report("bulk.export.toString", param, perAccount * EXPORT_ACCOUNTS, millis, round);
+            reportExport(manager, out, ExportFormat.CSV, param, round);
+            reportExport(manager, out, ExportFormat.BINARY, param, round);
+        }
+    }
+
+    /**
+     * Times one export and reports its rate and file size.
+     *
+     * @param manager the manager to export
+     * @param out     the export file
+     * @param format  the format
+     * @param param   the reported parameter
+     * @param round   0 for the warm-up round, which is not reported
+     * @throws Exception if the export fails
+     */
+    private static void reportExport(final BankAccountManager manager, final Path out,
+            final ExportFormat format, final String param, final int round) throws Exception {
+        long[] written = new long[1];
+        double millis = BenchmarkSupport.timeMillis(
+                (t, i) -> written[0] = manager.exportTransactions(out, format));
+        String name = "bulk.export." + format.name().toLowerCase();
+        report(name, param, written[0], millis, round);
+        if (round > 0) {
+            BenchmarkSupport.report(name + ".size", param, Files.size(out) / MB, "MB");
+        }
+    }
+
+    /**
+     * Reports a rate unless this is the warm-up round.
+     *
+     * @param name   the benchmark name
+     * @param param  the reported parameter
+     * @param rows   rows processed
+     * @param millis elapsed milliseconds
+     * @param round  0 for the warm-up round
+     */
+    private static void report(final String name, final String param, final long rows,
+            final double millis, final int round) {
+        if (round > 0) {
+            BenchmarkSupport.report(name, param, rows / (millis / 1e3), "rows/s");
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package bankaccountadvanced;
+
+import java.time.Duration;
+
+/**
+ * Measures what operation IDs cost: deposits without an ID against
+ * deposits with a new ID each time and against retries of a remembered
+ * ID. Then feeds a cache a steady stream of distinct IDs on a simulated
+ * clock and reports how it holds up: its size and heap, how many IDs
+ * were evicted for room or expired by age, and whether retries arriving
+ * a given time after their original still find it.
+ * Code Reviewer: MarkSayson
+ */
+public final class DedupBenchmark {
+
+    /** Thread counts measured. */
+    private static final int[] THREADS = {1, 4};
+
+    /** Padding between per-thread counters, in longs. */
+    private static final int PAD = 16;
+
+    /** Default distinct IDs per simulated minute. */
+    private static final int DEFAULT_IDS_PER_MINUTE = 1_000_000;
+
+    /** Simulated minutes of traffic. */
+    private static final int MINUTES = 15;
+
+    /** Retry delays probed after the simulated traffic, in seconds. */
+    private static final int[] RETRY_DELAYS = {1, 30, 60, 120, 600};
+
+    /** Bytes per megabyte. */
+    private static final double MB = 1024.0 * 1024.0;
+
+    /** Utility class; not instantiable. */
+    private DedupBenchmark() {
+    }
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args optional distinct IDs per simulated minute
+     * @throws Exception if a benchmark fails
+     */
+    public static void main(final String[] args) throws Exception {
+        int perMinute = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_IDS_PER_MINUTE;
+        for (int threads : THREADS) {
+            benchmarkOverhead(threads);
+        }
+        benchmarkEviction(perMinute, OperationDedupCache.DEFAULT_MAX_ENTRIES,
+                OperationDedupCache.DEFAULT_RETENTION);
+        benchmarkEviction(perMinute, 4 * perMinute, Duration.ofMinutes(2));
+    }
+
+    /**
+     * Compares deposits without an ID, with a new ID and with a repeated ID.
+     *
+     * @param threads number of threads, each depositing into its own account
+     * @throws Exception if a deposit fails
+     */
+    private static void benchmarkOverhead(final int threads) throws Exception {
+        BankAccountManager manager = new BankAccountManager();
+        int[] ids = new int[threads];
+        for (int t = 0; t < threads; t++) {
+            ids[t] = manager.addAccount(new SavingsAccount("Owner " + t));
+        }
+        String param = "threads=" + threads;
+        BenchmarkSupport.report("dedup.deposit.plain", param,
+                BenchmarkSupport.throughput(threads,
+                        (t, i) -> manager.getAccount(ids[t]).tryDepositCents(1L)), "ops/s");
+        long[] next = new long[threads * PAD];
+        BenchmarkSupport.report("dedup.deposit.newId", param,
+                BenchmarkSupport.throughput(threads, (t, i) -> manager.tryDepositCents(
+                        (long) t << 48 | next[t * PAD]++, ids[t], 1L)), "ops/s");
+        BenchmarkSupport.report("dedup.deposit.retry", param,
+                BenchmarkSupport.throughput(threads, (t, i) -> manager.tryDepositCents(
+                        (long) t << 48 | i % 1_024, ids[t], 1L)), "ops/s");
+    }
+
+    /**
+     * Streams distinct IDs through a cache on a simulated clock, then
+     * probes whether retries after various delays are still recognised.
+     *
+     * @param perMinute  distinct IDs per simulated minute
+     * @param maxEntries the cache capacity
+     * @param retention  the cache retention
+     */
+    private static void benchmarkEviction(final int perMinute, final int maxEntries,
+            final Duration retention) {
+        long[] now = {0L};
+        OperationDedupCache cache = new OperationDedupCache(maxEntries, retention, 64,
+                () -> now[0]);
+        long step = Duration.ofMinutes(1).toNanos() / perMinute;
+        long total = (long) perMinute * MINUTES;
+        long begin = System.nanoTime();
+        for (long id = 0; id < total; id++) {
+            now[0] += step;
+            cache.execute(id, 0L, () -> OperationStatus.OK);
+        }
+        String param = "cap=" + maxEntries + ",ret=" + retention.toMinutes() + "m";
+        BenchmarkSupport.report("dedup.stream", param,
+                (System.nanoTime() - begin) / (double) total, "ns/op");
+        BenchmarkSupport.report("dedup.stream.size", param, cache.size(), "entries");
+        BenchmarkSupport.report("dedup.stream.heap", param,
+                (double) maxEntries * OperationDedupCache.BYTES_PER_ENTRY / MB, "MB");
+        BenchmarkSupport.report("dedup.stream.evicted", param, cache.getEvictionCount(), "ids");
+        BenchmarkSupport.report("dedup.stream.expired", param, cache.getExpiryCount(), "ids");
+        // A retry arrives now for the ID issued the given time ago
+        for (int delay : RETRY_DELAYS) {
+            long id = total - 1 - (long) delay * perMinute / 60;
+            boolean[] ran = {false};
+            cache.execute(id, 0L, () -> {
+                ran[0] = true;
+                return OperationStatus.OK;
+            });
+            BenchmarkSupport.report("dedup.stream.retryAfter" + delay + "s", param,
+                    ran[0] ? 0 : 1, ran[0] ? "(reapplied)" : "(recognised)");
+        }
+    }
+}
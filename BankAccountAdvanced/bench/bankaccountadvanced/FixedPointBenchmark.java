@@ -0,0 +1,49 @@
+package bankaccountadvanced;
+
+/**
+ * Compares the double adapter path (deposit/withdraw) with the primitive
+ * centavo path (depositCents/withdrawCents) on a single account.
+ * Code Reviewer: MarkSayson
+ */
+public final class FixedPointBenchmark {
+
+    /** Amount used by every operation, in pesos. */
+    private static final double AMOUNT = 12.34;
+
+    /** Amount used by every operation, in centavos. */
+    private static final long AMOUNT_CENTS = 1_234L;
+
+    /** Utility class; not instantiable. */
+    private FixedPointBenchmark() {
+    }
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args unused
+     * @throws Exception if a benchmark fails
+     */
+    public static void main(final String[] args) throws Exception {
+        SavingsAccount doubles = new SavingsAccount("Owner");
+        double viaDouble = BenchmarkSupport.throughput(1, (t, i) -> {
+            if ((i & 1) == 0) {
+                doubles.deposit(AMOUNT);
+            } else {
+                doubles.withdraw(AMOUNT);
+            }
+        });
+        BenchmarkSupport.report("fixedpoint.doubleAdapter", "threads=1",
+                viaDouble, "ops/s");
+
+        SavingsAccount cents = new SavingsAccount("Owner");
+        double viaCents = BenchmarkSupport.throughput(1, (t, i) -> {
+            if ((i & 1) == 0) {
+                cents.depositCents(AMOUNT_CENTS);
+            } else {
+                cents.withdrawCents(AMOUNT_CENTS);
+            }
+        });
+        BenchmarkSupport.report("fixedpoint.cents", "threads=1",
+                viaCents, "ops/s");
+    }
+}
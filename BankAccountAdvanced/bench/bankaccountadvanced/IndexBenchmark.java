@@ -0,0 +1,81 @@
+package bankaccountadvanced;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Compares a plain ColumnarTransactionLedger with an AmountIndexedLedger
+ * as the history grows: append time, latency of a selective threshold
+ * query and latency of sorted iteration. Run the largest sizes with a
+ * heap of at least 4 GB, e.g. -Xmx4g.
+ * Code Reviewer: MarkSayson
+ */
+public final class IndexBenchmark {
+
+    /** History sizes to benchmark. */
+    private static final int[] SIZES = {1_000, 10_000, 100_000, 1_000_000, 10_000_000};
+
+    /** Largest generated amount, in centavos. */
+    private static final long MAX_AMOUNT_CENTS = 1_000_000L;
+
+    /** Threshold selecting about 0.1% of the history, in centavos. */
+    private static final long THRESHOLD_CENTS = 999_000L;
+
+    /** Utility class; not instantiable. */
+    private IndexBenchmark() {
+    }
+
+    /**
+     * Fills a ledger with random deposits and reports the time taken.
+     *
+     * @param name    benchmark name
+     * @param ledger  the ledger to fill
+     * @param amounts the amounts to append
+     */
+    private static void fill(final String name, final TransactionLedger ledger,
+            final long[] amounts) {
+        long begin = System.nanoTime();
+        for (long amount : amounts) {
+            ledger.append(TransactionType.DEPOSIT, amount, 0L);
+        }
+        BenchmarkSupport.report(name, "n=" + amounts.length,
+                (System.nanoTime() - begin) / (double) amounts.length, "ns/append");
+    }
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args optional largest history size
+     * @throws Exception if a benchmark fails
+     */
+    public static void main(final String[] args) throws Exception {
+        int maxSize = args.length > 0 ? Integer.parseInt(args[0]) : Integer.MAX_VALUE;
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int size : SIZES) {
+            if (size > maxSize) {
+                break;
+            }
+            long[] amounts = new long[size];
+            for (int i = 0; i < size; i++) {
+                amounts[i] = 1 + random.nextLong(MAX_AMOUNT_CENTS);
+            }
+            TransactionLedger plain = new ColumnarTransactionLedger();
+            TransactionLedger indexed = new AmountIndexedLedger();
+            fill("index.append.plain", plain, amounts);
+            fill("index.append.indexed", indexed, amounts);
+
+            QueryBenchmark.measure("index.filterAbove.plain", size,
+                    (t, i) -> plain.filterAbove(THRESHOLD_CENTS));
+            QueryBenchmark.measure("index.filterAbove.indexed", size,
+                    (t, i) -> indexed.filterAbove(THRESHOLD_CENTS));
+            QueryBenchmark.measure("index.sortedByAmount.plain", size,
+                    (t, i) -> plain.sortedByAmount());
+            QueryBenchmark.measure("index.sortedByAmount.indexed", size, (t, i) -> {
+                List<Transaction> sorted = indexed.sortedByAmount();
+                if (sorted.size() != size) {
+                    throw new IllegalStateException("lost entries");
+                }
+            });
+        }
+    }
+}
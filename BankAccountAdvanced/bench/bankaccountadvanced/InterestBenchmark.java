@@ -0,0 +1,137 @@
+package bankaccountadvanced;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+
+/**
+ * Compares an InterestAccrualEngine run with posting each account's
+ * interest as an ordinary deposit in a loop. In memory this shows the
+ * cost of partitioning and saving progress; with a GROUP_SYNC journal it
+ * shows the effect of waiting for durability once per batch rather than
+ * once per account. Reports accounts per second. An account with a few
+ * transactions takes several hundred bytes of heap, so the default
+ * account count needs a heap of about 8 GB, e.g. -Xmx8g; pass a smaller
+ * count on smaller machines.
+ * Code Reviewer: MarkSayson
+ */
+public final class InterestBenchmark {
+
+    /** Default number of accounts accrued in memory. */
+    private static final int DEFAULT_ACCOUNTS = 10_000_000;
+
+    /** Default number of accounts accrued with a journal. */
+    private static final int DEFAULT_JOURNALED_ACCOUNTS = 20_000;
+
+    /** Rate of every account: 1bp a day. */
+    private static final RatePlan PLAN = RatePlan.flat(365);
+
+    /** Opening balance of every account; earns 1 centavo a day. */
+    private static final long OPENING_CENTS = 10_000L;
+
+    /** First business date accrued. */
+    private static final LocalDate START = LocalDate.of(2024, 1, 1);
+
+    /** Utility class; not instantiable. */
+    private InterestBenchmark() {
+    }
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args optional in-memory and journaled account counts
+     * @throws Exception if a benchmark fails
+     */
+    public static void main(final String[] args) throws Exception {
+        int accounts = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_ACCOUNTS;
+        int journaled = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_JOURNALED_ACCOUNTS;
+        Path dir = Files.createTempDirectory("interest");
+        Path progress = dir.resolve("accrual.progress");
+        Path journalPath = dir.resolve("accounts.journal");
+        try {
+            BankAccountManager manager = new BankAccountManager();
+            populate(manager, accounts);
+            run(manager, progress, "interest.memory", accounts);
+            manager = null;
+            Files.deleteIfExists(progress);
+            try (AccountJournal journal =
+                    AccountJournal.open(journalPath, DurabilityMode.GROUP_SYNC)) {
+                manager = new BankAccountManager(new ConcurrentAccountRegistry(), journal);
+                populate(manager, journaled);
+                run(manager, progress, "interest.journaled", journaled);
+            }
+        } finally {
+            Files.deleteIfExists(progress);
+            Files.deleteIfExists(journalPath);
+            Files.delete(dir);
+        }
+    }
+
+    /**
+     * Adds accounts that each earn a centavo a day.
+     *
+     * @param manager  the manager
+     * @param accounts number of accounts
+     * @throws Exception if an account cannot be added
+     */
+    private static void populate(final BankAccountManager manager, final int accounts)
+            throws Exception {
+        for (int i = 0; i < accounts; i++) {
+            SavingsAccount account = new SavingsAccount("Owner");
+            account.setRatePlan(PLAN);
+            account.depositCents(OPENING_CENTS);
+            manager.addAccount(account);
+        }
+    }
+
+    /**
+     * Times the deposit loop and the engine for two days each, reporting
+     * the second.
+     *
+     * @param manager  the manager
+     * @param progress the progress file
+     * @param name     the reported name prefix
+     * @param accounts number of accounts
+     * @throws Exception if a run fails
+     */
+    private static void run(final BankAccountManager manager, final Path progress,
+            final String name, final int accounts) throws Exception {
+        String param = "accounts=" + accounts;
+        LocalDate date = START;
+        try (InterestAccrualEngine engine = new InterestAccrualEngine(manager, progress)) {
+            for (int round = 0; round < 2; round++) {
+                double millis = BenchmarkSupport.timeMillis((t, i) -> {
+                    for (int id = 1; id <= accounts; id++) {
+                        BankAccount account = manager.getAccount(id);
+                        account.depositCents(PLAN.dailyCents(account.getBalanceCents()));
+                    }
+                });
+                report(name + ".depositLoop", param, accounts, millis, round);
+                LocalDate day = date;
+                AccrualResult[] result = new AccrualResult[1];
+                millis = BenchmarkSupport.timeMillis((t, i) -> result[0] = engine.accrue(day));
+                if (result[0].getAccountsCredited() != accounts) {
+                    throw new IllegalStateException("credited " + result[0]);
+                }
+                report(name + ".engine", param, accounts, millis, round);
+                date = date.plusDays(1);
+            }
+        }
+    }
+
+    /**
+     * Reports a rate unless this is the warm-up round.
+     *
+     * @param name     the benchmark name
+     * @param param    the reported parameter
+     * @param accounts accounts processed
+     * @param millis   elapsed milliseconds
+     * @param round    0 for the warm-up round
+     */
+    private static void report(final String name, final String param, final long accounts,
+            final double millis, final int round) {
+        if (round > 0) {
+            BenchmarkSupport.report(name, param, accounts / (millis / 1e3), "accounts/s");
+        }
+    }
+}
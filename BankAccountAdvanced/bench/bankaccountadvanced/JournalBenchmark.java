@@ -0,0 +1,50 @@
+package bankaccountadvanced;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Measures journaled deposit throughput for every DurabilityMode as the
+ * number of threads grows. Each thread deposits into its own account,
+ * so the journal is the only shared resource.
+ * Code Reviewer: MarkSayson
+ */
+public final class JournalBenchmark {
+
+    /** Utility class; not instantiable. */
+    private JournalBenchmark() {
+    }
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args optional maximum thread count, then optional directory
+     * @throws Exception if a benchmark fails
+     */
+    public static void main(final String[] args) throws Exception {
+        int maxThreads = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+        Path dir = args.length > 1
+                ? Path.of(args[1]) : Files.createTempDirectory("journal-bench");
+        for (DurabilityMode mode : DurabilityMode.values()) {
+            for (int threads = 1; threads <= maxThreads; threads *= 4) {
+                Path file = dir.resolve("bench-" + mode + "-" + threads + ".journal");
+                Files.deleteIfExists(file);
+                try (AccountJournal journal = AccountJournal.open(file, mode)) {
+                    BankAccountManager manager =
+                            new BankAccountManager(new ConcurrentAccountRegistry(), journal);
+                    BankAccount[] accounts = new BankAccount[threads];
+                    for (int t = 0; t < threads; t++) {
+                        accounts[t] = new SavingsAccount("Owner");
+                        manager.addAccount(accounts[t]);
+                    }
+                    double ops = BenchmarkSupport.throughput(threads,
+                            (t, i) -> accounts[t].depositCents(1L));
+                    BenchmarkSupport.report("journal.deposit",
+                            mode + " threads=" + threads, ops, "ops/s");
+                } finally {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package bankaccountadvanced;
+
+import java.lang.ref.Reference;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compares the heap needed to hold 10M transactions in an
+ * ArrayList of Transaction objects with a ColumnarTransactionLedger.
+ * Run with a heap of at least 2 GB, e.g. -Xmx2g.
+ * Code Reviewer: MarkSayson
+ */
+public final class LedgerMemoryBenchmark {
+
+    /** Default number of transactions to store. */
+    private static final int DEFAULT_COUNT = 10_000_000;
+
+    /** Bytes per megabyte. */
+    private static final double MB = 1024.0 * 1024.0;
+
+    /** Utility class; not instantiable. */
+    private LedgerMemoryBenchmark() {
+    }
+
+    /**
+     * Returns the heap in use after requesting garbage collection.
+     *
+     * @return used heap in bytes
+     * @throws InterruptedException if interrupted while settling
+     */
+    static long usedHeap() throws InterruptedException {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(100);
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args optional transaction count
+     * @throws Exception if a benchmark fails
+     */
+    public static void main(final String[] args) throws Exception {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_COUNT;
+        long now = System.currentTimeMillis();
+
+        long before = usedHeap();
+        List<Transaction> list = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            list.add(Transaction.of(TransactionType.DEPOSIT, i, now + i));
+        }
+        double listMillis = (System.nanoTime() - start) / 1e6;
+        long listBytes = usedHeap() - before;
+        Reference.reachabilityFence(list);
+        BenchmarkSupport.report("ledger.arrayList.heap", "n=" + count,
+                listBytes / MB, "MB");
+        BenchmarkSupport.report("ledger.arrayList.append", "n=" + count,
+                listMillis, "ms");
+        list = null;
+
+        before = usedHeap();
+        ColumnarTransactionLedger ledger = new ColumnarTransactionLedger();
+        start = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            ledger.append(TransactionType.DEPOSIT, i, now + i);
+        }
+        double ledgerMillis = (System.nanoTime() - start) / 1e6;
+        long ledgerBytes = usedHeap() - before;
+        Reference.reachabilityFence(ledger);
+        BenchmarkSupport.report("ledger.columnar.heap", "n=" + count,
+                ledgerBytes / MB, "MB");
+        BenchmarkSupport.report("ledger.columnar.append", "n=" + count,
+                ledgerMillis, "ms");
+    }
+}
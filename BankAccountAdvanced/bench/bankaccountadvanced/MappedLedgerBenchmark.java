@@ -0,0 +1,79 @@
+package bankaccountadvanced;
+
+import java.lang.ref.Reference;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Fills a MappedTransactionLedger and reports the heap in use as the
+ * history grows, together with the time of filter and sort queries over
+ * the mapped records. The segment files are written to a temporary
+ * directory, or to the directory given as the second argument, and
+ * deleted afterwards.
+ * Code Reviewer: MarkSayson
+ */
+public final class MappedLedgerBenchmark {
+
+    /** Default number of transactions to store. */
+    private static final int DEFAULT_COUNT = 20_000_000;
+
+    /** Number of heap readings taken while filling. */
+    private static final int STEPS = 4;
+
+    /** Bytes per megabyte. */
+    private static final double MB = 1024.0 * 1024.0;
+
+    /** Utility class; not instantiable. */
+    private MappedLedgerBenchmark() {
+    }
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args optional transaction count and directory
+     * @throws Exception if a benchmark fails
+     */
+    public static void main(final String[] args) throws Exception {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_COUNT;
+        Path dir = args.length > 1 ? Path.of(args[1])
+                : Files.createTempDirectory("mapped-ledger");
+        long now = System.currentTimeMillis();
+        try {
+            long before = LedgerMemoryBenchmark.usedHeap();
+            MappedTransactionLedger ledger = new MappedTransactionLedger(dir);
+            long start = System.nanoTime();
+            int step = count / STEPS;
+            for (int i = 0; i < count; i++) {
+                ledger.append(TransactionType.DEPOSIT, i % 1_000_000, now + i);
+                if ((i + 1) % step == 0) {
+                    BenchmarkSupport.report("ledger.mapped.heap", "n=" + (i + 1),
+                            (LedgerMemoryBenchmark.usedHeap() - before) / MB, "MB");
+                }
+            }
+            double appendMillis = (System.nanoTime() - start) / 1e6;
+            BenchmarkSupport.report("ledger.mapped.append", "n=" + count,
+                    appendMillis, "ms");
+
+            start = System.nanoTime();
+            List<Transaction> above = ledger.filterAbove(990_000);
+            BenchmarkSupport.report("ledger.mapped.filter", "n=" + count,
+                    (System.nanoTime() - start) / 1e6, "ms");
+            start = System.nanoTime();
+            List<Transaction> sorted = ledger.sortedByAmount();
+            BenchmarkSupport.report("ledger.mapped.sort", "n=" + count,
+                    (System.nanoTime() - start) / 1e6, "ms");
+            BenchmarkSupport.report("ledger.mapped.matches", "n=" + count,
+                    above.size(), "rows");
+            Reference.reachabilityFence(sorted);
+            ledger.close();
+        } finally {
+            try (var files = Files.list(dir)) {
+                for (Path file : (Iterable<Path>) files::iterator) {
+                    Files.delete(file);
+                }
+            }
+            Files.delete(dir);
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package bankaccountadvanced;
+
+/**
+ * Measures the cost of metrics on the hot paths: deposit/withdraw,
+ * account lookup and transfer throughput with the no-op sink and with a
+ * default JmxMetricsSink, run in alternating rounds so both see the same machine
+ * conditions. Each round starts on a new manager, so neither side pays
+ * for history grown by the other. Reports the best round of each and the
+ * overhead.
+ * Code Reviewer: MarkSayson
+ */
+public final class MetricsBenchmark {
+
+    /** Alternating measurement rounds per configuration. */
+    private static final int ROUNDS = 10;
+
+    /** Accounts the lookups are spread across. */
+    private static final int ACCOUNTS = 10_000;
+
+    /** Utility class; not instantiable. */
+    private MetricsBenchmark() {
+    }
+
+    /**
+     * Builds the operation measured against a freshly populated manager.
+     */
+    @FunctionalInterface
+    private interface Workload {
+
+        /**
+         * Prepares the accounts and returns the operation to measure.
+         *
+         * @param manager a manager holding {@link #ACCOUNTS} empty accounts
+         * @return the operation
+         * @throws Exception if the accounts cannot be prepared
+         */
+        BenchmarkSupport.Operation create(BankAccountManager manager) throws Exception;
+    }
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args optional thread count
+     * @throws Exception if a benchmark fails
+     */
+    public static void main(final String[] args) throws Exception {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 1;
+        JmxMetricsSink sink = new JmxMetricsSink();
+        compare("metrics.depositWithdraw", threads, sink, manager -> {
+            BankAccount account = manager.getAccount(1);
+            account.depositCents(1_000L);
+            return (t, i) -> {
+                if ((i & 1) == 0) {
+                    account.depositCents(1L);
+                } else {
+                    account.withdrawCents(1L);
+                }
+            };
+        });
+        compare("metrics.getAccount", threads, sink, manager -> (t, i) -> {
+            if (manager.getAccount(1 + (int) (i % ACCOUNTS)) == null) {
+                throw new IllegalStateException("lost account");
+            }
+        });
+        compare("metrics.transfer", threads, sink, manager -> {
+            manager.getAccount(1).depositCents(1_000L);
+            return (t, i) -> {
+                if ((i & 1) == 0) {
+                    manager.tryTransferCents(1, 2, 1L);
+                } else {
+                    manager.tryTransferCents(2, 1, 1L);
+                }
+            };
+        });
+    }
+
+    /**
+     * Measures an operation with metrics off and on and reports both.
+     *
+     * @param name     the benchmark name
+     * @param threads  the number of threads
+     * @param sink     the sink used when metrics are on
+     * @param workload builds the operation to measure
+     * @throws Exception if a measurement fails
+     */
+    private static void compare(final String name, final int threads,
+            final MetricsSink sink, final Workload workload) throws Exception {
+        double off = 0;
+        double on = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            off = Math.max(off, measure(threads, MetricsSink.noOp(), workload));
+            on = Math.max(on, measure(threads, sink, workload));
+        }
+        String param = "threads=" + threads;
+        BenchmarkSupport.report(name + ".off", param, off, "ops/s");
+        BenchmarkSupport.report(name + ".on", param, on, "ops/s");
+        BenchmarkSupport.report(name + ".overhead", param, (off - on) * 100.0 / off, "%");
+    }
+
+    /**
+     * Measures an operation on a new manager, so every measurement starts
+     * with empty histories rather than whatever earlier rounds left.
+     *
+     * @param threads  the number of threads
+     * @param sink     the metrics sink to set on the manager
+     * @param workload builds the operation to measure
+     * @return operations per second
+     * @throws Exception if a measurement fails
+     */
+    private static double measure(final int threads, final MetricsSink sink,
+            final Workload workload) throws Exception {
+        BankAccountManager manager = new BankAccountManager();
+        for (int i = 0; i < ACCOUNTS; i++) {
+            manager.addAccount(new SavingsAccount("Owner"));
+        }
+        manager.setMetricsSink(sink);
+        BenchmarkSupport.Operation operation = workload.create(manager);
+        System.gc();
+        return BenchmarkSupport.throughput(threads, operation);
+    }
+}
@@ -0,0 +1,90 @@
+package bankaccountadvanced;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Measures BankAccountManager.filterTransactionsAbove and
+ * sortTransactionsByAmount over histories of 1K to 10M transactions,
+ * on an account's own history and on a plain list copy of it, with the
+ * time and bytes allocated per query. Totals computed by scanning the
+ * history are compared with the account's running statistics. Run the largest sizes with a heap
+ * of at least 4 GB, e.g. -Xmx4g.
+ * Code Reviewer: MarkSayson
+ */
+public final class QueryBenchmark {
+
+    /** History sizes to benchmark. */
+    private static final int[] SIZES = {1_000, 10_000, 100_000, 1_000_000, 10_000_000};
+
+    /** Largest amount in the generated history, in centavos. */
+    private static final long MAX_AMOUNT_CENTS = 1_000_000L;
+
+    /** Filter threshold selecting about 10% of the history. */
+    private static final double THRESHOLD = 9_000.0;
+
+    /** Total transactions queried per measurement, across repetitions. */
+    private static final long WORK_PER_MEASUREMENT = 20_000_000L;
+
+    /** Utility class; not instantiable. */
+    private QueryBenchmark() {
+    }
+
+    /**
+     * Reports the mean time and allocation of a query.
+     *
+     * @param name  benchmark name
+     * @param size  history size
+     * @param query the query to run
+     * @throws Exception if the query fails
+     */
+    static void measure(final String name, final int size,
+            final BenchmarkSupport.Operation query) throws Exception {
+        long repetitions = Math.max(1L, WORK_PER_MEASUREMENT / size);
+        double bytes = BenchmarkSupport.allocatedBytesPerOp(repetitions, query);
+        long begin = System.nanoTime();
+        for (long i = 0; i < repetitions; i++) {
+            query.run(0, i);
+        }
+        double micros = (System.nanoTime() - begin) / 1e3 / repetitions;
+        BenchmarkSupport.report(name, "n=" + size, micros, "us/op");
+        BenchmarkSupport.report(name + ".alloc", "n=" + size, bytes, "B/op");
+    }
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args optional largest history size
+     * @throws Exception if a benchmark fails
+     */
+    public static void main(final String[] args) throws Exception {
+        int maxSize = args.length > 0 ? Integer.parseInt(args[0]) : Integer.MAX_VALUE;
+        BankAccountManager manager = new BankAccountManager();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int size : SIZES) {
+            if (size > maxSize) {
+                break;
+            }
+            SavingsAccount account = new SavingsAccount("Owner");
+            for (int i = 0; i < size; i++) {
+                account.depositCents(1 + random.nextLong(MAX_AMOUNT_CENTS));
+            }
+            List<Transaction> history = account.getTransactionHistory();
+            measure("query.filterAbove.history", size,
+                    (t, i) -> manager.filterTransactionsAbove(THRESHOLD, history));
+            measure("query.sortByAmount.history", size,
+                    (t, i) -> manager.sortTransactionsByAmount(history));
+
+            measure("query.totals.scan", size, (t, i) -> history.stream()
+                    .mapToLong(Transaction::getAmountCents).summaryStatistics());
+            measure("query.totals.statistics", size, (t, i) -> account.getStatistics());
+
+            List<Transaction> copy = new ArrayList<>(history);
+            measure("query.filterAbove.list", size,
+                    (t, i) -> manager.filterTransactionsAbove(THRESHOLD, copy));
+            measure("query.sortByAmount.list", size,
+                    (t, i) -> manager.sortTransactionsByAmount(copy));
+        }
+    }
+}
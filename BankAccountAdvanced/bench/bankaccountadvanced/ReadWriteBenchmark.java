@@ -0,0 +1,52 @@
+package bankaccountadvanced;
+
+/**
+ * Mixed read/write benchmark on a single shared account. Each thread
+ * performs one deposit or withdrawal for every N balance and frozen-flag
+ * reads, for several values of N.
+ * Code Reviewer: MarkSayson
+ */
+public final class ReadWriteBenchmark {
+
+    /** Reads per write to benchmark. */
+    private static final int[] READS_PER_WRITE = {0, 1, 10, 50, 1_000};
+
+    /** Amount written by each deposit or withdrawal, in centavos. */
+    private static final long AMOUNT_CENTS = 100L;
+
+    /** Utility class; not instantiable. */
+    private ReadWriteBenchmark() {
+    }
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args optional maximum thread count
+     * @throws Exception if a benchmark fails
+     */
+    public static void main(final String[] args) throws Exception {
+        int maxThreads = args.length > 0
+                ? Integer.parseInt(args[0])
+                : Runtime.getRuntime().availableProcessors();
+        for (int ratio : READS_PER_WRITE) {
+            for (int threads = 1; threads <= maxThreads; threads *= 2) {
+                SavingsAccount account = new SavingsAccount("Owner");
+                account.depositCents(Long.MAX_VALUE >> 4);
+                long[] sink = new long[threads];
+                double ops = BenchmarkSupport.throughput(threads, (t, i) -> {
+                    if (i % (ratio + 1) == 0) {
+                        if ((i & 1) == 0) {
+                            account.depositCents(AMOUNT_CENTS);
+                        } else {
+                            account.withdrawCents(AMOUNT_CENTS);
+                        }
+                    } else if (!account.isFrozen()) {
+                        sink[t] += account.getBalanceCents();
+                    }
+                });
+                BenchmarkSupport.report("account.readWrite",
+                        "reads/write=" + ratio + " threads=" + threads, ops, "ops/s");
+            }
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package bankaccountadvanced;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Measures BankAccountManager lookup and registration throughput as the
+ * number of threads grows. The read-heavy mix is 99% getAccount and
+ * 1% addAccount.
+ * Code Reviewer: MarkSayson
+ */
+public final class RegistryBenchmark {
+
+    /** Number of accounts loaded before measuring. */
+    private static final int PRELOADED = 100_000;
+
+    /** One in this many operations is an insert in the mixed workload. */
+    private static final int WRITE_EVERY = 100;
+
+    /** Utility class; not instantiable. */
+    private RegistryBenchmark() {
+    }
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args optional maximum thread count
+     * @throws Exception if a benchmark fails
+     */
+    public static void main(final String[] args) throws Exception {
+        int maxThreads = args.length > 0
+                ? Integer.parseInt(args[0])
+                : Runtime.getRuntime().availableProcessors();
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            BankAccountManager manager = new BankAccountManager();
+            for (int i = 0; i < PRELOADED; i++) {
+                manager.addAccount(new SavingsAccount("Owner"));
+            }
+            double lookups = BenchmarkSupport.throughput(threads, (t, i) -> {
+                int id = 1 + ThreadLocalRandom.current().nextInt(PRELOADED);
+                if (manager.getAccount(id) == null) {
+                    throw new IllegalStateException("lost account " + id);
+                }
+            });
+            BenchmarkSupport.report("registry.getAccount",
+                    "threads=" + threads, lookups, "ops/s");
+
+            double mixed = BenchmarkSupport.throughput(threads, (t, i) -> {
+                if (i % WRITE_EVERY == 0) {
+                    manager.addAccount(new SavingsAccount("Owner"));
+                } else {
+                    manager.getAccount(
+                            1 + ThreadLocalRandom.current().nextInt(PRELOADED));
+                }
+            });
+            BenchmarkSupport.report("registry.mixed99to1",
+                    "threads=" + threads, mixed, "ops/s");
+        }
+    }
+}
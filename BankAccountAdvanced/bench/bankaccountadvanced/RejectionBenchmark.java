@@ -0,0 +1,106 @@
+package bankaccountadvanced;
+
+/**
+ * Compares the exception-throwing and the status-returning account API
+ * on workloads where a growing share of withdrawals is rejected for
+ * insufficient funds: throughput and bytes allocated per operation.
+ * Accepted operations alternate between a deposit and a withdrawal of
+ * one centavo, so the balance stays level.
+ * Code Reviewer: MarkSayson
+ */
+public final class RejectionBenchmark {
+
+    /** Percentages of operations that are rejected. */
+    private static final int[] REJECTION_PERCENTAGES = {0, 8, 50, 100};
+
+    /** Opening balance, far below the rejected withdrawal amount. */
+    private static final long OPENING_CENTS = 1_000_000L;
+
+    /** Operations run when measuring allocation. */
+    private static final long ALLOCATION_ITERATIONS = 1_000_000L;
+
+    /** Utility class; not instantiable. */
+    private RejectionBenchmark() {
+    }
+
+    /**
+     * Returns whether an iteration is one of the rejected ones.
+     *
+     * @param iteration  the iteration counter
+     * @param percentage the share of rejected iterations
+     * @return true if the iteration should be rejected
+     */
+    private static boolean rejected(final long iteration, final int percentage) {
+        return iteration % 100 < percentage;
+    }
+
+    /**
+     * Runs one operation through the exception-throwing API.
+     *
+     * @param account    the account
+     * @param iteration  the iteration counter
+     * @param percentage the share of rejected iterations
+     * @throws Exception if an accepted operation fails
+     */
+    private static void throwing(final BankAccount account, final long iteration,
+            final int percentage) throws Exception {
+        try {
+            if (rejected(iteration, percentage)) {
+                account.withdrawCents(Long.MAX_VALUE >> 2);
+            } else if ((iteration & 1) == 0) {
+                account.depositCents(1L);
+            } else {
+                account.withdrawCents(1L);
+            }
+        } catch (InsufficientFundsException e) {
+            // expected for the rejected share
+        }
+    }
+
+    /**
+     * Runs one operation through the status-returning API.
+     *
+     * @param account    the account
+     * @param iteration  the iteration counter
+     * @param percentage the share of rejected iterations
+     * @return the outcome of the operation
+     */
+    private static OperationStatus returning(final BankAccount account, final long iteration,
+            final int percentage) {
+        if (rejected(iteration, percentage)) {
+            return account.tryWithdrawCents(Long.MAX_VALUE >> 2);
+        } else if ((iteration & 1) == 0) {
+            return account.tryDepositCents(1L);
+        } else {
+            return account.tryWithdrawCents(1L);
+        }
+    }
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args unused
+     * @throws Exception if a benchmark fails
+     */
+    public static void main(final String[] args) throws Exception {
+        for (int percentage : REJECTION_PERCENTAGES) {
+            String param = "rejected=" + percentage + "%";
+            BankAccount thrown = new SavingsAccount("Owner");
+            thrown.depositCents(OPENING_CENTS);
+            double ops = BenchmarkSupport.throughput(1,
+                    (t, i) -> throwing(thrown, i, percentage));
+            BenchmarkSupport.report("rejection.exception", param, ops, "ops/s");
+            double bytes = BenchmarkSupport.allocatedBytesPerOp(ALLOCATION_ITERATIONS,
+                    (t, i) -> throwing(thrown, i, percentage));
+            BenchmarkSupport.report("rejection.exception.alloc", param, bytes, "B/op");
+
+            BankAccount status = new SavingsAccount("Owner");
+            status.depositCents(OPENING_CENTS);
+            ops = BenchmarkSupport.throughput(1, (t, i) -> returning(status, i, percentage));
+            BenchmarkSupport.report("rejection.status", param, ops, "ops/s");
+            bytes = BenchmarkSupport.allocatedBytesPerOp(ALLOCATION_ITERATIONS,
+                    (t, i) -> returning(status, i, percentage));
+            BenchmarkSupport.report("rejection.status.alloc", param, bytes, "B/op");
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package bankaccountadvanced;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures primary deposit throughput with no replication, with a
+ * ReplicationLog but no followers, and with an in-process follower, a
+ * loopback socket follower or both, as the number of threads grows.
+ * Each thread deposits into its own account. Also reports how long the
+ * followers take to catch up once the writers stop.
+ * Code Reviewer: MarkSayson
+ */
+public final class ReplicationBenchmark {
+
+    /** Follower setups measured. */
+    private static final String[] SETUPS = {"none", "log", "local", "socket", "local+socket"};
+
+    /** Seconds to wait for followers to catch up. */
+    private static final long CATCH_UP_SECONDS = 60L;
+
+    /** Utility class; not instantiable. */
+    private ReplicationBenchmark() {
+    }
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args optional maximum thread count
+     * @throws Exception if a benchmark fails
+     */
+    public static void main(final String[] args) throws Exception {
+        int maxThreads = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        for (String setup : SETUPS) {
+            for (int threads = 1; threads <= maxThreads; threads *= 4) {
+                run(setup, threads);
+            }
+        }
+    }
+
+    /**
+     * Measures one follower setup.
+     *
+     * @param setup   the follower setup
+     * @param threads number of depositing threads
+     * @throws Exception if the measurement fails
+     */
+    private static void run(final String setup, final int threads) throws Exception {
+        ReplicationLog log = setup.equals("none") ? null : new ReplicationLog();
+        BankAccountManager manager = new BankAccountManager(new ConcurrentAccountRegistry(), log);
+        BankAccount[] accounts = new BankAccount[threads];
+        for (int t = 0; t < threads; t++) {
+            accounts[t] = new SavingsAccount("Owner");
+            manager.addAccount(accounts[t]);
+        }
+        ReplicaManager local = null;
+        ReplicaManager remote = null;
+        if (setup.contains("local")) {
+            local = log.addFollower(manager);
+        }
+        if (setup.contains("socket")) {
+            InetSocketAddress address = log.listen(manager,
+                    new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+            remote = ReplicaManager.connect(address);
+        }
+        try {
+            double ops = BenchmarkSupport.throughput(threads,
+                    (t, i) -> accounts[t].depositCents(1L));
+            BenchmarkSupport.report("replication.deposit",
+                    setup + " threads=" + threads, ops, "ops/s");
+            if (local != null || remote != null) {
+                long sequence = log.getSequence();
+                ReplicaManager[] followers = {local, remote};
+                double millis = BenchmarkSupport.timeMillis((t, i) -> {
+                    for (ReplicaManager replica : followers) {
+                        if (replica != null && !replica.awaitSequence(sequence,
+                                CATCH_UP_SECONDS, TimeUnit.SECONDS)) {
+                            throw new IllegalStateException("follower did not catch up");
+                        }
+                    }
+                });
+                BenchmarkSupport.report("replication.catchUp",
+                        setup + " threads=" + threads, millis, "ms");
+            }
+        } finally {
+            if (local != null) {
+                local.close();
+            }
+            if (remote != null) {
+                remote.close();
+            }
+            if (log != null) {
+                log.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package bankaccountadvanced;
+
+import java.lang.ref.Reference;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * Simulates long-lived accounts that keep receiving transactions and
+ * compares unbounded columnar history with tiered history that keeps
+ * the last {@value #KEEP} transactions per account in memory. Reports
+ * the heap in use as history grows, the size of the compressed archive,
+ * the latency of history pages read from the in-memory tier and from
+ * the archive, and the speed of a full history scan. Run with a heap
+ * of at least 2 GB, e.g. -Xmx2g.
+ * Code Reviewer: MarkSayson
+ */
+public final class RetentionBenchmark {
+
+    /** Default number of accounts. */
+    private static final int DEFAULT_ACCOUNTS = 100;
+
+    /** Default number of transactions per account. */
+    private static final int DEFAULT_PER_ACCOUNT = 200_000;
+
+    /** Transactions per account kept in memory by the tiered ledgers. */
+    private static final int KEEP = 10_000;
+
+    /** Number of heap readings taken while filling. */
+    private static final int STEPS = 4;
+
+    /** Number of page reads timed per tier. */
+    private static final int QUERIES = 2_000;
+
+    /** Transactions per page read. */
+    private static final int PAGE_SIZE = 100;
+
+    /** Bytes per megabyte. */
+    private static final double MB = 1024.0 * 1024.0;
+
+    /** Utility class; not instantiable. */
+    private RetentionBenchmark() {
+    }
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args optional account count, transactions per account and directory
+     * @throws Exception if a benchmark fails
+     */
+    public static void main(final String[] args) throws Exception {
+        int accounts = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_ACCOUNTS;
+        int perAccount = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_PER_ACCOUNT;
+        Path dir = args.length > 2 ? Path.of(args[2])
+                : Files.createTempDirectory("retention");
+        try {
+            SavingsAccount[] plain = new SavingsAccount[accounts];
+            for (int i = 0; i < accounts; i++) {
+                plain[i] = new SavingsAccount("Owner");
+            }
+            simulate("columnar", plain, perAccount);
+            plain = null;
+
+            TieredTransactionLedger[] ledgers = new TieredTransactionLedger[accounts];
+            SavingsAccount[] tiered = new SavingsAccount[accounts];
+            for (int i = 0; i < accounts; i++) {
+                ledgers[i] = new TieredTransactionLedger(dir.resolve("account-" + i + ".archive"),
+                        RetentionPolicy.keepLast(KEEP));
+                tiered[i] = new SavingsAccount("Owner", ledgers[i]);
+            }
+            simulate("tiered", tiered, perAccount);
+            long archiveBytes = 0L;
+            long archived = 0L;
+            for (TieredTransactionLedger ledger : ledgers) {
+                archiveBytes += ledger.getArchiveBytes();
+                archived += ledger.getArchivedEntries();
+            }
+            BenchmarkSupport.report("retention.tiered.archive", "rows=" + archived,
+                    archiveBytes / MB, "MB");
+            BenchmarkSupport.report("retention.tiered.archiveRow", "rows=" + archived,
+                    archiveBytes / (double) archived, "B");
+            for (TieredTransactionLedger ledger : ledgers) {
+                ledger.close();
+            }
+        } finally {
+            try (var files = Files.list(dir)) {
+                for (Path file : (Iterable<Path>) files::iterator) {
+                    Files.delete(file);
+                }
+            }
+            Files.delete(dir);
+        }
+    }
+
+    /**
+     * Deposits into every account in turn, reporting the heap in use as
+     * history grows, then times page reads from recent and old history
+     * and a scan of every account's full history.
+     *
+     * @param name       the ledger kind, used in result names
+     * @param accounts   the accounts
+     * @param perAccount transactions per account
+     * @throws Exception if a measurement fails
+     */
+    private static void simulate(final String name, final SavingsAccount[] accounts,
+            final int perAccount) throws Exception {
+        long before = LedgerMemoryBenchmark.usedHeap();
+        int step = perAccount / STEPS;
+        long start = System.nanoTime();
+        for (int round = 0; round < perAccount; round++) {
+            for (SavingsAccount account : accounts) {
+                account.depositCents(1 + round % 100_000);
+            }
+            if ((round + 1) % step == 0) {
+                BenchmarkSupport.report("retention." + name + ".heap",
+                        "rows=" + (long) (round + 1) * accounts.length,
+                        (LedgerMemoryBenchmark.usedHeap() - before) / MB, "MB");
+            }
+        }
+        long rows = (long) perAccount * accounts.length;
+        BenchmarkSupport.report("retention." + name + ".append", "rows=" + rows,
+                rows / ((System.nanoTime() - start) / 1e9), "rows/s");
+        int recentFrom = perAccount - KEEP;
+        pageMicros(accounts, recentFrom, KEEP - PAGE_SIZE);
+        pageMicros(accounts, 0, recentFrom - PAGE_SIZE);
+        BenchmarkSupport.report("retention." + name + ".recentPage", "limit=" + PAGE_SIZE,
+                pageMicros(accounts, recentFrom, KEEP - PAGE_SIZE), "us");
+        BenchmarkSupport.report("retention." + name + ".oldPage", "limit=" + PAGE_SIZE,
+                pageMicros(accounts, 0, recentFrom - PAGE_SIZE), "us");
+        start = System.nanoTime();
+        long sum = 0L;
+        for (SavingsAccount account : accounts) {
+            sum += account.streamTransactions().mapToLong(Transaction::getAmountCents).sum();
+        }
+        BenchmarkSupport.report("retention." + name + ".scan", "rows=" + rows,
+                rows / ((System.nanoTime() - start) / 1e9), "rows/s");
+        if (sum == 0L) {
+            throw new IllegalStateException("empty history");
+        }
+        Reference.reachabilityFence(accounts);
+    }
+
+    /**
+     * Returns the mean time to read and materialize a page starting at a
+     * random position of a random account.
+     *
+     * @param accounts the accounts
+     * @param from     lowest start position
+     * @param range    number of possible start positions
+     * @return mean microseconds per page
+     */
+    private static double pageMicros(final SavingsAccount[] accounts, final int from,
+            final int range) {
+        Random random = new Random(7);
+        long sum = 0L;
+        long start = System.nanoTime();
+        for (int i = 0; i < QUERIES; i++) {
+            BankAccount account = accounts[random.nextInt(accounts.length)];
+            TransactionPage page = account.getTransactionPage(
+                    from + random.nextInt(range), PAGE_SIZE);
+            for (Transaction transaction : page.getTransactions()) {
+                sum += transaction.getAmountCents();
+            }
+        }
+        double micros = (System.nanoTime() - start) / 1e3 / QUERIES;
+        if (sum == 0L) {
+            throw new IllegalStateException("empty pages");
+        }
+        return micros;
+    }
+}
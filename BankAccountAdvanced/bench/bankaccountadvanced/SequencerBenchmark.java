@@ -0,0 +1,83 @@
+package bankaccountadvanced;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Measures deposit throughput into one hot account as the number of
+ * producer threads grows, comparing threads that take the account's lock
+ * directly with threads that enqueue into an AccountSequencer. Each
+ * sequencer producer waits for every WINDOW-th deposit, so no more than
+ * WINDOW deposits per producer are in flight. Runs in memory and with a
+ * GROUP_SYNC journal.
+ * Code Reviewer: MarkSayson
+ */
+public final class SequencerBenchmark {
+
+    /** Largest number of producer threads measured. */
+    private static final int MAX_PRODUCERS = 64;
+
+    /** Deposits a sequencer producer sends before waiting for the last one. */
+    private static final int WINDOW = 256;
+
+    /** Utility class; not instantiable. */
+    private SequencerBenchmark() {
+    }
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args optional maximum producer count, then optional journal directory
+     * @throws Exception if a benchmark fails
+     */
+    public static void main(final String[] args) throws Exception {
+        int maxProducers = args.length > 0 ? Integer.parseInt(args[0]) : MAX_PRODUCERS;
+        Path dir = args.length > 1
+                ? Path.of(args[1]) : Files.createTempDirectory("sequencer-bench");
+        for (int producers = 1; producers <= maxProducers; producers *= 2) {
+            measure("memory producers=" + producers, producers, null);
+        }
+        Path file = dir.resolve("sequencer-bench.journal");
+        for (int producers = 1; producers <= maxProducers; producers *= 4) {
+            Files.deleteIfExists(file);
+            try (AccountJournal journal = AccountJournal.open(file, DurabilityMode.GROUP_SYNC)) {
+                measure("GROUP_SYNC producers=" + producers, producers, journal);
+            } finally {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    /**
+     * Measures the lock and the sequencer for one configuration.
+     *
+     * @param param     the label of the configuration
+     * @param producers the number of producer threads
+     * @param journal   the journal to record to, or null
+     * @throws Exception if a measurement fails
+     */
+    private static void measure(final String param, final int producers,
+            final AccountJournal journal) throws Exception {
+        BankAccountManager manager = journal == null
+                ? new BankAccountManager()
+                : new BankAccountManager(new ConcurrentAccountRegistry(), journal);
+        SavingsAccount locked = new SavingsAccount("Merchant");
+        manager.addAccount(locked);
+        double direct = BenchmarkSupport.throughput(producers,
+                (t, i) -> locked.depositCents(1L));
+        BenchmarkSupport.report("sequencer.lock", param, direct, "ops/s");
+
+        SavingsAccount sequenced = new SavingsAccount("Merchant");
+        manager.addAccount(sequenced);
+        try (AccountSequencer sequencer = new AccountSequencer(sequenced)) {
+            double queued = BenchmarkSupport.throughput(producers, (t, i) -> {
+                if (i % WINDOW == WINDOW - 1) {
+                    sequencer.depositCents(1L).get();
+                } else {
+                    sequencer.depositCents(1L);
+                }
+            });
+            BenchmarkSupport.report("sequencer.ring", param, queued, "ops/s");
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package bankaccountadvanced;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Compares ShardedAccountRegistry at growing shard counts with the
+ * single-map ConcurrentAccountRegistry: registration and lookup
+ * throughput through BankAccountManager, and the heap each registry
+ * needs per account.
+ * Code Reviewer: MarkSayson
+ */
+public final class ShardBenchmark {
+
+    /** Number of accounts loaded before measuring lookups. */
+    private static final int PRELOADED = 1_000_000;
+
+    /** Largest shard count measured. */
+    private static final int MAX_SHARDS = 64;
+
+    /** Utility class; not instantiable. */
+    private ShardBenchmark() {
+    }
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args optional thread count
+     * @throws Exception if a benchmark fails
+     */
+    public static void main(final String[] args) throws Exception {
+        int threads = args.length > 0
+                ? Integer.parseInt(args[0])
+                : Math.max(4, Runtime.getRuntime().availableProcessors());
+        measureHeap("concurrent", ConcurrentAccountRegistry::new);
+        for (int shards = 1; shards <= MAX_SHARDS; shards *= 4) {
+            int count = shards;
+            measureHeap("shards=" + shards, () -> new ShardedAccountRegistry(count));
+        }
+        measure("concurrent", threads, ConcurrentAccountRegistry::new);
+        for (int shards = 1; shards <= MAX_SHARDS; shards *= 4) {
+            int count = shards;
+            measure("shards=" + shards, threads, () -> new ShardedAccountRegistry(count));
+        }
+    }
+
+    /**
+     * Creates an empty registry.
+     */
+    @FunctionalInterface
+    private interface RegistryFactory {
+
+        /**
+         * Creates a registry.
+         *
+         * @return a new empty registry
+         */
+        AccountRegistry create();
+    }
+
+    /**
+     * Measures the heap a registry needs per account. Every slot holds the
+     * same account, so only the registry's own structures are counted.
+     *
+     * @param param   the label of the configuration
+     * @param factory creates the registry to measure
+     */
+    private static void measureHeap(final String param, final RegistryFactory factory) {
+        BankAccount shared = new SavingsAccount("Owner");
+        long before = usedHeap();
+        AccountRegistry registry = factory.create();
+        for (int i = 0; i < PRELOADED; i++) {
+            registry.register(shared);
+        }
+        double perAccount = (double) (usedHeap() - before) / PRELOADED;
+        BenchmarkSupport.report("shard.heapPerAccount", param, perAccount, "B");
+        if (registry.size() != PRELOADED) {
+            throw new IllegalStateException("lost accounts");
+        }
+    }
+
+    /**
+     * Measures registration and lookup throughput of one configuration.
+     *
+     * @param param   the label of the configuration
+     * @param threads the number of threads
+     * @param factory creates the registries to measure
+     * @throws Exception if a measurement fails
+     */
+    private static void measure(final String param, final int threads,
+            final RegistryFactory factory) throws Exception {
+        BankAccountManager manager = new BankAccountManager(factory.create());
+        double inserts = BenchmarkSupport.throughput(threads,
+                (t, i) -> manager.addAccount(new SavingsAccount("Owner")));
+        BenchmarkSupport.report("shard.addAccount", param, inserts, "ops/s");
+
+        AccountRegistry loaded = factory.create();
+        int[] ids = new int[PRELOADED];
+        for (int i = 0; i < PRELOADED; i++) {
+            ids[i] = loaded.register(new SavingsAccount("Owner"));
+        }
+        BankAccountManager reader = new BankAccountManager(loaded);
+        double lookups = BenchmarkSupport.throughput(threads, (t, i) -> {
+            int id = ids[ThreadLocalRandom.current().nextInt(PRELOADED)];
+            if (reader.getAccount(id) == null) {
+                throw new IllegalStateException("lost account " + id);
+            }
+        });
+        BenchmarkSupport.report("shard.getAccount", param, lookups, "ops/s");
+
+    }
+
+    /**
+     * Returns the heap in use after a garbage collection.
+     *
+     * @return used heap in bytes
+     */
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,80 @@
+package bankaccountadvanced;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Compares startup time of a BankAccountManager recovered by replaying
+ * the full journal with one recovered from a checkpoint plus the journal
+ * tail. The default run creates 1M accounts with one deposit each, takes
+ * a checkpoint, then writes a tail of further deposits.
+ * Code Reviewer: MarkSayson
+ */
+public final class StartupBenchmark {
+
+    /** Default number of accounts. */
+    private static final int DEFAULT_ACCOUNTS = 1_000_000;
+
+    /** Deposits written after the checkpoint, as a fraction of accounts. */
+    private static final int TAIL_DIVISOR = 10;
+
+    /** Utility class; not instantiable. */
+    private StartupBenchmark() {
+    }
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args optional account count, then optional directory
+     * @throws Exception if a benchmark fails
+     */
+    public static void main(final String[] args) throws Exception {
+        int accounts = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_ACCOUNTS;
+        Path dir = args.length > 1
+                ? Path.of(args[1]) : Files.createTempDirectory("startup-bench");
+        Path journalFile = dir.resolve("accounts.journal");
+        Files.deleteIfExists(journalFile);
+        for (Path old : AccountCheckpoint.list(dir)) {
+            Files.delete(old);
+        }
+
+        try (AccountJournal journal = AccountJournal.open(journalFile, DurabilityMode.ASYNC)) {
+            BankAccountManager manager =
+                    new BankAccountManager(new ConcurrentAccountRegistry(), journal);
+            for (int i = 0; i < accounts; i++) {
+                SavingsAccount account = new SavingsAccount("Owner" + i);
+                manager.addAccount(account);
+                account.depositCents(1_000L + i);
+            }
+            double checkpointMillis = BenchmarkSupport.timeMillis(
+                    (t, i) -> AccountCheckpoint.write(manager, journal, dir));
+            BenchmarkSupport.report("startup.writeCheckpoint",
+                    "accounts=" + accounts, checkpointMillis, "ms");
+            for (int i = 0; i < accounts / TAIL_DIVISOR; i++) {
+                manager.getAccount(1 + i).depositCents(1L);
+            }
+        }
+        BenchmarkSupport.report("startup.journalSize", "accounts=" + accounts,
+                Files.size(journalFile) / (1024.0 * 1024.0), "MB");
+
+        for (int round = 0; round < 2; round++) {
+            double full = BenchmarkSupport.timeMillis((t, i) -> {
+                try (AccountJournal journal =
+                        AccountJournal.open(journalFile, DurabilityMode.ASYNC)) {
+                    BankAccountManager.recover(journal);
+                }
+            });
+            BenchmarkSupport.report("startup.fullReplay",
+                    "accounts=" + accounts, full, "ms");
+
+            double fromCheckpoint = BenchmarkSupport.timeMillis((t, i) -> {
+                try (AccountJournal journal =
+                        AccountJournal.open(journalFile, DurabilityMode.ASYNC)) {
+                    BankAccountManager.recover(journal, dir);
+                }
+            });
+            BenchmarkSupport.report("startup.checkpointPlusTail",
+                    "accounts=" + accounts, fromCheckpoint, "ms");
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package bankaccountadvanced;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compares point-in-time queries on one account with a long history:
+ * balanceAt against replaying the history up to the instant, and
+ * historyBetween against filtering a stream of the whole history.
+ * Also reports the cost of recording a transaction, which includes
+ * maintaining the balance marks.
+ * Code Reviewer: MarkSayson
+ */
+public final class TimelineBenchmark {
+
+    /** Default number of transactions in the history. */
+    private static final int DEFAULT_ENTRIES = 10_000_000;
+
+    /** Queries timed for the indexed methods. */
+    private static final int QUERIES = 100_000;
+
+    /** Queries timed for the replay baselines. */
+    private static final int REPLAYS = 20;
+
+    /** Length of each historyBetween range, in milliseconds. */
+    private static final long RANGE_MILLIS = 1L;
+
+    /** Utility class; not instantiable. */
+    private TimelineBenchmark() {
+    }
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args optional number of transactions
+     * @throws Exception if a benchmark fails
+     */
+    public static void main(final String[] args) throws Exception {
+        int entries = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_ENTRIES;
+        SavingsAccount account = new SavingsAccount("Owner");
+        long start = System.nanoTime();
+        for (int i = 0; i < entries; i++) {
+            if (i % 3 == 2) {
+                account.withdrawCents(1L);
+            } else {
+                account.depositCents(1 + i % 1_000);
+            }
+        }
+        BenchmarkSupport.report("timeline.record", "entries=" + entries,
+                (System.nanoTime() - start) / (double) entries, "ns/op");
+        List<Transaction> history = account.getTransactionHistory();
+        long first = history.get(0).getTimestamp();
+        long last = history.get(entries - 1).getTimestamp();
+        String param = "entries=" + entries;
+        Random random = new Random(11);
+
+        long sum = 0L;
+        start = System.nanoTime();
+        for (int q = 0; q < REPLAYS; q++) {
+            long at = first + (long) (random.nextDouble() * (last - first + 1));
+            sum += account.streamTransactions().filter(t -> t.getTimestamp() <= at)
+                    .mapToLong(t -> t.getType().equals("Withdraw")
+                            ? -t.getAmountCents() : t.getAmountCents()).sum();
+        }
+        BenchmarkSupport.report("timeline.balanceAt.replay", param,
+                (System.nanoTime() - start) / 1e3 / REPLAYS, "us");
+        for (int round = 0; round < 2; round++) {
+            start = System.nanoTime();
+            for (int q = 0; q < QUERIES; q++) {
+                long at = first + (long) (random.nextDouble() * (last - first + 1));
+                sum += account.balanceCentsAt(Instant.ofEpochMilli(at));
+            }
+            if (round > 0) {
+                BenchmarkSupport.report("timeline.balanceAt.indexed", param,
+                        (System.nanoTime() - start) / 1e3 / QUERIES, "us");
+            }
+        }
+
+        start = System.nanoTime();
+        long rows = 0L;
+        for (int q = 0; q < REPLAYS; q++) {
+            long from = first + (long) (random.nextDouble() * (last - first + 1));
+            rows += account.streamTransactions()
+                    .filter(t -> t.getTimestamp() >= from && t.getTimestamp() < from + RANGE_MILLIS)
+                    .count();
+        }
+        BenchmarkSupport.report("timeline.historyBetween.scan", param,
+                (System.nanoTime() - start) / 1e3 / REPLAYS, "us");
+        for (int round = 0; round < 2; round++) {
+            start = System.nanoTime();
+            for (int q = 0; q < QUERIES / 10; q++) {
+                long from = first + (long) (random.nextDouble() * (last - first + 1));
+                rows += account.historyBetween(Instant.ofEpochMilli(from),
+                        Instant.ofEpochMilli(from + RANGE_MILLIS)).size();
+            }
+            if (round > 0) {
+                BenchmarkSupport.report("timeline.historyBetween.indexed", param,
+                        (System.nanoTime() - start) / 1e3 / (QUERIES / 10), "us");
+            }
+        }
+        if (sum == 0L || rows == 0L) {
+            throw new IllegalStateException("empty results");
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package bankaccountadvanced;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Measures transfers/sec as the number of threads grows, both for single
+ * transfers and for transferBatch. A small account pool gives high lock
+ * contention, a large pool gives low contention.
+ * Code Reviewer: MarkSayson
+ */
+public final class TransferBenchmark {
+
+    /** Account pool sizes to benchmark: hot and spread out. */
+    private static final int[] POOL_SIZES = {8, 10_000};
+
+    /** Number of transfers per transferBatch call. */
+    private static final int BATCH_SIZE = 1_024;
+
+    /** Opening balance large enough that transfers never run dry. */
+    private static final double OPENING_BALANCE = 1e12;
+
+    /** Utility class; not instantiable. */
+    private TransferBenchmark() {
+    }
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args optional maximum thread count
+     * @throws Exception if a benchmark fails
+     */
+    public static void main(final String[] args) throws Exception {
+        int maxThreads = args.length > 0
+                ? Integer.parseInt(args[0])
+                : Runtime.getRuntime().availableProcessors();
+        for (int pool : POOL_SIZES) {
+            BankAccountManager manager = new BankAccountManager();
+            for (int i = 0; i < pool; i++) {
+                SavingsAccount acc = new SavingsAccount("Owner");
+                acc.deposit(OPENING_BALANCE);
+                manager.addAccount(acc);
+            }
+            for (int threads = 1; threads <= maxThreads; threads *= 2) {
+                double single = BenchmarkSupport.throughput(threads, (t, i) -> {
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    int from = 1 + random.nextInt(pool);
+                    int to = 1 + (from + random.nextInt(pool - 1)) % pool;
+                    manager.transfer(from, to, 1);
+                });
+                BenchmarkSupport.report("transfer.single",
+                        "accounts=" + pool + " threads=" + threads, single, "ops/s");
+
+                double batches = BenchmarkSupport.throughput(threads, (t, i) -> {
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    int[] from = new int[BATCH_SIZE];
+                    int[] to = new int[BATCH_SIZE];
+                    double[] amounts = new double[BATCH_SIZE];
+                    for (int k = 0; k < BATCH_SIZE; k++) {
+                        from[k] = 1 + random.nextInt(pool);
+                        to[k] = 1 + (from[k] + random.nextInt(pool - 1)) % pool;
+                        amounts[k] = 1;
+                    }
+                    manager.transferBatch(from, to, amounts);
+                });
+                BenchmarkSupport.report("transfer.batch",
+                        "accounts=" + pool + " threads=" + threads,
+                        batches * BATCH_SIZE, "ops/s");
+            }
+        }
+    }
+}
@@ -0,0 +1,14 @@
+#!/bin/sh
+# Compiles the sources and benchmarks and runs BenchmarkMain.
+#   bench/run.sh                  run the default suite
+#   bench/run.sh query journal    run the named benchmarks
+#   bench/run.sh list             list benchmark names
+# Compare the output of the default suite with bench/baseline.txt.
+# JAVA_OPTS defaults to -Xmx4g, enough for the 10M-transaction queries.
+# Needs JDK 21 or newer; the sources use virtual threads.
+set -e
+cd "$(dirname "$0")/.."
+OUT=${OUT:-$(mktemp -d)}
+mkdir -p "$OUT"
+javac --release 21 -d "$OUT" $(find src bench -name '*.java' ! -name module-info.java)
+exec java ${JAVA_OPTS:--Xmx4g} -cp "$OUT" bankaccountadvanced.BenchmarkMain "$@"
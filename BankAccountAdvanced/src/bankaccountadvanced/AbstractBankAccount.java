@@ -1,64 +1,211 @@
 package bankaccountadvanced;
 
+import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Abstract implementation of a BankAccount.
  * Provides shared functionality for deposit, withdraw, balance tracking,
  * freezing/unfreezing accounts, and transaction history.
+ * Amounts are kept as whole centavos; the double methods are adapters.
+ * <p>
+ * Mutations run under the account's lock. The balance and the frozen
+ * flag share a single volatile state word, so getBalance and isFrozen
+ * never block and always observe a consistent pair. The lock is a
+ * ReentrantLock rather than the object monitor, so a virtual thread
+ * that blocks while holding it, e.g. on a journal write, unmounts
+ * instead of pinning its carrier thread.
+ * <p>
+ * Once registered with a BankAccountManager that has a MutationListener,
+ * every mutation is reported to it while the lock is held, and the
+ * caller waits for the listener's durability acknowledgement after the
+ * lock is released.
+ * <p>
+ * Accounts registered with a manager that has a MetricsSink report the
+ * outcome and latency of every deposit, withdrawal and batch, and every
+ * contended wait for the lock, to that sink.
  * Code Reviewer: MarkSayson
  */
 public abstract class AbstractBankAccount implements BankAccount {
 
-    /** Current balance of the account. */
-    private double balance;
+    /** Lowest bit of the state word; set when the account is frozen. */
+    private static final long FROZEN_BIT = 1L;
 
-    /** Indicates whether the account is frozen. */
-    private boolean frozen;
+    /** Largest balance the state word can hold, in centavos. */
+    private static final long MAX_BALANCE_CENTS = Long.MAX_VALUE >> 1;
 
-    /** List of all transactions performed on the account. */
-    private List<Transaction> transactionHistory;
+    /**
+     * Balance in centavos shifted left by one, with the frozen flag in the
+     * lowest bit. Written only while holding the lock.
+     */
+    private volatile long state;
+
+    /** Guards every mutation of the account. */
+    private final ReentrantLock lock;
+
+    /** Ledger of all transactions performed on the account. */
+    private final TransactionLedger transactionHistory;
+
+    /** Balances at intervals of the ledger, for point-in-time queries. */
+    private final BalanceIndex balances;
+
+    /** ID assigned by the manager that reports this account's mutations. */
+    private int accountId;
+
+    /** Receives this account's mutations; null when not attached. */
+    private volatile MutationListener listener;
+
+    /** Receives this account's metrics; null when metrics are off. */
+    private volatile MetricsSink metrics;
+
+    /**
+     * Ticket of the last mutation reported for this account; with an
+     * AccountJournal this is its log sequence number. Written under the lock.
+     */
+    private volatile long lastLsn;
+
+    /** Number of transactions recorded before this account was restored. */
+    private long historyOffset;
+
+    /** Sum of all credits, including incoming transfers. Guarded by the lock. */
+    private long totalDepositedCents;
+
+    /** Sum of all debits, including outgoing transfers. Guarded by the lock. */
+    private long totalWithdrawnCents;
+
+    /** Largest single transaction amount. Guarded by the lock. */
+    private long largestTransactionCents;
+
+    /** Timestamp of the latest recorded transaction. Guarded by the lock. */
+    private long lastTimestamp;
 
     /**
      * Constructs a new AbstractBankAccount with initial balance 0,
-     * account unfrozen, and empty transaction history.
+     * account unfrozen, and empty columnar transaction history.
      */
     public AbstractBankAccount() {
-        this.balance = 0.0;
-        this.frozen = false;
-        this.transactionHistory = new ArrayList<>();
+        this(new ColumnarTransactionLedger());
+    }
+
+    /**
+     * Constructs a new AbstractBankAccount with initial balance 0,
+     * account unfrozen, recording history in the given empty ledger.
+     *
+     * @param ledger the ledger that stores transaction history
+     */
+    protected AbstractBankAccount(final TransactionLedger ledger) {
+        this.state = 0L;
+        this.lock = new ReentrantLock();
+        this.transactionHistory = ledger;
+        this.balances = new BalanceIndex();
     }
 
     /**
      * Deposits the specified amount into the account.
-     * Records the transaction in the transaction history.
+     * The amount is rounded to the nearest centavo.
      *
      * @param amount the amount to deposit
      * @throws InvalidAmountException if amount is zero or negative
      * @throws AccountFrozenException if the account is currently frozen
      */
     @Override
-    public final synchronized void deposit(final double amount)
+    public final void deposit(final double amount)
             throws InvalidAmountException, AccountFrozenException {
-        if (frozen) {
-            throw new AccountFrozenException("Account is frozen");
+        depositCents(Money.toCents(amount));
+    }
+
+    /**
+     * Deposits the specified number of centavos into the account.
+     * Records the transaction in the transaction history.
+     *
+     * @param amountCents the amount to deposit in centavos
+     * @throws InvalidAmountException if amount is zero or negative
+     * @throws AccountFrozenException if the account is currently frozen
+     */
+    @Override
+    public final void depositCents(final long amountCents)
+            throws InvalidAmountException, AccountFrozenException {
+        switch (tryDepositCents(amountCents)) {
+            case OK:
+                return;
+            case INVALID_AMOUNT:
+                throw new InvalidAmountException(
+                        "Deposit amount must be positive"
+                );
+            default:
+                throw new AccountFrozenException("Account is frozen");
         }
-        if (amount <= 0) {
-            throw new InvalidAmountException(
-                    "Deposit amount must be positive"
-            );
+    }
+
+    /**
+     * Deposits the specified amount into the account without throwing.
+     * The amount is rounded to the nearest centavo.
+     *
+     * @param amount the amount to deposit
+     * @return OK, INVALID_AMOUNT or ACCOUNT_FROZEN
+     */
+    @Override
+    public final OperationStatus tryDeposit(final double amount) {
+        return tryDepositCents(Money.toCents(amount));
+    }
+
+    /**
+     * Deposits the specified number of centavos into the account without
+     * throwing. A rejection returns one of the shared OperationStatus
+     * constants, so it allocates nothing and captures no stack trace.
+     *
+     * @param amountCents the amount to deposit in centavos
+     * @return OK, INVALID_AMOUNT or ACCOUNT_FROZEN
+     */
+    @Override
+    public final OperationStatus tryDepositCents(final long amountCents) {
+        MetricsSink sink = metrics;
+        if (sink == null) {
+            return applySingleDeposit(amountCents);
         }
-        balance += amount;
-        transactionHistory.add(
-                new Transaction("Deposit", amount)
-        );
+        long start = sink.sampleLatency() ? System.nanoTime() : 0L;
+        OperationStatus status = applySingleDeposit(amountCents);
+        record(sink, MeteredOperation.DEPOSIT, status, start);
+        return status;
     }
 
+    /**
+     * Validates, applies and records a single deposit.
+     *
+     * @param amountCents the amount to deposit in centavos
+     * @return OK, INVALID_AMOUNT or ACCOUNT_FROZEN
+     */
+    private OperationStatus applySingleDeposit(final long amountCents) {
+        long ticket;
+        acquireLock();
+        try {
+            OperationStatus status = checkDeposit(amountCents);
+            if (status != OperationStatus.OK) {
+                return status;
+            }
+            long now = System.currentTimeMillis();
+            // Journal before changing memory; overflow fails before either
+            creditedBalance(amountCents);
+            ticket = record(MutationType.DEPOSIT, amountCents, now);
+            applyDeposit(TransactionType.DEPOSIT, amountCents, now);
+        } finally {
+            lock.unlock();
+        }
+        awaitDurable(ticket);
+        return OperationStatus.OK;
+    }
 
     /**
      * Withdraws the specified amount from the account.
-     * Records the transaction in the transaction history.
+     * The amount is rounded to the nearest centavo.
      *
      * @param amount the amount to withdraw
      * @throws InvalidAmountException if amount is zero or negative
@@ -66,27 +213,601 @@ public abstract class AbstractBankAccount implements BankAccount {
      * @throws AccountFrozenException if the account is currently frozen
      */
     @Override
-    public final synchronized void withdraw(final double amount)
+    public final void withdraw(final double amount)
+            throws InvalidAmountException,
+            InsufficientFundsException,
+            AccountFrozenException {
+        withdrawCents(Money.toCents(amount));
+    }
+
+    /**
+     * Withdraws the specified number of centavos from the account.
+     * Records the transaction in the transaction history.
+     *
+     * @param amountCents the amount to withdraw in centavos
+     * @throws InvalidAmountException if amount is zero or negative
+     * @throws InsufficientFundsException if amount exceeds current balance
+     * @throws AccountFrozenException if the account is currently frozen
+     */
+    @Override
+    public final void withdrawCents(final long amountCents)
+            throws InvalidAmountException,
+            InsufficientFundsException,
+            AccountFrozenException {
+        OperationStatus status = tryWithdrawCents(amountCents);
+        if (status != OperationStatus.OK) {
+            throwRejection(status, false);
+        }
+    }
+
+    /**
+     * Withdraws the specified amount from the account without throwing.
+     * The amount is rounded to the nearest centavo.
+     *
+     * @param amount the amount to withdraw
+     * @return OK, INVALID_AMOUNT, INSUFFICIENT_FUNDS or ACCOUNT_FROZEN
+     */
+    @Override
+    public final OperationStatus tryWithdraw(final double amount) {
+        return tryWithdrawCents(Money.toCents(amount));
+    }
+
+    /**
+     * Withdraws the specified number of centavos from the account without
+     * throwing. A rejection returns one of the shared OperationStatus
+     * constants, so it allocates nothing and captures no stack trace.
+     *
+     * @param amountCents the amount to withdraw in centavos
+     * @return OK, INVALID_AMOUNT, INSUFFICIENT_FUNDS or ACCOUNT_FROZEN
+     */
+    @Override
+    public final OperationStatus tryWithdrawCents(final long amountCents) {
+        MetricsSink sink = metrics;
+        if (sink == null) {
+            return applySingleWithdraw(amountCents);
+        }
+        long start = sink.sampleLatency() ? System.nanoTime() : 0L;
+        OperationStatus status = applySingleWithdraw(amountCents);
+        record(sink, MeteredOperation.WITHDRAW, status, start);
+        return status;
+    }
+
+    /**
+     * Validates, applies and records a single withdrawal.
+     *
+     * @param amountCents the amount to withdraw in centavos
+     * @return OK, INVALID_AMOUNT, INSUFFICIENT_FUNDS or ACCOUNT_FROZEN
+     */
+    private OperationStatus applySingleWithdraw(final long amountCents) {
+        long ticket;
+        acquireLock();
+        try {
+            OperationStatus status = checkWithdraw(amountCents);
+            if (status != OperationStatus.OK) {
+                return status;
+            }
+            long now = System.currentTimeMillis();
+            ticket = record(MutationType.WITHDRAW, amountCents, now);
+            applyWithdraw(TransactionType.WITHDRAW, amountCents, now);
+        } finally {
+            lock.unlock();
+        }
+        awaitDurable(ticket);
+        return OperationStatus.OK;
+    }
+
+    /**
+     * Throws the exception that reports a rejected deposit or withdrawal.
+     *
+     * @param status  why the operation was rejected; not OK
+     * @param deposit true for a deposit, false for a withdrawal
+     * @throws InvalidAmountException if status is INVALID_AMOUNT
+     * @throws InsufficientFundsException if status is INSUFFICIENT_FUNDS
+     * @throws AccountFrozenException if status is ACCOUNT_FROZEN
+     */
+    private static void throwRejection(final OperationStatus status, final boolean deposit)
+            throws InvalidAmountException,
+            InsufficientFundsException,
+            AccountFrozenException {
+        switch (status) {
+            case INVALID_AMOUNT:
+                throw new InvalidAmountException(deposit
+                        ? "Deposit amount must be positive"
+                        : "Withdrawal amount must be positive");
+            case INSUFFICIENT_FUNDS:
+                throw new InsufficientFundsException("Insufficient funds");
+            case ACCOUNT_FROZEN:
+                throw new AccountFrozenException("Account is frozen");
+            default:
+                throw new IllegalArgumentException("Not a rejection: " + status);
+        }
+    }
+
+    /**
+     * Applies a batch of deposits and withdrawals in order, all or nothing.
+     * The lock is taken once, the whole batch is validated before any
+     * of it is applied, and its history is appended in bulk.
+     *
+     * @param operations the operations to apply
+     * @throws InvalidAmountException if any amount is zero or negative
+     * @throws InsufficientFundsException if any withdrawal exceeds the balance
+     * @throws AccountFrozenException if the account is currently frozen
+     */
+    @Override
+    public final void applyBatch(final AccountOperation[] operations)
             throws InvalidAmountException,
             InsufficientFundsException,
             AccountFrozenException {
-        if (frozen) {
-            throw new AccountFrozenException("Account is frozen");
+        MetricsSink sink = metrics;
+        long start = sink != null && sink.sampleLatency() ? System.nanoTime() : 0L;
+        OperationStatus rejection = OperationStatus.OK;
+        boolean rejectedDeposit = false;
+        long ticket = 0L;
+        acquireLock();
+        try {
+            long balance = getBalanceCents();
+            for (AccountOperation operation : operations) {
+                rejection = checkBatched(operation, balance);
+                if (rejection != OperationStatus.OK) {
+                    rejectedDeposit = operation.isDeposit();
+                    break;
+                }
+                balance = applyTo(balance, operation);
+            }
+            if (rejection == OperationStatus.OK) {
+                ticket = applyBatched(operations, null, operations.length, balance);
+            }
+        } finally {
+            lock.unlock();
         }
-        if (amount <= 0) {
-            throw new InvalidAmountException(
-                    "Withdrawal amount must be positive"
-            );
+        awaitDurable(ticket);
+        if (sink != null) {
+            record(sink, MeteredOperation.BATCH, rejection, start);
         }
-        if (amount > balance) {
-            throw new InsufficientFundsException("Insufficient funds");
+        if (rejection != OperationStatus.OK) {
+            throwRejection(rejection, rejectedDeposit);
         }
-        balance -= amount;
-        transactionHistory.add(
-                new Transaction("Withdraw", amount)
-        );
     }
 
+    /**
+     * Applies a batch of deposits and withdrawals in order, skipping the
+     * ones that would be rejected. The lock is taken once and the
+     * history of the applied operations is appended in bulk.
+     *
+     * @param operations the operations to apply
+     * @return the outcome of each operation, in input order
+     */
+    @Override
+    public final OperationStatus[] applyBatchPartial(final AccountOperation[] operations) {
+        MetricsSink sink = metrics;
+        long start = sink != null && sink.sampleLatency() ? System.nanoTime() : 0L;
+        OperationStatus[] statuses = new OperationStatus[operations.length];
+        long ticket;
+        acquireLock();
+        try {
+            long balance = getBalanceCents();
+            int applied = 0;
+            for (int i = 0; i < operations.length; i++) {
+                statuses[i] = checkBatched(operations[i], balance);
+                if (statuses[i] == OperationStatus.OK) {
+                    balance = applyTo(balance, operations[i]);
+                    applied++;
+                }
+            }
+            ticket = applyBatched(operations, statuses, applied, balance);
+        } finally {
+            lock.unlock();
+        }
+        awaitDurable(ticket);
+        if (sink != null) {
+            record(sink, MeteredOperation.BATCH, OperationStatus.OK, start);
+        }
+        return statuses;
+    }
+
+    /**
+     * Checks whether an operation could be applied to a balance.
+     * Must be called while holding this account's lock.
+     *
+     * @param operation    the operation to check
+     * @param balanceCents the balance left by earlier operations in the batch
+     * @return OK, or the reason the operation would be rejected
+     */
+    private OperationStatus checkBatched(final AccountOperation operation,
+            final long balanceCents) {
+        long amountCents = operation.getAmountCents();
+        if (isFrozen()) {
+            return OperationStatus.ACCOUNT_FROZEN;
+        }
+        if (amountCents <= 0) {
+            return OperationStatus.INVALID_AMOUNT;
+        }
+        if (!operation.isDeposit() && amountCents > balanceCents) {
+            return OperationStatus.INSUFFICIENT_FUNDS;
+        }
+        return OperationStatus.OK;
+    }
+
+    /**
+     * Returns the balance after applying a validated operation.
+     *
+     * @param balanceCents the balance before the operation
+     * @param operation    the operation
+     * @return the new balance in centavos
+     */
+    private static long applyTo(final long balanceCents, final AccountOperation operation) {
+        if (!operation.isDeposit()) {
+            return balanceCents - operation.getAmountCents();
+        }
+        long balance = Math.addExact(balanceCents, operation.getAmountCents());
+        if (balance > MAX_BALANCE_CENTS) {
+            throw new ArithmeticException("Balance overflow");
+        }
+        return balance;
+    }
+
+    /**
+     * Reports the applied operations of a validated batch, then sets the
+     * balance it leaves and appends them to the history in one call.
+     * Must be called while holding this account's lock.
+     *
+     * @param operations   the batch
+     * @param statuses     the outcome of each operation, or null if all apply
+     * @param applied      number of operations that apply
+     * @param balanceCents the balance after the batch
+     * @return the ticket of the last reported mutation, or 0
+     */
+    private long applyBatched(final AccountOperation[] operations,
+            final OperationStatus[] statuses, final int applied,
+            final long balanceCents) {
+        if (applied == 0) {
+            return 0L;
+        }
+        TransactionType[] types = new TransactionType[applied];
+        long[] amounts = new long[applied];
+        int n = 0;
+        for (int i = 0; i < operations.length; i++) {
+            if (statuses == null || statuses[i] == OperationStatus.OK) {
+                types[n] = operations[i].isDeposit()
+                        ? TransactionType.DEPOSIT : TransactionType.WITHDRAW;
+                amounts[n] = operations[i].getAmountCents();
+                n++;
+            }
+        }
+        long now = System.currentTimeMillis();
+        long ticket = recordAll(types, amounts, applied, now);
+        balances.beforeAppendAll(transactionHistory.size(), getBalanceCents(),
+                types, amounts, applied);
+        setBalanceCents(balanceCents);
+        transactionHistory.appendAll(types, amounts, applied, ordered(now));
+        for (int i = 0; i < applied; i++) {
+            countTransaction(types[i] == TransactionType.DEPOSIT, amounts[i]);
+        }
+        return ticket;
+    }
+
+    /**
+     * Checks whether the given amount could be deposited right now.
+     * Must be called while holding this account's lock.
+     *
+     * @param amountCents the amount to deposit in centavos
+     * @return OK, or the reason the deposit would be rejected
+     */
+    final OperationStatus checkDeposit(final long amountCents) {
+        if (isFrozen()) {
+            return OperationStatus.ACCOUNT_FROZEN;
+        }
+        if (amountCents <= 0) {
+            return OperationStatus.INVALID_AMOUNT;
+        }
+        return OperationStatus.OK;
+    }
+
+    /**
+     * Checks whether the given amount could be withdrawn right now.
+     * Must be called while holding this account's lock.
+     *
+     * @param amountCents the amount to withdraw in centavos
+     * @return OK, or the reason the withdrawal would be rejected
+     */
+    final OperationStatus checkWithdraw(final long amountCents) {
+        OperationStatus status = checkDeposit(amountCents);
+        if (status == OperationStatus.OK && amountCents > getBalanceCents()) {
+            return OperationStatus.INSUFFICIENT_FUNDS;
+        }
+        return status;
+    }
+
+    /**
+     * Credits an already validated amount and records it.
+     * Must be called while holding this account's lock.
+     *
+     * @param type        the transaction type to record
+     * @param amountCents the amount to credit in centavos
+     * @param timestamp   the time of the transaction in epoch milliseconds
+     */
+    final void applyDeposit(final TransactionType type, final long amountCents,
+            final long timestamp) {
+        long balance = creditedBalance(amountCents);
+        balances.beforeAppend(transactionHistory.size(), getBalanceCents());
+        setBalanceCents(balance);
+        transactionHistory.append(type, amountCents, ordered(timestamp));
+        countTransaction(true, amountCents);
+    }
+
+    /**
+     * Returns the balance after crediting an amount, so that an overflow
+     * can be detected before the credit is reported.
+     * Must be called while holding this account's lock.
+     *
+     * @param amountCents the amount to credit in centavos
+     * @return the new balance in centavos
+     * @throws ArithmeticException if the balance would overflow
+     */
+    final long creditedBalance(final long amountCents) {
+        long balance = Math.addExact(getBalanceCents(), amountCents);
+        if (balance > MAX_BALANCE_CENTS) {
+            throw new ArithmeticException("Balance overflow");
+        }
+        return balance;
+    }
+
+    /**
+     * Credits interest accrued for a day and reports it. Unlike a deposit
+     * this is allowed on a frozen account: the interest is owed either way.
+     * The caller waits for durability, so that a batch of postings can
+     * share one wait.
+     * Must be called while holding this account's lock.
+     *
+     * @param amountCents the interest in centavos, positive
+     * @param epochDay    the day the interest was accrued for
+     * @param timestamp   the time of the posting in epoch milliseconds
+     * @return a ticket for the listener's awaitDurable, or 0 if not attached
+     */
+    final long postInterest(final long amountCents, final int epochDay,
+            final long timestamp) {
+        creditedBalance(amountCents);
+        long ticket = record(MutationType.INTEREST, epochDay, amountCents, timestamp);
+        applyDeposit(TransactionType.INTEREST, amountCents, timestamp);
+        return ticket;
+    }
+
+    /**
+     * Debits an already validated amount and records it.
+     * Must be called while holding this account's lock.
+     *
+     * @param type        the transaction type to record
+     * @param amountCents the amount to debit in centavos
+     * @param timestamp   the time of the transaction in epoch milliseconds
+     */
+    final void applyWithdraw(final TransactionType type, final long amountCents,
+            final long timestamp) {
+        balances.beforeAppend(transactionHistory.size(), getBalanceCents());
+        setBalanceCents(getBalanceCents() - amountCents);
+        transactionHistory.append(type, amountCents, ordered(timestamp));
+        countTransaction(false, amountCents);
+    }
+
+    /**
+     * Returns the timestamp to record for a new transaction: the given
+     * time, or the previous transaction's time if the clock went back.
+     * Keeping history timestamps non-decreasing lets time-based lookups
+     * binary-search the ledger.
+     * Must be called while holding this account's lock.
+     *
+     * @param timestamp the time of the transaction in epoch milliseconds
+     * @return the time to record
+     */
+    private long ordered(final long timestamp) {
+        if (timestamp > lastTimestamp) {
+            lastTimestamp = timestamp;
+        }
+        return lastTimestamp;
+    }
+
+    /**
+     * Adds a recorded transaction to the running aggregates.
+     * Must be called while holding this account's lock.
+     *
+     * @param credit      true for a credit, false for a debit
+     * @param amountCents the amount in centavos
+     */
+    private void countTransaction(final boolean credit, final long amountCents) {
+        if (credit) {
+            totalDepositedCents += amountCents;
+        } else {
+            totalWithdrawnCents += amountCents;
+        }
+        if (amountCents > largestTransactionCents) {
+            largestTransactionCents = amountCents;
+        }
+    }
+
+    /**
+     * Sets the balance and frozen flag directly, without recording a
+     * transaction. Used when rebuilding an account from durable state.
+     *
+     * @param balanceCents the balance in centavos
+     * @param isFrozen     whether the account is frozen
+     */
+    final void restoreState(final long balanceCents, final boolean isFrozen) {
+        lock.lock();
+        try {
+            state = (balanceCents << 1) | (isFrozen ? FROZEN_BIT : 0L);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Sets where this account's journal position and history stood when
+     * it was checkpointed.
+     * Must be called while holding this account's lock.
+     *
+     * @param lsn    the last mutation ticket included in the checkpoint
+     * @param offset the number of transactions recorded before the checkpoint
+     */
+    final void restorePosition(final long lsn, final long offset) {
+        this.lastLsn = lsn;
+        this.historyOffset = offset;
+    }
+
+    /**
+     * Sets the running aggregates an account had when it was checkpointed.
+     * Must be called while holding this account's lock.
+     *
+     * @param depositedCents sum of all credits in centavos
+     * @param withdrawnCents sum of all debits in centavos
+     * @param largestCents   largest single transaction in centavos
+     */
+    final void restoreStatistics(final long depositedCents, final long withdrawnCents,
+            final long largestCents) {
+        this.totalDepositedCents = depositedCents;
+        this.totalWithdrawnCents = withdrawnCents;
+        this.largestTransactionCents = largestCents;
+    }
+
+    /**
+     * Returns the ticket of the last mutation reported for this account.
+     *
+     * @return the last LSN, or 0 if none
+     */
+    final long getLastLsn() {
+        return lastLsn;
+    }
+
+    /**
+     * Records the ticket of a mutation applied to this account.
+     * Must be called while holding this account's lock.
+     *
+     * @param lsn the mutation's ticket
+     */
+    final void setLastLsn(final long lsn) {
+        this.lastLsn = lsn;
+    }
+
+    /**
+     * Returns the total number of transactions ever recorded for this
+     * account, including those recorded before it was restored.
+     * Must be called while holding this account's lock for a
+     * value consistent with the balance.
+     *
+     * @return the history length
+     */
+    final long getHistoryLength() {
+        return historyOffset + transactionHistory.size();
+    }
+
+    /**
+     * Connects this account to the listener of the manager it was
+     * registered with, or disconnects it when the listener is null.
+     * Must be called while holding this account's lock.
+     *
+     * @param id               the account ID assigned by the manager
+     * @param mutationListener the listener, or null
+     */
+    final void attach(final int id, final MutationListener mutationListener) {
+        this.accountId = id;
+        this.listener = mutationListener;
+    }
+
+    /**
+     * Returns the ID this account was attached with.
+     *
+     * @return the account ID, or 0 if never attached
+     */
+    final int getAccountId() {
+        return accountId;
+    }
+
+    /**
+     * Reports a mutation of this account to the attached listener, before
+     * it is applied: if the listener throws, the account is unchanged.
+     * Must be called while holding this account's lock.
+     *
+     * @param type        the kind of mutation
+     * @param amountCents the amount in centavos, or 0
+     * @param timestamp   the time of the mutation in epoch milliseconds
+     * @return a ticket for {@link #awaitDurable(long)}, or 0 if not attached
+     */
+    private long record(final MutationType type, final long amountCents,
+            final long timestamp) {
+        return record(type, 0, amountCents, timestamp);
+    }
+
+    /**
+     * Reports a mutation of this account with a target field to the
+     * attached listener.
+     * Must be called while holding this account's lock.
+     *
+     * @param type        the kind of mutation
+     * @param target      the mutation's target field
+     * @param amountCents the amount in centavos, or 0
+     * @param timestamp   the time of the mutation in epoch milliseconds
+     * @return a ticket for {@link #awaitDurable(long)}, or 0 if not attached
+     */
+    private long record(final MutationType type, final int target, final long amountCents,
+            final long timestamp) {
+        MutationListener current = listener;
+        if (current == null) {
+            return 0L;
+        }
+        long ticket = current.onMutation(
+                new Mutation(type, accountId, target, amountCents, timestamp, null));
+        lastLsn = ticket;
+        return ticket;
+    }
+
+    /**
+     * Reports the deposits and withdrawals of a batch to the attached
+     * listener as one unit, before they are applied.
+     * Must be called while holding this account's lock.
+     *
+     * @param types        DEPOSIT or WITHDRAW for each operation
+     * @param amountsCents the amount of each operation in centavos
+     * @param count        number of operations
+     * @param timestamp    the time of the batch in epoch milliseconds
+     * @return a ticket for {@link #awaitDurable(long)}, or 0 if not attached
+     */
+    private long recordAll(final TransactionType[] types, final long[] amountsCents,
+            final int count, final long timestamp) {
+        MutationListener current = listener;
+        if (current == null) {
+            return 0L;
+        }
+        Mutation[] mutations = new Mutation[count];
+        for (int i = 0; i < count; i++) {
+            mutations[i] = new Mutation(types[i] == TransactionType.DEPOSIT
+                    ? MutationType.DEPOSIT : MutationType.WITHDRAW,
+                    accountId, 0, amountsCents[i], timestamp, null);
+        }
+        long ticket = current.onMutations(mutations, count);
+        lastLsn = ticket;
+        return ticket;
+    }
+
+    /**
+     * Waits until a recorded mutation is durable.
+     * Must be called after releasing this account's lock.
+     *
+     * @param ticket the ticket returned when the mutation was recorded
+     */
+    private void awaitDurable(final long ticket) {
+        MutationListener current = listener;
+        if (ticket != 0L && current != null) {
+            current.awaitDurable(ticket);
+        }
+    }
+
+    /**
+     * Replaces the balance while keeping the frozen flag.
+     * Must be called while holding this account's lock.
+     *
+     * @param balanceCents the new balance in centavos
+     */
+    private void setBalanceCents(final long balanceCents) {
+        state = (balanceCents << 1) | (state & FROZEN_BIT);
+    }
 
     /**
      * Returns the current balance of the account.
@@ -95,7 +816,17 @@ public abstract class AbstractBankAccount implements BankAccount {
      */
     @Override
     public final double getBalance() {
-        return balance;
+        return Money.toAmount(getBalanceCents());
+    }
+
+    /**
+     * Returns the current balance of the account in centavos.
+     *
+     * @return current balance in centavos
+     */
+    @Override
+    public final long getBalanceCents() {
+        return state >> 1;
     }
 
     /**
@@ -105,7 +836,7 @@ public abstract class AbstractBankAccount implements BankAccount {
      */
     @Override
     public final boolean isFrozen() {
-        return frozen;
+        return (state & FROZEN_BIT) != 0;
     }
 
     /**
@@ -113,7 +844,15 @@ public abstract class AbstractBankAccount implements BankAccount {
      */
     @Override
     public final void freezeAccount() {
-        frozen = true;
+        long ticket;
+        acquireLock();
+        try {
+            ticket = record(MutationType.FREEZE, 0L, System.currentTimeMillis());
+            state |= FROZEN_BIT;
+        } finally {
+            lock.unlock();
+        }
+        awaitDurable(ticket);
     }
 
     /**
@@ -121,16 +860,355 @@ public abstract class AbstractBankAccount implements BankAccount {
      */
     @Override
     public final void unfreezeAccount() {
-        frozen = false;
+        long ticket;
+        acquireLock();
+        try {
+            ticket = record(MutationType.UNFREEZE, 0L, System.currentTimeMillis());
+            state &= ~FROZEN_BIT;
+        } finally {
+            lock.unlock();
+        }
+        awaitDurable(ticket);
     }
 
     /**
-     * Returns a list of all transactions performed on the account.
+     * Returns a read-only view of all transactions performed on the account.
+     * The view reflects later transactions as they are recorded.
      *
      * @return transaction history
      */
     @Override
     public final List<Transaction> getTransactionHistory() {
+        return transactionHistory.asList();
+    }
+
+    /**
+     * Returns the running totals of this account. They are kept up to
+     * date by every transaction, so no history is scanned.
+     *
+     * @return a consistent snapshot of the account's statistics
+     */
+    @Override
+    public final AccountStatistics getStatistics() {
+        lock.lock();
+        try {
+            return new AccountStatistics(totalDepositedCents, totalWithdrawnCents,
+                    getHistoryLength(), largestTransactionCents);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns a page of the transaction history. Sequence numbers count
+     * every transaction ever recorded for the account from 0; for an
+     * account that was never restored from a checkpoint they equal
+     * positions in {@link #getTransactionHistory()}, so paging by offset
+     * and by sequence number is the same. The page's transactions carry
+     * their sequence numbers and the balance after each.
+     *
+     * @param fromSequence sequence number of the first transaction wanted
+     * @param limit        the largest number of transactions to return
+     * @return the page, which also tells where the next page starts
+     * @throws IllegalArgumentException if fromSequence or limit is negative
+     */
+    @Override
+    public final TransactionPage getTransactionPage(final long fromSequence, final int limit) {
+        if (fromSequence < 0 || limit < 0) {
+            throw new IllegalArgumentException(
+                    "Sequence and limit must not be negative");
+        }
+        long offset = historyOffset;
+        int size = transactionHistory.size();
+        int from = (int) Math.min(size, Math.max(0L, fromSequence - offset));
+        int to = (int) Math.min(size, (long) from + limit);
+        return new TransactionPage(positioned(from, to), offset + from, to < size);
+    }
+
+    /**
+     * Returns the transactions recorded so far as a sequential stream.
+     * The stream covers the history as of this call, so transactions
+     * recorded while it is consumed are not included; elements are
+     * created one at a time, so memory use does not depend on its length.
+     * Each carries its sequence number and the balance after it.
+     *
+     * @return a stream of the transaction history, oldest first
+     */
+    @Override
+    public final Stream<Transaction> streamTransactions() {
+        return streamFrom(0, transactionHistory.size());
+    }
+
+    /**
+     * Returns the transactions recorded at or after a point in time as a
+     * sequential stream. The start is found by binary search, since
+     * history timestamps never decrease. Like
+     * {@link #streamTransactions()}, the stream covers the history as of
+     * this call.
+     *
+     * @param timestamp the earliest time to include, in epoch milliseconds
+     * @return a stream of the matching transactions, oldest first
+     */
+    @Override
+    public final Stream<Transaction> streamTransactionsSince(final long timestamp) {
+        int size = transactionHistory.size();
+        return streamFrom(firstAtOrAfter(timestamp, size), size);
+    }
+
+    /**
+     * Returns the balance as it stood at a point in time, after every
+     * transaction recorded at or before it. Found by binary search over
+     * the history's timestamps and the account's balance marks, so the
+     * cost does not grow with the length of the history. For an account
+     * restored from a checkpoint, times before its first recorded
+     * transaction report the restored balance.
+     *
+     * @param instant the point in time
+     * @return the balance at that time
+     */
+    @Override
+    public final double balanceAt(final Instant instant) {
+        return Money.toAmount(balanceCentsAt(instant));
+    }
+
+    /**
+     * Returns the balance in centavos as it stood at a point in time.
+     *
+     * @param instant the point in time
+     * @return the balance at that time in centavos
+     * @see #balanceAt(Instant)
+     */
+    @Override
+    public final long balanceCentsAt(final Instant instant) {
+        int size = transactionHistory.size();
+        if (size == 0) {
+            lock.lock();
+            try {
+                size = transactionHistory.size();
+                if (size == 0) {
+                    return getBalanceCents();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+        long millis = floorMillis(instant);
+        int after = millis == Long.MAX_VALUE ? size : firstAtOrAfter(millis + 1, size);
+        if (after == 0) {
+            return balances.balanceBefore(transactionHistory, 0);
+        }
+        int last = after - 1;
+        return balances.balanceBefore(transactionHistory, last) + BalanceIndex.signed(
+                transactionHistory.typeAt(last), transactionHistory.amountCentsAt(last));
+    }
+
+    /**
+     * Returns the transactions recorded at or after one point in time and
+     * before another, as of this call, oldest first. Each carries its
+     * sequence number and the balance after it. The range is found by
+     * binary search, so the cost depends on the number of transactions
+     * returned rather than the length of the history.
+     *
+     * @param from the earliest time to include
+     * @param to   the time to stop before
+     * @return a read-only list of the matching transactions
+     * @throws IllegalArgumentException if to is before from
+     */
+    @Override
+    public final List<Transaction> historyBetween(final Instant from, final Instant to) {
+        if (to.isBefore(from)) {
+            throw new IllegalArgumentException("Range ends before it starts: "
+                    + from + " to " + to);
+        }
+        int size = transactionHistory.size();
+        int low = firstAtOrAfter(ceilMillis(from), size);
+        int high = firstAtOrAfter(ceilMillis(to), size);
+        return positioned(low, Math.max(low, high));
+    }
+
+    /**
+     * Returns the first epoch millisecond at or after an instant, the
+     * earliest ledger timestamp the instant does not come after.
+     *
+     * @param instant the instant
+     * @return the millisecond
+     */
+    private static long ceilMillis(final Instant instant) {
+        long millis = floorMillis(instant);
+        return instant.getNano() % 1_000_000 == 0 || millis == Long.MAX_VALUE
+                ? millis : millis + 1;
+    }
+
+    /**
+     * Returns the last epoch millisecond at or before an instant, clamped
+     * to the range of a long for instants like {@link Instant#MAX}.
+     *
+     * @param instant the instant
+     * @return the millisecond
+     */
+    private static long floorMillis(final Instant instant) {
+        long seconds = instant.getEpochSecond();
+        if (seconds >= Long.MAX_VALUE / 1_000) {
+            return Long.MAX_VALUE;
+        }
+        if (seconds <= Long.MIN_VALUE / 1_000) {
+            return Long.MIN_VALUE;
+        }
+        return instant.toEpochMilli();
+    }
+
+    /**
+     * Returns the position of the first ledger entry recorded at or after
+     * a time, by binary search over the non-decreasing timestamps.
+     *
+     * @param timestamp the time in epoch milliseconds
+     * @param size      the ledger size to search below
+     * @return the position, or size if every entry is earlier
+     */
+    private int firstAtOrAfter(final long timestamp, final int size) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (transactionHistory.timestampAt(mid) < timestamp) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Materializes ledger entries with their sequence numbers and the
+     * balance after each.
+     *
+     * @param from the first position
+     * @param to   the position to stop before, at most the size read
+     * @return a read-only list of the transactions
+     */
+    private List<Transaction> positioned(final int from, final int to) {
+        if (from == to) {
+            return Collections.emptyList();
+        }
+        long offset = historyOffset;
+        long balance = balances.balanceBefore(transactionHistory, from);
+        List<Transaction> result = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++) {
+            TransactionType type = transactionHistory.typeAt(i);
+            long amountCents = transactionHistory.amountCentsAt(i);
+            balance += BalanceIndex.signed(type, amountCents);
+            result.add(Transaction.at(type, amountCents, transactionHistory.timestampAt(i),
+                    offset + i, balance));
+        }
+        return Collections.unmodifiableList(result);
+    }
+
+    /**
+     * Streams ledger entries with their sequence numbers and the balance
+     * after each, materializing them one at a time.
+     *
+     * @param from the first position
+     * @param to   the position to stop before, at most the size read
+     * @return the stream
+     */
+    private Stream<Transaction> streamFrom(final int from, final int to) {
+        if (from >= to) {
+            return Stream.empty();
+        }
+        long offset = historyOffset;
+        long start = balances.balanceBefore(transactionHistory, from);
+        return StreamSupport.stream(new Spliterators.AbstractSpliterator<Transaction>(
+                to - from, Spliterator.ORDERED | Spliterator.SIZED
+                        | Spliterator.NONNULL | Spliterator.IMMUTABLE) {
+
+            /** Position of the next entry. */
+            private int next = from;
+
+            /** Balance after the previous entry. */
+            private long balance = start;
+
+            @Override
+            public boolean tryAdvance(final Consumer<? super Transaction> action) {
+                if (next >= to) {
+                    return false;
+                }
+                TransactionType type = transactionHistory.typeAt(next);
+                long amountCents = transactionHistory.amountCentsAt(next);
+                balance += BalanceIndex.signed(type, amountCents);
+                action.accept(Transaction.at(type, amountCents,
+                        transactionHistory.timestampAt(next), offset + next, balance));
+                next++;
+                return true;
+            }
+        }, false);
+    }
+
+    /**
+     * Takes this account's lock, reporting the wait to the metrics sink
+     * if the lock was held by another thread. The uncontended path costs
+     * one tryLock and no clock reads.
+     */
+    final void acquireLock() {
+        if (lock.tryLock()) {
+            return;
+        }
+        MetricsSink sink = metrics;
+        if (sink == null) {
+            lock.lock();
+            return;
+        }
+        long start = System.nanoTime();
+        lock.lock();
+        sink.recordLockWait(System.nanoTime() - start);
+    }
+
+    /**
+     * Reports an operation that may or may not have been timed.
+     *
+     * @param sink      the metrics sink
+     * @param operation the kind of operation
+     * @param outcome   the outcome
+     * @param start     System.nanoTime() when the operation started, or
+     *                  0 if it was not sampled for timing
+     */
+    private static void record(final MetricsSink sink, final MeteredOperation operation,
+            final OperationStatus outcome, final long start) {
+        if (start == 0L) {
+            sink.recordOutcome(operation, outcome);
+        } else {
+            sink.recordOperation(operation, outcome, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Sets where this account reports operation outcomes, latencies and
+     * lock waits. The no-op sink turns reporting, and the timing it
+     * needs, off.
+     *
+     * @param sink the metrics sink
+     */
+    final void attachMetrics(final MetricsSink sink) {
+        this.metrics = sink == MetricsSink.noOp() ? null : sink;
+    }
+
+    /**
+     * Returns the lock that guards this account's mutations. Code that
+     * changes several accounts together, such as transfers, holds the
+     * locks of all of them.
+     *
+     * @return the account's lock
+     */
+    final ReentrantLock getLock() {
+        return lock;
+    }
+
+    /**
+     * Returns the ledger that stores this account's history.
+     *
+     * @return the transaction ledger
+     */
+    final TransactionLedger getLedger() {
         return transactionHistory;
     }
 }
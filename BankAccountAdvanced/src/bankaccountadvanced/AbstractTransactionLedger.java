@@ -0,0 +1,218 @@
+package bankaccountadvanced;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Shared functionality for TransactionLedger implementations:
+ * materializing Transaction objects, the read-only list view, and
+ * amount queries that work on the primitive accessors.
+ * Code Reviewer: MarkSayson
+ */
+public abstract class AbstractTransactionLedger implements TransactionLedger {
+
+    /** Read-only view over this ledger. */
+    private final List<Transaction> view;
+
+    /**
+     * Constructs a new AbstractTransactionLedger.
+     */
+    protected AbstractTransactionLedger() {
+        this.view = new LedgerView();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Transaction get(final int index) {
+        return Transaction.of(typeAt(index), amountCentsAt(index), timestampAt(index));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void appendAll(final TransactionType[] types, final long[] amountsCents,
+            final int count, final long timestamp) {
+        for (int i = 0; i < count; i++) {
+            append(types[i], amountsCents[i], timestamp);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public final List<Transaction> asList() {
+        return view;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Scans the amount column without materializing non-matching entries.
+     */
+    @Override
+    public List<Transaction> filterAbove(final long amountCents) {
+        int size = size();
+        int[] matches = new int[Math.min(size, 16)];
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            if (amountCentsAt(i) > amountCents) {
+                if (count == matches.length) {
+                    matches = Arrays.copyOf(matches, Math.min(size, count * 2));
+                }
+                matches[count++] = i;
+            }
+        }
+        return new IndexedView(this, matches, count);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Sorts an array of positions by the amount column with a stable
+     * merge sort, so entries with equal amounts keep their ledger order.
+     */
+    @Override
+    public List<Transaction> sortedByAmount() {
+        int size = size();
+        int[] order = new int[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        int[] scratch = new int[size];
+        mergeSort(order, scratch, 0, size);
+        return new IndexedView(this, order, size);
+    }
+
+    /**
+     * Sorts positions in {@code order[from, to)} by amount, stably.
+     *
+     * @param order   positions to sort
+     * @param scratch temporary space of the same length
+     * @param from    first index, inclusive
+     * @param to      last index, exclusive
+     */
+    private void mergeSort(final int[] order, final int[] scratch,
+            final int from, final int to) {
+        if (to - from < 2) {
+            return;
+        }
+        int mid = (from + to) >>> 1;
+        mergeSort(order, scratch, from, mid);
+        mergeSort(order, scratch, mid, to);
+        if (amountCentsAt(order[mid - 1]) <= amountCentsAt(order[mid])) {
+            return;
+        }
+        System.arraycopy(order, from, scratch, from, to - from);
+        int left = from;
+        int right = mid;
+        for (int k = from; k < to; k++) {
+            if (right >= to || (left < mid
+                    && amountCentsAt(scratch[left]) <= amountCentsAt(scratch[right]))) {
+                order[k] = scratch[left++];
+            } else {
+                order[k] = scratch[right++];
+            }
+        }
+    }
+
+    /**
+     * Returns the ledger behind a list returned by {@link #asList()}.
+     *
+     * @param list any list of transactions
+     * @return the backing ledger, or null if the list is not a ledger view
+     */
+    static TransactionLedger backingLedger(final List<Transaction> list) {
+        if (list instanceof AbstractTransactionLedger.LedgerView) {
+            return ((AbstractTransactionLedger.LedgerView) list).ledger();
+        }
+        return null;
+    }
+
+    /**
+     * List view that materializes transactions lazily.
+     */
+    private final class LedgerView extends AbstractList<Transaction>
+            implements RandomAccess {
+
+        /**
+         * Returns the ledger this view reads from.
+         *
+         * @return the ledger
+         */
+        TransactionLedger ledger() {
+            return AbstractTransactionLedger.this;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public Transaction get(final int index) {
+            return AbstractTransactionLedger.this.get(index);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int size() {
+            return AbstractTransactionLedger.this.size();
+        }
+    }
+
+    /**
+     * Read-only list of selected ledger positions, materialized lazily.
+     */
+    static final class IndexedView extends AbstractList<Transaction>
+            implements RandomAccess {
+
+        /** The ledger the positions refer to. */
+        private final TransactionLedger ledger;
+
+        /** Ledger positions, in list order. */
+        private final int[] positions;
+
+        /** Number of valid entries in positions. */
+        private final int count;
+
+        /**
+         * Constructs an IndexedView.
+         *
+         * @param source        the ledger the positions refer to
+         * @param selected      ledger positions, in list order
+         * @param selectedCount number of valid entries in selected
+         */
+        IndexedView(final TransactionLedger source, final int[] selected,
+                final int selectedCount) {
+            this.ledger = source;
+            this.positions = selected;
+            this.count = selectedCount;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public Transaction get(final int index) {
+            if (index < 0 || index >= count) {
+                throw new IndexOutOfBoundsException(
+                        "Index " + index + " out of bounds for size " + count);
+            }
+            return ledger.get(positions[index]);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int size() {
+            return count;
+        }
+    }
+}
@@ -0,0 +1,470 @@
+package bankaccountadvanced;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A compact binary snapshot of every account in a BankAccountManager,
+ * paired with the journal position it was taken at.
+ * <p>
+ * Checkpoints are fuzzy: accounts keep changing while one is written.
+ * Each account is copied under its own lock together with the LSN of
+ * the last mutation applied to it, so recovery replays only the journal
+ * records after the checkpoint position that an account has not yet seen.
+ * A savings account's rate plan and accrual day are kept as well, so
+ * interest for a day accrued before the checkpoint is not credited again
+ * after recovery.
+ * The registry's ID high-water marks are stored after the accounts, so
+ * the IDs of accounts removed before the checkpoint are not handed out
+ * again after recovery.
+ * Files are written under a temporary name and renamed into place, and
+ * loaded through a read-only memory mapping.
+ * Code Reviewer: MarkSayson
+ */
+public final class AccountCheckpoint {
+
+    /** Identifies checkpoint files ("BACP"). */
+    private static final int MAGIC = 0x42414350;
+
+    /** Version of the file layout written. */
+    static final int VERSION = 4;
+
+    /** Bytes in the file header: magic, version, LSN, offset, count, mark count. */
+    private static final int HEADER_SIZE = 4 + 4 + 8 + 8 + 4 + 4;
+
+    /** Bytes of an account record without its owner name and rate tiers. */
+    private static final int RECORD_FIXED_SIZE = 4 + 8 + 1 + 8 + 8 + 8 + 8 + 8 + 4 + 4 + 8 + 4;
+
+    /** Bytes of one rate tier: floor and rate. */
+    private static final int TIER_SIZE = 8 + 4;
+
+    /** Size of the write buffer. */
+    private static final int WRITE_BUFFER_SIZE = 1 << 20;
+
+    /** File name prefix of checkpoint files. */
+    private static final String PREFIX = "checkpoint-";
+
+    /** File name suffix of checkpoint files. */
+    private static final String SUFFIX = ".snap";
+
+    /** Location of the checkpoint file. */
+    private final Path path;
+
+    /** LSN of the last journal record included in every account. */
+    private final long lsn;
+
+    /** Journal offset of the first record after lsn. */
+    private final long journalOffset;
+
+    /** Number of accounts in the checkpoint. */
+    private final int accountCount;
+
+    /** Number of ID high-water marks after the accounts. */
+    private final int markCount;
+
+    /**
+     * Constructs an AccountCheckpoint from a file header.
+     *
+     * @param file   location of the checkpoint file
+     * @param cutLsn LSN of the last journal record included in every account
+     * @param offset journal offset of the first record after cutLsn
+     * @param count  number of accounts in the checkpoint
+     * @param marks  number of ID high-water marks after the accounts
+     */
+    private AccountCheckpoint(final Path file, final long cutLsn,
+            final long offset, final int count, final int marks) {
+        this.path = file;
+        this.lsn = cutLsn;
+        this.journalOffset = offset;
+        this.accountCount = count;
+        this.markCount = marks;
+    }
+
+    /**
+     * Returns the location of the checkpoint file.
+     *
+     * @return the file path
+     */
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * Returns the LSN up to which every account in the checkpoint is
+     * complete. Later journal records may already be included in some
+     * accounts.
+     *
+     * @return the checkpoint LSN
+     */
+    public long getLsn() {
+        return lsn;
+    }
+
+    /**
+     * Returns the journal offset from which to replay after loading.
+     *
+     * @return the offset in bytes
+     */
+    public long getJournalOffset() {
+        return journalOffset;
+    }
+
+    /**
+     * Returns the number of accounts in the checkpoint.
+     *
+     * @return the account count
+     */
+    public int getAccountCount() {
+        return accountCount;
+    }
+
+    /**
+     * Writes a checkpoint of every account in a manager to a directory.
+     * Deposits and withdrawals continue while it is written; each account
+     * is locked only while its own record is copied. Before the file is
+     * renamed into place the journal is synced up to the newest LSN copied,
+     * so the checkpoint never holds a mutation the journal could lose and
+     * then hand out that LSN again after a crash. The registry's ID
+     * high-water marks are read after the last account is copied, so they
+     * cover every ID the checkpoint holds.
+     *
+     * @param manager   the manager to checkpoint
+     * @param journal   the journal the manager records to
+     * @param directory the directory to write to
+     * @return the written checkpoint
+     * @throws IOException if the file cannot be written
+     */
+    public static AccountCheckpoint write(final BankAccountManager manager,
+            final AccountJournal journal, final Path directory) throws IOException {
+        journal.flush();
+        AccountJournal.Position position = journal.getDurablePosition();
+        Path target = directory.resolve(PREFIX + position.getLsn() + SUFFIX);
+        Path temp = directory.resolve(PREFIX + position.getLsn() + ".tmp");
+        int[] count = new int[1];
+        long[] newestLsn = {position.getLsn()};
+        int[] marks;
+        try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE);
+            buffer.position(HEADER_SIZE);
+            try {
+                manager.getRegistry().forEach((account, id) -> {
+                    if (!(account instanceof AbstractBankAccount)) {
+                        return;
+                    }
+                    byte[] owner = ownerBytes(account);
+                    RatePlan plan = ratePlanOf(account);
+                    try {
+                        if (buffer.remaining() < recordSize(owner, plan)) {
+                            drain(out, buffer);
+                        }
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    newestLsn[0] = Math.max(newestLsn[0],
+                            putRecord(buffer, id, (AbstractBankAccount) account, owner, plan));
+                    count[0]++;
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            marks = manager.getRegistry().getIdHighWaterMarks();
+            if (buffer.remaining() < marks.length * 4) {
+                drain(out, buffer);
+            }
+            for (int mark : marks) {
+                buffer.putInt(mark);
+            }
+            drain(out, buffer);
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putInt(VERSION)
+                    .putLong(position.getLsn()).putLong(position.getOffset())
+                    .putInt(count[0]).putInt(marks.length).flip();
+            out.write(header, 0L);
+            out.force(true);
+        }
+        journal.syncTo(newestLsn[0]);
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        return new AccountCheckpoint(target, position.getLsn(),
+                position.getOffset(), count[0], marks.length);
+    }
+
+    /**
+     * Returns the owner name of an account as it is stored in a record.
+     *
+     * @param account the account
+     * @return the UTF-8 owner name, or null if the account has none
+     */
+    static byte[] ownerBytes(final BankAccount account) {
+        return account instanceof SavingsAccount
+                && ((SavingsAccount) account).getOwnerName() != null
+                ? ((SavingsAccount) account).getOwnerName().getBytes(StandardCharsets.UTF_8)
+                : null;
+    }
+
+    /**
+     * Returns the rate plan of an account as it is stored in a record.
+     * The plan is read once, so the record size and contents agree even
+     * if it is replaced meanwhile.
+     *
+     * @param account the account
+     * @return the rate plan, or null if the account earns no interest
+     */
+    static RatePlan ratePlanOf(final BankAccount account) {
+        return account instanceof SavingsAccount
+                ? ((SavingsAccount) account).getRatePlan() : null;
+    }
+
+    /**
+     * Returns the encoded size of an account record.
+     *
+     * @param owner the UTF-8 owner name, or null
+     * @param plan  the rate plan from {@link #ratePlanOf(BankAccount)}, or null
+     * @return the record size in bytes
+     */
+    static int recordSize(final byte[] owner, final RatePlan plan) {
+        return RECORD_FIXED_SIZE + (owner == null ? 0 : owner.length)
+                + (plan == null ? 0 : plan.getTierCount() * TIER_SIZE);
+    }
+
+    /**
+     * Copies an account into a record under the account's lock.
+     * The buffer must have {@link #recordSize(byte[], RatePlan)} bytes remaining.
+     *
+     * @param buffer  the buffer to write to
+     * @param id      the account ID
+     * @param account the account
+     * @param owner   the account's owner name from {@link #ownerBytes(BankAccount)}
+     * @param plan    the account's rate plan from {@link #ratePlanOf(BankAccount)}
+     * @return the LSN of the last mutation included in the record
+     */
+    static long putRecord(final ByteBuffer buffer, final int id,
+            final AbstractBankAccount account, final byte[] owner, final RatePlan plan) {
+        long balance;
+        boolean frozen;
+        long accountLsn;
+        AccountStatistics statistics;
+        int accrualDay = SavingsAccount.NEVER_ACCRUED;
+        long accruedFraction = 0L;
+        account.getLock().lock();
+        try {
+            balance = account.getBalanceCents();
+            frozen = account.isFrozen();
+            accountLsn = account.getLastLsn();
+            statistics = account.getStatistics();
+            if (account instanceof SavingsAccount) {
+                accrualDay = ((SavingsAccount) account).getLastAccrualDay();
+                accruedFraction = ((SavingsAccount) account).getAccruedFraction();
+            }
+        } finally {
+            account.getLock().unlock();
+        }
+        buffer.putInt(id);
+        buffer.putLong(balance);
+        buffer.put(frozen ? (byte) 1 : (byte) 0);
+        buffer.putLong(accountLsn);
+        buffer.putLong(statistics.getTransactionCount());
+        buffer.putLong(statistics.getTotalDepositedCents());
+        buffer.putLong(statistics.getTotalWithdrawnCents());
+        buffer.putLong(statistics.getLargestTransactionCents());
+        buffer.putInt(owner == null ? -1 : owner.length);
+        if (owner != null) {
+            buffer.put(owner);
+        }
+        buffer.putInt(accrualDay);
+        buffer.putLong(accruedFraction);
+        buffer.putInt(plan == null ? -1 : plan.getTierCount());
+        for (int i = 0; plan != null && i < plan.getTierCount(); i++) {
+            buffer.putLong(plan.getFloorCents(i));
+            buffer.putInt(plan.getBasisPoints(i));
+        }
+        return accountLsn;
+    }
+
+    /**
+     * Writes a buffer's contents to the end of a channel and clears it.
+     *
+     * @param out    the channel to write to
+     * @param buffer the buffer in write mode
+     * @throws IOException if the write fails
+     */
+    private static void drain(final FileChannel out, final ByteBuffer buffer)
+            throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Lists the checkpoint files in a directory, oldest first.
+     *
+     * @param directory the directory to search
+     * @return the checkpoint files ordered by LSN
+     * @throws IOException if the directory cannot be listed
+     */
+    public static List<Path> list(final Path directory) throws IOException {
+        List<Path> files = new ArrayList<>();
+        if (!Files.isDirectory(directory)) {
+            return files;
+        }
+        try (DirectoryStream<Path> stream =
+                Files.newDirectoryStream(directory, PREFIX + "*" + SUFFIX)) {
+            for (Path file : stream) {
+                files.add(file);
+            }
+        }
+        files.sort((a, b) -> Long.compare(lsnOf(a), lsnOf(b)));
+        return files;
+    }
+
+    /**
+     * Loads the header of the newest checkpoint in a directory.
+     *
+     * @param directory the directory to search
+     * @return the newest checkpoint, or null if there is none
+     * @throws IOException if the file cannot be read
+     */
+    public static AccountCheckpoint loadLatest(final Path directory) throws IOException {
+        List<Path> files = list(directory);
+        if (files.isEmpty()) {
+            return null;
+        }
+        Path file = files.get(files.size() - 1);
+        try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            while (header.hasRemaining() && in.read(header) >= 0) {
+                continue;
+            }
+            header.flip();
+            if (header.remaining() < HEADER_SIZE || header.getInt() != MAGIC) {
+                throw new IOException("Not a checkpoint file: " + file);
+            }
+            int layout = header.getInt();
+            if (layout != VERSION) {
+                throw new IOException("Unsupported checkpoint version " + layout
+                        + ": " + file);
+            }
+            return new AccountCheckpoint(file, header.getLong(), header.getLong(),
+                    header.getInt(), header.getInt());
+        }
+    }
+
+    /**
+     * Deletes all but the newest checkpoints in a directory.
+     *
+     * @param directory the directory to prune
+     * @param keep      number of checkpoints to keep
+     * @return number of files deleted
+     * @throws IOException if a file cannot be deleted
+     */
+    public static int prune(final Path directory, final int keep) throws IOException {
+        List<Path> files = list(directory);
+        int deleted = 0;
+        for (int i = 0; i < files.size() - keep; i++) {
+            Files.deleteIfExists(files.get(i));
+            deleted++;
+        }
+        return deleted;
+    }
+
+    /**
+     * Registers every account in this checkpoint with a registry, with its
+     * balance, frozen flag, last LSN, history offset, statistics, rate plan
+     * and accrual day restored,
+     * then reserves the stored ID high-water marks. The registry should be
+     * of the same kind and shard count as the one checkpointed.
+     *
+     * @param registry the registry to fill
+     * @throws IOException if the file cannot be read
+     */
+    public void restoreInto(final AccountRegistry registry) throws IOException {
+        try (FileChannel in = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer data = in.map(FileChannel.MapMode.READ_ONLY, 0L, in.size());
+            data.position(HEADER_SIZE);
+            for (int i = 0; i < accountCount; i++) {
+                restoreRecord(data, registry);
+            }
+            for (int i = 0; i < markCount; i++) {
+                int mark = data.getInt();
+                if (mark > 0) {
+                    registry.reserve(mark);
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads one account record and registers the account it describes.
+     *
+     * @param data     the buffer, positioned at the record
+     * @param registry the registry to add the account to
+     */
+    static void restoreRecord(final ByteBuffer data, final AccountRegistry registry) {
+        int id = data.getInt();
+        long balance = data.getLong();
+        boolean frozen = data.get() != 0;
+        long accountLsn = data.getLong();
+        long historyLength = data.getLong();
+        long depositedCents = data.getLong();
+        long withdrawnCents = data.getLong();
+        long largestCents = data.getLong();
+        int ownerLength = data.getInt();
+        String owner = null;
+        if (ownerLength >= 0) {
+            byte[] bytes = new byte[ownerLength];
+            data.get(bytes);
+            owner = new String(bytes, StandardCharsets.UTF_8);
+        }
+        int accrualDay = data.getInt();
+        long accruedFraction = data.getLong();
+        int tierCount = data.getInt();
+        RatePlan plan = null;
+        if (tierCount >= 0) {
+            long[] floors = new long[tierCount];
+            int[] rates = new int[tierCount];
+            for (int i = 0; i < tierCount; i++) {
+                floors[i] = data.getLong();
+                rates[i] = data.getInt();
+            }
+            plan = RatePlan.tiered(floors, rates);
+        }
+        SavingsAccount account = new SavingsAccount(owner);
+        account.restoreState(balance, frozen);
+        account.setRatePlan(plan);
+        account.getLock().lock();
+        try {
+            account.restorePosition(accountLsn, historyLength);
+            account.restoreStatistics(depositedCents, withdrawnCents, largestCents);
+            account.restoreAccrual(accrualDay, accruedFraction);
+        } finally {
+            account.getLock().unlock();
+        }
+        registry.restore(id, account);
+    }
+
+    /**
+     * Extracts the LSN from a checkpoint file name.
+     *
+     * @param file the checkpoint file
+     * @return the LSN in its name
+     */
+    private static long lsnOf(final Path file) {
+        String name = file.getFileName().toString();
+        return Long.parseLong(name.substring(PREFIX.length(),
+                name.length() - SUFFIX.length()));
+    }
+}
@@ -0,0 +1,261 @@
+package bankaccountadvanced;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Builds SavingsAccounts with opening balances from a CSV file, for
+ * {@link BankAccountManager#importAccounts(Path, ForkJoinPool)}.
+ * <p>
+ * The file is split into byte ranges that are parsed in parallel, each
+ * read with positional FileChannel reads into a pooled buffer and
+ * parsed in place; only owner names become Strings. A range owns the
+ * rows that start inside it, so a row crossing a boundary is parsed by
+ * the range it starts in. Every row is validated before any account is
+ * added, and accounts are then added in file order; whether their IDs
+ * follow that order depends on the manager's registry.
+ * Code Reviewer: MarkSayson
+ */
+final class AccountImporter {
+
+    /** Size of the read buffers; also the longest row accepted. */
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    /** Smallest byte range worth parsing as its own task. */
+    private static final long MIN_RANGE_BYTES = 4L << 20;
+
+    /** Ranges per worker thread, to balance uneven rows. */
+    private static final int RANGES_PER_THREAD = 4;
+
+    /** Largest balance that still fits in centavos while parsing. */
+    private static final long MAX_PARSE_CENTS = Long.MAX_VALUE / 10;
+
+    /** Read buffers shared by all imports. */
+    private static final BufferPool BUFFERS = new BufferPool(BUFFER_SIZE, 16);
+
+    /** Utility class; not instantiable. */
+    private AccountImporter() {
+    }
+
+    /**
+     * Parses a file and adds its accounts to a manager.
+     *
+     * @param manager the manager to add to
+     * @param file    the CSV file
+     * @param pool    the pool the ranges are parsed on
+     * @return the number of accounts added
+     * @throws IOException if the file cannot be read or a row is malformed
+     */
+    static long importCsv(final BankAccountManager manager, final Path file,
+            final ForkJoinPool pool) throws IOException {
+        return importCsv(manager, file, pool, MIN_RANGE_BYTES);
+    }
+
+    /**
+     * Parses a file in ranges of a given minimum size and adds its
+     * accounts to a manager.
+     *
+     * @param manager       the manager to add to
+     * @param file          the CSV file
+     * @param pool          the pool the ranges are parsed on
+     * @param minRangeBytes smallest byte range parsed as its own task
+     * @return the number of accounts added
+     * @throws IOException if the file cannot be read or a row is malformed
+     */
+    static long importCsv(final BankAccountManager manager, final Path file,
+            final ForkJoinPool pool, final long minRangeBytes) throws IOException {
+        List<List<SavingsAccount>> parsed = new ArrayList<>();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long ranges = Math.max(1L, Math.min(size / minRangeBytes,
+                    (long) pool.getParallelism() * RANGES_PER_THREAD));
+            List<Callable<List<SavingsAccount>>> tasks = new ArrayList<>();
+            for (long r = 0; r < ranges; r++) {
+                long start = size * r / ranges;
+                long end = size * (r + 1) / ranges;
+                tasks.add(() -> parseRange(channel, start, end, size));
+            }
+            for (Future<List<SavingsAccount>> result : pool.invokeAll(tasks)) {
+                parsed.add(result.get());
+            }
+        } catch (ExecutionException e) {
+            // The pool wraps checked exceptions; find the parse failure
+            for (Throwable cause = e.getCause(); cause != null; cause = cause.getCause()) {
+                if (cause instanceof IOException) {
+                    throw (IOException) cause;
+                }
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Import interrupted", e);
+        }
+        long added = 0L;
+        for (List<SavingsAccount> range : parsed) {
+            for (SavingsAccount account : range) {
+                manager.addAccount(account);
+            }
+            added += range.size();
+        }
+        return added;
+    }
+
+    /**
+     * Parses the rows that start in a byte range.
+     *
+     * @param channel the file
+     * @param start   first byte of the range
+     * @param end     byte after the range
+     * @param size    size of the file
+     * @return the accounts, in file order
+     * @throws IOException if the range cannot be read or a row is malformed
+     */
+    private static List<SavingsAccount> parseRange(final FileChannel channel, final long start,
+            final long end, final long size) throws IOException {
+        List<SavingsAccount> accounts = new ArrayList<>();
+        ByteBuffer buffer = BUFFERS.acquire();
+        try {
+            byte[] bytes = buffer.array();
+            // Start one byte early: the partial row before the first
+            // newline belongs to the previous range, and is empty when
+            // the range starts exactly at a row.
+            long base = start == 0 ? 0 : start - 1;
+            boolean skip = start > 0;
+            int limit = fill(channel, buffer, base);
+            int p = 0;
+            while (base + p < end) {
+                int eol = p;
+                while (eol < limit && bytes[eol] != '\n') {
+                    eol++;
+                }
+                if (eol == limit && base + limit < size) {
+                    if (p == 0) {
+                        throw new IOException("Row longer than " + BUFFER_SIZE
+                                + " bytes at byte " + base);
+                    }
+                    base += p;
+                    limit = fill(channel, buffer, base);
+                    p = 0;
+                    continue;
+                }
+                if (skip) {
+                    skip = false;
+                } else {
+                    SavingsAccount account = parseRow(bytes, p, eol, base + p);
+                    if (account != null) {
+                        accounts.add(account);
+                    }
+                }
+                p = eol + 1;
+            }
+        } finally {
+            BUFFERS.release(buffer);
+        }
+        return accounts;
+    }
+
+    /**
+     * Reads from a file position until the buffer is full or the file ends.
+     *
+     * @param channel  the file
+     * @param buffer   the buffer, which is overwritten
+     * @param position the file position
+     * @return the number of bytes read
+     * @throws IOException if the read fails
+     */
+    private static int fill(final FileChannel channel, final ByteBuffer buffer,
+            final long position) throws IOException {
+        buffer.clear();
+        while (buffer.hasRemaining()) {
+            int n = channel.read(buffer, position + buffer.position());
+            if (n < 0) {
+                break;
+            }
+        }
+        return buffer.position();
+    }
+
+    /**
+     * Parses one {@code owner,balance} row into an account. The owner is
+     * everything before the last comma; the balance is in pesos with at
+     * most two decimals. A trailing carriage return is ignored.
+     *
+     * @param bytes  the buffer
+     * @param from   first byte of the row
+     * @param to     byte after the row
+     * @param offset file position of the row, for error messages
+     * @return the account, or null if the row is blank
+     * @throws IOException if the row is malformed
+     */
+    private static SavingsAccount parseRow(final byte[] bytes, final int from, final int to,
+            final long offset) throws IOException {
+        int end = to > from && bytes[to - 1] == '\r' ? to - 1 : to;
+        if (end == from) {
+            return null;
+        }
+        int comma = end - 1;
+        while (comma >= from && bytes[comma] != ',') {
+            comma--;
+        }
+        if (comma <= from || comma == end - 1) {
+            throw malformed(bytes, from, end, offset);
+        }
+        long cents = 0L;
+        int decimals = -1;
+        int digits = 0;
+        for (int i = comma + 1; i < end; i++) {
+            byte b = bytes[i];
+            if (b == '.' && decimals < 0) {
+                decimals = 0;
+            } else if (b >= '0' && b <= '9' && decimals < 2 && cents < MAX_PARSE_CENTS) {
+                cents = cents * 10 + (b - '0');
+                digits++;
+                if (decimals >= 0) {
+                    decimals++;
+                }
+            } else {
+                throw malformed(bytes, from, end, offset);
+            }
+        }
+        if (digits == 0) {
+            throw malformed(bytes, from, end, offset);
+        }
+        for (int d = Math.max(decimals, 0); d < 2; d++) {
+            if (cents >= MAX_PARSE_CENTS) {
+                throw malformed(bytes, from, end, offset);
+            }
+            cents *= 10;
+        }
+        SavingsAccount account = new SavingsAccount(
+                new String(bytes, from, comma - from, StandardCharsets.UTF_8));
+        if (cents != 0L && account.tryDepositCents(cents) != OperationStatus.OK) {
+            throw malformed(bytes, from, end, offset);
+        }
+        return account;
+    }
+
+    /**
+     * Builds the error for a malformed row.
+     *
+     * @param bytes  the buffer
+     * @param from   first byte of the row
+     * @param to     byte after the row
+     * @param offset file position of the row
+     * @return the exception
+     */
+    private static IOException malformed(final byte[] bytes, final int from, final int to,
+            final long offset) {
+        return new IOException("Malformed account row at byte " + offset + ": "
+                + new String(bytes, from, Math.min(to - from, 80), StandardCharsets.UTF_8));
+    }
+}
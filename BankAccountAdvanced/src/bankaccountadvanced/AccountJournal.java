@@ -0,0 +1,575 @@
+package bankaccountadvanced;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.ObjLongConsumer;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only, write-ahead journal of account mutations.
+ * <p>
+ * Each record is framed as {@code [int length][long lsn][mutation][int crc]}
+ * where the CRC covers the LSN and the mutation. Records are assigned
+ * increasing log sequence numbers (LSNs) and buffered in memory; how the
+ * buffer reaches the disk depends on the {@link DurabilityMode}. In
+ * GROUP_SYNC mode the first waiting caller becomes the leader, writes
+ * everything buffered so far with one write and one fsync, and wakes every
+ * caller whose record was included.
+ * <p>
+ * A record that was only partly written before a crash fails its length or
+ * CRC check; opening the journal truncates it.
+ * Code Reviewer: MarkSayson
+ */
+public class AccountJournal implements MutationListener, Closeable {
+
+    /** Default interval between background syncs in ASYNC mode. */
+    public static final long DEFAULT_FLUSH_INTERVAL_MILLIS = 10;
+
+    /** Bytes of framing around each record body: the length and the CRC. */
+    private static final int FRAME_OVERHEAD = 4 + 4;
+
+    /** Initial size of each in-memory buffer. */
+    private static final int INITIAL_BUFFER_SIZE = 64 * 1024;
+
+    /** Upper bound on a record's length, used to detect corruption. */
+    private static final int MAX_RECORD_LENGTH = 1 << 20;
+
+    /** Size of the read buffer used by replay. */
+    private static final int READ_BUFFER_SIZE = 1 << 16;
+
+    /** Location of the journal file. */
+    private final Path path;
+
+    /** Channel used to append records. */
+    private final FileChannel channel;
+
+    /** How mutations are made durable. */
+    private final DurabilityMode mode;
+
+    /** Guards the buffers, LSN counters and flush state. */
+    private final ReentrantLock lock;
+
+    /** Signalled whenever a flush finishes. */
+    private final Condition flushed;
+
+    /** Computes record checksums; used under the lock. */
+    private final CRC32 crc;
+
+    /** Background flusher in ASYNC mode; null otherwise. */
+    private final Thread flusher;
+
+    /** Buffer that new records are appended to. */
+    private ByteBuffer pending;
+
+    /** Buffer being written by the current leader, or idle. */
+    private ByteBuffer spare;
+
+    /** LSN of the last record appended. */
+    private long lastLsn;
+
+    /** LSN of the last record known to be on disk. */
+    private long durableLsn;
+
+    /** File offset just past the record with LSN durableLsn. */
+    private long durableOffset;
+
+    /** Whether a leader is currently writing. */
+    private boolean flushing;
+
+    /** First write failure; once set, the journal rejects all work. */
+    private IOException failure;
+
+    /** Set when the background flusher should stop. */
+    private volatile boolean stopping;
+
+    /** Set once close has been called. */
+    private volatile boolean closed;
+
+    /**
+     * Constructs a journal over an already opened and validated channel.
+     *
+     * @param journalPath   location of the journal file
+     * @param fileChannel   channel positioned at the end of the valid records
+     * @param durability    how mutations are made durable
+     * @param startLsn      LSN of the last valid record, or 0
+     * @param startOffset   file offset just past the last valid record
+     * @param flushInterval interval between background syncs in ASYNC mode
+     */
+    private AccountJournal(final Path journalPath, final FileChannel fileChannel,
+            final DurabilityMode durability, final long startLsn,
+            final long startOffset, final long flushInterval) {
+        this.path = journalPath;
+        this.channel = fileChannel;
+        this.mode = durability;
+        this.lock = new ReentrantLock();
+        this.flushed = lock.newCondition();
+        this.crc = new CRC32();
+        this.pending = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+        this.spare = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+        this.lastLsn = startLsn;
+        this.durableLsn = startLsn;
+        this.durableOffset = startOffset;
+        if (durability == DurabilityMode.ASYNC) {
+            this.flusher = new Thread(() -> runFlusher(flushInterval),
+                    "account-journal-flusher");
+            this.flusher.setDaemon(true);
+            this.flusher.start();
+        } else {
+            this.flusher = null;
+        }
+    }
+
+    /**
+     * Opens or creates a journal, using the default ASYNC flush interval.
+     *
+     * @param path location of the journal file
+     * @param mode how mutations are made durable
+     * @return the opened journal
+     * @throws IOException if the file cannot be opened or read
+     */
+    public static AccountJournal open(final Path path, final DurabilityMode mode)
+            throws IOException {
+        return open(path, mode, DEFAULT_FLUSH_INTERVAL_MILLIS);
+    }
+
+    /**
+     * Opens or creates a journal. Any torn record at the end of the file
+     * is truncated, and new records continue after the last valid LSN.
+     *
+     * @param path                location of the journal file
+     * @param mode                how mutations are made durable
+     * @param flushIntervalMillis interval between background syncs in ASYNC mode
+     * @return the opened journal
+     * @throws IOException if the file cannot be opened or read
+     */
+    public static AccountJournal open(final Path path, final DurabilityMode mode,
+            final long flushIntervalMillis) throws IOException {
+        long[] last = new long[1];
+        long validEnd = scan(path, 0L, null, last);
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            channel.truncate(validEnd);
+            channel.position(validEnd);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        return new AccountJournal(path, channel, mode, last[0], validEnd,
+                flushIntervalMillis);
+    }
+
+    /**
+     * Returns the location of the journal file.
+     *
+     * @return the journal path
+     */
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * Returns the durability mode of this journal.
+     *
+     * @return the durability mode
+     */
+    public DurabilityMode getMode() {
+        return mode;
+    }
+
+    /**
+     * Returns the LSN of the last record appended.
+     *
+     * @return the last LSN, or 0 if the journal is empty
+     */
+    public long getLastLsn() {
+        lock.lock();
+        try {
+            return lastLsn;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the LSN and file offset of the last record known to be on
+     * disk. Every record with a greater LSN starts at or after the offset.
+     *
+     * @return the durable position
+     */
+    public Position getDurablePosition() {
+        lock.lock();
+        try {
+            return new Position(durableLsn, durableOffset);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Replays every valid record on disk, in LSN order.
+     *
+     * @param handler receives each mutation with its LSN
+     * @throws IOException if the file cannot be read
+     */
+    public void replay(final ObjLongConsumer<Mutation> handler) throws IOException {
+        replay(0L, handler);
+    }
+
+    /**
+     * Replays the valid records on disk starting at a file offset taken
+     * from {@link #getDurablePosition()}, in LSN order.
+     *
+     * @param offset  file offset of the first record to replay
+     * @param handler receives each mutation with its LSN
+     * @throws IOException if the file cannot be read
+     */
+    public void replay(final long offset, final ObjLongConsumer<Mutation> handler)
+            throws IOException {
+        scan(path, offset, handler, new long[1]);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long onMutation(final Mutation mutation) {
+        lock.lock();
+        try {
+            checkUsable();
+            append(mutation);
+            syncPerOp();
+            return lastLsn;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Appends the records under one lock hold; in PER_OP_SYNC mode they
+     * are written with one write and one fsync.
+     */
+    @Override
+    public long onMutations(final Mutation[] mutations, final int count) {
+        if (count == 0) {
+            return 0L;
+        }
+        lock.lock();
+        try {
+            checkUsable();
+            for (int i = 0; i < count; i++) {
+                append(mutations[i]);
+            }
+            syncPerOp();
+            return lastLsn;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Frames a mutation with the next LSN and appends it to the pending
+     * buffer. Must be called while holding the lock.
+     *
+     * @param mutation the mutation to append
+     */
+    private void append(final Mutation mutation) {
+        long lsn = ++lastLsn;
+        int length = 8 + mutation.encodedSize();
+        ensureCapacity(length + FRAME_OVERHEAD);
+        int start = pending.position();
+        pending.putInt(length);
+        pending.putLong(lsn);
+        mutation.writeTo(pending);
+        crc.reset();
+        crc.update(pending.array(), start + 4, length);
+        pending.putInt((int) crc.getValue());
+    }
+
+    /**
+     * In PER_OP_SYNC mode, writes and syncs the pending records before
+     * returning. Must be called while holding the lock.
+     *
+     * @throws UncheckedIOException if the write or sync fails; the
+     *         journal rejects all work afterwards
+     */
+    private void syncPerOp() {
+        if (mode != DurabilityMode.PER_OP_SYNC) {
+            return;
+        }
+        try {
+            writeAndSync(pending);
+            durableOffset = channel.position();
+        } catch (IOException e) {
+            failure = e;
+            throw new UncheckedIOException(e);
+        }
+        durableLsn = lastLsn;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void awaitDurable(final long ticket) {
+        if (mode == DurabilityMode.GROUP_SYNC) {
+            syncTo(ticket);
+        }
+    }
+
+    /**
+     * Writes and syncs every record appended so far.
+     */
+    public void flush() {
+        syncTo(getLastLsn());
+    }
+
+    /**
+     * Flushes outstanding records and closes the journal.
+     *
+     * @throws IOException if the final flush or close fails
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        if (flusher != null) {
+            stopping = true;
+            LockSupport.unpark(flusher);
+            try {
+                flusher.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        try {
+            flush();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            closed = true;
+            channel.close();
+        }
+    }
+
+    /**
+     * Blocks until every record up to the given LSN is on disk, becoming the
+     * leader that writes the buffered records if no other flush is running.
+     *
+     * @param lsn the LSN to wait for
+     */
+    void syncTo(final long lsn) {
+        lock.lock();
+        try {
+            while (durableLsn < lsn) {
+                checkUsable();
+                if (flushing) {
+                    flushed.awaitUninterruptibly();
+                    continue;
+                }
+                flushing = true;
+                ByteBuffer batch = pending;
+                pending = spare;
+                spare = batch;
+                long batchLsn = lastLsn;
+                lock.unlock();
+                IOException error = null;
+                long batchEnd = 0L;
+                try {
+                    writeAndSync(batch);
+                    batchEnd = channel.position();
+                } catch (IOException e) {
+                    error = e;
+                } finally {
+                    lock.lock();
+                    flushing = false;
+                    if (error == null) {
+                        durableLsn = batchLsn;
+                        durableOffset = batchEnd;
+                    } else {
+                        failure = error;
+                    }
+                    flushed.signalAll();
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Body of the ASYNC flusher thread. The thread is stopped with a flag
+     * rather than an interrupt, because interrupting a thread blocked in
+     * FileChannel I/O closes the channel.
+     *
+     * @param intervalMillis time between syncs
+     */
+    private void runFlusher(final long intervalMillis) {
+        long intervalNanos = TimeUnit.MILLISECONDS.toNanos(intervalMillis);
+        while (!stopping) {
+            LockSupport.parkNanos(this, intervalNanos);
+            try {
+                flush();
+            } catch (UncheckedIOException e) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Writes a buffer's contents to the channel, syncs, and clears it.
+     *
+     * @param buffer the buffer in write mode
+     * @throws IOException if the write or sync fails
+     */
+    private void writeAndSync(final ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        channel.force(false);
+        buffer.clear();
+    }
+
+    /**
+     * Grows the pending buffer if it cannot take another record.
+     *
+     * @param needed bytes the next record needs
+     */
+    private void ensureCapacity(final int needed) {
+        if (pending.remaining() < needed) {
+            int size = Math.max(pending.capacity() * 2, pending.position() + needed);
+            ByteBuffer larger = ByteBuffer.allocate(size);
+            pending.flip();
+            larger.put(pending);
+            pending = larger;
+        }
+    }
+
+    /**
+     * Throws if the journal is closed or has failed.
+     */
+    private void checkUsable() {
+        if (failure != null) {
+            throw new UncheckedIOException("Journal write failed", failure);
+        }
+        if (closed) {
+            throw new IllegalStateException("Journal is closed");
+        }
+    }
+
+    /**
+     * Reads valid records from a journal file, stopping at the end of the
+     * file or at the first torn or corrupt record.
+     *
+     * @param path    location of the journal file
+     * @param offset  byte offset of the first record to read
+     * @param handler receives each mutation with its LSN; if null,
+     *                records are validated but not decoded
+     * @param lastLsn receives the LSN of the last valid record in element 0
+     * @return byte offset just past the last valid record
+     * @throws IOException if the file cannot be read
+     */
+    static long scan(final Path path, final long offset,
+            final ObjLongConsumer<Mutation> handler, final long[] lastLsn)
+            throws IOException {
+        if (!Files.exists(path)) {
+            return 0L;
+        }
+        CRC32 checksum = new CRC32();
+        byte[] record = new byte[INITIAL_BUFFER_SIZE];
+        long validEnd = offset;
+        try (FileChannel in = FileChannel.open(path, StandardOpenOption.READ)) {
+            in.position(offset);
+            DataInputStream data = new DataInputStream(new BufferedInputStream(
+                    Channels.newInputStream(in), READ_BUFFER_SIZE));
+            while (true) {
+                int length;
+                try {
+                    length = data.readInt();
+                    if (length < 8 || length > MAX_RECORD_LENGTH) {
+                        break;
+                    }
+                    if (record.length < length) {
+                        record = new byte[Math.max(length, record.length * 2)];
+                    }
+                    data.readFully(record, 0, length);
+                    checksum.reset();
+                    checksum.update(record, 0, length);
+                    if (data.readInt() != (int) checksum.getValue()) {
+                        break;
+                    }
+                } catch (EOFException e) {
+                    break;
+                }
+                ByteBuffer buffer = ByteBuffer.wrap(record, 0, length);
+                long lsn = buffer.getLong();
+                lastLsn[0] = lsn;
+                if (handler != null) {
+                    handler.accept(Mutation.readFrom(buffer), lsn);
+                }
+                validEnd += length + FRAME_OVERHEAD;
+            }
+        }
+        return validEnd;
+    }
+
+    /**
+     * A point in the journal: a record's LSN and the file offset just
+     * past it.
+     */
+    public static final class Position {
+
+        /** Log sequence number of the record. */
+        private final long lsn;
+
+        /** File offset just past the record. */
+        private final long offset;
+
+        /**
+         * Constructs a Position.
+         *
+         * @param recordLsn  log sequence number of the record
+         * @param fileOffset file offset just past the record
+         */
+        Position(final long recordLsn, final long fileOffset) {
+            this.lsn = recordLsn;
+            this.offset = fileOffset;
+        }
+
+        /**
+         * Returns the log sequence number of the record.
+         *
+         * @return the LSN
+         */
+        public long getLsn() {
+            return lsn;
+        }
+
+        /**
+         * Returns the file offset just past the record.
+         *
+         * @return the offset in bytes
+         */
+        public long getOffset() {
+            return offset;
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package bankaccountadvanced;
+
+/**
+ * Exception thrown when an operation refers to an account ID
+ * that is not registered with the BankAccountManager.
+ * Code Reviewer: MarkSayson
+ */
+public class AccountNotFoundException extends Exception {
+
+    /**
+     * Constructs a new AccountNotFoundException with the specified detail message.
+     *
+     * @param message the detail message
+     */
+    public AccountNotFoundException(final String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,94 @@
+package bankaccountadvanced;
+
+/**
+ * An immutable deposit or withdrawal to be applied as part of a batch.
+ * See {@link BankAccount#applyBatch(AccountOperation[])}.
+ * Code Reviewer: MarkSayson
+ */
+public final class AccountOperation {
+
+    /** Whether this operation credits the account. */
+    private final boolean deposit;
+
+    /** The amount in centavos. */
+    private final long amountCents;
+
+    /**
+     * Constructs an AccountOperation.
+     *
+     * @param isDeposit true for a deposit, false for a withdrawal
+     * @param cents     the amount in centavos
+     */
+    private AccountOperation(final boolean isDeposit, final long cents) {
+        this.deposit = isDeposit;
+        this.amountCents = cents;
+    }
+
+    /**
+     * Creates a deposit of the given amount, rounded to the nearest centavo.
+     *
+     * @param amount the amount to deposit
+     * @return the operation
+     */
+    public static AccountOperation deposit(final double amount) {
+        return depositCents(Money.toCents(amount));
+    }
+
+    /**
+     * Creates a deposit of the given number of centavos.
+     *
+     * @param amountCents the amount to deposit in centavos
+     * @return the operation
+     */
+    public static AccountOperation depositCents(final long amountCents) {
+        return new AccountOperation(true, amountCents);
+    }
+
+    /**
+     * Creates a withdrawal of the given amount, rounded to the nearest centavo.
+     *
+     * @param amount the amount to withdraw
+     * @return the operation
+     */
+    public static AccountOperation withdraw(final double amount) {
+        return withdrawCents(Money.toCents(amount));
+    }
+
+    /**
+     * Creates a withdrawal of the given number of centavos.
+     *
+     * @param amountCents the amount to withdraw in centavos
+     * @return the operation
+     */
+    public static AccountOperation withdrawCents(final long amountCents) {
+        return new AccountOperation(false, amountCents);
+    }
+
+    /**
+     * Returns whether this operation is a deposit.
+     *
+     * @return true for a deposit, false for a withdrawal
+     */
+    public boolean isDeposit() {
+        return deposit;
+    }
+
+    /**
+     * Returns the amount of this operation.
+     *
+     * @return the amount in centavos
+     */
+    public long getAmountCents() {
+        return amountCents;
+    }
+
+    /**
+     * Returns a string representation of the operation.
+     *
+     * @return the operation type and amount
+     */
+    @Override
+    public String toString() {
+        return (deposit ? "Deposit" : "Withdraw") + ": Php " + Money.toAmount(amountCents);
+    }
+}
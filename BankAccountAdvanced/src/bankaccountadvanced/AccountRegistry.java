@@ -0,0 +1,88 @@
+package bankaccountadvanced;
+
+import java.util.function.ObjIntConsumer;
+
+/**
+ * Storage strategy used by BankAccountManager to keep track of accounts.
+ * Implementations are responsible for allocating account IDs and must be
+ * safe to use from multiple threads.
+ * <p>
+ * An ID is never handed out twice, and never after it was restored.
+ * Whether later IDs are greater is up to the implementation:
+ * ConcurrentAccountRegistry counts up, while ShardedAccountRegistry
+ * allocates from one ID range per shard, so an account registered later
+ * may receive a lower ID than one registered or restored earlier.
+ * Code Reviewer: MarkSayson
+ */
+public interface AccountRegistry {
+
+    /**
+     * Registers an account and assigns it an ID that has not been handed
+     * out or restored before.
+     *
+     * @param account the account to register
+     * @return the ID assigned to the account
+     */
+    int register(BankAccount account);
+
+    /**
+     * Registers an account under a previously assigned ID, e.g. when
+     * rebuilding state. The ID, and every ID handed out before it from
+     * the same allocation order, is not handed out again.
+     *
+     * @param accountId the ID the account was assigned earlier
+     * @param account   the account to register
+     */
+    void restore(int accountId, BankAccount account);
+
+    /**
+     * Marks an ID as used without registering an account under it, e.g.
+     * when rebuilding a registry whose highest accounts were removed.
+     * The ID, and every ID handed out before it from the same allocation
+     * order, is not handed out again.
+     *
+     * @param accountId the ID to mark as used
+     */
+    void reserve(int accountId);
+
+    /**
+     * Returns the highest ID handed out, restored or reserved so far in
+     * each allocation order, or 0 for an order that has none yet.
+     * Reserving every returned ID in a fresh registry of the same kind
+     * keeps it from handing out any ID this registry already used.
+     *
+     * @return the high-water mark of every allocation order
+     */
+    int[] getIdHighWaterMarks();
+
+    /**
+     * Looks up an account by its ID.
+     *
+     * @param accountId the ID of the account
+     * @return the account, or null if no account has that ID
+     */
+    BankAccount lookup(int accountId);
+
+    /**
+     * Removes the account with the given ID.
+     *
+     * @param accountId the ID of the account to remove
+     * @return the removed account, or null if no account has that ID
+     */
+    BankAccount remove(int accountId);
+
+    /**
+     * Returns the number of registered accounts.
+     *
+     * @return the account count
+     */
+    int size();
+
+    /**
+     * Calls the given action for every registered account.
+     * Accounts added or removed while iterating may or may not be seen.
+     *
+     * @param action receives each account together with its ID
+     */
+    void forEach(ObjIntConsumer<BankAccount> action);
+}
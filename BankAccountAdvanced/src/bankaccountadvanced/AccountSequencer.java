@@ -0,0 +1,305 @@
+package bankaccountadvanced;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Single-writer execution mode for a heavily contended account.
+ * <p>
+ * Instead of every thread taking the account's lock in turn, producers
+ * enqueue deposits and withdrawals into a lock-free ring buffer and one
+ * consumer thread applies them in the order they were enqueued. The
+ * consumer drains whatever has accumulated and applies it as one batch
+ * with {@link BankAccount#applyBatchPartial(AccountOperation[])}, so the
+ * account's lock is taken, and a journal waited on, once per batch rather
+ * than once per operation. Producers never block on each other.
+ * <p>
+ * Each operation returns a future that completes once the operation has
+ * been applied, or completes exceptionally with the exception the
+ * blocking method would have thrown: InvalidAmountException,
+ * InsufficientFundsException or AccountFrozenException. A rejected
+ * operation does not affect the ones queued around it. Other threads may
+ * still call the account directly; the account's own lock keeps that safe.
+ * Code Reviewer: MarkSayson
+ */
+public final class AccountSequencer implements AutoCloseable {
+
+    /** Default number of ring buffer slots. */
+    static final int DEFAULT_CAPACITY = 1 << 14;
+
+    /** Largest number of operations applied as one batch. */
+    private static final int MAX_BATCH = 1_024;
+
+    /** The account all operations are applied to. */
+    private final BankAccount account;
+
+    /** Operations waiting for the consumer. */
+    private final MpscRingBuffer<Command> ring;
+
+    /** The consumer thread. */
+    private final Thread consumer;
+
+    /** Operations drained for the current batch. Consumer thread only. */
+    private final Command[] batch;
+
+    /** Number of operations in the current batch. Consumer thread only. */
+    private int batchSize;
+
+    /** Set while the consumer is about to park or parked. */
+    private volatile boolean sleeping;
+
+    /**
+     * Constructs a sequencer for an account and starts its consumer thread.
+     *
+     * @param target the account to apply operations to
+     */
+    public AccountSequencer(final BankAccount target) {
+        this(target, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructs a sequencer with a given ring buffer size.
+     *
+     * @param target   the account to apply operations to
+     * @param capacity ring buffer slots; must be a power of two
+     */
+    AccountSequencer(final BankAccount target, final int capacity) {
+        this.account = target;
+        this.ring = new MpscRingBuffer<>(capacity);
+        this.batch = new Command[MAX_BATCH];
+        this.consumer = new Thread(this::consume, "account-sequencer");
+        this.consumer.setDaemon(true);
+        this.consumer.start();
+    }
+
+    /**
+     * An operation waiting to be applied, with the future that reports it.
+     */
+    private static final class Command {
+
+        /** The deposit or withdrawal. */
+        private final AccountOperation operation;
+
+        /** Completed once the operation has been applied or rejected. */
+        private final CompletableFuture<Void> completion;
+
+        /**
+         * Constructs a Command.
+         *
+         * @param op the deposit or withdrawal
+         */
+        Command(final AccountOperation op) {
+            this.operation = op;
+            this.completion = new CompletableFuture<>();
+        }
+    }
+
+    /**
+     * Returns the account operations are applied to.
+     *
+     * @return the account
+     */
+    public BankAccount getAccount() {
+        return account;
+    }
+
+    /**
+     * Queues a deposit. See {@link BankAccount#deposit(double)}.
+     *
+     * @param amount the amount to deposit
+     * @return a future completed once the deposit has been applied
+     */
+    public CompletableFuture<Void> deposit(final double amount) {
+        return submit(AccountOperation.deposit(amount));
+    }
+
+    /**
+     * Queues a deposit of centavos. See {@link BankAccount#depositCents(long)}.
+     *
+     * @param amountCents the amount to deposit in centavos
+     * @return a future completed once the deposit has been applied
+     */
+    public CompletableFuture<Void> depositCents(final long amountCents) {
+        return submit(AccountOperation.depositCents(amountCents));
+    }
+
+    /**
+     * Queues a withdrawal. See {@link BankAccount#withdraw(double)}.
+     *
+     * @param amount the amount to withdraw
+     * @return a future completed once the withdrawal has been applied
+     */
+    public CompletableFuture<Void> withdraw(final double amount) {
+        return submit(AccountOperation.withdraw(amount));
+    }
+
+    /**
+     * Queues a withdrawal of centavos. See {@link BankAccount#withdrawCents(long)}.
+     *
+     * @param amountCents the amount to withdraw in centavos
+     * @return a future completed once the withdrawal has been applied
+     */
+    public CompletableFuture<Void> withdrawCents(final long amountCents) {
+        return submit(AccountOperation.withdrawCents(amountCents));
+    }
+
+    /**
+     * Enqueues an operation, waiting for space if the ring buffer is full.
+     *
+     * @param operation the operation
+     * @return the operation's future
+     */
+    private CompletableFuture<Void> submit(final AccountOperation operation) {
+        Command command = new Command(operation);
+        while (!ring.offer(command)) {
+            if (ring.isClosed()) {
+                command.completion.completeExceptionally(
+                        new IllegalStateException("Sequencer is closed"));
+                return command.completion;
+            }
+            LockSupport.unpark(consumer);
+            Thread.yield();
+        }
+        if (sleeping) {
+            LockSupport.unpark(consumer);
+        }
+        return command.completion;
+    }
+
+    /**
+     * Consumer loop: applies batches until the sequencer is closed and
+     * every queued operation has been applied.
+     */
+    private void consume() {
+        while (true) {
+            if (ring.drain(this::add, MAX_BATCH) > 0) {
+                applyBatch();
+                continue;
+            }
+            if (ring.isEmpty()) {
+                if (ring.isClosed()) {
+                    return;
+                }
+                sleeping = true;
+                if (ring.isEmpty() && !ring.isClosed()) {
+                    LockSupport.park(this);
+                }
+                sleeping = false;
+            } else {
+                Thread.onSpinWait();
+            }
+        }
+    }
+
+    /**
+     * Adds a drained command to the current batch.
+     *
+     * @param command the command
+     */
+    private void add(final Command command) {
+        batch[batchSize++] = command;
+    }
+
+    /**
+     * Applies the current batch to the account and completes its futures.
+     */
+    private void applyBatch() {
+        int size = batchSize;
+        AccountOperation[] operations = new AccountOperation[size];
+        for (int i = 0; i < size; i++) {
+            operations[i] = batch[i].operation;
+        }
+        try {
+            OperationStatus[] statuses;
+            try {
+                statuses = account.applyBatchPartial(operations);
+            } catch (ArithmeticException e) {
+                statuses = applyOneByOne(operations);
+            }
+            for (int i = 0; i < size; i++) {
+                Command command = batch[i];
+                if (statuses[i] == null) {
+                    command.completion.completeExceptionally(
+                            new ArithmeticException("Balance overflow"));
+                } else if (statuses[i] == OperationStatus.OK) {
+                    command.completion.complete(null);
+                } else {
+                    command.completion.completeExceptionally(
+                            failure(statuses[i], command.operation));
+                }
+            }
+        } catch (RuntimeException | Error e) {
+            for (int i = 0; i < size; i++) {
+                batch[i].completion.completeExceptionally(e);
+            }
+        } finally {
+            for (int i = 0; i < size; i++) {
+                batch[i] = null;
+            }
+            batchSize = 0;
+        }
+    }
+
+    /**
+     * Applies operations one at a time, so that an operation that would
+     * overflow the balance fails on its own.
+     *
+     * @param operations the operations
+     * @return the outcome of each operation, null where it overflowed
+     */
+    private OperationStatus[] applyOneByOne(final AccountOperation[] operations) {
+        OperationStatus[] statuses = new OperationStatus[operations.length];
+        for (int i = 0; i < operations.length; i++) {
+            try {
+                statuses[i] = account.applyBatchPartial(
+                        new AccountOperation[] {operations[i]})[0];
+            } catch (ArithmeticException e) {
+                statuses[i] = null;
+            }
+        }
+        return statuses;
+    }
+
+    /**
+     * Returns the exception the blocking method throws for a rejection.
+     *
+     * @param status    why the operation was rejected
+     * @param operation the rejected operation
+     * @return the exception
+     */
+    private static Exception failure(final OperationStatus status,
+            final AccountOperation operation) {
+        switch (status) {
+            case INVALID_AMOUNT:
+                return new InvalidAmountException(operation.isDeposit()
+                        ? "Deposit amount must be positive"
+                        : "Withdrawal amount must be positive");
+            case INSUFFICIENT_FUNDS:
+                return new InsufficientFundsException("Insufficient funds");
+            default:
+                return new AccountFrozenException("Account is frozen");
+        }
+    }
+
+    /**
+     * Stops accepting operations, waits until every queued operation has
+     * been applied and stops the consumer thread. An interrupt while
+     * waiting is kept for the caller rather than abandoning queued work.
+     */
+    @Override
+    public void close() {
+        ring.close();
+        LockSupport.unpark(consumer);
+        boolean interrupted = false;
+        while (consumer.isAlive()) {
+            try {
+                consumer.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package bankaccountadvanced;
+
+/**
+ * Running totals of the transactions of one account, or of several
+ * accounts combined. Deposits include incoming transfers and
+ * withdrawals include outgoing transfers.
+ * Code Reviewer: MarkSayson
+ */
+public final class AccountStatistics {
+
+    /** Statistics of an account with no transactions. */
+    public static final AccountStatistics EMPTY = new AccountStatistics(0L, 0L, 0L, 0L);
+
+    /** Sum of all credits in centavos. */
+    private final long totalDepositedCents;
+
+    /** Sum of all debits in centavos. */
+    private final long totalWithdrawnCents;
+
+    /** Number of transactions. */
+    private final long transactionCount;
+
+    /** Largest single transaction in centavos. */
+    private final long largestTransactionCents;
+
+    /**
+     * Constructs AccountStatistics.
+     *
+     * @param depositedCents sum of all credits in centavos
+     * @param withdrawnCents sum of all debits in centavos
+     * @param count          number of transactions
+     * @param largestCents   largest single transaction in centavos
+     */
+    public AccountStatistics(final long depositedCents, final long withdrawnCents,
+            final long count, final long largestCents) {
+        this.totalDepositedCents = depositedCents;
+        this.totalWithdrawnCents = withdrawnCents;
+        this.transactionCount = count;
+        this.largestTransactionCents = largestCents;
+    }
+
+    /**
+     * Returns the statistics of this and another set of transactions together.
+     *
+     * @param other the statistics to add
+     * @return the combined statistics
+     */
+    public AccountStatistics combine(final AccountStatistics other) {
+        return new AccountStatistics(
+                totalDepositedCents + other.totalDepositedCents,
+                totalWithdrawnCents + other.totalWithdrawnCents,
+                transactionCount + other.transactionCount,
+                Math.max(largestTransactionCents, other.largestTransactionCents));
+    }
+
+    /**
+     * Returns the total amount deposited.
+     *
+     * @return the total in pesos
+     */
+    public double getTotalDeposited() {
+        return Money.toAmount(totalDepositedCents);
+    }
+
+    /**
+     * Returns the total amount deposited.
+     *
+     * @return the total in centavos
+     */
+    public long getTotalDepositedCents() {
+        return totalDepositedCents;
+    }
+
+    /**
+     * Returns the total amount withdrawn.
+     *
+     * @return the total in pesos
+     */
+    public double getTotalWithdrawn() {
+        return Money.toAmount(totalWithdrawnCents);
+    }
+
+    /**
+     * Returns the total amount withdrawn.
+     *
+     * @return the total in centavos
+     */
+    public long getTotalWithdrawnCents() {
+        return totalWithdrawnCents;
+    }
+
+    /**
+     * Returns the number of transactions.
+     *
+     * @return the transaction count
+     */
+    public long getTransactionCount() {
+        return transactionCount;
+    }
+
+    /**
+     * Returns the largest single transaction amount.
+     *
+     * @return the amount in pesos, or 0 if there are no transactions
+     */
+    public double getLargestTransaction() {
+        return Money.toAmount(largestTransactionCents);
+    }
+
+    /**
+     * Returns the largest single transaction amount.
+     *
+     * @return the amount in centavos, or 0 if there are no transactions
+     */
+    public long getLargestTransactionCents() {
+        return largestTransactionCents;
+    }
+
+    /**
+     * Returns a string representation of the statistics.
+     *
+     * @return the totals, count and largest transaction
+     */
+    @Override
+    public String toString() {
+        return "Deposited: Php " + getTotalDeposited()
+                + ", Withdrawn: Php " + getTotalWithdrawn()
+                + ", Transactions: " + transactionCount
+                + ", Largest: Php " + getLargestTransaction();
+    }
+}
@@ -0,0 +1,54 @@
+package bankaccountadvanced;
+
+/**
+ * A transaction together with the ID of the account it belongs to,
+ * as returned by queries that span several accounts.
+ * Code Reviewer: MarkSayson
+ */
+public final class AccountTransaction {
+
+    /** ID of the account the transaction belongs to. */
+    private final int accountId;
+
+    /** The transaction. */
+    private final Transaction transaction;
+
+    /**
+     * Constructs an AccountTransaction.
+     *
+     * @param account the ID of the account
+     * @param tx      the transaction
+     */
+    public AccountTransaction(final int account, final Transaction tx) {
+        this.accountId = account;
+        this.transaction = tx;
+    }
+
+    /**
+     * Returns the ID of the account the transaction belongs to.
+     *
+     * @return the account ID
+     */
+    public int getAccountId() {
+        return accountId;
+    }
+
+    /**
+     * Returns the transaction.
+     *
+     * @return the transaction
+     */
+    public Transaction getTransaction() {
+        return transaction;
+    }
+
+    /**
+     * Returns a string representation of the account transaction.
+     *
+     * @return the account ID and the transaction
+     */
+    @Override
+    public String toString() {
+        return "Account ID: " + accountId + ", " + transaction;
+    }
+}
@@ -0,0 +1,90 @@
+package bankaccountadvanced;
+
+import java.time.LocalDate;
+
+/**
+ * Outcome of an interest accrual run for one business date, as returned
+ * by {@link InterestAccrualEngine#accrue(LocalDate)}. A resumed run
+ * includes the accounts credited before it was interrupted.
+ * Code Reviewer: MarkSayson
+ */
+public final class AccrualResult {
+
+    /** The day interest was accrued for. */
+    private final LocalDate businessDate;
+
+    /** Accounts that were credited interest. */
+    private final long accountsCredited;
+
+    /** Total interest credited in centavos. */
+    private final long interestCents;
+
+    /** Whether the run continued an interrupted one. */
+    private final boolean resumed;
+
+    /**
+     * Constructs an AccrualResult.
+     *
+     * @param date       the day interest was accrued for
+     * @param accounts   accounts that were credited interest
+     * @param cents      total interest credited in centavos
+     * @param resumedRun whether the run continued an interrupted one
+     */
+    AccrualResult(final LocalDate date, final long accounts, final long cents,
+            final boolean resumedRun) {
+        this.businessDate = date;
+        this.accountsCredited = accounts;
+        this.interestCents = cents;
+        this.resumed = resumedRun;
+    }
+
+    /**
+     * Returns the day interest was accrued for.
+     *
+     * @return the business date
+     */
+    public LocalDate getBusinessDate() {
+        return businessDate;
+    }
+
+    /**
+     * Returns the number of accounts that were credited interest.
+     * Accounts whose interest for the day was less than a centavo are
+     * not counted.
+     *
+     * @return the account count
+     */
+    public long getAccountsCredited() {
+        return accountsCredited;
+    }
+
+    /**
+     * Returns the total interest credited.
+     *
+     * @return the total in centavos
+     */
+    public long getInterestCents() {
+        return interestCents;
+    }
+
+    /**
+     * Returns whether the run continued an interrupted run for the same
+     * business date instead of starting over.
+     *
+     * @return true if resumed
+     */
+    public boolean isResumed() {
+        return resumed;
+    }
+
+    /**
+     * Returns a summary of the run.
+     *
+     * @return e.g. "2024-01-31: 1000 accounts, 1234 cents"
+     */
+    @Override
+    public String toString() {
+        return businessDate + ": " + accountsCredited + " accounts, "
+                + interestCents + " cents" + (resumed ? " (resumed)" : "");
+    }
+}
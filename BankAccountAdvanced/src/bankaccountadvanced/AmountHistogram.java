@@ -0,0 +1,189 @@
+package bankaccountadvanced;
+
+/**
+ * Histogram of non-negative long values with bounded relative error.
+ * Values below 128 are counted exactly; larger values fall into buckets
+ * whose width is at most 1/64 of their lower bound, so any percentile is
+ * reported within about 1.6% of the true value. The bucket array has a
+ * fixed size however many values are recorded, and two histograms can
+ * be merged by adding their counts.
+ * <p>
+ * Not thread-safe; merge per-thread histograms instead.
+ * Code Reviewer: MarkSayson
+ */
+public final class AmountHistogram {
+
+    /** Bits of precision kept for every value. */
+    private static final int SUB_BUCKET_BITS = 7;
+
+    /** Values below this are counted exactly. */
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+
+    /** Buckets per power of two above the exact range. */
+    private static final int HALF_COUNT = SUB_BUCKET_COUNT >> 1;
+
+    /** Number of buckets needed for values up to Long.MAX_VALUE. */
+    static final int BUCKET_COUNT =
+            SUB_BUCKET_COUNT + (Long.SIZE - SUB_BUCKET_BITS) * HALF_COUNT;
+
+    /** Number of values in each bucket. */
+    private final long[] counts;
+
+    /** Number of values recorded. */
+    private long totalCount;
+
+    /** Smallest value recorded. */
+    private long min;
+
+    /** Largest value recorded. */
+    private long max;
+
+    /**
+     * Constructs an empty histogram.
+     */
+    public AmountHistogram() {
+        this.counts = new long[BUCKET_COUNT];
+        this.min = Long.MAX_VALUE;
+        this.max = Long.MIN_VALUE;
+    }
+
+    /**
+     * Constructs a histogram from bucket counts collected elsewhere, e.g.
+     * by a LatencyHistogram. The minimum and maximum are known only to
+     * the precision of their buckets.
+     *
+     * @param bucketCounts number of values in each bucket; BUCKET_COUNT long
+     */
+    AmountHistogram(final long[] bucketCounts) {
+        this();
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            long count = bucketCounts[i];
+            if (count != 0) {
+                counts[i] = count;
+                totalCount += count;
+                min = Math.min(min, highestValueIn(i));
+                max = highestValueIn(i);
+            }
+        }
+    }
+
+    /**
+     * Returns the bucket holding a value.
+     *
+     * @param value a non-negative value
+     * @return the bucket index
+     */
+    static int bucketOf(final long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        int shift = Long.SIZE - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return SUB_BUCKET_COUNT + (shift - 1) * HALF_COUNT
+                + (int) (value >>> shift) - HALF_COUNT;
+    }
+
+    /**
+     * Returns the largest value that falls into a bucket.
+     *
+     * @param bucket the bucket index
+     * @return the bucket's upper bound
+     */
+    static long highestValueIn(final int bucket) {
+        if (bucket < SUB_BUCKET_COUNT) {
+            return bucket;
+        }
+        int shift = (bucket - SUB_BUCKET_COUNT) / HALF_COUNT + 1;
+        long sub = (bucket - SUB_BUCKET_COUNT) % HALF_COUNT + HALF_COUNT;
+        return ((sub + 1) << shift) - 1;
+    }
+
+    /**
+     * Records a value.
+     *
+     * @param value the value; must not be negative
+     * @throws IllegalArgumentException if the value is negative
+     */
+    public void record(final long value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Negative value: " + value);
+        }
+        counts[bucketOf(value)]++;
+        totalCount++;
+        if (value < min) {
+            min = value;
+        }
+        if (value > max) {
+            max = value;
+        }
+    }
+
+    /**
+     * Adds every value recorded in another histogram to this one.
+     *
+     * @param other the histogram to merge
+     */
+    public void add(final AmountHistogram other) {
+        if (other.totalCount == 0) {
+            return;
+        }
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts[i] += other.counts[i];
+        }
+        totalCount += other.totalCount;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+    }
+
+    /**
+     * Returns the number of values recorded.
+     *
+     * @return the count
+     */
+    public long getCount() {
+        return totalCount;
+    }
+
+    /**
+     * Returns the smallest value recorded.
+     *
+     * @return the minimum, or 0 if empty
+     */
+    public long getMin() {
+        return totalCount == 0 ? 0L : min;
+    }
+
+    /**
+     * Returns the largest value recorded.
+     *
+     * @return the maximum, or 0 if empty
+     */
+    public long getMax() {
+        return totalCount == 0 ? 0L : max;
+    }
+
+    /**
+     * Returns the value below or at which the given percentage of
+     * recorded values fall, within the histogram's precision.
+     *
+     * @param percentile the percentile, from 0 to 100
+     * @return the value at that percentile, or 0 if empty
+     * @throws IllegalArgumentException if percentile is outside 0..100
+     */
+    public long valueAtPercentile(final double percentile) {
+        if (!(percentile >= 0.0 && percentile <= 100.0)) {
+            throw new IllegalArgumentException("Percentile out of range: " + percentile);
+        }
+        if (totalCount == 0) {
+            return 0L;
+        }
+        long rank = Math.max(1L, (long) Math.ceil(percentile / 100.0 * totalCount));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.max(min, Math.min(max, highestValueIn(i)));
+            }
+        }
+        return max;
+    }
+}
@@ -0,0 +1,275 @@
+package bankaccountadvanced;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Secondary index that orders a ledger's entries by amount.
+ * <p>
+ * The index is a set of immutable runs, each a sorted array of amounts
+ * with the ledger positions they came from. New entries collect in an
+ * unindexed tail; once the tail is long enough it is sorted into a run,
+ * and runs of similar length are merged like the digits of a binary
+ * counter, so there are O(log n) runs and each entry is copied O(log n)
+ * times in total. Readers take the current set of runs without locking,
+ * binary-search each run and scan the short tail directly. Only the
+ * writer and {@link #sortedByAmount()} replace the runs; both publish a
+ * complete new set, so readers never see a partial update.
+ * Code Reviewer: MarkSayson
+ */
+final class AmountIndex {
+
+    /** Unindexed entries allowed before the tail is turned into a run. */
+    static final int TAIL_LIMIT = 64;
+
+    /** The ledger being indexed. */
+    private final TransactionLedger ledger;
+
+    /** Current runs and the number of ledger entries they cover. */
+    private final AtomicReference<State> state;
+
+    /**
+     * Constructs an empty index over a ledger.
+     *
+     * @param indexed the ledger to index
+     */
+    AmountIndex(final TransactionLedger indexed) {
+        this.ledger = indexed;
+        this.state = new AtomicReference<>(new State(new Run[0], 0));
+    }
+
+    /**
+     * Ledger entries sorted by amount, then by position.
+     */
+    private static final class Run {
+
+        /** Amounts in centavos, ascending. */
+        private final long[] amounts;
+
+        /** Ledger positions of the amounts. */
+        private final int[] positions;
+
+        /**
+         * Constructs a Run.
+         *
+         * @param sortedAmounts   amounts in ascending order
+         * @param sortedPositions ledger positions of the amounts
+         */
+        Run(final long[] sortedAmounts, final int[] sortedPositions) {
+            this.amounts = sortedAmounts;
+            this.positions = sortedPositions;
+        }
+
+        /**
+         * Returns the number of entries in the run.
+         *
+         * @return the run length
+         */
+        int length() {
+            return positions.length;
+        }
+
+        /**
+         * Returns the first entry whose amount is greater than a threshold.
+         *
+         * @param amountCents the threshold in centavos
+         * @return the entry index, or length() if there is none
+         */
+        int firstAbove(final long amountCents) {
+            int low = 0;
+            int high = amounts.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (amounts[mid] <= amountCents) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+    }
+
+    /**
+     * An immutable set of runs covering the ledger entries below covered.
+     */
+    private static final class State {
+
+        /** Runs, longest first. */
+        private final Run[] runs;
+
+        /** Number of ledger entries in the runs. */
+        private final int covered;
+
+        /**
+         * Constructs a State.
+         *
+         * @param indexRuns    runs, longest first
+         * @param coveredCount number of ledger entries in the runs
+         */
+        State(final Run[] indexRuns, final int coveredCount) {
+            this.runs = indexRuns;
+            this.covered = coveredCount;
+        }
+    }
+
+    /**
+     * Indexes the entries appended since the last update once the tail
+     * is long enough. Must be called by the ledger's single writer after
+     * every append.
+     */
+    void update() {
+        State current = state.get();
+        int size = ledger.size();
+        if (size - current.covered < TAIL_LIMIT) {
+            return;
+        }
+        Run run = sortRange(current.covered, size);
+        Run[] runs = current.runs;
+        int count = runs.length;
+        while (count > 0 && runs[count - 1].length() <= run.length()) {
+            run = merge(runs[count - 1], run);
+            count--;
+        }
+        Run[] next = Arrays.copyOf(runs, count + 1);
+        next[count] = run;
+        state.set(new State(next, size));
+    }
+
+    /**
+     * Returns the positions of the entries above a threshold, in ledger order.
+     *
+     * @param amountCents the threshold in centavos
+     * @return a read-only view of the matching transactions
+     */
+    List<Transaction> filterAbove(final long amountCents) {
+        State current = state.get();
+        int size = ledger.size();
+        int count = size - current.covered;
+        for (Run run : current.runs) {
+            count += run.length() - run.firstAbove(amountCents);
+        }
+        int[] matches = new int[count];
+        int n = 0;
+        for (Run run : current.runs) {
+            int from = run.firstAbove(amountCents);
+            System.arraycopy(run.positions, from, matches, n, run.length() - from);
+            n += run.length() - from;
+        }
+        for (int i = current.covered; i < size; i++) {
+            if (ledger.amountCentsAt(i) > amountCents) {
+                matches[n++] = i;
+            }
+        }
+        Arrays.sort(matches, 0, n);
+        return new AbstractTransactionLedger.IndexedView(ledger, matches, n);
+    }
+
+    /**
+     * Returns every entry in amount order. The runs and the tail merged
+     * for this query replace the current runs, unless the writer changed
+     * them meanwhile, so later calls return the merged run without
+     * further work until more entries are appended.
+     *
+     * @return a read-only view of the sorted transactions
+     */
+    List<Transaction> sortedByAmount() {
+        State current = state.get();
+        int size = ledger.size();
+        if (current.runs.length == 1 && size == current.covered) {
+            Run all = current.runs[0];
+            return new AbstractTransactionLedger.IndexedView(ledger, all.positions, all.length());
+        }
+        Run all = sortRange(current.covered, size);
+        for (int i = current.runs.length - 1; i >= 0; i--) {
+            all = merge(current.runs[i], all);
+        }
+        state.compareAndSet(current, new State(new Run[] {all}, size));
+        return new AbstractTransactionLedger.IndexedView(ledger, all.positions, all.length());
+    }
+
+    /**
+     * Sorts a range of ledger entries into a run.
+     *
+     * @param from first position, inclusive
+     * @param to   last position, exclusive
+     * @return the run
+     */
+    private Run sortRange(final int from, final int to) {
+        int n = to - from;
+        long[] amounts = new long[n];
+        int[] positions = new int[n];
+        for (int i = 0; i < n; i++) {
+            amounts[i] = ledger.amountCentsAt(from + i);
+            positions[i] = from + i;
+        }
+        mergeSort(amounts, positions, new long[n], new int[n], 0, n);
+        return new Run(amounts, positions);
+    }
+
+    /**
+     * Stably sorts parallel arrays by amount in {@code [from, to)}.
+     *
+     * @param amounts          amounts to sort
+     * @param positions        positions moved with their amounts
+     * @param scratchAmounts   temporary space of the same length
+     * @param scratchPositions temporary space of the same length
+     * @param from             first index, inclusive
+     * @param to               last index, exclusive
+     */
+    static void mergeSort(final long[] amounts, final int[] positions,
+            final long[] scratchAmounts, final int[] scratchPositions,
+            final int from, final int to) {
+        if (to - from < 2) {
+            return;
+        }
+        int mid = (from + to) >>> 1;
+        mergeSort(amounts, positions, scratchAmounts, scratchPositions, from, mid);
+        mergeSort(amounts, positions, scratchAmounts, scratchPositions, mid, to);
+        if (amounts[mid - 1] <= amounts[mid]) {
+            return;
+        }
+        System.arraycopy(amounts, from, scratchAmounts, from, to - from);
+        System.arraycopy(positions, from, scratchPositions, from, to - from);
+        int left = from;
+        int right = mid;
+        for (int k = from; k < to; k++) {
+            if (right >= to || (left < mid && scratchAmounts[left] <= scratchAmounts[right])) {
+                amounts[k] = scratchAmounts[left];
+                positions[k] = scratchPositions[left++];
+            } else {
+                amounts[k] = scratchAmounts[right];
+                positions[k] = scratchPositions[right++];
+            }
+        }
+    }
+
+    /**
+     * Merges two runs, ordering equal amounts by ledger position.
+     *
+     * @param a the first run
+     * @param b the second run
+     * @return a new run with the entries of both
+     */
+    private static Run merge(final Run a, final Run b) {
+        int n = a.length() + b.length();
+        long[] amounts = new long[n];
+        int[] positions = new int[n];
+        int i = 0;
+        int j = 0;
+        for (int k = 0; k < n; k++) {
+            boolean takeA = j >= b.length() || (i < a.length()
+                    && (a.amounts[i] < b.amounts[j]
+                    || (a.amounts[i] == b.amounts[j] && a.positions[i] < b.positions[j])));
+            if (takeA) {
+                amounts[k] = a.amounts[i];
+                positions[k] = a.positions[i++];
+            } else {
+                amounts[k] = b.amounts[j];
+                positions[k] = b.positions[j++];
+            }
+        }
+        return new Run(amounts, positions);
+    }
+}
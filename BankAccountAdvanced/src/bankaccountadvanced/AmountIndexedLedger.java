@@ -0,0 +1,66 @@
+package bankaccountadvanced;
+
+import java.util.List;
+
+/**
+ * ColumnarTransactionLedger that also keeps its entries indexed by
+ * amount. Threshold queries become a binary search per index run and
+ * sorted iteration is read from the index instead of sorting the whole
+ * history on every call. Appends pay for keeping the index up to date,
+ * O(log n) amortized, and the index takes about 12 bytes per entry,
+ * so it is meant for accounts whose history is queried often.
+ * Code Reviewer: MarkSayson
+ */
+public final class AmountIndexedLedger extends ColumnarTransactionLedger {
+
+    /** The amount index over this ledger. */
+    private final AmountIndex index;
+
+    /**
+     * Constructs an empty indexed ledger.
+     */
+    public AmountIndexedLedger() {
+        super();
+        this.index = new AmountIndex(this);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void append(final TransactionType type, final long amountCents,
+            final long timestamp) {
+        super.append(type, amountCents, timestamp);
+        index.update();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void appendAll(final TransactionType[] types, final long[] amountsCents,
+            final int count, final long timestamp) {
+        super.appendAll(types, amountsCents, count, timestamp);
+        index.update();
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Binary-searches each index run and scans only the unindexed tail.
+     */
+    @Override
+    public List<Transaction> filterAbove(final long amountCents) {
+        return index.filterAbove(amountCents);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Reads the order from the index.
+     */
+    @Override
+    public List<Transaction> sortedByAmount() {
+        return index.sortedByAmount();
+    }
+}
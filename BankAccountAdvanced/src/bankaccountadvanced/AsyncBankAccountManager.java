@@ -0,0 +1,215 @@
+package bankaccountadvanced;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Asynchronous front end to a BankAccountManager. Every request runs on
+ * its own virtual thread and completes a CompletableFuture, so hundreds
+ * of thousands of requests can be in flight without a thread per client
+ * in the operating system.
+ * <p>
+ * Requests that wait, for an account lock held by another request or
+ * for a journal write to become durable, unmount their virtual thread
+ * and free its carrier, because accounts guard their state with a
+ * ReentrantLock rather than a monitor. A rejected request completes its
+ * future exceptionally with the same exception the blocking method
+ * throws, e.g. InsufficientFundsException. Virtual threads need JDK 21.
+ * Code Reviewer: MarkSayson
+ */
+public class AsyncBankAccountManager implements AutoCloseable {
+
+    /** The manager requests are run against. */
+    private final BankAccountManager manager;
+
+    /** Runs each request on a new virtual thread. */
+    private final ExecutorService executor;
+
+    /**
+     * Constructs a facade over a manager.
+     *
+     * @param target the manager requests are run against
+     */
+    public AsyncBankAccountManager(final BankAccountManager target) {
+        this.manager = target;
+        this.executor = Executors.newVirtualThreadPerTaskExecutor();
+    }
+
+    /**
+     * Returns the manager requests are run against.
+     *
+     * @return the manager
+     */
+    public BankAccountManager getManager() {
+        return manager;
+    }
+
+    /**
+     * Deposits an amount into an account.
+     * See {@link BankAccount#deposit(double)}.
+     *
+     * @param accountId the ID of the account
+     * @param amount    the amount to deposit
+     * @return a future completed when the deposit has been applied
+     */
+    public CompletableFuture<Void> deposit(final int accountId, final double amount) {
+        return depositCents(accountId, Money.toCents(amount));
+    }
+
+    /**
+     * Deposits a number of centavos into an account.
+     * See {@link BankAccount#depositCents(long)}.
+     *
+     * @param accountId   the ID of the account
+     * @param amountCents the amount to deposit in centavos
+     * @return a future completed when the deposit has been applied
+     */
+    public CompletableFuture<Void> depositCents(final int accountId, final long amountCents) {
+        return submit(() -> {
+            account(accountId).depositCents(amountCents);
+            return null;
+        });
+    }
+
+    /**
+     * Withdraws an amount from an account.
+     * See {@link BankAccount#withdraw(double)}.
+     *
+     * @param accountId the ID of the account
+     * @param amount    the amount to withdraw
+     * @return a future completed when the withdrawal has been applied
+     */
+    public CompletableFuture<Void> withdraw(final int accountId, final double amount) {
+        return withdrawCents(accountId, Money.toCents(amount));
+    }
+
+    /**
+     * Withdraws a number of centavos from an account.
+     * See {@link BankAccount#withdrawCents(long)}.
+     *
+     * @param accountId   the ID of the account
+     * @param amountCents the amount to withdraw in centavos
+     * @return a future completed when the withdrawal has been applied
+     */
+    public CompletableFuture<Void> withdrawCents(final int accountId, final long amountCents) {
+        return submit(() -> {
+            account(accountId).withdrawCents(amountCents);
+            return null;
+        });
+    }
+
+    /**
+     * Reads the balance of an account.
+     *
+     * @param accountId the ID of the account
+     * @return a future completed with the balance
+     */
+    public CompletableFuture<Double> getBalance(final int accountId) {
+        return submit(() -> account(accountId).getBalance());
+    }
+
+    /**
+     * Reads the balance of an account in centavos.
+     *
+     * @param accountId the ID of the account
+     * @return a future completed with the balance in centavos
+     */
+    public CompletableFuture<Long> getBalanceCents(final int accountId) {
+        return submit(() -> account(accountId).getBalanceCents());
+    }
+
+    /**
+     * Moves money from one account to another.
+     * See {@link BankAccountManager#transfer(int, int, double)}.
+     *
+     * @param fromId the ID of the account to debit
+     * @param toId   the ID of the account to credit
+     * @param amount the amount to transfer
+     * @return a future completed when the transfer has been applied
+     */
+    public CompletableFuture<Void> transfer(final int fromId, final int toId,
+            final double amount) {
+        return transferCents(fromId, toId, Money.toCents(amount));
+    }
+
+    /**
+     * Moves a number of centavos from one account to another.
+     * See {@link BankAccountManager#transferCents(int, int, long)}.
+     *
+     * @param fromId      the ID of the account to debit
+     * @param toId        the ID of the account to credit
+     * @param amountCents the amount to transfer in centavos
+     * @return a future completed when the transfer has been applied
+     */
+    public CompletableFuture<Void> transferCents(final int fromId, final int toId,
+            final long amountCents) {
+        return submit(() -> {
+            manager.transferCents(fromId, toId, amountCents);
+            return null;
+        });
+    }
+
+    /**
+     * Reads a page of an account's transaction history.
+     * See {@link BankAccount#getTransactionPage(long, int)}.
+     *
+     * @param accountId    the ID of the account
+     * @param fromSequence sequence number of the first transaction wanted
+     * @param limit        the largest number of transactions to return
+     * @return a future completed with the page
+     */
+    public CompletableFuture<TransactionPage> getTransactionPage(final int accountId,
+            final long fromSequence, final int limit) {
+        return submit(() -> account(accountId).getTransactionPage(fromSequence, limit));
+    }
+
+    /**
+     * Looks up an account.
+     *
+     * @param accountId the ID of the account
+     * @return the account
+     * @throws AccountNotFoundException if no account has that ID
+     */
+    private BankAccount account(final int accountId) throws AccountNotFoundException {
+        BankAccount account = manager.getAccount(accountId);
+        if (account == null) {
+            throw new AccountNotFoundException("Account not found: " + accountId);
+        }
+        return account;
+    }
+
+    /**
+     * Runs a request on a new virtual thread.
+     *
+     * @param <T>     the result type
+     * @param request the request
+     * @return a future completed with the request's result or exception
+     */
+    private <T> CompletableFuture<T> submit(final Callable<T> request) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        try {
+            executor.execute(() -> {
+                try {
+                    result.complete(request.call());
+                } catch (Throwable e) {
+                    result.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            result.completeExceptionally(e);
+        }
+        return result;
+    }
+
+    /**
+     * Stops accepting requests and waits for the running ones to finish.
+     * The manager is left open.
+     */
+    @Override
+    public void close() {
+        executor.close();
+    }
+}
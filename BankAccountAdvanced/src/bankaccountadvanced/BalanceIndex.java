@@ -0,0 +1,106 @@
+package bankaccountadvanced;
+
+import java.util.Arrays;
+
+/**
+ * Sparse record of an account's balance over its ledger: the balance
+ * before every {@value #STRIDE}th entry. The balance after any entry is
+ * the nearest mark plus the signed amounts of at most {@value #STRIDE}
+ * entries, so together with a binary search over the non-decreasing
+ * timestamps a point-in-time balance costs O(log n) without storing a
+ * balance per transaction. The marks take half a byte per entry.
+ * <p>
+ * Marks are written by the account holding its lock, before the entry
+ * they precede is appended, and read without locking by readers that
+ * have already read the ledger's size.
+ * Code Reviewer: MarkSayson
+ */
+final class BalanceIndex {
+
+    /** log2 of the number of entries between marks. */
+    private static final int SHIFT = 4;
+
+    /** Number of entries between marks. */
+    static final int STRIDE = 1 << SHIFT;
+
+    /** Initial number of marks. */
+    private static final int INITIAL_CAPACITY = 4;
+
+    /** Balance before entry i * STRIDE at index i; replaced when grown. */
+    private volatile long[] marks;
+
+    /**
+     * Constructs an empty BalanceIndex.
+     */
+    BalanceIndex() {
+        this.marks = new long[INITIAL_CAPACITY];
+    }
+
+    /**
+     * Notes the balance before an entry is appended, if the entry starts
+     * a stride. Must be called by the ledger's writer.
+     *
+     * @param index        the position the entry will have
+     * @param balanceCents the balance before the entry
+     */
+    void beforeAppend(final int index, final long balanceCents) {
+        if ((index & (STRIDE - 1)) != 0) {
+            return;
+        }
+        int slot = index >>> SHIFT;
+        long[] current = marks;
+        if (slot == current.length) {
+            long[] grown = Arrays.copyOf(current, current.length * 2);
+            grown[slot] = balanceCents;
+            marks = grown;
+        } else {
+            current[slot] = balanceCents;
+        }
+    }
+
+    /**
+     * Notes the balance before each entry of a batch that starts a stride.
+     * Must be called by the ledger's writer.
+     *
+     * @param index        the position the first entry will have
+     * @param balanceCents the balance before the batch
+     * @param types        the types of the entries
+     * @param amountsCents the amounts of the entries
+     * @param count        number of entries
+     */
+    void beforeAppendAll(final int index, final long balanceCents,
+            final TransactionType[] types, final long[] amountsCents, final int count) {
+        long balance = balanceCents;
+        for (int i = 0; i < count; i++) {
+            beforeAppend(index + i, balance);
+            balance += signed(types[i], amountsCents[i]);
+        }
+    }
+
+    /**
+     * Returns the balance before a ledger entry.
+     *
+     * @param ledger the ledger, whose size the caller has read
+     * @param index  the entry, below the size read
+     * @return the balance in centavos
+     */
+    long balanceBefore(final TransactionLedger ledger, final int index) {
+        int start = index & ~(STRIDE - 1);
+        long balance = marks[index >>> SHIFT];
+        for (int i = start; i < index; i++) {
+            balance += signed(ledger.typeAt(i), ledger.amountCentsAt(i));
+        }
+        return balance;
+    }
+
+    /**
+     * Returns the change a transaction makes to the balance.
+     *
+     * @param type        the transaction type
+     * @param amountCents the amount in centavos
+     * @return the amount, negated for debits
+     */
+    static long signed(final TransactionType type, final long amountCents) {
+        return type.isCredit() ? amountCents : -amountCents;
+    }
+}
@@ -1,6 +1,8 @@
 package bankaccountadvanced;
 
+import java.time.Instant;
 import java.util.List;
+import java.util.stream.Stream;
 
 /**
  * Interface representing a generic bank account.
@@ -20,6 +22,17 @@ public interface BankAccount {
 	        throws InvalidAmountException,
 	               AccountFrozenException;
 
+    /**
+     * Deposits a specified number of centavos into the account.
+     *
+     * @param amountCents the amount to deposit in centavos
+     * @throws InvalidAmountException if the amount is zero or negative
+     * @throws AccountFrozenException if the account is currently frozen
+     */
+	void depositCents(final long amountCents)
+	        throws InvalidAmountException,
+	               AccountFrozenException;
+
     /**
      * Withdraws a specified amount from the account.
      *
@@ -33,6 +46,79 @@ public interface BankAccount {
 	               InsufficientFundsException,
 	               AccountFrozenException;
 
+    /**
+     * Withdraws a specified number of centavos from the account.
+     *
+     * @param amountCents the amount to withdraw in centavos
+     * @throws InvalidAmountException if the amount is zero or negative
+     * @throws InsufficientFundsException if the balance is insufficient
+     * @throws AccountFrozenException if the account is currently frozen
+     */
+	void withdrawCents(final long amountCents)
+	        throws InvalidAmountException,
+	               InsufficientFundsException,
+	               AccountFrozenException;
+
+    /**
+     * Deposits a specified amount into the account, reporting a rejection
+     * as a status instead of throwing.
+     *
+     * @param amount the amount to deposit
+     * @return OK, INVALID_AMOUNT or ACCOUNT_FROZEN
+     */
+	OperationStatus tryDeposit(final double amount);
+
+    /**
+     * Deposits a specified number of centavos into the account, reporting
+     * a rejection as a status instead of throwing.
+     *
+     * @param amountCents the amount to deposit in centavos
+     * @return OK, INVALID_AMOUNT or ACCOUNT_FROZEN
+     */
+	OperationStatus tryDepositCents(final long amountCents);
+
+    /**
+     * Withdraws a specified amount from the account, reporting a rejection
+     * as a status instead of throwing.
+     *
+     * @param amount the amount to withdraw
+     * @return OK, INVALID_AMOUNT, INSUFFICIENT_FUNDS or ACCOUNT_FROZEN
+     */
+	OperationStatus tryWithdraw(final double amount);
+
+    /**
+     * Withdraws a specified number of centavos from the account, reporting
+     * a rejection as a status instead of throwing.
+     *
+     * @param amountCents the amount to withdraw in centavos
+     * @return OK, INVALID_AMOUNT, INSUFFICIENT_FUNDS or ACCOUNT_FROZEN
+     */
+	OperationStatus tryWithdrawCents(final long amountCents);
+
+    /**
+     * Applies a batch of deposits and withdrawals in order, all or nothing.
+     * Every operation is validated against the balance left by the ones
+     * before it; if any would be rejected, none is applied.
+     *
+     * @param operations the operations to apply
+     * @throws InvalidAmountException if any amount is zero or negative
+     * @throws InsufficientFundsException if any withdrawal exceeds the balance
+     * @throws AccountFrozenException if the account is currently frozen
+     */
+	void applyBatch(final AccountOperation[] operations)
+	        throws InvalidAmountException,
+	               InsufficientFundsException,
+	               AccountFrozenException;
+
+    /**
+     * Applies a batch of deposits and withdrawals in order, skipping the
+     * ones that would be rejected.
+     *
+     * @param operations the operations to apply
+     * @return the outcome of each operation, in input order
+     */
+	OperationStatus[] applyBatchPartial(final AccountOperation[] operations);
+
     /**
      * Returns the current balance of the account.
      *
@@ -40,6 +126,13 @@ public interface BankAccount {
      */
     double getBalance();
 
+    /**
+     * Returns the current balance of the account in centavos.
+     *
+     * @return the account balance in centavos
+     */
+    long getBalanceCents();
+
     /**
      * Checks whether the account is frozen.
      *
@@ -57,10 +150,72 @@ public interface BankAccount {
      */
     void unfreezeAccount();
 
+    /**
+     * Returns running totals of the account's transactions.
+     *
+     * @return the account statistics
+     */
+    AccountStatistics getStatistics();
+
     /**
      * Retrieves the transaction history of the account.
      *
-     * @return a list of all transactions performed on the account
+     * @return a read-only list of all transactions performed on the account
      */
     List<Transaction> getTransactionHistory();
+
+    /**
+     * Returns a page of the transaction history, starting at a sequence
+     * number. Sequence numbers count the account's transactions from 0.
+     *
+     * @param fromSequence sequence number of the first transaction wanted
+     * @param limit        the largest number of transactions to return
+     * @return the page, which also tells where the next page starts
+     */
+    TransactionPage getTransactionPage(long fromSequence, int limit);
+
+    /**
+     * Streams the transaction history as of the call, oldest first,
+     * without copying it.
+     *
+     * @return a stream of the transaction history
+     */
+    Stream<Transaction> streamTransactions();
+
+    /**
+     * Streams the transactions recorded at or after a point in time,
+     * as of the call, oldest first, without copying them.
+     *
+     * @param timestamp the earliest time to include, in epoch milliseconds
+     * @return a stream of the matching transactions
+     */
+    Stream<Transaction> streamTransactionsSince(long timestamp);
+
+    /**
+     * Returns the balance as it stood at a point in time, after every
+     * transaction recorded at or before it.
+     *
+     * @param instant the point in time
+     * @return the balance at that time
+     */
+    double balanceAt(Instant instant);
+
+    /**
+     * Returns the balance in centavos as it stood at a point in time.
+     *
+     * @param instant the point in time
+     * @return the balance at that time in centavos
+     */
+    long balanceCentsAt(Instant instant);
+
+    /**
+     * Returns the transactions recorded at or after one point in time and
+     * before another, oldest first, each with its sequence number and the
+     * balance after it.
+     *
+     * @param from the earliest time to include
+     * @param to   the time to stop before
+     * @return a read-only list of the matching transactions
+     */
+    List<Transaction> historyBetween(Instant from, Instant to);
 }
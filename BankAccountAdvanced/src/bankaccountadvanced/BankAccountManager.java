@@ -1,39 +1,366 @@
 package bankaccountadvanced;
 
-import java.util.Map;
-import java.util.HashMap;
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 import java.util.stream.Collectors;
 
 /**
  * Manages multiple bank accounts, allowing addition, retrieval,
  * listing of accounts, and transaction filtering/sorting.
+ * <p>
+ * A manager created with a MutationListener, such as an AccountJournal,
+ * reports account creation and removal, transfers, and every mutation of
+ * its registered accounts to that listener.
+ * <p>
+ * Operation counts, latencies and lock contention of the manager and its
+ * accounts go to a MetricsSink, see {@link #setMetricsSink(MetricsSink)}.
+ * <p>
+ * Deposits, withdrawals and transfers can carry a client operation ID,
+ * e.g. {@link #tryDepositCents(long, int, long)}. A retry with the same
+ * ID returns the original outcome instead of applying the operation
+ * again, for as long as an OperationDedupCache remembers the ID.
  * Code Reviewer: MarkSayson
  */
 public class BankAccountManager {
 
-    /** Maps account IDs to BankAccount objects. */
-    private Map<Integer, BankAccount> accounts;
+    /** Stores the accounts and allocates their IDs. */
+    private final AccountRegistry accounts;
 
-    /** Tracks the next account ID to assign. */
-    private int nextAccountId;
+    /** Receives every mutation; null when mutations are not tracked. */
+    private final MutationListener listener;
+
+    /** Receives operation metrics; the no-op sink when metrics are off. */
+    private volatile MetricsSink metrics = MetricsSink.noOp();
+
+    /** Receives lookup metrics; the no-op sink unless the sink meters lookups. */
+    private volatile MetricsSink lookupMetrics = MetricsSink.noOp();
+
+    /** Outcomes of recent operations by ID; created on first use. */
+    private volatile OperationDedupCache operations;
 
     /**
-     * Constructs a new BankAccountManager with an empty account map
-     * and initializes the next account ID to 1.
+     * Constructs a new BankAccountManager backed by a concurrent registry.
+     * The first account added receives ID 1.
      */
     public BankAccountManager() {
-        accounts = new HashMap<>();
-        nextAccountId = 1;
+        this(new ConcurrentAccountRegistry());
+    }
+
+    /**
+     * Constructs a new BankAccountManager backed by the given registry.
+     *
+     * @param registry the registry used to store accounts
+     */
+    public BankAccountManager(AccountRegistry registry) {
+        this(registry, null);
+    }
+
+    /**
+     * Constructs a new BankAccountManager that reports mutations to a listener.
+     * Accounts already in the registry start reporting to it as well.
+     *
+     * @param registry         the registry used to store accounts
+     * @param mutationListener receives every mutation, or null
+     */
+    public BankAccountManager(AccountRegistry registry, MutationListener mutationListener) {
+        accounts = registry;
+        listener = mutationListener;
+        if (mutationListener != null) {
+            accounts.forEach((account, id) -> {
+                if (account instanceof AbstractBankAccount) {
+                    AbstractBankAccount tracked = (AbstractBankAccount) account;
+                    tracked.getLock().lock();
+                    try {
+                        tracked.attach(id, mutationListener);
+                    } finally {
+                        tracked.getLock().unlock();
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Rebuilds a manager from everything recorded in a journal, then keeps
+     * recording new mutations to the same journal.
+     *
+     * @param journal the journal to replay and append to
+     * @return the recovered manager
+     * @throws IOException if the journal cannot be read
+     */
+    public static BankAccountManager recover(AccountJournal journal) throws IOException {
+        return recover(journal, null);
+    }
+
+    /**
+     * Rebuilds a manager from the newest checkpoint in a directory plus the
+     * journal records written after it, then keeps recording new mutations
+     * to the journal. Without a checkpoint the whole journal is replayed.
+     *
+     * @param journal       the journal to replay and append to
+     * @param checkpointDir directory holding checkpoints, or null
+     * @return the recovered manager
+     * @throws IOException if the checkpoint or journal cannot be read
+     */
+    public static BankAccountManager recover(AccountJournal journal, Path checkpointDir)
+            throws IOException {
+        return recover(journal, checkpointDir, new ConcurrentAccountRegistry());
+    }
+
+    /**
+     * Rebuilds a manager into the given registry from the newest checkpoint
+     * in a directory plus the journal records written after it, then keeps
+     * recording new mutations to the journal. Use this to come back on the
+     * same kind of registry, e.g. a ShardedAccountRegistry, as before the
+     * restart.
+     *
+     * @param journal       the journal to replay and append to
+     * @param checkpointDir directory holding checkpoints, or null
+     * @param registry      an empty registry to restore the accounts into
+     * @return the recovered manager
+     * @throws IOException if the checkpoint or journal cannot be read
+     * @throws IllegalArgumentException if the registry is not empty
+     */
+    public static BankAccountManager recover(AccountJournal journal, Path checkpointDir,
+            AccountRegistry registry) throws IOException {
+        if (registry.size() != 0) {
+            throw new IllegalArgumentException("Registry to recover into must be empty");
+        }
+        BankAccountManager rebuilt = new BankAccountManager(registry);
+        AccountCheckpoint checkpoint = checkpointDir == null
+                ? null : AccountCheckpoint.loadLatest(checkpointDir);
+        long fromLsn = 0L;
+        long fromOffset = 0L;
+        if (checkpoint != null) {
+            checkpoint.restoreInto(rebuilt.accounts);
+            fromLsn = checkpoint.getLsn();
+            fromOffset = checkpoint.getJournalOffset();
+        }
+        long startLsn = fromLsn;
+        journal.replay(fromOffset, (mutation, lsn) -> {
+            if (lsn > startLsn) {
+                rebuilt.replay(mutation, lsn);
+            }
+        });
+        return new BankAccountManager(rebuilt.accounts, journal);
+    }
+
+    /**
+     * Returns the registry holding this manager's accounts.
+     *
+     * @return the account registry
+     */
+    AccountRegistry getRegistry() {
+        return accounts;
+    }
+
+    /**
+     * Returns the listener this manager reports mutations to.
+     *
+     * @return the mutation listener, or null if none
+     */
+    MutationListener getMutationListener() {
+        return listener;
+    }
+
+    /**
+     * Applies a recorded mutation without validating or reporting it.
+     * Each account only applies mutations newer than the last one it has
+     * seen, so records already covered by a checkpoint are skipped.
+     * Mutations of accounts that no longer exist are ignored.
+     *
+     * @param mutation the mutation to apply
+     * @param lsn      the mutation's log sequence number
+     */
+    void replay(Mutation mutation, long lsn) {
+        int accountId = mutation.getAccountId();
+        AbstractBankAccount account = lockable(accounts.lookup(accountId));
+        switch (mutation.getType()) {
+            case CREATE_ACCOUNT:
+                if (account == null) {
+                    SavingsAccount created = new SavingsAccount(mutation.getOwnerName());
+                    created.restoreState(mutation.getAmountCents(), false);
+                    created.getLock().lock();
+                    try {
+                        created.setLastLsn(lsn);
+                    } finally {
+                        created.getLock().unlock();
+                    }
+                    accounts.restore(accountId, created);
+                }
+                return;
+            case REMOVE_ACCOUNT:
+                accounts.remove(accountId);
+                return;
+            case TRANSFER:
+                AbstractBankAccount target = lockable(accounts.lookup(mutation.getTargetId()));
+                replayOn(account, TransactionType.TRANSFER_OUT, mutation, lsn);
+                replayOn(target, TransactionType.TRANSFER_IN, mutation, lsn);
+                return;
+            case DEPOSIT:
+                replayOn(account, TransactionType.DEPOSIT, mutation, lsn);
+                return;
+            case WITHDRAW:
+                replayOn(account, TransactionType.WITHDRAW, mutation, lsn);
+                return;
+            case INTEREST:
+                replayOn(account, TransactionType.INTEREST, mutation, lsn);
+                if (account instanceof SavingsAccount) {
+                    account.getLock().lock();
+                    try {
+                        ((SavingsAccount) account).restoreAccrualDay(mutation.getTargetId());
+                    } finally {
+                        account.getLock().unlock();
+                    }
+                }
+                return;
+            default:
+                replayOn(account, null, mutation, lsn);
+                return;
+        }
+    }
+
+    /**
+     * Applies one side of a recorded mutation to an account, unless the
+     * account is missing or has already seen the mutation.
+     *
+     * @param account  the account, possibly null
+     * @param type     the transaction to record, or null for freeze/unfreeze
+     * @param mutation the mutation to apply
+     * @param lsn      the mutation's log sequence number
+     */
+    private static void replayOn(AbstractBankAccount account, TransactionType type,
+            Mutation mutation, long lsn) {
+        if (account == null) {
+            return;
+        }
+        account.getLock().lock();
+        try {
+            if (lsn <= account.getLastLsn()) {
+                return;
+            }
+            if (type == null) {
+                account.restoreState(account.getBalanceCents(),
+                        mutation.getType() == MutationType.FREEZE);
+            } else if (type.isCredit()) {
+                account.applyDeposit(type, mutation.getAmountCents(), mutation.getTimestamp());
+            } else {
+                account.applyWithdraw(type, mutation.getAmountCents(), mutation.getTimestamp());
+            }
+            account.setLastLsn(lsn);
+        } finally {
+            account.getLock().unlock();
+        }
+    }
+
+    /**
+     * Sets where this manager and its accounts report operation counts,
+     * latencies and lock contention. Accounts added later report there
+     * too. Pass {@link MetricsSink#noOp()} to turn metrics off again.
+     *
+     * @param sink the metrics sink
+     */
+    public void setMetricsSink(MetricsSink sink) {
+        if (sink == null) {
+            throw new IllegalArgumentException("Metrics sink must not be null");
+        }
+        metrics = sink;
+        lookupMetrics = sink.meterLookups() ? sink : MetricsSink.noOp();
+        accounts.forEach((account, id) -> {
+            if (account instanceof AbstractBankAccount) {
+                ((AbstractBankAccount) account).attachMetrics(sink);
+            }
+        });
+    }
+
+    /**
+     * Returns where this manager reports metrics.
+     *
+     * @return the metrics sink; the no-op sink unless one was set
+     */
+    public MetricsSink getMetricsSink() {
+        return metrics;
+    }
+
+    /**
+     * Sets the cache that remembers operation IDs, replacing the current
+     * one. Operations remembered only by the old cache are forgotten.
+     *
+     * @param cache the dedup cache
+     */
+    public void setDedupCache(OperationDedupCache cache) {
+        if (cache == null) {
+            throw new IllegalArgumentException("Dedup cache must not be null");
+        }
+        operations = cache;
+    }
+
+    /**
+     * Returns the cache that remembers operation IDs, creating one with
+     * the default capacity and retention if none was set.
+     *
+     * @return the dedup cache
+     */
+    public OperationDedupCache getDedupCache() {
+        OperationDedupCache cache = operations;
+        if (cache != null) {
+            return cache;
+        }
+        synchronized (this) {
+            if (operations == null) {
+                operations = new OperationDedupCache(OperationDedupCache.DEFAULT_MAX_ENTRIES,
+                        OperationDedupCache.DEFAULT_RETENTION);
+            }
+            return operations;
+        }
     }
 
     /**
      * Adds a BankAccount to the manager and assigns a unique account ID.
+     * Safe to call from multiple threads. If mutations are tracked, the
+     * account's current balance is recorded as its opening balance.
      *
      * @param account the BankAccount to add
+     * @return the ID assigned to the account
      */
-    public void addAccount(BankAccount account) {
-        accounts.put(nextAccountId++, account);
+    public int addAccount(BankAccount account) {
+        if (account instanceof AbstractBankAccount) {
+            ((AbstractBankAccount) account).attachMetrics(metrics);
+        }
+        MutationListener current = listener;
+        if (current == null || !(account instanceof AbstractBankAccount)) {
+            return accounts.register(account);
+        }
+        AbstractBankAccount tracked = (AbstractBankAccount) account;
+        int accountId;
+        long ticket;
+        tracked.getLock().lock();
+        try {
+            accountId = accounts.register(account);
+            long now = System.currentTimeMillis();
+            String owner = account instanceof SavingsAccount
+                    ? ((SavingsAccount) account).getOwnerName() : null;
+            Mutation[] created = {
+                new Mutation(MutationType.CREATE_ACCOUNT,
+                        accountId, 0, tracked.getBalanceCents(), now, owner),
+                new Mutation(MutationType.FREEZE, accountId, 0, 0L, now, null)
+            };
+            try {
+                ticket = current.onMutations(created, tracked.isFrozen() ? 2 : 1);
+            } catch (RuntimeException | Error e) {
+                // Not recorded, so not added either
+                accounts.remove(accountId);
+                throw e;
+            }
+            tracked.attach(accountId, current);
+            tracked.setLastLsn(ticket);
+        } finally {
+            tracked.getLock().unlock();
+        }
+        current.awaitDurable(ticket);
+        return accountId;
     }
 
     /**
@@ -43,27 +370,497 @@ public class BankAccountManager {
      * @return the BankAccount associated with the ID, or null if not found
      */
     public BankAccount getAccount(int accountId) {
-        return accounts.get(accountId);
+        MetricsSink sink = lookupMetrics;
+        if (sink == MetricsSink.noOp()) {
+            return accounts.lookup(accountId);
+        }
+        if (!sink.sampleLatency()) {
+            BankAccount account = accounts.lookup(accountId);
+            sink.recordOutcome(MeteredOperation.LOOKUP, account == null
+                    ? OperationStatus.ACCOUNT_NOT_FOUND : OperationStatus.OK);
+            return account;
+        }
+        long start = System.nanoTime();
+        BankAccount account = accounts.lookup(accountId);
+        sink.recordOperation(MeteredOperation.LOOKUP, account == null
+                ? OperationStatus.ACCOUNT_NOT_FOUND : OperationStatus.OK,
+                System.nanoTime() - start);
+        return account;
+    }
+
+    /**
+     * Removes a BankAccount from the manager.
+     * The removed account's ID is never handed out again.
+     *
+     * @param accountId the ID of the account to remove
+     * @return the removed BankAccount, or null if not found
+     */
+    public BankAccount removeAccount(int accountId) {
+        MutationListener current = listener;
+        BankAccount account = accounts.lookup(accountId);
+        if (current == null || !(account instanceof AbstractBankAccount)) {
+            account = accounts.remove(accountId);
+        } else {
+            // Recorded before it is removed, under the account's lock, so a
+            // listener that throws leaves the account in place
+            AbstractBankAccount tracked = (AbstractBankAccount) account;
+            long ticket;
+            tracked.getLock().lock();
+            try {
+                if (accounts.lookup(accountId) != account) {
+                    return null;
+                }
+                ticket = current.onMutation(new Mutation(MutationType.REMOVE_ACCOUNT,
+                        accountId, 0, 0L, System.currentTimeMillis(), null));
+                accounts.remove(accountId);
+                tracked.attach(accountId, null);
+            } finally {
+                tracked.getLock().unlock();
+            }
+            current.awaitDurable(ticket);
+        }
+        if (account instanceof AbstractBankAccount) {
+            ((AbstractBankAccount) account).attachMetrics(MetricsSink.noOp());
+        }
+        return account;
+    }
+
+    /**
+     * Closes an account: freezes it so no further deposits or withdrawals
+     * succeed, then removes it from the manager.
+     *
+     * @param accountId the ID of the account to close
+     * @return the closed BankAccount, or null if not found
+     */
+    public BankAccount closeAccount(int accountId) {
+        BankAccount account = accounts.lookup(accountId);
+        if (account == null) {
+            return null;
+        }
+        account.freezeAccount();
+        return removeAccount(accountId);
+    }
+
+    /**
+     * Returns the number of accounts currently managed.
+     *
+     * @return the account count
+     */
+    public int getAccountCount() {
+        return accounts.size();
+    }
+
+    /**
+     * Moves money from one account to another as a single atomic step.
+     * Both account locks are held while the money moves, always locking
+     * the lower account ID first so concurrent transfers cannot deadlock.
+     *
+     * @param fromId the ID of the account to debit
+     * @param toId   the ID of the account to credit
+     * @param amount the amount to transfer
+     * @throws AccountNotFoundException if either account does not exist
+     * @throws InvalidAmountException if amount is zero or negative
+     * @throws InsufficientFundsException if the source balance is too low
+     * @throws AccountFrozenException if either account is frozen
+     */
+    public void transfer(int fromId, int toId, double amount)
+            throws AccountNotFoundException,
+            InvalidAmountException,
+            InsufficientFundsException,
+            AccountFrozenException {
+        transferCents(fromId, toId, Money.toCents(amount));
+    }
+
+    /**
+     * Moves a number of centavos from one account to another as a single
+     * atomic step. See {@link #transfer(int, int, double)}.
+     *
+     * @param fromId      the ID of the account to debit
+     * @param toId        the ID of the account to credit
+     * @param amountCents the amount to transfer in centavos
+     * @throws AccountNotFoundException if either account does not exist
+     * @throws InvalidAmountException if amount is zero or negative
+     * @throws InsufficientFundsException if the source balance is too low
+     * @throws AccountFrozenException if either account is frozen
+     */
+    public void transferCents(int fromId, int toId, long amountCents)
+            throws AccountNotFoundException,
+            InvalidAmountException,
+            InsufficientFundsException,
+            AccountFrozenException {
+        switch (tryTransferCents(fromId, toId, amountCents)) {
+            case OK:
+                return;
+            case ACCOUNT_NOT_FOUND:
+                throw new AccountNotFoundException("Account not found: "
+                        + (accounts.lookup(fromId) == null ? fromId : toId));
+            case INVALID_AMOUNT:
+                throw new InvalidAmountException(
+                        "Transfer amount must be positive");
+            case INSUFFICIENT_FUNDS:
+                throw new InsufficientFundsException("Insufficient funds");
+            default:
+                throw new AccountFrozenException("Account is frozen");
+        }
+    }
+
+    /**
+     * Runs many transfers in one call. Each transfer is atomic on its own;
+     * a rejected transfer does not affect the others.
+     *
+     * @param fromIds the IDs of the accounts to debit
+     * @param toIds   the IDs of the accounts to credit
+     * @param amounts the amounts to transfer
+     * @return the outcome of each transfer, in input order
+     */
+    public OperationStatus[] transferBatch(int[] fromIds, int[] toIds, double[] amounts) {
+        long[] amountsCents = new long[amounts.length];
+        for (int i = 0; i < amounts.length; i++) {
+            amountsCents[i] = Money.toCents(amounts[i]);
+        }
+        return transferBatchCents(fromIds, toIds, amountsCents);
+    }
+
+    /**
+     * Runs many centavo transfers in one call.
+     * See {@link #transferBatch(int[], int[], double[])}.
+     *
+     * @param fromIds      the IDs of the accounts to debit
+     * @param toIds        the IDs of the accounts to credit
+     * @param amountsCents the amounts to transfer in centavos
+     * @return the outcome of each transfer, in input order
+     */
+    public OperationStatus[] transferBatchCents(int[] fromIds, int[] toIds,
+            long[] amountsCents) {
+        if (fromIds.length != toIds.length || fromIds.length != amountsCents.length) {
+            throw new IllegalArgumentException("Batch arrays must have the same length");
+        }
+        OperationStatus[] results = new OperationStatus[amountsCents.length];
+        for (int i = 0; i < amountsCents.length; i++) {
+            results[i] = tryTransferCents(fromIds[i], toIds[i], amountsCents[i]);
+        }
+        return results;
+    }
+
+    /**
+     * Moves money from one account to another, reporting a rejection as a
+     * status instead of throwing. The amount is rounded to the nearest
+     * centavo. See {@link #transfer(int, int, double)}.
+     *
+     * @param fromId the ID of the account to debit
+     * @param toId   the ID of the account to credit
+     * @param amount the amount to transfer
+     * @return the outcome of the transfer
+     */
+    public OperationStatus tryTransfer(int fromId, int toId, double amount) {
+        return tryTransferCents(fromId, toId, Money.toCents(amount));
+    }
+
+    /**
+     * Moves centavos from one account to another, reporting a rejection as
+     * a status instead of throwing. See {@link #transfer(int, int, double)}.
+     *
+     * @param fromId      the ID of the account to debit
+     * @param toId        the ID of the account to credit
+     * @param amountCents the amount to transfer in centavos
+     * @return the outcome of the transfer
+     * @throws IllegalArgumentException if both IDs are the same
+     */
+    public OperationStatus tryTransferCents(int fromId, int toId, long amountCents) {
+        MetricsSink sink = metrics;
+        if (sink == MetricsSink.noOp()) {
+            return transferUnmetered(fromId, toId, amountCents);
+        }
+        if (!sink.sampleLatency()) {
+            OperationStatus status = transferUnmetered(fromId, toId, amountCents);
+            sink.recordOutcome(MeteredOperation.TRANSFER, status);
+            return status;
+        }
+        long start = System.nanoTime();
+        OperationStatus status = transferUnmetered(fromId, toId, amountCents);
+        sink.recordOperation(MeteredOperation.TRANSFER, status, System.nanoTime() - start);
+        return status;
+    }
+
+    /**
+     * Deposits centavos into an account at most once per operation ID.
+     * If the ID was already used, nothing is deposited and the outcome of
+     * the first deposit is returned, including a rejection; a retry that
+     * arrives while the first is still running waits for it.
+     *
+     * @param operationId the client's ID for this deposit
+     * @param accountId   the ID of the account to credit
+     * @param amountCents the amount to deposit in centavos
+     * @return the outcome of the deposit
+     * @throws IllegalArgumentException if the ID was used for a different
+     *                                  operation
+     */
+    public OperationStatus tryDepositCents(long operationId, int accountId, long amountCents) {
+        return getDedupCache().execute(operationId, OperationDedupCache.fingerprint(
+                MutationType.DEPOSIT.code(), accountId, 0, amountCents), () -> {
+                    BankAccount account = accounts.lookup(accountId);
+                    return account == null ? OperationStatus.ACCOUNT_NOT_FOUND
+                            : account.tryDepositCents(amountCents);
+                });
+    }
+
+    /**
+     * Withdraws centavos from an account at most once per operation ID.
+     * See {@link #tryDepositCents(long, int, long)}.
+     *
+     * @param operationId the client's ID for this withdrawal
+     * @param accountId   the ID of the account to debit
+     * @param amountCents the amount to withdraw in centavos
+     * @return the outcome of the withdrawal
+     * @throws IllegalArgumentException if the ID was used for a different
+     *                                  operation
+     */
+    public OperationStatus tryWithdrawCents(long operationId, int accountId, long amountCents) {
+        return getDedupCache().execute(operationId, OperationDedupCache.fingerprint(
+                MutationType.WITHDRAW.code(), accountId, 0, amountCents), () -> {
+                    BankAccount account = accounts.lookup(accountId);
+                    return account == null ? OperationStatus.ACCOUNT_NOT_FOUND
+                            : account.tryWithdrawCents(amountCents);
+                });
+    }
+
+    /**
+     * Moves centavos between accounts at most once per operation ID.
+     * See {@link #tryDepositCents(long, int, long)} and
+     * {@link #transfer(int, int, double)}.
+     *
+     * @param operationId the client's ID for this transfer
+     * @param fromId      the ID of the account to debit
+     * @param toId        the ID of the account to credit
+     * @param amountCents the amount to transfer in centavos
+     * @return the outcome of the transfer
+     * @throws IllegalArgumentException if both account IDs are the same or
+     *                                  the ID was used for a different
+     *                                  operation
+     */
+    public OperationStatus tryTransferCents(long operationId, int fromId, int toId,
+            long amountCents) {
+        return getDedupCache().execute(operationId, OperationDedupCache.fingerprint(
+                MutationType.TRANSFER.code(), fromId, toId, amountCents),
+                () -> tryTransferCents(fromId, toId, amountCents));
+    }
+
+    /**
+     * Performs a transfer without reporting it to the metrics sink.
+     *
+     * @param fromId      the ID of the account to debit
+     * @param toId        the ID of the account to credit
+     * @param amountCents the amount to transfer in centavos
+     * @return the outcome of the transfer
+     */
+    private OperationStatus transferUnmetered(int fromId, int toId, long amountCents) {
+        if (fromId == toId) {
+            throw new IllegalArgumentException("Cannot transfer to the same account");
+        }
+        AbstractBankAccount from = lockable(accounts.lookup(fromId));
+        AbstractBankAccount to = lockable(accounts.lookup(toId));
+        if (from == null || to == null) {
+            return OperationStatus.ACCOUNT_NOT_FOUND;
+        }
+        AbstractBankAccount first = fromId < toId ? from : to;
+        AbstractBankAccount second = fromId < toId ? to : from;
+        MutationListener current = listener;
+        OperationStatus status;
+        long ticket = 0L;
+        first.acquireLock();
+        try {
+            second.acquireLock();
+            try {
+                status = from.checkWithdraw(amountCents);
+                if (status == OperationStatus.OK) {
+                    status = to.checkDeposit(amountCents);
+                }
+                if (status == OperationStatus.OK) {
+                    long now = System.currentTimeMillis();
+                    // Journal before changing memory; overflow fails before either
+                    to.creditedBalance(amountCents);
+                    if (current != null) {
+                        ticket = current.onMutation(new Mutation(MutationType.TRANSFER,
+                                fromId, toId, amountCents, now, null));
+                        from.setLastLsn(ticket);
+                        to.setLastLsn(ticket);
+                    }
+                    from.applyWithdraw(TransactionType.TRANSFER_OUT, amountCents, now);
+                    to.applyDeposit(TransactionType.TRANSFER_IN, amountCents, now);
+                }
+            } finally {
+                second.getLock().unlock();
+            }
+        } finally {
+            first.getLock().unlock();
+        }
+        if (ticket != 0L) {
+            current.awaitDurable(ticket);
+        }
+        return status;
+    }
+
+    /**
+     * Casts an account to the type whose lock guards its balance.
+     *
+     * @param account the account, possibly null
+     * @return the account as an AbstractBankAccount, or null if account is null
+     * @throws UnsupportedOperationException if the account cannot be locked
+     */
+    private static AbstractBankAccount lockable(BankAccount account) {
+        if (account == null || account instanceof AbstractBankAccount) {
+            return (AbstractBankAccount) account;
+        }
+        throw new UnsupportedOperationException(
+                "Transfers require AbstractBankAccount instances");
     }
 
     /**
      * Lists all accounts and their current balances.
      */
     public void listAccounts() {
-        accounts.forEach((id, account) ->
+        accounts.forEach((account, id) ->
                 System.out.println("Account ID: " + id + ", Balance: Php " + account.getBalance()));
     }
 
+    /**
+     * Returns bank-wide totals by combining the running statistics of
+     * every account, without scanning any transaction history.
+     *
+     * @return the combined statistics of all accounts
+     */
+    public AccountStatistics getStatistics() {
+        AccountStatistics[] total = {AccountStatistics.EMPTY};
+        accounts.forEach((account, id) -> total[0] = total[0].combine(account.getStatistics()));
+        return total[0];
+    }
+
+    /**
+     * Returns queries over the transaction histories of all accounts,
+     * run in parallel on the common ForkJoinPool.
+     *
+     * @return the analytics for this manager
+     */
+    public TransactionAnalytics analytics() {
+        return analytics(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Returns queries over the transaction histories of all accounts,
+     * run in parallel on the given pool.
+     *
+     * @param pool the pool the queries run on
+     * @return the analytics for this manager
+     */
+    public TransactionAnalytics analytics(ForkJoinPool pool) {
+        return new TransactionAnalytics(this, pool);
+    }
+
+    /**
+     * Creates SavingsAccounts from a CSV file of {@code owner,balance}
+     * rows, parsing the file in parallel on the common ForkJoinPool.
+     *
+     * @param file the file to import
+     * @return the number of accounts added
+     * @throws IOException if the file cannot be read or a row is malformed
+     * @see #importAccounts(Path, ForkJoinPool)
+     */
+    public long importAccounts(Path file) throws IOException {
+        return importAccounts(file, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Creates SavingsAccounts from a CSV file with one {@code owner,balance}
+     * row per account, where the owner is everything before the last comma
+     * and the balance, in pesos with at most two decimals, becomes the
+     * account's opening deposit. Blank rows are skipped.
+     * <p>
+     * The file is parsed in parallel byte ranges. Every row is validated
+     * before any account is added, so a malformed file adds nothing; the
+     * accounts are then added in file order. With a
+     * ConcurrentAccountRegistry they receive consecutive IDs unless other
+     * threads add accounts at the same time; a ShardedAccountRegistry
+     * spreads them over its shards, so their IDs do not follow file order.
+     *
+     * @param file the file to import
+     * @param pool the pool the file is parsed on
+     * @return the number of accounts added
+     * @throws IOException if the file cannot be read or a row is malformed
+     */
+    public long importAccounts(Path file, ForkJoinPool pool) throws IOException {
+        return AccountImporter.importCsv(this, file, pool);
+    }
+
+    /**
+     * Writes the transaction history of every account to a file,
+     * replacing it. Each account's history is written as of the moment
+     * the export reaches it; deposits may continue meanwhile.
+     *
+     * @param file   the file to write
+     * @param format the file format
+     * @return the number of transactions written
+     * @throws IOException if the file cannot be written
+     */
+    public long exportTransactions(Path file, ExportFormat format) throws IOException {
+        return TransactionExporter.export(this, file, format);
+    }
+
     /**
      * Filters transactions in the given list above a specified amount.
+     * A transaction is kept exactly when its getAmount() is greater than
+     * the threshold, so a threshold between two centavos, e.g. 500.005,
+     * keeps 500.01 but not 500.00. A NaN or positive infinite threshold
+     * keeps nothing and a negative infinite one keeps everything.
      *
      * @param amount the threshold amount
      * @param txList the list of transactions to filter
      * @return a list of transactions with amounts greater than the specified amount
      */
     public List<Transaction> filterTransactionsAbove(double amount, List<Transaction> txList) {
+        return filterTransactionsAboveCents(centsNotAbove(amount), txList);
+    }
+
+    /**
+     * Returns the largest centavo amount whose peso value is not greater
+     * than a threshold, so that a transaction's centavos exceed it exactly
+     * when its peso amount exceeds the threshold.
+     *
+     * @param amount the threshold amount
+     * @return the threshold in centavos
+     */
+    private static long centsNotAbove(double amount) {
+        if (Double.isNaN(amount) || amount >= Money.toAmount(Long.MAX_VALUE)) {
+            return Long.MAX_VALUE;
+        }
+        if (amount < Money.toAmount(Long.MIN_VALUE)) {
+            return Long.MIN_VALUE;
+        }
+        long cents = (long) Math.floor(amount * Money.CENTS_PER_PESO);
+        // The product may round across a centavo, e.g. 0.29 * 100 = 28.999...
+        while (cents < Long.MAX_VALUE && Money.toAmount(cents + 1) <= amount) {
+            cents++;
+        }
+        while (cents > Long.MIN_VALUE && Money.toAmount(cents) > amount) {
+            cents--;
+        }
+        return cents;
+    }
+
+    /**
+     * Filters transactions in the given list above a specified centavo amount.
+     *
+     * @param amountCents the threshold amount in centavos
+     * @param txList      the list of transactions to filter
+     * @return a list of transactions with amounts greater than the threshold
+     */
+    public List<Transaction> filterTransactionsAboveCents(long amountCents,
+            List<Transaction> txList) {
+        TransactionLedger ledger = AbstractTransactionLedger.backingLedger(txList);
+        if (ledger != null) {
+            return ledger.filterAbove(amountCents);
+        }
         return txList.stream()
-                .filter(tx -> tx.getAmount() > amount)
+                .filter(tx -> tx.getAmountCents() > amountCents)
                 .collect(Collectors.toList());
     }
 
@@ -74,8 +871,12 @@ public class BankAccountManager {
      * @return a list of transactions sorted by amount
      */
     public List<Transaction> sortTransactionsByAmount(List<Transaction> txList) {
+        TransactionLedger ledger = AbstractTransactionLedger.backingLedger(txList);
+        if (ledger != null) {
+            return ledger.sortedByAmount();
+        }
         return txList.stream()
-                .sorted((t1, t2) -> Double.compare(t1.getAmount(), t2.getAmount()))
+                .sorted((t1, t2) -> Long.compare(t1.getAmountCents(), t2.getAmountCents()))
                 .collect(Collectors.toList());
     }
 }
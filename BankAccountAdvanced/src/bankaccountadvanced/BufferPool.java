@@ -0,0 +1,78 @@
+package bankaccountadvanced;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A bounded pool of equally sized heap ByteBuffers, so bulk readers and
+ * writers reuse their I/O buffers across chunks and calls instead of
+ * allocating a large buffer each time. Heap buffers are used because
+ * the callers parse and format bytes through the backing array.
+ * Code Reviewer: MarkSayson
+ */
+final class BufferPool {
+
+    /** Capacity of every buffer. */
+    private final int bufferSize;
+
+    /** Largest number of idle buffers kept. */
+    private final int maxIdle;
+
+    /** Idle buffers. */
+    private final ConcurrentLinkedQueue<ByteBuffer> idle;
+
+    /** Number of buffers in idle; may briefly overshoot maxIdle by the number of releasing threads. */
+    private final AtomicInteger idleCount;
+
+    /**
+     * Constructs a BufferPool.
+     *
+     * @param size     capacity of every buffer in bytes
+     * @param maxKept  largest number of idle buffers kept
+     */
+    BufferPool(final int size, final int maxKept) {
+        this.bufferSize = size;
+        this.maxIdle = maxKept;
+        this.idle = new ConcurrentLinkedQueue<>();
+        this.idleCount = new AtomicInteger();
+    }
+
+    /**
+     * Returns the capacity of the pool's buffers.
+     *
+     * @return the buffer size in bytes
+     */
+    int bufferSize() {
+        return bufferSize;
+    }
+
+    /**
+     * Takes an idle buffer, or allocates one if none is idle.
+     *
+     * @return a cleared buffer backed by an array
+     */
+    ByteBuffer acquire() {
+        ByteBuffer buffer = idle.poll();
+        if (buffer == null) {
+            return ByteBuffer.allocate(bufferSize);
+        }
+        idleCount.decrementAndGet();
+        buffer.clear();
+        return buffer;
+    }
+
+    /**
+     * Returns a buffer to the pool. It is dropped if enough buffers are
+     * already idle or it was not taken from this pool.
+     *
+     * @param buffer the buffer, which the caller must no longer use
+     */
+    void release(final ByteBuffer buffer) {
+        if (buffer.capacity() != bufferSize || idleCount.get() >= maxIdle) {
+            return;
+        }
+        idleCount.incrementAndGet();
+        idle.offer(buffer);
+    }
+}
@@ -0,0 +1,113 @@
+package bankaccountadvanced;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Takes AccountCheckpoints of a journaled BankAccountManager on a fixed
+ * schedule and deletes old ones, so recovery only has to replay the
+ * journal records written since the newest checkpoint.
+ * Code Reviewer: MarkSayson
+ */
+public class CheckpointScheduler implements Closeable {
+
+    /** The manager to checkpoint. */
+    private final BankAccountManager manager;
+
+    /** The journal the manager records to. */
+    private final AccountJournal journal;
+
+    /** Directory checkpoints are written to. */
+    private final Path directory;
+
+    /** Number of checkpoints to keep. */
+    private final int retained;
+
+    /** Runs the periodic checkpoints. */
+    private final ScheduledExecutorService executor;
+
+    /** The most recent failure of a scheduled checkpoint, if any. */
+    private volatile IOException lastFailure;
+
+    /**
+     * Constructs a CheckpointScheduler. Nothing runs until {@link #start}.
+     *
+     * @param accountManager the manager to checkpoint
+     * @param accountJournal the journal the manager records to
+     * @param checkpointDir  directory checkpoints are written to
+     * @param keep           number of checkpoints to keep, at least 1
+     */
+    public CheckpointScheduler(BankAccountManager accountManager,
+            AccountJournal accountJournal, Path checkpointDir, int keep) {
+        if (keep < 1) {
+            throw new IllegalArgumentException("Must keep at least one checkpoint");
+        }
+        this.manager = accountManager;
+        this.journal = accountJournal;
+        this.directory = checkpointDir;
+        this.retained = keep;
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "account-checkpointer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Starts taking a checkpoint at a fixed interval.
+     *
+     * @param period time between checkpoints
+     * @param unit   unit of the period
+     */
+    public void start(long period, TimeUnit unit) {
+        executor.scheduleWithFixedDelay(() -> {
+            try {
+                checkpointNow();
+                lastFailure = null;
+            } catch (IOException e) {
+                lastFailure = e;
+            } catch (UncheckedIOException e) {
+                lastFailure = e.getCause();
+            }
+        }, period, period, unit);
+    }
+
+    /**
+     * Takes a checkpoint immediately and prunes old ones.
+     *
+     * @return the written checkpoint
+     * @throws IOException if the checkpoint cannot be written
+     */
+    public synchronized AccountCheckpoint checkpointNow() throws IOException {
+        AccountCheckpoint checkpoint = AccountCheckpoint.write(manager, journal, directory);
+        AccountCheckpoint.prune(directory, retained);
+        return checkpoint;
+    }
+
+    /**
+     * Returns the failure of the most recent scheduled checkpoint.
+     *
+     * @return the failure, or null if the last checkpoint succeeded
+     */
+    public IOException getLastFailure() {
+        return lastFailure;
+    }
+
+    /**
+     * Stops taking checkpoints and waits for a running one to finish.
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
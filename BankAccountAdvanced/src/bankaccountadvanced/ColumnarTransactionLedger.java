@@ -0,0 +1,177 @@
+package bankaccountadvanced;
+
+import java.util.Arrays;
+
+/**
+ * TransactionLedger that stores history in parallel primitive arrays:
+ * the type as a byte code, the amount and the timestamp as longs.
+ * The first chunk starts small and doubles until it reaches full size, so
+ * accounts with short histories stay cheap; after that storage grows one
+ * fixed-size chunk at a time, so appends never copy more than one chunk
+ * and no object is allocated per transaction.
+ * Code Reviewer: MarkSayson
+ */
+public class ColumnarTransactionLedger extends AbstractTransactionLedger {
+
+    /** log2 of the number of entries per chunk. */
+    private static final int CHUNK_SHIFT = 13;
+
+    /** Number of entries per chunk. */
+    private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+
+    /** Mask selecting the offset inside a chunk. */
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    /** Initial capacity of the first chunk. */
+    private static final int INITIAL_CAPACITY = 16;
+
+    /** Type codes, one chunk per outer element. */
+    private byte[][] types;
+
+    /** Amounts in centavos, one chunk per outer element. */
+    private long[][] amounts;
+
+    /** Timestamps in epoch milliseconds, one chunk per outer element. */
+    private long[][] timestamps;
+
+    /** Number of entries written; published after the entry's columns. */
+    private volatile int size;
+
+    /**
+     * Constructs an empty ledger.
+     */
+    public ColumnarTransactionLedger() {
+        super();
+        this.types = new byte[0][];
+        this.amounts = new long[0][];
+        this.timestamps = new long[0][];
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void append(final TransactionType type, final long amountCents,
+            final long timestamp) {
+        int index = size;
+        int chunk = index >>> CHUNK_SHIFT;
+        int offset = index & CHUNK_MASK;
+        if (chunk == types.length) {
+            addChunk();
+        } else if (chunk == 0 && offset == types[0].length) {
+            growFirstChunk();
+        }
+        types[chunk][offset] = type.code();
+        amounts[chunk][offset] = amountCents;
+        timestamps[chunk][offset] = timestamp;
+        size = index + 1;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Copies the amounts chunk by chunk and publishes all entries at once.
+     */
+    @Override
+    public void appendAll(final TransactionType[] typesToAdd,
+            final long[] amountsCents, final int count, final long timestamp) {
+        int index = size;
+        int done = 0;
+        while (done < count) {
+            int chunk = index >>> CHUNK_SHIFT;
+            int offset = index & CHUNK_MASK;
+            if (chunk == types.length) {
+                addChunk();
+            } else if (chunk == 0 && offset == types[0].length) {
+                growFirstChunk();
+            }
+            int n = Math.min(count - done, types[chunk].length - offset);
+            byte[] typeChunk = types[chunk];
+            for (int i = 0; i < n; i++) {
+                typeChunk[offset + i] = typesToAdd[done + i].code();
+            }
+            System.arraycopy(amountsCents, done, amounts[chunk], offset, n);
+            Arrays.fill(timestamps[chunk], offset, offset + n, timestamp);
+            done += n;
+            index += n;
+        }
+        size = index;
+    }
+
+    /**
+     * Allocates one more chunk in every column.
+     */
+    private void addChunk() {
+        int chunks = types.length;
+        byte[][] newTypes = Arrays.copyOf(types, chunks + 1);
+        long[][] newAmounts = Arrays.copyOf(amounts, chunks + 1);
+        long[][] newTimestamps = Arrays.copyOf(timestamps, chunks + 1);
+        int capacity = chunks == 0 ? INITIAL_CAPACITY : CHUNK_SIZE;
+        newTypes[chunks] = new byte[capacity];
+        newAmounts[chunks] = new long[capacity];
+        newTimestamps[chunks] = new long[capacity];
+        types = newTypes;
+        amounts = newAmounts;
+        timestamps = newTimestamps;
+    }
+
+    /**
+     * Doubles the capacity of the first chunk. Readers holding the old
+     * arrays still see every entry published before the copy.
+     */
+    private void growFirstChunk() {
+        int capacity = Math.min(types[0].length * 2, CHUNK_SIZE);
+        types[0] = Arrays.copyOf(types[0], capacity);
+        amounts[0] = Arrays.copyOf(amounts[0], capacity);
+        timestamps[0] = Arrays.copyOf(timestamps[0], capacity);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public TransactionType typeAt(final int index) {
+        checkIndex(index);
+        return TransactionType.fromCode(
+                types[index >>> CHUNK_SHIFT][index & CHUNK_MASK]);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long amountCentsAt(final int index) {
+        checkIndex(index);
+        return amounts[index >>> CHUNK_SHIFT][index & CHUNK_MASK];
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long timestampAt(final int index) {
+        checkIndex(index);
+        return timestamps[index >>> CHUNK_SHIFT][index & CHUNK_MASK];
+    }
+
+    /**
+     * Checks that an index refers to a published entry. Reading the
+     * volatile size first also makes that entry's columns visible.
+     *
+     * @param index the index to check
+     */
+    private void checkIndex(final int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException(
+                    "Index " + index + " out of bounds for size " + size);
+        }
+    }
+}
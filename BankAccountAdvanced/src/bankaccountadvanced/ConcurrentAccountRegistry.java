@@ -0,0 +1,97 @@
+package bankaccountadvanced;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * AccountRegistry backed by a ConcurrentHashMap.
+ * IDs are handed out by an atomic counter, lookups never lock and
+ * registrations from many threads never lose or duplicate accounts.
+ * Code Reviewer: MarkSayson
+ */
+public class ConcurrentAccountRegistry implements AccountRegistry {
+
+    /** Maps account IDs to BankAccount objects. */
+    private final ConcurrentHashMap<Integer, BankAccount> accounts;
+
+    /** Tracks the next account ID to assign. */
+    private final AtomicInteger nextAccountId;
+
+    /**
+     * Constructs an empty registry whose first account ID is 1.
+     */
+    public ConcurrentAccountRegistry() {
+        this.accounts = new ConcurrentHashMap<>();
+        this.nextAccountId = new AtomicInteger(1);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int register(final BankAccount account) {
+        int accountId = nextAccountId.getAndIncrement();
+        accounts.put(accountId, account);
+        return accountId;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void restore(final int accountId, final BankAccount account) {
+        accounts.put(accountId, account);
+        nextAccountId.accumulateAndGet(accountId + 1, Math::max);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void reserve(final int accountId) {
+        nextAccountId.accumulateAndGet(accountId + 1, Math::max);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * IDs are handed out in a single order, so there is one mark.
+     */
+    @Override
+    public int[] getIdHighWaterMarks() {
+        return new int[] {nextAccountId.get() - 1};
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public BankAccount lookup(final int accountId) {
+        return accounts.get(accountId);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public BankAccount remove(final int accountId) {
+        return accounts.remove(accountId);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int size() {
+        return accounts.size();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void forEach(final ObjIntConsumer<BankAccount> action) {
+        accounts.forEach((id, account) -> action.accept(account, id));
+    }
+}
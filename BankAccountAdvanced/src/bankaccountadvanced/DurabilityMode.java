@@ -0,0 +1,23 @@
+package bankaccountadvanced;
+
+/**
+ * How an AccountJournal makes mutations durable.
+ * Code Reviewer: MarkSayson
+ */
+public enum DurabilityMode {
+
+    /** Every mutation is written and synced on its own before returning. */
+    PER_OP_SYNC,
+
+    /**
+     * Callers wait until their mutation is synced, but concurrent callers
+     * share one write and one sync.
+     */
+    GROUP_SYNC,
+
+    /**
+     * Callers never wait; a background thread writes and syncs periodically.
+     * Mutations from the last interval can be lost on a crash.
+     */
+    ASYNC
+}
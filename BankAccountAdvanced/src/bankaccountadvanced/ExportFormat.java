@@ -0,0 +1,24 @@
+package bankaccountadvanced;
+
+/**
+ * File format written by {@link BankAccountManager#exportTransactions}.
+ * Code Reviewer: MarkSayson
+ */
+public enum ExportFormat {
+
+    /**
+     * One {@code account_id,sequence,type,amount,timestamp} row per
+     * transaction after a header row. The type is the TransactionType
+     * label, as in Transaction.getType(), the amount is in pesos with two
+     * decimals and the timestamp is in epoch milliseconds.
+     */
+    CSV,
+
+    /**
+     * A big-endian header of magic "BATX" and a version int, then per
+     * account an int account ID, a long first sequence number and an int
+     * row count, followed by that many rows of a type code byte, a long
+     * amount in centavos and a long timestamp.
+     */
+    BINARY
+}
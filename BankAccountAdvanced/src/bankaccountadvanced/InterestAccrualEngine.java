@@ -0,0 +1,581 @@
+package bankaccountadvanced;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Credits one day's interest to every SavingsAccount of a manager that
+ * has a RatePlan, either on demand or nightly.
+ * <p>
+ * A run splits the account IDs into contiguous partitions and accrues
+ * them in parallel on a ForkJoinPool. Each partition posts its INTEREST
+ * transactions in batches of {@value #BATCH_SIZE} accounts without
+ * waiting for durability per account; it waits once for the whole batch
+ * and then records its position, which is saved to a progress file at
+ * most every {@value #SAVE_INTERVAL_MILLIS} ms, and forced to disk when
+ * the run starts, when a partition finishes and when the run completes.
+ * A run that is interrupted, e.g. by a crash, resumes from the saved
+ * positions when started again for the same business date instead of
+ * rescanning every account.
+ * <p>
+ * The progress file only saves work; it is not what keeps interest from
+ * being paid twice. A crash may leave it behind the accounts, or lose
+ * it. Correctness rests on each account's own accrual day: an account
+ * refuses a second accrual for the same day, and that day survives
+ * journal replay and checkpoints, so rescanning accounts that were
+ * already credited pays nothing.
+ * Code Reviewer: MarkSayson
+ */
+public class InterestAccrualEngine implements Closeable {
+
+    /** Accounts posted between durability waits and progress saves. */
+    static final int BATCH_SIZE = 4_096;
+
+    /** Least time between progress saves during a run. */
+    static final long SAVE_INTERVAL_MILLIS = 100L;
+
+    /** Partitions per pool thread, so that uneven partitions balance out. */
+    private static final int TASKS_PER_THREAD = 8;
+
+    /** Identifies progress files ("BAIP"). */
+    private static final int MAGIC = 0x42414950;
+
+    /** Version of the progress file layout. */
+    private static final int VERSION = 1;
+
+    /** The manager whose accounts earn interest. */
+    private final BankAccountManager manager;
+
+    /** Where the progress of the current run is saved. */
+    private final Path progressFile;
+
+    /** Runs the partitions. */
+    private final ForkJoinPool pool;
+
+    /** Runs the nightly accruals. */
+    private final ScheduledExecutorService executor;
+
+    /** Failure of the most recent scheduled run, or null. */
+    private volatile IOException lastFailure;
+
+    /** Result of the most recent scheduled run, or null. */
+    private volatile AccrualResult lastResult;
+
+    /**
+     * Constructs an InterestAccrualEngine that runs on the common pool.
+     *
+     * @param accountManager the manager whose accounts earn interest
+     * @param progress       file the progress of a run is saved to
+     */
+    public InterestAccrualEngine(final BankAccountManager accountManager, final Path progress) {
+        this(accountManager, progress, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Constructs an InterestAccrualEngine.
+     *
+     * @param accountManager the manager whose accounts earn interest
+     * @param progress       file the progress of a run is saved to
+     * @param forkJoinPool   pool the partitions run on
+     */
+    public InterestAccrualEngine(final BankAccountManager accountManager, final Path progress,
+            final ForkJoinPool forkJoinPool) {
+        this.manager = accountManager;
+        this.progressFile = progress;
+        this.pool = forkJoinPool;
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "interest-accrual");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Starts accruing interest every day at the given local time. Each
+     * run accrues for the date on which it starts.
+     *
+     * @param runAt time of day of the runs
+     * @param zone  time zone the time of day and dates are in
+     */
+    public void start(final LocalTime runAt, final ZoneId zone) {
+        ZonedDateTime now = ZonedDateTime.now(zone);
+        ZonedDateTime next = now.with(runAt);
+        if (!next.isAfter(now)) {
+            next = next.plusDays(1);
+        }
+        try {
+            executor.schedule(() -> {
+                try {
+                    lastResult = accrue(LocalDate.now(zone));
+                    lastFailure = null;
+                } catch (IOException e) {
+                    lastFailure = e;
+                } catch (UncheckedIOException e) {
+                    lastFailure = e.getCause();
+                } finally {
+                    start(runAt, zone);
+                }
+            }, Duration.between(now, next).toMillis(), TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // Closed; no more runs
+        }
+    }
+
+    /**
+     * Accrues one day's interest for every account with a rate plan, or
+     * finishes an interrupted run for the same date. Accounts added while
+     * the run is in progress may be skipped, and accounts removed while it
+     * is in progress may still be credited. Returns at once if the date
+     * has already been completed.
+     *
+     * @param businessDate the day to accrue interest for
+     * @return the accounts credited and the interest paid
+     * @throws IOException if the progress file cannot be read or written
+     */
+    public synchronized AccrualResult accrue(final LocalDate businessDate) throws IOException {
+        int day = Math.toIntExact(businessDate.toEpochDay());
+        Progress progress = Progress.load(progressFile, day);
+        boolean resumed = progress != null;
+        if (progress != null && progress.complete) {
+            return progress.result(businessDate, true);
+        }
+        Snapshot accounts = snapshot();
+        if (progress == null) {
+            progress = Progress.partition(day, accounts.ids, pool.getParallelism() * TASKS_PER_THREAD);
+            progress.save(progressFile, true);
+        }
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int p = 0; p < progress.next.length; p++) {
+            int partition = p;
+            Progress shared = progress;
+            tasks.add(() -> {
+                accruePartition(shared, partition, accounts);
+                return null;
+            });
+        }
+        try {
+            for (Future<Void> result : pool.invokeAll(tasks)) {
+                result.get();
+            }
+        } catch (ExecutionException e) {
+            // Keep what the finished batches achieved for the resumed run
+            progress.save(progressFile, true);
+            // The pool wraps checked exceptions; find the write failure
+            for (Throwable cause = e.getCause(); cause != null; cause = cause.getCause()) {
+                if (cause instanceof IOException) {
+                    throw (IOException) cause;
+                }
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Accrual interrupted", e);
+        }
+        progress.complete = true;
+        progress.save(progressFile, true);
+        return progress.result(businessDate, resumed);
+    }
+
+    /**
+     * Collects the accounts that currently have a rate plan, ordered by
+     * ID, so that a run reaches each account without a registry lookup.
+     * IDs are placed directly when they are dense, as IDs allocated by
+     * the registries are, and sorted otherwise.
+     *
+     * @return the IDs and the accounts, ascending by ID
+     */
+    private Snapshot snapshot() {
+        int capacity = Math.max(16, manager.getRegistry().size());
+        Snapshot found = new Snapshot(new int[capacity], new SavingsAccount[capacity]);
+        int[] range = {Integer.MAX_VALUE, Integer.MIN_VALUE};
+        manager.getRegistry().forEach((account, id) -> {
+            if (account instanceof SavingsAccount
+                    && ((SavingsAccount) account).getRatePlan() != null) {
+                found.add(id, (SavingsAccount) account);
+                range[0] = Math.min(range[0], id);
+                range[1] = Math.max(range[1], id);
+            }
+        });
+        int count = found.count;
+        Snapshot sorted = new Snapshot(new int[count], new SavingsAccount[count]);
+        long span = (long) range[1] - range[0] + 1;
+        if (span <= 2L * count) {
+            SavingsAccount[] byId = new SavingsAccount[(int) span];
+            for (int i = 0; i < count; i++) {
+                byId[found.ids[i] - range[0]] = found.accounts[i];
+            }
+            for (int i = 0; i < byId.length; i++) {
+                if (byId[i] != null) {
+                    sorted.add(range[0] + i, byId[i]);
+                }
+            }
+        } else {
+            long[] keys = new long[count];
+            for (int i = 0; i < count; i++) {
+                keys[i] = (long) found.ids[i] << 32 | i;
+            }
+            Arrays.sort(keys);
+            for (long key : keys) {
+                int index = (int) key;
+                sorted.add(found.ids[index], found.accounts[index]);
+            }
+        }
+        return sorted;
+    }
+
+    /**
+     * Accrues the remaining accounts of one partition a batch at a time,
+     * then forces the progress to disk if the partition had work left.
+     *
+     * @param progress  the run's progress
+     * @param partition the partition
+     * @param accounts  the accounts with a rate plan
+     * @throws IOException if the progress file cannot be written
+     */
+    private void accruePartition(final Progress progress, final int partition,
+            final Snapshot accounts) throws IOException {
+        int[] ids = accounts.ids;
+        long end = progress.bounds[partition + 1];
+        int from = position(ids, progress.next(partition));
+        int to = position(ids, end);
+        MutationListener listener = manager.getMutationListener();
+        long now = System.currentTimeMillis();
+        boolean worked = from < to;
+        while (from < to) {
+            int batchEnd = Math.min(from + BATCH_SIZE, to);
+            long credited = 0L;
+            long interest = 0L;
+            long ticket = 0L;
+            for (int i = from; i < batchEnd; i++) {
+                SavingsAccount account = accounts.accounts[i];
+                long cents = account.accrue(progress.day, now);
+                if (cents > 0L) {
+                    credited++;
+                    interest += cents;
+                    ticket = Math.max(ticket, account.getLastLsn());
+                }
+            }
+            if (listener != null && ticket != 0L) {
+                listener.awaitDurable(ticket);
+            }
+            progress.advance(partition, batchEnd < to ? ids[batchEnd] : end,
+                    credited, interest);
+            progress.saveIfDue(progressFile);
+            from = batchEnd;
+        }
+        if (worked) {
+            progress.save(progressFile, true);
+        }
+    }
+
+    /**
+     * Returns the index of the first ID at or above a bound.
+     *
+     * @param ids   the IDs, ascending
+     * @param bound the bound
+     * @return the index, or ids.length if every ID is below the bound
+     */
+    private static int position(final int[] ids, final long bound) {
+        if (bound > Integer.MAX_VALUE) {
+            return ids.length;
+        }
+        int found = Arrays.binarySearch(ids, (int) Math.max(bound, Integer.MIN_VALUE));
+        return found >= 0 ? found : -found - 1;
+    }
+
+    /**
+     * Returns the failure of the most recent scheduled run.
+     *
+     * @return the failure, or null if the last run succeeded
+     */
+    public IOException getLastFailure() {
+        return lastFailure;
+    }
+
+    /**
+     * Returns the result of the most recent successful scheduled run.
+     *
+     * @return the result, or null if no scheduled run has finished
+     */
+    public AccrualResult getLastResult() {
+        return lastResult;
+    }
+
+    /**
+     * Stops the nightly runs and waits for a running one to finish.
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Accounts with a rate plan and their IDs, in parallel arrays.
+     */
+    private static final class Snapshot {
+
+        /** The account IDs; replaced when grown. */
+        private int[] ids;
+
+        /** The account with each ID; replaced when grown. */
+        private SavingsAccount[] accounts;
+
+        /** Number of accounts added. */
+        private int count;
+
+        /**
+         * Constructs an empty Snapshot.
+         *
+         * @param idArray      holds the IDs
+         * @param accountArray holds the accounts
+         */
+        private Snapshot(final int[] idArray, final SavingsAccount[] accountArray) {
+            this.ids = idArray;
+            this.accounts = accountArray;
+        }
+
+        /**
+         * Adds an account, growing the arrays if needed.
+         *
+         * @param id      the account ID
+         * @param account the account
+         */
+        void add(final int id, final SavingsAccount account) {
+            if (count == ids.length) {
+                ids = Arrays.copyOf(ids, count * 2);
+                accounts = Arrays.copyOf(accounts, count * 2);
+            }
+            ids[count] = id;
+            accounts[count++] = account;
+        }
+    }
+
+    /**
+     * Where a run for one business date has got to: the ID range of each
+     * partition and the next ID each partition will accrue, plus the
+     * totals credited so far. Saved by replacing the progress file, so a
+     * reader sees either the old or the new contents. Periodic saves are
+     * not forced to disk: losing one only costs a rescan, since accounts
+     * that were credited refuse the same day again.
+     */
+    private static final class Progress {
+
+        /** Bytes before the partitions: magic, version, day, complete, totals, count. */
+        private static final int HEADER_SIZE = 4 + 4 + 4 + 1 + 8 + 8 + 4;
+
+        /** The epoch day being accrued. */
+        private final int day;
+
+        /** Partition p covers IDs from bounds[p] up to bounds[p + 1]. */
+        private final long[] bounds;
+
+        /** Next ID each partition will accrue. */
+        private final long[] next;
+
+        /** Accounts credited so far. */
+        private long credited;
+
+        /** Interest credited so far in centavos. */
+        private long interestCents;
+
+        /** Whether every partition has finished. */
+        private boolean complete;
+
+        /** System.nanoTime() of the last save. */
+        private long savedNanos = System.nanoTime();
+
+        /**
+         * Constructs a Progress.
+         *
+         * @param epochDay  the epoch day being accrued
+         * @param idBounds  the partition bounds
+         * @param nextIds   the next ID of each partition
+         */
+        private Progress(final int epochDay, final long[] idBounds, final long[] nextIds) {
+            this.day = epochDay;
+            this.bounds = idBounds;
+            this.next = nextIds;
+        }
+
+        /**
+         * Splits the IDs into partitions of about the same size that
+         * together cover every possible ID.
+         *
+         * @param epochDay   the epoch day being accrued
+         * @param ids        the IDs to accrue, ascending
+         * @param partitions number of partitions
+         * @return the progress of a new run
+         */
+        static Progress partition(final int epochDay, final int[] ids, final int partitions) {
+            long[] bounds = new long[partitions + 1];
+            bounds[0] = Integer.MIN_VALUE;
+            for (int p = 1; p < partitions; p++) {
+                int index = (int) ((long) ids.length * p / partitions);
+                bounds[p] = index < ids.length ? ids[index] : Integer.MAX_VALUE + 1L;
+            }
+            bounds[partitions] = Integer.MAX_VALUE + 1L;
+            return new Progress(epochDay, bounds, Arrays.copyOf(bounds, partitions));
+        }
+
+        /**
+         * Returns the next ID a partition will accrue.
+         *
+         * @param partition the partition
+         * @return the ID
+         */
+        synchronized long next(final int partition) {
+            return next[partition];
+        }
+
+        /**
+         * Records that a partition has finished the IDs below a bound.
+         *
+         * @param partition the partition
+         * @param nextId    the next ID the partition will accrue
+         * @param accounts  accounts credited since the last call
+         * @param cents     interest credited since the last call
+         */
+        synchronized void advance(final int partition, final long nextId,
+                final long accounts, final long cents) {
+            next[partition] = nextId;
+            credited += accounts;
+            interestCents += cents;
+        }
+
+        /**
+         * Returns the totals credited as a result.
+         *
+         * @param businessDate the date being accrued
+         * @param resumed      whether the run continued an interrupted one
+         * @return the result
+         */
+        synchronized AccrualResult result(final LocalDate businessDate, final boolean resumed) {
+            return new AccrualResult(businessDate, credited, interestCents, resumed);
+        }
+
+        /**
+         * Saves this progress if the last save is at least
+         * SAVE_INTERVAL_MILLIS old.
+         *
+         * @param file the progress file
+         * @throws IOException if the file cannot be written
+         */
+        synchronized void saveIfDue(final Path file) throws IOException {
+            if (System.nanoTime() - savedNanos >= SAVE_INTERVAL_MILLIS * 1_000_000L) {
+                save(file, false);
+            }
+        }
+
+        /**
+         * Replaces the progress file with this progress.
+         *
+         * @param file  the progress file
+         * @param force whether to force the contents to disk before the
+         *              file is replaced
+         * @throws IOException if the file cannot be written
+         */
+        synchronized void save(final Path file, final boolean force) throws IOException {
+            ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + next.length * 16 + 8);
+            buffer.putInt(MAGIC).putInt(VERSION).putInt(day).put((byte) (complete ? 1 : 0))
+                    .putLong(credited).putLong(interestCents).putInt(next.length);
+            for (long bound : bounds) {
+                buffer.putLong(bound);
+            }
+            for (long id : next) {
+                buffer.putLong(id);
+            }
+            buffer.flip();
+            Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+            try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                while (buffer.hasRemaining()) {
+                    out.write(buffer);
+                }
+                if (force) {
+                    out.force(true);
+                }
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+            savedNanos = System.nanoTime();
+        }
+
+        /**
+         * Reads the progress of a run for the given day.
+         *
+         * @param file     the progress file
+         * @param epochDay the epoch day being accrued
+         * @return the progress, or null if the file is missing, empty or
+         *         for another day
+         * @throws IOException if the file cannot be read or is malformed
+         */
+        static Progress load(final Path file, final int epochDay) throws IOException {
+            ByteBuffer buffer;
+            try {
+                buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+            } catch (NoSuchFileException e) {
+                return null;
+            }
+            if (!buffer.hasRemaining()) {
+                return null;
+            }
+            if (buffer.remaining() < HEADER_SIZE || buffer.getInt() != MAGIC
+                    || buffer.getInt() != VERSION) {
+                throw new IOException("Not an accrual progress file: " + file);
+            }
+            int day = buffer.getInt();
+            if (day != epochDay) {
+                return null;
+            }
+            boolean complete = buffer.get() != 0;
+            long credited = buffer.getLong();
+            long interest = buffer.getLong();
+            int partitions = buffer.getInt();
+            if (partitions < 1 || buffer.remaining() != partitions * 16L + 8) {
+                throw new IOException("Truncated accrual progress file: " + file);
+            }
+            long[] bounds = new long[partitions + 1];
+            for (int p = 0; p <= partitions; p++) {
+                bounds[p] = buffer.getLong();
+            }
+            long[] next = new long[partitions];
+            for (int p = 0; p < partitions; p++) {
+                next[p] = buffer.getLong();
+            }
+            Progress progress = new Progress(day, bounds, next);
+            progress.credited = credited;
+            progress.interestCents = interest;
+            progress.complete = complete;
+            return progress;
+        }
+    }
+}
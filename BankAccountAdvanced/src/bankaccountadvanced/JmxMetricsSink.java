@@ -0,0 +1,330 @@
+package bankaccountadvanced;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToLongFunction;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * MetricsSink that keeps striped counters per operation and outcome and
+ * a latency histogram per operation, and can publish them as an MXBean.
+ * Counters are LongAdders, so threads updating them rarely touch the
+ * same cache line; histograms record with one atomic increment.
+ * <p>
+ * By default only one operation in {@link #DEFAULT_SAMPLE_INTERVAL} is
+ * timed, chosen at random per operation: two clock reads would otherwise
+ * cost more than the operations themselves. Only the latency histograms
+ * are sampled; every operation is counted exactly, whether timed or not.
+ * Lock waits are always timed, since they are only reported for
+ * contended acquisitions, which are slow anyway.
+ * <p>
+ * Account lookups are not metered by default, so they appear in neither
+ * the counts nor the latencies: drawing the sample alone adds about half
+ * the cost of a lookup. Pass meterLookups to
+ * {@link #JmxMetricsSink(int, boolean)} to include them.
+ * Code Reviewer: MarkSayson
+ */
+public class JmxMetricsSink implements MetricsSink, JmxMetricsSinkMXBean {
+
+    /** Name the sink is registered under by {@link #register()}. */
+    public static final String DEFAULT_NAME = "bankaccountadvanced:type=Metrics";
+
+    /** One operation in this many is timed, by default. */
+    public static final int DEFAULT_SAMPLE_INTERVAL = 64;
+
+    /** Operation kinds, in ordinal order. */
+    private static final MeteredOperation[] OPERATIONS = MeteredOperation.values();
+
+    /** Outcomes, in ordinal order. */
+    private static final OperationStatus[] OUTCOMES = OperationStatus.values();
+
+    /** Operation counts, by operation then outcome. */
+    private final LongAdder[][] counts;
+
+    /** Latencies in nanoseconds, by operation. */
+    private final LatencyHistogram[] latencies;
+
+    /** Waits for account locks in nanoseconds. */
+    private final LatencyHistogram lockWaits;
+
+    /** Total time spent waiting for account locks. */
+    private final LongAdder lockWaitNanos;
+
+    /** Sample interval minus one; an operation is timed when random bits under it are zero. */
+    private final int sampleMask;
+
+    /** Whether account lookups are reported. */
+    private final boolean lookups;
+
+    /** Name the sink is registered under, or null. */
+    private ObjectName registeredName;
+
+    /**
+     * Constructs an empty sink that times one operation in
+     * {@link #DEFAULT_SAMPLE_INTERVAL} and leaves out lookups.
+     */
+    public JmxMetricsSink() {
+        this(DEFAULT_SAMPLE_INTERVAL);
+    }
+
+    /**
+     * Constructs an empty sink that times one operation in a given number
+     * and leaves out lookups.
+     *
+     * @param sampleInterval one operation in this many is timed; 1
+     *                       times every operation
+     * @throws IllegalArgumentException if sampleInterval is not a power of two
+     */
+    public JmxMetricsSink(final int sampleInterval) {
+        this(sampleInterval, false);
+    }
+
+    /**
+     * Constructs an empty sink that times one operation in a given number.
+     *
+     * @param sampleInterval one operation in this many is timed; 1
+     *                       times every operation
+     * @param meterLookups   whether account lookups are reported
+     * @throws IllegalArgumentException if sampleInterval is not a power of two
+     */
+    public JmxMetricsSink(final int sampleInterval, final boolean meterLookups) {
+        if (sampleInterval <= 0 || Integer.bitCount(sampleInterval) != 1) {
+            throw new IllegalArgumentException(
+                    "Sample interval must be a power of two: " + sampleInterval);
+        }
+        this.sampleMask = sampleInterval - 1;
+        this.lookups = meterLookups;
+        this.counts = new LongAdder[OPERATIONS.length][OUTCOMES.length];
+        this.latencies = new LatencyHistogram[OPERATIONS.length];
+        for (int i = 0; i < OPERATIONS.length; i++) {
+            for (int j = 0; j < OUTCOMES.length; j++) {
+                counts[i][j] = new LongAdder();
+            }
+            latencies[i] = new LatencyHistogram();
+        }
+        this.lockWaits = new LatencyHistogram();
+        this.lockWaitNanos = new LongAdder();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean sampleLatency() {
+        return sampleMask == 0 || (ThreadLocalRandom.current().nextInt() & sampleMask) == 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean meterLookups() {
+        return lookups;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void recordOperation(final MeteredOperation operation,
+            final OperationStatus outcome, final long latencyNanos) {
+        counts[operation.ordinal()][outcome.ordinal()].increment();
+        latencies[operation.ordinal()].record(latencyNanos);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void recordOutcome(final MeteredOperation operation,
+            final OperationStatus outcome) {
+        counts[operation.ordinal()][outcome.ordinal()].increment();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void recordLockWait(final long waitNanos) {
+        lockWaits.record(waitNanos);
+        lockWaitNanos.add(waitNanos);
+    }
+
+    /**
+     * Returns how many operations of a kind ended with an outcome.
+     * Lookups are counted only if the sink meters them.
+     *
+     * @param operation the kind of operation
+     * @param outcome   the outcome
+     * @return the count
+     */
+    public long getCount(final MeteredOperation operation, final OperationStatus outcome) {
+        return counts[operation.ordinal()][outcome.ordinal()].sum();
+    }
+
+    /**
+     * Returns the latencies recorded for a kind of operation. Only
+     * sampled operations are included.
+     *
+     * @param operation the kind of operation
+     * @return a snapshot of the latencies in nanoseconds
+     */
+    public AmountHistogram getLatency(final MeteredOperation operation) {
+        return latencies[operation.ordinal()].snapshot();
+    }
+
+    /**
+     * Returns the contended lock waits recorded so far.
+     *
+     * @return a snapshot of the waits in nanoseconds
+     */
+    public AmountHistogram getLockWaits() {
+        return lockWaits.snapshot();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Map<String, Long> getOperationCounts() {
+        Map<String, Long> result = new TreeMap<>();
+        for (MeteredOperation operation : OPERATIONS) {
+            for (OperationStatus outcome : OUTCOMES) {
+                long count = getCount(operation, outcome);
+                if (count != 0) {
+                    result.put(operation + "." + outcome, count);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns a value computed from each operation's latency histogram.
+     *
+     * @param statistic the value to compute
+     * @return the values keyed by operation, for operations seen so far
+     */
+    private Map<String, Long> latencyStatistic(final ToLongFunction<AmountHistogram> statistic) {
+        Map<String, Long> result = new TreeMap<>();
+        for (MeteredOperation operation : OPERATIONS) {
+            AmountHistogram histogram = getLatency(operation);
+            if (histogram.getCount() != 0) {
+                result.put(operation.name(), statistic.applyAsLong(histogram));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Map<String, Long> getLatencyP50Nanos() {
+        return latencyStatistic(h -> h.valueAtPercentile(50.0));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Map<String, Long> getLatencyP99Nanos() {
+        return latencyStatistic(h -> h.valueAtPercentile(99.0));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Map<String, Long> getLatencyP999Nanos() {
+        return latencyStatistic(h -> h.valueAtPercentile(99.9));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Map<String, Long> getLatencyMaxNanos() {
+        return latencyStatistic(AmountHistogram::getMax);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getLockWaitCount() {
+        return lockWaits.snapshot().getCount();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getLockWaitTotalNanos() {
+        return lockWaitNanos.sum();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getLockWaitP99Nanos() {
+        return lockWaits.snapshot().valueAtPercentile(99.0);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void reset() {
+        for (int i = 0; i < OPERATIONS.length; i++) {
+            for (int j = 0; j < OUTCOMES.length; j++) {
+                counts[i][j].reset();
+            }
+            latencies[i].reset();
+        }
+        lockWaits.reset();
+        lockWaitNanos.reset();
+    }
+
+    /**
+     * Publishes this sink on the platform MBean server under
+     * {@link #DEFAULT_NAME}.
+     *
+     * @throws JMException if the name is already taken
+     */
+    public void register() throws JMException {
+        register(DEFAULT_NAME);
+    }
+
+    /**
+     * Publishes this sink on the platform MBean server.
+     *
+     * @param name the object name, e.g. "bankaccountadvanced:type=Metrics,bank=main"
+     * @throws JMException if the name is malformed or already taken
+     */
+    public synchronized void register(final String name) throws JMException {
+        if (registeredName != null) {
+            throw new IllegalStateException("Already registered as " + registeredName);
+        }
+        ObjectName objectName = new ObjectName(name);
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+        registeredName = objectName;
+    }
+
+    /**
+     * Removes this sink from the platform MBean server, if registered.
+     *
+     * @throws JMException if the MBean server refuses
+     */
+    public synchronized void unregister() throws JMException {
+        if (registeredName != null) {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(registeredName);
+            registeredName = null;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package bankaccountadvanced;
+
+import java.util.Map;
+
+/**
+ * Management interface through which a JmxMetricsSink is published over
+ * JMX. Maps are keyed by operation, or by operation and outcome as in
+ * "WITHDRAW.INSUFFICIENT_FUNDS", and appear as tables in JMX consoles.
+ * Code Reviewer: MarkSayson
+ */
+public interface JmxMetricsSinkMXBean {
+
+    /**
+     * Returns how many operations ended with each outcome. Every
+     * operation is counted, timed or not. Account lookups are left out
+     * unless the sink was created with meterLookups; by default they are
+     * off, because metering them costs a noticeable share of a lookup.
+     *
+     * @return counts keyed by "OPERATION.OUTCOME"
+     */
+    Map<String, Long> getOperationCounts();
+
+    /**
+     * Returns the median latency of each operation.
+     *
+     * @return nanoseconds keyed by operation
+     */
+    Map<String, Long> getLatencyP50Nanos();
+
+    /**
+     * Returns the 99th percentile latency of each operation.
+     *
+     * @return nanoseconds keyed by operation
+     */
+    Map<String, Long> getLatencyP99Nanos();
+
+    /**
+     * Returns the 99.9th percentile latency of each operation.
+     *
+     * @return nanoseconds keyed by operation
+     */
+    Map<String, Long> getLatencyP999Nanos();
+
+    /**
+     * Returns the largest latency recorded for each operation.
+     *
+     * @return nanoseconds keyed by operation
+     */
+    Map<String, Long> getLatencyMaxNanos();
+
+    /**
+     * Returns how many times an operation found an account lock taken.
+     *
+     * @return the number of contended lock acquisitions
+     */
+    long getLockWaitCount();
+
+    /**
+     * Returns the total time operations spent waiting for account locks.
+     *
+     * @return nanoseconds
+     */
+    long getLockWaitTotalNanos();
+
+    /**
+     * Returns the 99th percentile of contended lock waits.
+     *
+     * @return nanoseconds
+     */
+    long getLockWaitP99Nanos();
+
+    /**
+     * Discards everything recorded so far.
+     */
+    void reset();
+}
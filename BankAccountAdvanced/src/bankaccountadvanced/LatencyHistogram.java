@@ -0,0 +1,57 @@
+package bankaccountadvanced;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Thread-safe recorder of non-negative values, such as latencies in
+ * nanoseconds, using the buckets of AmountHistogram: values below 128
+ * are exact and larger ones are kept to within about 1.6%. Recording is
+ * one atomic increment and never allocates; {@link #snapshot()} copies
+ * the counts into an AmountHistogram for percentile queries.
+ * Code Reviewer: MarkSayson
+ */
+public final class LatencyHistogram {
+
+    /** Number of values in each bucket. */
+    private final AtomicLongArray counts;
+
+    /**
+     * Constructs an empty histogram.
+     */
+    public LatencyHistogram() {
+        this.counts = new AtomicLongArray(AmountHistogram.BUCKET_COUNT);
+    }
+
+    /**
+     * Records a value. Negative values, e.g. from a clock adjustment,
+     * are recorded as 0.
+     *
+     * @param value the value to record
+     */
+    public void record(final long value) {
+        counts.getAndIncrement(AmountHistogram.bucketOf(Math.max(0L, value)));
+    }
+
+    /**
+     * Returns a copy of the values recorded so far. Values recorded while
+     * the copy is taken may or may not be included.
+     *
+     * @return a histogram of the recorded values
+     */
+    public AmountHistogram snapshot() {
+        long[] copy = new long[AmountHistogram.BUCKET_COUNT];
+        for (int i = 0; i < copy.length; i++) {
+            copy[i] = counts.get(i);
+        }
+        return new AmountHistogram(copy);
+    }
+
+    /**
+     * Discards every recorded value.
+     */
+    public void reset() {
+        for (int i = 0; i < counts.length(); i++) {
+            counts.set(i, 0L);
+        }
+    }
+}
@@ -0,0 +1,268 @@
+package bankaccountadvanced;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * TransactionLedger that keeps history off the Java heap in memory-mapped
+ * segment files. Each entry is a fixed-width record (type code, amount,
+ * timestamp), so the position of any entry is computed rather than looked
+ * up; the heap only holds the array of mapped segments. Heap use stays
+ * flat however long the history grows, and the operating system pages
+ * records in and out as they are read.
+ * <p>
+ * The number of entries is stored at the start of the first segment, so
+ * a ledger reopened on the same directory continues where it left off.
+ * Entries reach the disk when the operating system writes the pages back
+ * or when {@link #force()} is called.
+ * Code Reviewer: MarkSayson
+ */
+public class MappedTransactionLedger extends AbstractTransactionLedger implements Closeable {
+
+    /** Default number of records per segment file. */
+    static final int DEFAULT_SEGMENT_RECORDS = 1 << 20;
+
+    /** Bytes per record: type code, amount, timestamp. */
+    private static final int RECORD_SIZE = 1 + 8 + 8;
+
+    /** Bytes reserved at the start of every segment; holds the count in the first. */
+    private static final int SEGMENT_HEADER = 8;
+
+    /** Offset of the amount inside a record. */
+    private static final int AMOUNT_OFFSET = 1;
+
+    /** Offset of the timestamp inside a record. */
+    private static final int TIMESTAMP_OFFSET = 1 + 8;
+
+    /** Directory holding the segment files. */
+    private final Path directory;
+
+    /** log2 of the number of records per segment. */
+    private final int segmentShift;
+
+    /** Mask selecting the record inside a segment. */
+    private final int segmentMask;
+
+    /** Mapped segments, in order. */
+    private MappedByteBuffer[] segments;
+
+    /** Number of entries written; published after the entry's record. */
+    private volatile int size;
+
+    /** Set once the ledger is closed; segments may be null afterwards. */
+    private volatile boolean closed;
+
+    /**
+     * Opens a ledger in a directory, creating it if needed and continuing
+     * any history already stored there.
+     *
+     * @param ledgerDirectory the directory holding the segment files
+     * @throws IOException if the files cannot be created or mapped
+     */
+    public MappedTransactionLedger(final Path ledgerDirectory) throws IOException {
+        this(ledgerDirectory, DEFAULT_SEGMENT_RECORDS);
+    }
+
+    /**
+     * Opens a ledger with a given segment size.
+     *
+     * @param ledgerDirectory the directory holding the segment files
+     * @param segmentRecords  records per segment; must be a power of two
+     * @throws IOException if the files cannot be created or mapped
+     */
+    MappedTransactionLedger(final Path ledgerDirectory, final int segmentRecords)
+            throws IOException {
+        super();
+        if (segmentRecords <= 0 || Integer.bitCount(segmentRecords) != 1) {
+            throw new IllegalArgumentException(
+                    "Segment size must be a power of two: " + segmentRecords);
+        }
+        this.directory = ledgerDirectory;
+        this.segmentShift = Integer.numberOfTrailingZeros(segmentRecords);
+        this.segmentMask = segmentRecords - 1;
+        this.segments = new MappedByteBuffer[0];
+        Files.createDirectories(ledgerDirectory);
+        if (Files.exists(segmentPath(0))) {
+            addSegment();
+            int stored = (int) segments[0].getLong(0);
+            int needed = stored == 0 ? 1 : ((stored - 1) >>> segmentShift) + 1;
+            while (segments.length < needed) {
+                addSegment();
+            }
+            this.size = stored;
+        }
+    }
+
+    /**
+     * Returns the file holding a segment.
+     *
+     * @param segment the segment number
+     * @return the segment file path
+     */
+    private Path segmentPath(final int segment) {
+        return directory.resolve(String.format("segment-%06d.dat", segment));
+    }
+
+    /**
+     * Maps the next segment file, creating it at full size if needed.
+     * The channel can be closed once mapped; the mapping stays valid.
+     *
+     * @throws IOException if the file cannot be created or mapped
+     */
+    private void addSegment() throws IOException {
+        int segment = segments.length;
+        long bytes = SEGMENT_HEADER + ((long) (segmentMask + 1)) * RECORD_SIZE;
+        MappedByteBuffer mapped;
+        try (FileChannel channel = FileChannel.open(segmentPath(segment),
+                StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0L, bytes);
+        }
+        MappedByteBuffer[] grown = Arrays.copyOf(segments, segment + 1);
+        grown[segment] = mapped;
+        segments = grown;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws UncheckedIOException if a new segment cannot be mapped
+     * @throws IllegalStateException if the ledger has been closed
+     */
+    @Override
+    public void append(final TransactionType type, final long amountCents,
+            final long timestamp) {
+        checkOpen();
+        int index = size;
+        int segment = index >>> segmentShift;
+        if (segment == segments.length) {
+            try {
+                addSegment();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        MappedByteBuffer data = segments[segment];
+        int position = recordPosition(index);
+        data.put(position, type.code());
+        data.putLong(position + AMOUNT_OFFSET, amountCents);
+        data.putLong(position + TIMESTAMP_OFFSET, timestamp);
+        segments[0].putLong(0, index + 1);
+        size = index + 1;
+    }
+
+    /**
+     * Returns the byte position of a record inside its segment.
+     *
+     * @param index position in the ledger
+     * @return the byte position
+     */
+    private int recordPosition(final int index) {
+        return SEGMENT_HEADER + (index & segmentMask) * RECORD_SIZE;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws IllegalStateException if the ledger has been closed
+     */
+    @Override
+    public int size() {
+        checkOpen();
+        return size;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws IllegalStateException if the ledger has been closed
+     */
+    @Override
+    public TransactionType typeAt(final int index) {
+        return TransactionType.fromCode(segmentOf(index).get(recordPosition(index)));
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws IllegalStateException if the ledger has been closed
+     */
+    @Override
+    public long amountCentsAt(final int index) {
+        return segmentOf(index).getLong(recordPosition(index) + AMOUNT_OFFSET);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws IllegalStateException if the ledger has been closed
+     */
+    @Override
+    public long timestampAt(final int index) {
+        return segmentOf(index).getLong(recordPosition(index) + TIMESTAMP_OFFSET);
+    }
+
+    /**
+     * Returns the segment holding a published entry. Reading the volatile
+     * size first also makes that entry's record visible.
+     *
+     * @param index position in the ledger
+     * @return the mapped segment
+     * @throws IllegalStateException if the ledger has been closed
+     */
+    private MappedByteBuffer segmentOf(final int index) {
+        checkOpen();
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException(
+                    "Index " + index + " out of bounds for size " + size);
+        }
+        MappedByteBuffer[] current = segments;
+        if (current == null) {
+            throw new IllegalStateException("Ledger is closed");
+        }
+        return current[index >>> segmentShift];
+    }
+
+    /**
+     * Throws if the ledger has been closed.
+     */
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("Ledger is closed");
+        }
+    }
+
+    /**
+     * Writes every mapped segment back to its file.
+     *
+     * @throws IllegalStateException if the ledger has been closed
+     */
+    public void force() {
+        checkOpen();
+        for (MappedByteBuffer segment : segments) {
+            segment.force();
+        }
+    }
+
+    /**
+     * Writes the segments back and releases them. The mappings are
+     * unmapped once no longer reachable; every other method throws
+     * IllegalStateException afterwards. Closing again has no effect.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        force();
+        closed = true;
+        segments = null;
+    }
+}
@@ -0,0 +1,23 @@
+package bankaccountadvanced;
+
+/**
+ * Operations whose outcomes and latencies are reported to a MetricsSink.
+ * Code Reviewer: MarkSayson
+ */
+public enum MeteredOperation {
+
+    /** A single deposit into an account. */
+    DEPOSIT,
+
+    /** A single withdrawal from an account. */
+    WITHDRAW,
+
+    /** A batch of deposits and withdrawals applied to one account. */
+    BATCH,
+
+    /** A transfer between two accounts of a manager. */
+    TRANSFER,
+
+    /** A lookup of an account by ID in a manager. */
+    LOOKUP
+}
@@ -0,0 +1,72 @@
+package bankaccountadvanced;
+
+/**
+ * Receives operation counts, latencies and lock contention from accounts
+ * and from the BankAccountManager they are registered with. Methods are
+ * called on the hot path, from many threads at once, so implementations
+ * must be thread-safe and should neither block nor allocate.
+ * Code Reviewer: MarkSayson
+ */
+public interface MetricsSink {
+
+    /**
+     * Returns the sink that discards everything, used when no sink is set.
+     * Accounts and managers skip timing entirely while it is in use.
+     *
+     * @return the no-op sink
+     */
+    static MetricsSink noOp() {
+        return NoOpMetricsSink.INSTANCE;
+    }
+
+    /**
+     * Returns whether the operation about to start should be timed. Reading
+     * the clock costs about as much as an uncontended deposit, so a sink
+     * can time a sample of operations and still count every one of them.
+     * Called once per operation, before it starts.
+     *
+     * @return true to time the operation and report it through
+     *         {@link #recordOperation}, false to report it through
+     *         {@link #recordOutcome}
+     */
+    boolean sampleLatency();
+
+    /**
+     * Returns whether account lookups are reported. A lookup is little
+     * more than an array read, so even a skipped sample shows as a large
+     * share of its cost; a sink can leave lookups out entirely. Read
+     * once, when the sink is set on a manager.
+     *
+     * @return true to report {@link MeteredOperation#LOOKUP} operations
+     */
+    default boolean meterLookups() {
+        return true;
+    }
+
+    /**
+     * Records the outcome and latency of a timed operation.
+     *
+     * @param operation    the kind of operation
+     * @param outcome      OK, or the reason the operation was rejected
+     * @param latencyNanos how long the operation took, including waits
+     *                     for the account lock and for durability
+     */
+    void recordOperation(MeteredOperation operation, OperationStatus outcome,
+            long latencyNanos);
+
+    /**
+     * Records the outcome of an operation that was not timed.
+     *
+     * @param operation the kind of operation
+     * @param outcome   OK, or the reason the operation was rejected
+     */
+    void recordOutcome(MeteredOperation operation, OperationStatus outcome);
+
+    /**
+     * Records that an account lock was held by another thread when an
+     * operation wanted it. Uncontended acquisitions are not reported.
+     *
+     * @param waitNanos how long the operation waited for the lock
+     */
+    void recordLockWait(long waitNanos);
+}
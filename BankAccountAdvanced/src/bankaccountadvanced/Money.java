@@ -0,0 +1,44 @@
+package bankaccountadvanced;
+
+/**
+ * Conversions between peso amounts given as double and the whole
+ * centavo amounts stored by accounts and transactions.
+ * Code Reviewer: MarkSayson
+ */
+public final class Money {
+
+    /** Number of centavos in one peso. */
+    public static final long CENTS_PER_PESO = 100L;
+
+    /** Largest peso amount accepted by {@link #toCents(double)}. */
+    public static final double MAX_AMOUNT = 1e15;
+
+    /** Utility class; not instantiable. */
+    private Money() {
+    }
+
+    /**
+     * Converts a peso amount to centavos, rounding to the nearest centavo.
+     * Amounts that are not finite or exceed {@link #MAX_AMOUNT} in size
+     * convert to 0, which every account operation rejects as invalid.
+     *
+     * @param amount the amount in pesos
+     * @return the amount in centavos
+     */
+    public static long toCents(final double amount) {
+        if (!(Math.abs(amount) <= MAX_AMOUNT)) {
+            return 0L;
+        }
+        return Math.round(amount * CENTS_PER_PESO);
+    }
+
+    /**
+     * Converts a centavo amount to pesos.
+     *
+     * @param cents the amount in centavos
+     * @return the amount in pesos
+     */
+    public static double toAmount(final long cents) {
+        return (double) cents / CENTS_PER_PESO;
+    }
+}
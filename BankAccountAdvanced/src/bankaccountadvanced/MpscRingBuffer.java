@@ -0,0 +1,141 @@
+package bankaccountadvanced;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Consumer;
+
+/**
+ * Bounded lock-free queue for many producer threads and one consumer.
+ * <p>
+ * Producers claim a position by advancing the tail with a compare-and-set,
+ * write the element into the slot and then publish it by setting the
+ * slot's sequence number; the consumer takes an element once its slot is
+ * published and hands the slot back by advancing its sequence by the
+ * capacity. Neither side ever takes a lock. Closing sets the top bit of
+ * the tail, so no position can be claimed afterwards and the consumer
+ * knows exactly which elements are still to come.
+ * Code Reviewer: MarkSayson
+ *
+ * @param <E> the element type
+ */
+final class MpscRingBuffer<E> {
+
+    /** Bit of the tail that marks the buffer as closed. */
+    private static final long CLOSED = Long.MIN_VALUE;
+
+    /** Slots, indexed by position modulo the capacity. */
+    private final Object[] elements;
+
+    /**
+     * Per slot: the position a producer may claim it for, or that
+     * position plus one once the element is published.
+     */
+    private final AtomicLongArray sequences;
+
+    /** Mask selecting the slot of a position. */
+    private final int mask;
+
+    /** Next position producers will claim, with the closed bit. */
+    private final AtomicLong tail;
+
+    /** Next position the consumer will take. Read and written by the consumer only. */
+    private long head;
+
+    /**
+     * Constructs an empty buffer.
+     *
+     * @param capacity the number of slots; must be a power of two
+     * @throws IllegalArgumentException if capacity is not a power of two
+     */
+    MpscRingBuffer(final int capacity) {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException(
+                    "Capacity must be a power of two: " + capacity);
+        }
+        this.elements = new Object[capacity];
+        this.sequences = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            sequences.set(i, i);
+        }
+        this.mask = capacity - 1;
+        this.tail = new AtomicLong();
+    }
+
+    /**
+     * Adds an element unless the buffer is full or closed.
+     * Safe to call from any number of threads.
+     *
+     * @param element the element to add
+     * @return true if the element was added
+     */
+    boolean offer(final E element) {
+        while (true) {
+            long position = tail.get();
+            if (position < 0) {
+                return false;
+            }
+            int slot = (int) position & mask;
+            long sequence = sequences.get(slot);
+            if (sequence < position) {
+                return false;
+            }
+            if (sequence == position && tail.compareAndSet(position, position + 1)) {
+                elements[slot] = element;
+                sequences.set(slot, position + 1);
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Passes published elements to an action in the order they were added.
+     * Must only be called by the consumer.
+     *
+     * @param action receives each element
+     * @param limit  the largest number of elements to take
+     * @return the number of elements taken
+     */
+    @SuppressWarnings("unchecked")
+    int drain(final Consumer<? super E> action, final int limit) {
+        int taken = 0;
+        while (taken < limit) {
+            int slot = (int) head & mask;
+            if (sequences.get(slot) != head + 1) {
+                break;
+            }
+            E element = (E) elements[slot];
+            elements[slot] = null;
+            sequences.set(slot, head + elements.length);
+            head++;
+            taken++;
+            action.accept(element);
+        }
+        return taken;
+    }
+
+    /**
+     * Returns whether every claimed position has been taken. A position
+     * that is claimed but not yet published counts as not taken.
+     *
+     * @return true if there is nothing left for the consumer
+     */
+    boolean isEmpty() {
+        return head == (tail.get() & ~CLOSED);
+    }
+
+    /**
+     * Stops accepting elements. Elements already added can still be drained.
+     */
+    void close() {
+        tail.getAndUpdate(position -> position | CLOSED);
+    }
+
+    /**
+     * Returns whether the buffer has been closed.
+     *
+     * @return true if no more elements can be added
+     */
+    boolean isClosed() {
+        return tail.get() < 0;
+    }
+}
@@ -0,0 +1,176 @@
+package bankaccountadvanced;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * An immutable record of one state change made through an account or
+ * the BankAccountManager, in a form that can be written to a journal
+ * and applied again later.
+ * Code Reviewer: MarkSayson
+ */
+public final class Mutation {
+
+    /** Encoded size of the fixed fields, in bytes. */
+    private static final int FIXED_SIZE = 1 + 4 + 4 + 8 + 8 + 4;
+
+    /** What kind of change this is. */
+    private final MutationType type;
+
+    /** The account that changed. */
+    private final int accountId;
+
+    /** The account credited by a transfer, the epoch day of INTEREST; else 0. */
+    private final int targetId;
+
+    /** The amount in centavos; the opening balance for CREATE_ACCOUNT. */
+    private final long amountCents;
+
+    /** Time of the change in epoch milliseconds. */
+    private final long timestamp;
+
+    /** Owner name for CREATE_ACCOUNT; null otherwise. */
+    private final String ownerName;
+
+    /**
+     * Constructs a Mutation.
+     *
+     * @param mutationType the kind of change
+     * @param account      the ID of the account that changed
+     * @param target       the ID of the credited account for transfers, the
+     *                     accrual's epoch day for INTEREST, else 0
+     * @param cents        the amount in centavos
+     * @param time         the time of the change in epoch milliseconds
+     * @param owner        the owner name for CREATE_ACCOUNT, else null
+     */
+    public Mutation(final MutationType mutationType, final int account,
+            final int target, final long cents, final long time, final String owner) {
+        this.type = mutationType;
+        this.accountId = account;
+        this.targetId = target;
+        this.amountCents = cents;
+        this.timestamp = time;
+        this.ownerName = owner;
+    }
+
+    /**
+     * Returns the kind of change.
+     *
+     * @return the mutation type
+     */
+    public MutationType getType() {
+        return type;
+    }
+
+    /**
+     * Returns the ID of the account that changed.
+     * For transfers this is the debited account.
+     *
+     * @return the account ID
+     */
+    public int getAccountId() {
+        return accountId;
+    }
+
+    /**
+     * Returns the ID of the credited account of a transfer, or the epoch
+     * day interest was accrued for.
+     *
+     * @return the target account ID, the epoch day, or 0
+     */
+    public int getTargetId() {
+        return targetId;
+    }
+
+    /**
+     * Returns the amount in centavos.
+     *
+     * @return the amount
+     */
+    public long getAmountCents() {
+        return amountCents;
+    }
+
+    /**
+     * Returns the time of the change.
+     *
+     * @return the time in epoch milliseconds
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * Returns the owner name of a created account.
+     *
+     * @return the owner name, or null
+     */
+    public String getOwnerName() {
+        return ownerName;
+    }
+
+    /**
+     * Returns the number of bytes {@link #writeTo(ByteBuffer)} will write.
+     *
+     * @return the encoded size
+     */
+    public int encodedSize() {
+        return FIXED_SIZE + (ownerName == null
+                ? 0 : ownerName.getBytes(StandardCharsets.UTF_8).length);
+    }
+
+    /**
+     * Writes this mutation in binary form.
+     *
+     * @param buffer the buffer to write to
+     */
+    public void writeTo(final ByteBuffer buffer) {
+        buffer.put(type.code());
+        buffer.putInt(accountId);
+        buffer.putInt(targetId);
+        buffer.putLong(amountCents);
+        buffer.putLong(timestamp);
+        if (ownerName == null) {
+            buffer.putInt(-1);
+        } else {
+            byte[] owner = ownerName.getBytes(StandardCharsets.UTF_8);
+            buffer.putInt(owner.length);
+            buffer.put(owner);
+        }
+    }
+
+    /**
+     * Reads a mutation written by {@link #writeTo(ByteBuffer)}.
+     *
+     * @param buffer the buffer to read from
+     * @return the mutation
+     */
+    public static Mutation readFrom(final ByteBuffer buffer) {
+        MutationType type = MutationType.fromCode(buffer.get());
+        int accountId = buffer.getInt();
+        int targetId = buffer.getInt();
+        long amountCents = buffer.getLong();
+        long timestamp = buffer.getLong();
+        int ownerLength = buffer.getInt();
+        String owner = null;
+        if (ownerLength >= 0) {
+            byte[] bytes = new byte[ownerLength];
+            buffer.get(bytes);
+            owner = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return new Mutation(type, accountId, targetId, amountCents, timestamp, owner);
+    }
+
+    /**
+     * Returns a readable description of this mutation.
+     *
+     * @return string representation of the mutation
+     */
+    @Override
+    public String toString() {
+        return type + " account=" + accountId
+                + (targetId != 0 ? " target=" + targetId : "")
+                + " cents=" + amountCents
+                + (ownerName != null ? " owner=" + ownerName : "");
+    }
+}
@@ -0,0 +1,48 @@
+package bankaccountadvanced;
+
+/**
+ * Receives every state change made to accounts attached to a
+ * BankAccountManager, e.g. to journal or replicate them.
+ * Code Reviewer: MarkSayson
+ */
+public interface MutationListener {
+
+    /**
+     * Records a mutation. Called while the locks of the affected
+     * accounts are held and before the change is made in memory, so
+     * mutations of one account arrive in the order they are applied, and
+     * if this throws the accounts are left unchanged. Implementations
+     * should not block for long.
+     *
+     * @param mutation the change about to be applied
+     * @return a ticket to pass to {@link #awaitDurable(long)}
+     */
+    long onMutation(Mutation mutation);
+
+    /**
+     * Records several mutations of one account that are applied together,
+     * such as a batch. If this throws, none of them are applied. The
+     * default records them one at a time; a listener that can record
+     * them all or none should override it.
+     *
+     * @param mutations the changes about to be applied, in order
+     * @param count     number of mutations to record, from the start
+     * @return a ticket to pass to {@link #awaitDurable(long)} covering
+     *         all of them, or 0 if count is 0
+     */
+    default long onMutations(Mutation[] mutations, int count) {
+        long ticket = 0L;
+        for (int i = 0; i < count; i++) {
+            ticket = onMutation(mutations[i]);
+        }
+        return ticket;
+    }
+
+    /**
+     * Waits until the mutation identified by the ticket is durable.
+     * Called after the account locks have been released.
+     *
+     * @param ticket a ticket returned by {@link #onMutation(Mutation)}
+     */
+    void awaitDurable(long ticket);
+}
@@ -0,0 +1,58 @@
+package bankaccountadvanced;
+
+/**
+ * Kinds of state changes recorded in the account journal.
+ * Code Reviewer: MarkSayson
+ */
+public enum MutationType {
+
+    /** An account was registered with the manager. */
+    CREATE_ACCOUNT,
+
+    /** An account was removed from the manager. */
+    REMOVE_ACCOUNT,
+
+    /** Money was deposited into an account. */
+    DEPOSIT,
+
+    /** Money was withdrawn from an account. */
+    WITHDRAW,
+
+    /** Money was moved from one account to another. */
+    TRANSFER,
+
+    /** An account was frozen. */
+    FREEZE,
+
+    /** An account was unfrozen. */
+    UNFREEZE,
+
+    /** Interest was credited to an account for one day. */
+    INTEREST;
+
+    /** Cached values, indexed by code. */
+    private static final MutationType[] BY_CODE = values();
+
+    /**
+     * Returns the compact byte code of this type.
+     *
+     * @return the code
+     */
+    public byte code() {
+        return (byte) ordinal();
+    }
+
+    /**
+     * Returns the type with the given byte code.
+     *
+     * @param code the code
+     * @return the matching type
+     * @throws IllegalArgumentException if the code is unknown
+     */
+    public static MutationType fromCode(final byte code) {
+        if (code < 0 || code >= BY_CODE.length) {
+            throw new IllegalArgumentException("Unknown mutation type code " + code);
+        }
+        return BY_CODE[code];
+    }
+}
@@ -0,0 +1,46 @@
+package bankaccountadvanced;
+
+/**
+ * MetricsSink that discards everything. See {@link MetricsSink#noOp()}.
+ * Code Reviewer: MarkSayson
+ */
+final class NoOpMetricsSink implements MetricsSink {
+
+    /** The only instance. */
+    static final NoOpMetricsSink INSTANCE = new NoOpMetricsSink();
+
+    /** Singleton; use INSTANCE. */
+    private NoOpMetricsSink() {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean sampleLatency() {
+        return false;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void recordOperation(final MeteredOperation operation,
+            final OperationStatus outcome, final long latencyNanos) {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void recordOutcome(final MeteredOperation operation,
+            final OperationStatus outcome) {
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void recordLockWait(final long waitNanos) {
+    }
+}
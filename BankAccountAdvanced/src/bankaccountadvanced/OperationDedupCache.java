@@ -0,0 +1,466 @@
+package bankaccountadvanced;
+
+import java.time.Duration;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Remembers the outcome of recent operations by client operation ID, so
+ * that a retried operation returns its original outcome instead of
+ * being applied twice. Used by the BankAccountManager overloads that
+ * take an operation ID, e.g.
+ * {@link BankAccountManager#tryDepositCents(long, int, long)}.
+ * <p>
+ * Memory is bounded: the cache holds at most a fixed number of
+ * operations, about {@value #BYTES_PER_ENTRY} bytes each, and forgets an
+ * operation once it is older than the retention period or when room is
+ * needed for a newer one, whichever comes first. A retry that arrives
+ * after its operation was forgotten is applied again, so the capacity
+ * and retention should cover the longest retry window.
+ * <p>
+ * Operations are spread over independently locked shards by a hash of
+ * their ID. Each shard keeps its entries in a ring in arrival order,
+ * which is also expiry order, plus an open-addressing index that holds
+ * each ID next to its ring slot, so a lookup is a hash and a short probe
+ * within one or two cache lines, and eviction only ever drops the
+ * oldest entry. The cache allocates nothing per operation.
+ * <p>
+ * A duplicate that arrives while the original is still running waits
+ * for it and returns its outcome. An operation that throws is forgotten,
+ * so that its retry runs again. Outcomes are kept in memory only and do
+ * not survive a restart.
+ * Code Reviewer: MarkSayson
+ */
+public final class OperationDedupCache {
+
+    /** Default number of operations remembered. */
+    public static final int DEFAULT_MAX_ENTRIES = 1 << 20;
+
+    /** Default time an operation is remembered. */
+    public static final Duration DEFAULT_RETENTION = Duration.ofMinutes(10);
+
+    /** Heap bytes per entry: ID, fingerprint, time, outcome, two index buckets. */
+    static final int BYTES_PER_ENTRY = 8 + 8 + 8 + 1 + 2 * 16;
+
+    /** Default number of shards. */
+    private static final int DEFAULT_SHARDS = 64;
+
+    /** Outcome of an operation that is still running. */
+    private static final byte PENDING = -1;
+
+    /** Outcome of an operation that threw; no longer indexed. */
+    private static final byte ABANDONED = -2;
+
+    /** Outcomes, indexed by ordinal. */
+    private static final OperationStatus[] STATUSES = OperationStatus.values();
+
+    /** The shards; the length is a power of two. */
+    private final Shard[] shards;
+
+    /** Time an operation is remembered, in nanoseconds. */
+    private final long retentionNanos;
+
+    /** Source of the current time in nanoseconds. */
+    private final LongSupplier clock;
+
+    /**
+     * Constructs an OperationDedupCache.
+     *
+     * @param maxEntries most operations remembered at once
+     * @param retention  how long an operation is remembered
+     * @throws IllegalArgumentException if maxEntries is not positive or
+     *                                  retention is not positive
+     */
+    public OperationDedupCache(final int maxEntries, final Duration retention) {
+        this(maxEntries, retention, DEFAULT_SHARDS, System::nanoTime);
+    }
+
+    /**
+     * Constructs an OperationDedupCache with a given shard count and clock.
+     *
+     * @param maxEntries most operations remembered at once
+     * @param retention  how long an operation is remembered
+     * @param shardCount number of shards, rounded down to a power of two
+     * @param nanoClock  source of the current time in nanoseconds
+     * @throws IllegalArgumentException if an argument is not positive
+     */
+    OperationDedupCache(final int maxEntries, final Duration retention, final int shardCount,
+            final LongSupplier nanoClock) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("Capacity must be positive: " + maxEntries);
+        }
+        if (retention.isNegative() || retention.isZero()) {
+            throw new IllegalArgumentException("Retention must be positive: " + retention);
+        }
+        if (shardCount < 1) {
+            throw new IllegalArgumentException("Shard count must be positive: " + shardCount);
+        }
+        int count = Integer.highestOneBit(Math.min(shardCount, maxEntries));
+        this.shards = new Shard[count];
+        int perShard = maxEntries / count;
+        for (int i = 0; i < count; i++) {
+            shards[i] = new Shard(perShard);
+        }
+        this.retentionNanos = retention.toNanos();
+        this.clock = nanoClock;
+    }
+
+    /**
+     * Runs an operation unless an operation with the same ID is
+     * remembered, in which case that operation's outcome is returned.
+     *
+     * @param operationId the client's ID for the operation
+     * @param fingerprint identifies what the operation does, see
+     *                    {@link #fingerprint(int, int, int, long)}
+     * @param operation   runs the operation
+     * @return the outcome of the operation or of the remembered one
+     * @throws IllegalArgumentException if the ID is remembered for an
+     *                                  operation with another fingerprint
+     */
+    OperationStatus execute(final long operationId, final long fingerprint,
+            final Supplier<OperationStatus> operation) {
+        long hash = mix(operationId);
+        Shard shard = shards[(int) (hash >>> 32) & (shards.length - 1)];
+        long sequence;
+        shard.lock.lock();
+        try {
+            shard.expire(clock.getAsLong() - retentionNanos);
+            int slot = shard.find(operationId, hash);
+            while (slot >= 0 && shard.outcomes[slot] == PENDING) {
+                checkFingerprint(shard, slot, fingerprint);
+                shard.completed.awaitUninterruptibly();
+                shard.expire(clock.getAsLong() - retentionNanos);
+                slot = shard.find(operationId, hash);
+            }
+            if (slot >= 0) {
+                checkFingerprint(shard, slot, fingerprint);
+                shard.hits++;
+                return STATUSES[shard.outcomes[slot]];
+            }
+            sequence = shard.insert(operationId, hash, fingerprint, clock.getAsLong());
+        } finally {
+            shard.lock.unlock();
+        }
+        OperationStatus status;
+        try {
+            status = operation.get();
+        } catch (RuntimeException | Error e) {
+            shard.finish(operationId, hash, sequence, ABANDONED);
+            throw e;
+        }
+        shard.finish(operationId, hash, sequence, (byte) status.ordinal());
+        return status;
+    }
+
+    /**
+     * Throws if a remembered operation does something else than a retry.
+     * Must be called while holding the shard's lock.
+     *
+     * @param shard       the shard
+     * @param slot        the remembered operation's ring slot
+     * @param fingerprint the retry's fingerprint
+     * @throws IllegalArgumentException if the fingerprints differ
+     */
+    private static void checkFingerprint(final Shard shard, final int slot,
+            final long fingerprint) {
+        if (shard.fingerprints[slot] != fingerprint) {
+            throw new IllegalArgumentException("Operation ID " + shard.ids[slot]
+                    + " was already used for a different operation");
+        }
+    }
+
+    /**
+     * Returns a fingerprint of an operation's parameters, so that reusing
+     * an ID for a different operation is detected rather than answered
+     * with an unrelated outcome.
+     *
+     * @param kind        the kind of operation, e.g. a MutationType code
+     * @param accountId   the account, or the debited account of a transfer
+     * @param targetId    the credited account of a transfer, else 0
+     * @param amountCents the amount in centavos
+     * @return the fingerprint
+     */
+    static long fingerprint(final int kind, final int accountId, final int targetId,
+            final long amountCents) {
+        return mix(mix(((long) kind << 32) ^ accountId) ^ ((long) targetId << 32)
+                ^ mix(amountCents));
+    }
+
+    /**
+     * Scrambles a value so that its bits are spread evenly
+     * (the MurmurHash3 finalizer).
+     *
+     * @param value the value
+     * @return the hash
+     */
+    private static long mix(final long value) {
+        long h = value;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /**
+     * Returns the number of operations remembered, including running ones.
+     *
+     * @return the entry count
+     */
+    public long size() {
+        long total = 0L;
+        for (Shard shard : shards) {
+            shard.lock.lock();
+            try {
+                total += shard.tail - shard.head;
+            } finally {
+                shard.lock.unlock();
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Returns how many retries were answered with a remembered outcome.
+     *
+     * @return the duplicate count
+     */
+    public long getDuplicateCount() {
+        long total = 0L;
+        for (Shard shard : shards) {
+            shard.lock.lock();
+            try {
+                total += shard.hits;
+            } finally {
+                shard.lock.unlock();
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Returns how many operations were forgotten to make room before
+     * their retention period ended.
+     *
+     * @return the eviction count
+     */
+    public long getEvictionCount() {
+        long total = 0L;
+        for (Shard shard : shards) {
+            shard.lock.lock();
+            try {
+                total += shard.evictions;
+            } finally {
+                shard.lock.unlock();
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Returns how many operations were forgotten because their retention
+     * period ended.
+     *
+     * @return the expiry count
+     */
+    public long getExpiryCount() {
+        long total = 0L;
+        for (Shard shard : shards) {
+            shard.lock.lock();
+            try {
+                total += shard.expiries;
+            } finally {
+                shard.lock.unlock();
+            }
+        }
+        return total;
+    }
+
+    /**
+     * One independently locked part of the cache: a ring of entries in
+     * arrival order and a linear-probing index of ring slots by ID.
+     */
+    private static final class Shard {
+
+        /** Guards every field. */
+        private final ReentrantLock lock = new ReentrantLock();
+
+        /** Signalled when a running operation finishes. */
+        private final Condition completed = lock.newCondition();
+
+        /** Operation ID of each ring slot. */
+        private final long[] ids;
+
+        /** Fingerprint of each ring slot. */
+        private final long[] fingerprints;
+
+        /** Arrival time in nanoseconds of each ring slot. */
+        private final long[] times;
+
+        /** Outcome ordinal, PENDING or ABANDONED of each ring slot. */
+        private final byte[] outcomes;
+
+        /** Buckets of two longs: an ID and its ring slot + 1, 0 when free. */
+        private final long[] index;
+
+        /** Number of buckets - 1; the count is a power of two. */
+        private final int mask;
+
+        /** Sequence number of the oldest entry; its slot is head % capacity. */
+        private long head;
+
+        /** Sequence number the next entry will get. */
+        private long tail;
+
+        /** Duplicates answered. */
+        private long hits;
+
+        /** Entries dropped for room. */
+        private long evictions;
+
+        /** Entries dropped for age. */
+        private long expiries;
+
+        /**
+         * Constructs an empty Shard.
+         *
+         * @param capacity most entries held
+         */
+        Shard(final int capacity) {
+            this.ids = new long[capacity];
+            this.fingerprints = new long[capacity];
+            this.times = new long[capacity];
+            this.outcomes = new byte[capacity];
+            // At most half full, so probes stay short
+            int buckets = Integer.highestOneBit(capacity * 2 - 1) * 2;
+            this.index = new long[buckets * 2];
+            this.mask = buckets - 1;
+        }
+
+        /**
+         * Returns the ring slot of an indexed operation.
+         *
+         * @param id   the operation ID
+         * @param hash the mixed ID
+         * @return the slot, or -1 if not indexed
+         */
+        int find(final long id, final long hash) {
+            for (int i = (int) hash & mask; index[2 * i + 1] != 0; i = (i + 1) & mask) {
+                if (index[2 * i] == id) {
+                    return (int) index[2 * i + 1] - 1;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * Appends a running operation, dropping the oldest entry if the
+         * ring is full.
+         *
+         * @param id          the operation ID
+         * @param hash        the mixed ID
+         * @param fingerprint the operation's fingerprint
+         * @param now         the current time in nanoseconds
+         * @return the entry's sequence number
+         */
+        long insert(final long id, final long hash, final long fingerprint, final long now) {
+            if (tail - head == ids.length) {
+                dropOldest();
+                evictions++;
+            }
+            int slot = (int) (tail % ids.length);
+            ids[slot] = id;
+            fingerprints[slot] = fingerprint;
+            times[slot] = now;
+            outcomes[slot] = PENDING;
+            int i = (int) hash & mask;
+            while (index[2 * i + 1] != 0) {
+                i = (i + 1) & mask;
+            }
+            index[2 * i] = id;
+            index[2 * i + 1] = slot + 1;
+            return tail++;
+        }
+
+        /**
+         * Drops the entries that arrived before a time.
+         *
+         * @param cutoff the time in nanoseconds; older entries are dropped
+         */
+        void expire(final long cutoff) {
+            while (tail != head && times[(int) (head % ids.length)] - cutoff < 0) {
+                dropOldest();
+                expiries++;
+            }
+        }
+
+        /**
+         * Drops the oldest entry and unindexes it if it is still indexed.
+         */
+        private void dropOldest() {
+            int slot = (int) (head % ids.length);
+            head++;
+            if (outcomes[slot] != ABANDONED) {
+                unindex(ids[slot], mix(ids[slot]), slot);
+            }
+            if (outcomes[slot] == PENDING) {
+                // Wake duplicates waiting on it; they will run the operation
+                completed.signalAll();
+            }
+        }
+
+        /**
+         * Removes a ring slot from the index, shifting later entries of its
+         * probe run back so that lookups need no tombstones.
+         *
+         * @param id   the slot's operation ID
+         * @param hash the mixed ID
+         * @param slot the ring slot
+         */
+        private void unindex(final long id, final long hash, final int slot) {
+            int gap = (int) hash & mask;
+            while (index[2 * gap + 1] != slot + 1) {
+                gap = (gap + 1) & mask;
+            }
+            for (int i = (gap + 1) & mask; index[2 * i + 1] != 0; i = (i + 1) & mask) {
+                int home = (int) mix(index[2 * i]) & mask;
+                // Move the entry into the gap unless its home lies after the gap
+                if (((i - home) & mask) >= ((i - gap) & mask)) {
+                    index[2 * gap] = index[2 * i];
+                    index[2 * gap + 1] = index[2 * i + 1];
+                    gap = i;
+                }
+            }
+            index[2 * gap + 1] = 0;
+        }
+
+        /**
+         * Records the outcome of a running operation, unless its entry has
+         * already been dropped, and wakes waiting duplicates.
+         *
+         * @param id       the operation ID
+         * @param hash     the mixed ID
+         * @param sequence the entry's sequence number
+         * @param outcome  the outcome ordinal, or ABANDONED to forget it
+         */
+        void finish(final long id, final long hash, final long sequence, final byte outcome) {
+            lock.lock();
+            try {
+                if (sequence < head) {
+                    return;
+                }
+                int slot = (int) (sequence % ids.length);
+                if (outcome == ABANDONED) {
+                    unindex(id, hash, slot);
+                }
+                outcomes[slot] = outcome;
+                completed.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
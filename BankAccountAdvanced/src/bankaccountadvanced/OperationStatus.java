@@ -0,0 +1,33 @@
+package bankaccountadvanced;
+
+/**
+ * Outcome of an account operation that reports failures as a value
+ * instead of throwing an exception.
+ * Code Reviewer: MarkSayson
+ */
+public enum OperationStatus {
+
+    /** The operation was applied. */
+    OK,
+
+    /** The amount was zero, negative or not a number. */
+    INVALID_AMOUNT,
+
+    /** The account did not have enough funds. */
+    INSUFFICIENT_FUNDS,
+
+    /** The account was frozen. */
+    ACCOUNT_FROZEN,
+
+    /** No account exists with the given ID. */
+    ACCOUNT_NOT_FOUND;
+
+    /**
+     * Returns whether this status represents a successful operation.
+     *
+     * @return true if the operation was applied
+     */
+    public boolean isSuccess() {
+        return this == OK;
+    }
+}
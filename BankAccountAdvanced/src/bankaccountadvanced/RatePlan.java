@@ -0,0 +1,180 @@
+package bankaccountadvanced;
+
+import java.util.Arrays;
+
+/**
+ * Annual interest rate of a SavingsAccount, in basis points, either one
+ * flat rate or marginal tiers: each tier's rate applies only to the
+ * part of the balance that falls within the tier. Interest accrues daily
+ * on the balance at the time of accrual, at 1/{@value #DAYS_PER_YEAR}
+ * of the annual rate (actual/365 fixed).
+ * <p>
+ * Daily interest is computed exactly in units of 1/{@value #DAILY_DIVISOR}
+ * centavo; the whole centavos are posted and the fraction is carried to
+ * the next day by the account, so no interest is lost to rounding.
+ * Code Reviewer: MarkSayson
+ */
+public final class RatePlan {
+
+    /** Basis points in 100%. */
+    static final long BASIS_POINTS = 10_000L;
+
+    /** Days interest accrues over per year. */
+    static final long DAYS_PER_YEAR = 365L;
+
+    /** Units of accrued interest per centavo. */
+    static final long DAILY_DIVISOR = BASIS_POINTS * DAYS_PER_YEAR;
+
+    /** Highest accepted rate, 10000%; keeps the arithmetic within a long. */
+    static final int MAX_BASIS_POINTS = 1_000_000;
+
+    /** Lowest balance of each tier in centavos, ascending, starting at 0. */
+    private final long[] floorsCents;
+
+    /** Annual rate of each tier in basis points. */
+    private final int[] basisPoints;
+
+    /**
+     * Constructs a RatePlan.
+     *
+     * @param floors the lowest balance of each tier
+     * @param rates  the rate of each tier
+     */
+    private RatePlan(final long[] floors, final int[] rates) {
+        this.floorsCents = floors;
+        this.basisPoints = rates;
+    }
+
+    /**
+     * Pays one annual rate on the whole balance.
+     *
+     * @param annualBasisPoints the rate, e.g. 250 for 2.5%
+     * @return the plan
+     * @throws IllegalArgumentException if the rate is negative or too high
+     */
+    public static RatePlan flat(final int annualBasisPoints) {
+        return tiered(new long[] {0L}, new int[] {annualBasisPoints});
+    }
+
+    /**
+     * Pays a different annual rate on each band of the balance. The
+     * rate at index i applies to the part of the balance from
+     * floorsCents[i] up to floorsCents[i + 1].
+     *
+     * @param floorsCents       the lowest balance of each tier, strictly
+     *                          ascending and starting at 0
+     * @param annualBasisPoints the rate of each tier
+     * @return the plan
+     * @throws IllegalArgumentException if the tiers are malformed or a rate
+     *                                  is negative or too high
+     */
+    public static RatePlan tiered(final long[] floorsCents, final int[] annualBasisPoints) {
+        if (floorsCents.length == 0 || floorsCents.length != annualBasisPoints.length) {
+            throw new IllegalArgumentException("Need one rate per tier");
+        }
+        if (floorsCents[0] != 0L) {
+            throw new IllegalArgumentException("First tier must start at 0");
+        }
+        for (int i = 0; i < floorsCents.length; i++) {
+            if (i > 0 && floorsCents[i] <= floorsCents[i - 1]) {
+                throw new IllegalArgumentException("Tiers must be strictly ascending");
+            }
+            if (annualBasisPoints[i] < 0 || annualBasisPoints[i] > MAX_BASIS_POINTS) {
+                throw new IllegalArgumentException("Rate out of range: " + annualBasisPoints[i]);
+            }
+        }
+        return new RatePlan(floorsCents.clone(), annualBasisPoints.clone());
+    }
+
+    /**
+     * Returns the number of tiers.
+     *
+     * @return the tier count, 1 for a flat rate
+     */
+    int getTierCount() {
+        return floorsCents.length;
+    }
+
+    /**
+     * Returns the lowest balance of a tier.
+     *
+     * @param tier the tier
+     * @return the floor in centavos
+     */
+    long getFloorCents(final int tier) {
+        return floorsCents[tier];
+    }
+
+    /**
+     * Returns the annual rate of a tier.
+     *
+     * @param tier the tier
+     * @return the rate in basis points
+     */
+    int getBasisPoints(final int tier) {
+        return basisPoints[tier];
+    }
+
+    /**
+     * Returns the whole centavos of one day's interest on a balance,
+     * ignoring any carried fraction.
+     *
+     * @param balanceCents the balance, not negative
+     * @return the whole centavos
+     */
+    long dailyCents(final long balanceCents) {
+        long cents = 0L;
+        long fraction = 0L;
+        for (int i = 0; i < floorsCents.length && balanceCents > floorsCents[i]; i++) {
+            long band = band(balanceCents, i);
+            // band * rate / DAILY_DIVISOR, split so that neither product overflows
+            cents += band / DAILY_DIVISOR * basisPoints[i];
+            fraction += band % DAILY_DIVISOR * basisPoints[i];
+        }
+        return cents + fraction / DAILY_DIVISOR;
+    }
+
+    /**
+     * Returns the fraction of a centavo left over from one day's interest
+     * on a balance.
+     *
+     * @param balanceCents the balance, not negative
+     * @return the fraction, in 1/{@value #DAILY_DIVISOR} centavo
+     */
+    long dailyFraction(final long balanceCents) {
+        long fraction = 0L;
+        for (int i = 0; i < floorsCents.length && balanceCents > floorsCents[i]; i++) {
+            fraction += band(balanceCents, i) % DAILY_DIVISOR * basisPoints[i];
+        }
+        return fraction % DAILY_DIVISOR;
+    }
+
+    /**
+     * Returns the part of a balance that falls within a tier.
+     *
+     * @param balanceCents the balance, above the tier's floor
+     * @param tier         the tier
+     * @return the amount in centavos
+     */
+    private long band(final long balanceCents, final int tier) {
+        long ceiling = tier + 1 < floorsCents.length ? floorsCents[tier + 1] : Long.MAX_VALUE;
+        return Math.min(balanceCents, ceiling) - floorsCents[tier];
+    }
+
+    /**
+     * Returns a description of the plan.
+     *
+     * @return e.g. "flat(250bp)" or "tiered([0, 100000], [100bp, 200bp])"
+     */
+    @Override
+    public String toString() {
+        if (floorsCents.length == 1) {
+            return "flat(" + basisPoints[0] + "bp)";
+        }
+        StringBuilder rates = new StringBuilder();
+        for (int i = 0; i < basisPoints.length; i++) {
+            rates.append(i == 0 ? "" : ", ").append(basisPoints[i]).append("bp");
+        }
+        return "tiered(" + Arrays.toString(floorsCents) + ", [" + rates + "])";
+    }
+}
@@ -0,0 +1,370 @@
+package bankaccountadvanced;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Read-only follower of a primary BankAccountManager. A ReplicaManager
+ * is fed by a ReplicationLog, either directly through
+ * {@link ReplicationLog#addFollower(BankAccountManager)} or over a socket
+ * through {@link #connect(InetSocketAddress)}, and applies the primary's
+ * mutations asynchronously, so reads here never contend with writes on
+ * the primary.
+ * <p>
+ * Every read is bounded in staleness: the follower knows the time up to
+ * which it has applied everything the primary published, and a read
+ * waits until that time is within {@link #getMaxStaleness()} of now,
+ * failing with an IllegalStateException if the follower cannot catch up
+ * within that time. To read its own writes, a client waits for the
+ * primary log's sequence with {@link #awaitSequence}.
+ * <p>
+ * A follower's transaction history starts at its snapshot: pages keep
+ * the primary's sequence numbers, but transactions recorded before the
+ * follower joined are not copied.
+ * Code Reviewer: MarkSayson
+ */
+public final class ReplicaManager implements ReplicationTarget, AutoCloseable {
+
+    /** Default bound on the staleness of reads. */
+    public static final Duration DEFAULT_MAX_STALENESS = Duration.ofSeconds(1);
+
+    /** How long a waiting read sleeps between checks. */
+    private static final long POLL_NANOS = 200_000L;
+
+    /** Size of the socket read buffer. */
+    private static final int READ_BUFFER_SIZE = 1 << 16;
+
+    /** The follower's copy of the primary's accounts. */
+    private final BankAccountManager state;
+
+    /** Last sequence number applied. */
+    private volatile long appliedSequence;
+
+    /** Time up to which every published mutation has been applied; 0 before the snapshot. */
+    private volatile long asOfMillis;
+
+    /** Largest staleness a read accepts, in milliseconds. */
+    private volatile long maxStalenessMillis;
+
+    /** Stops the stream feeding this follower. */
+    private volatile AutoCloseable source;
+
+    /** Set once the follower is closed or its stream has ended. */
+    private volatile boolean detached;
+
+    /**
+     * Constructs an empty follower; the caller connects it to a stream.
+     */
+    ReplicaManager() {
+        this.state = new BankAccountManager();
+        this.maxStalenessMillis = DEFAULT_MAX_STALENESS.toMillis();
+    }
+
+    /**
+     * Follows a primary that is listening with
+     * {@link ReplicationLog#listen(BankAccountManager, InetSocketAddress)}.
+     *
+     * @param address the primary's replication address
+     * @return the follower; close it to disconnect
+     * @throws IOException if the connection cannot be opened
+     */
+    public static ReplicaManager connect(final InetSocketAddress address) throws IOException {
+        SocketChannel channel = SocketChannel.open(address);
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        ReplicaManager replica = new ReplicaManager();
+        replica.setSource(channel);
+        Thread reader = new Thread(() -> replica.read(channel), "replication-reader");
+        reader.setDaemon(true);
+        reader.start();
+        return replica;
+    }
+
+    /**
+     * Sets what stops the stream feeding this follower.
+     *
+     * @param stream closed when the follower is closed
+     */
+    void setSource(final AutoCloseable stream) {
+        this.source = stream;
+    }
+
+    /**
+     * Decodes frames written by a ReplicationLog until the connection ends.
+     *
+     * @param channel the connection to the primary
+     */
+    private void read(final SocketChannel channel) {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                Channels.newInputStream(channel), READ_BUFFER_SIZE))) {
+            byte[] frame = new byte[256];
+            while (true) {
+                int length = in.readInt();
+                byte kind = in.readByte();
+                if (length - 1 > frame.length) {
+                    frame = new byte[length - 1];
+                }
+                in.readFully(frame, 0, length - 1);
+                ByteBuffer payload = ByteBuffer.wrap(frame, 0, length - 1);
+                switch (kind) {
+                    case ReplicationLog.FRAME_RECORD:
+                        restore(payload);
+                        break;
+                    case ReplicationLog.FRAME_MUTATION:
+                        long sequence = payload.getLong();
+                        apply(Mutation.readFrom(payload), sequence);
+                        break;
+                    case ReplicationLog.FRAME_PROGRESS:
+                        progress(payload.getLong(), payload.getLong());
+                        break;
+                    default:
+                        throw new IOException("Unknown replication frame: " + kind);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            detached = true;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void restore(final ByteBuffer record) {
+        AccountCheckpoint.restoreRecord(record, state.getRegistry());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void apply(final Mutation mutation, final long sequence) {
+        state.replay(mutation, sequence);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void progress(final long sequence, final long asOf) {
+        appliedSequence = sequence;
+        if (asOf > asOfMillis) {
+            asOfMillis = asOf;
+        }
+    }
+
+    /**
+     * Returns the last sequence number applied.
+     *
+     * @return the applied sequence number
+     */
+    public long getAppliedSequence() {
+        return appliedSequence;
+    }
+
+    /**
+     * Returns how far behind the primary this follower may be: the time
+     * since the last moment up to which it has applied everything.
+     *
+     * @return staleness in milliseconds, or Long.MAX_VALUE before the
+     *         snapshot has arrived
+     */
+    public long getStalenessMillis() {
+        long asOf = asOfMillis;
+        if (asOf == 0L) {
+            return Long.MAX_VALUE;
+        }
+        return Math.max(0L, System.currentTimeMillis() - asOf);
+    }
+
+    /**
+     * Returns the largest staleness a read accepts.
+     *
+     * @return the staleness bound
+     */
+    public Duration getMaxStaleness() {
+        return Duration.ofMillis(maxStalenessMillis);
+    }
+
+    /**
+     * Sets the largest staleness a read accepts.
+     *
+     * @param bound the staleness bound
+     * @throws IllegalArgumentException if bound is negative
+     */
+    public void setMaxStaleness(final Duration bound) {
+        if (bound.isNegative()) {
+            throw new IllegalArgumentException("Staleness bound must not be negative: " + bound);
+        }
+        this.maxStalenessMillis = bound.toMillis();
+    }
+
+    /**
+     * Waits until this follower has applied a sequence number, e.g. one
+     * read from {@link ReplicationLog#getSequence()} after a write.
+     *
+     * @param sequence the sequence number to wait for
+     * @param timeout  how long to wait
+     * @param unit     the unit of timeout
+     * @return true if the sequence was applied, false on timeout or if
+     *         the follower is detached
+     */
+    public boolean awaitSequence(final long sequence, final long timeout, final TimeUnit unit) {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (appliedSequence < sequence) {
+            if (detached || System.nanoTime() - deadline > 0) {
+                return false;
+            }
+            LockSupport.parkNanos(POLL_NANOS);
+        }
+        return true;
+    }
+
+    /**
+     * Waits until the follower is within the staleness bound.
+     *
+     * @throws IllegalStateException if it does not get there in time
+     */
+    private void awaitFresh() {
+        long bound = maxStalenessMillis;
+        if (getStalenessMillis() <= bound) {
+            return;
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(bound);
+        while (getStalenessMillis() > bound) {
+            if (detached || System.nanoTime() - deadline > 0) {
+                long staleness = getStalenessMillis();
+                throw new IllegalStateException(staleness == Long.MAX_VALUE
+                        ? "Replica has not received a snapshot"
+                        : "Replica is " + staleness + " ms behind the primary");
+            }
+            LockSupport.parkNanos(POLL_NANOS);
+        }
+    }
+
+    /**
+     * Returns a replicated account.
+     *
+     * @param accountId the account ID
+     * @return the account
+     * @throws AccountNotFoundException if the account does not exist
+     */
+    private BankAccount lookup(final int accountId) throws AccountNotFoundException {
+        awaitFresh();
+        BankAccount account = state.getRegistry().lookup(accountId);
+        if (account == null) {
+            throw new AccountNotFoundException("Account not found: " + accountId);
+        }
+        return account;
+    }
+
+    /**
+     * Returns the balance of an account.
+     *
+     * @param accountId the account ID
+     * @return the balance
+     * @throws AccountNotFoundException if the account does not exist
+     * @throws IllegalStateException if the follower is too far behind
+     */
+    public double getBalance(final int accountId) throws AccountNotFoundException {
+        return lookup(accountId).getBalance();
+    }
+
+    /**
+     * Returns the balance of an account in cents.
+     *
+     * @param accountId the account ID
+     * @return the balance in cents
+     * @throws AccountNotFoundException if the account does not exist
+     * @throws IllegalStateException if the follower is too far behind
+     */
+    public long getBalanceCents(final int accountId) throws AccountNotFoundException {
+        return lookup(accountId).getBalanceCents();
+    }
+
+    /**
+     * Returns whether an account is frozen.
+     *
+     * @param accountId the account ID
+     * @return true if the account is frozen
+     * @throws AccountNotFoundException if the account does not exist
+     * @throws IllegalStateException if the follower is too far behind
+     */
+    public boolean isFrozen(final int accountId) throws AccountNotFoundException {
+        return lookup(accountId).isFrozen();
+    }
+
+    /**
+     * Returns the running statistics of an account.
+     *
+     * @param accountId the account ID
+     * @return the account's statistics
+     * @throws AccountNotFoundException if the account does not exist
+     * @throws IllegalStateException if the follower is too far behind
+     */
+    public AccountStatistics getStatistics(final int accountId) throws AccountNotFoundException {
+        return lookup(accountId).getStatistics();
+    }
+
+    /**
+     * Returns a page of an account's replicated transaction history.
+     *
+     * @param accountId    the account ID
+     * @param fromSequence the primary's sequence number of the first transaction
+     * @param limit        the largest number of transactions to return
+     * @return the page
+     * @throws AccountNotFoundException if the account does not exist
+     * @throws IllegalStateException if the follower is too far behind
+     */
+    public TransactionPage getTransactionPage(final int accountId, final long fromSequence,
+            final int limit) throws AccountNotFoundException {
+        return lookup(accountId).getTransactionPage(fromSequence, limit);
+    }
+
+    /**
+     * Returns the number of replicated accounts.
+     *
+     * @return the account count
+     * @throws IllegalStateException if the follower is too far behind
+     */
+    public int getAccountCount() {
+        awaitFresh();
+        return state.getAccountCount();
+    }
+
+    /**
+     * Returns bank-wide totals of the replicated accounts.
+     *
+     * @return the combined statistics
+     * @throws IllegalStateException if the follower is too far behind
+     */
+    public AccountStatistics getStatistics() {
+        awaitFresh();
+        return state.getStatistics();
+    }
+
+    /**
+     * Stops following the primary. State applied so far stays readable
+     * within the staleness bound.
+     */
+    @Override
+    public void close() {
+        detached = true;
+        AutoCloseable stream = source;
+        if (stream != null) {
+            try {
+                stream.close();
+            } catch (Exception e) {
+                // The stream is gone either way
+            }
+        }
+    }
+}
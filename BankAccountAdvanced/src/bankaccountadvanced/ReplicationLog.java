@@ -0,0 +1,631 @@
+package bankaccountadvanced;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channel;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Primary side of replication: a MutationListener that numbers every
+ * mutation of a BankAccountManager, appends it to an in-memory log and
+ * streams the log to followers, either ReplicaManagers in the same
+ * process or followers connected over a socket.
+ * <p>
+ * Appending is one short critical section; the primary never waits for
+ * a follower while it holds account locks. Each follower has its own
+ * thread that first sends a fuzzy snapshot of every account, taken like
+ * an AccountCheckpoint, and then the log from the point the follower
+ * joined, in order. Followers apply the stream asynchronously and skip
+ * mutations their snapshot already includes, as recovery does. Log
+ * entries are released once every follower has read past them.
+ * <p>
+ * A follower that falls more than {@link #getMaxLag()} mutations behind
+ * slows the primary down: callers wait for it after releasing their
+ * locks, where they would wait for a journal sync, so a follower's lag
+ * stays bounded. A downstream listener, such as an AccountJournal, can
+ * be chained; its tickets are then used as the log's sequence numbers.
+ * Code Reviewer: MarkSayson
+ */
+public class ReplicationLog implements MutationListener, AutoCloseable {
+
+    /** Default number of mutations a follower may fall behind. */
+    public static final int DEFAULT_MAX_LAG = 1 << 16;
+
+    /** Frame carrying a snapshot record. */
+    static final byte FRAME_RECORD = 1;
+
+    /** Frame carrying a sequence number and a mutation. */
+    static final byte FRAME_MUTATION = 2;
+
+    /** Frame carrying a sequence number and an as-of time. */
+    static final byte FRAME_PROGRESS = 3;
+
+    /** Entries per log chunk. */
+    private static final int CHUNK_SIZE = 4_096;
+
+    /** Largest number of mutations delivered between progress reports. */
+    private static final int BATCH = 1_024;
+
+    /** How often an idle follower is told it is still current. */
+    private static final long HEARTBEAT_NANOS = 10_000_000L;
+
+    /** How long a caller waits between checks on a lagging follower. */
+    private static final long BACKPRESSURE_NANOS = 50_000L;
+
+    /** Size of the buffer snapshot records are copied into. */
+    private static final int RECORD_BUFFER_SIZE = 4_096;
+
+    /** Receives every mutation before it is appended; null if none. */
+    private final MutationListener downstream;
+
+    /** Mutations a follower may fall behind before callers wait for it. */
+    private final int maxLag;
+
+    /** Guards appends and the subscription list. */
+    private final ReentrantLock lock;
+
+    /** Chunk new entries are appended to. Guarded by the lock. */
+    private Chunk tail;
+
+    /** Sequence number of the last entry appended. */
+    private volatile long lastSequence;
+
+    /** Followers being streamed to. Replaced, never modified, under the lock. */
+    private volatile Subscription[] subscriptions;
+
+    /** Accepts socket followers; null unless {@link #listen} was called. */
+    private ServerSocketChannel server;
+
+    /**
+     * Constructs a log with no downstream listener.
+     */
+    public ReplicationLog() {
+        this(null, DEFAULT_MAX_LAG);
+    }
+
+    /**
+     * Constructs a log that passes every mutation on to another listener.
+     *
+     * @param next       the downstream listener, e.g. an AccountJournal, or null
+     * @param maxLagSize mutations a follower may fall behind
+     * @throws IllegalArgumentException if maxLagSize is not positive
+     */
+    public ReplicationLog(final MutationListener next, final int maxLagSize) {
+        if (maxLagSize <= 0) {
+            throw new IllegalArgumentException("Maximum lag must be positive: " + maxLagSize);
+        }
+        this.downstream = next;
+        this.maxLag = maxLagSize;
+        this.lock = new ReentrantLock();
+        this.tail = new Chunk();
+        this.subscriptions = new Subscription[0];
+    }
+
+    /**
+     * A block of log entries. Entries below size are immutable.
+     */
+    private static final class Chunk {
+
+        /** Sequence numbers of the entries. */
+        private final long[] sequences = new long[CHUNK_SIZE];
+
+        /** The mutations. */
+        private final Mutation[] mutations = new Mutation[CHUNK_SIZE];
+
+        /** Entries written; published after the entry. */
+        private volatile int size;
+
+        /** The following chunk, set before its first entry is published. */
+        private volatile Chunk next;
+    }
+
+    /**
+     * Returns the sequence number of the last mutation appended. A
+     * follower whose applied sequence has reached it reflects every
+     * write made on the primary before this call.
+     *
+     * @return the last sequence number, or 0 if nothing was appended
+     */
+    public long getSequence() {
+        return lastSequence;
+    }
+
+    /**
+     * Returns how many mutations a follower may fall behind.
+     *
+     * @return the maximum lag
+     */
+    public int getMaxLag() {
+        return maxLag;
+    }
+
+    /**
+     * Returns the number of followers being streamed to.
+     *
+     * @return the follower count
+     */
+    public int getFollowerCount() {
+        return subscriptions.length;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Appends the mutation to the log and wakes idle followers.
+     */
+    @Override
+    public long onMutation(final Mutation mutation) {
+        long sequence;
+        lock.lock();
+        try {
+            sequence = downstream != null
+                    ? downstream.onMutation(mutation) : lastSequence + 1;
+            Chunk chunk = tail;
+            int slot = chunk.size;
+            if (slot == CHUNK_SIZE) {
+                Chunk next = new Chunk();
+                chunk.next = next;
+                tail = next;
+                chunk = next;
+                slot = 0;
+            }
+            chunk.sequences[slot] = sequence;
+            chunk.mutations[slot] = mutation;
+            chunk.size = slot + 1;
+            lastSequence = sequence;
+        } finally {
+            lock.unlock();
+        }
+        for (Subscription subscription : subscriptions) {
+            if (subscription.sleeping) {
+                LockSupport.unpark(subscription.thread);
+            }
+        }
+        return sequence;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Waits for the downstream listener, then for any follower more than
+     * {@link #getMaxLag()} mutations behind the ticket.
+     */
+    @Override
+    public void awaitDurable(final long ticket) {
+        if (downstream != null) {
+            downstream.awaitDurable(ticket);
+        }
+        for (Subscription subscription : subscriptions) {
+            while (ticket - subscription.delivered > maxLag && !subscription.closed) {
+                LockSupport.unpark(subscription.thread);
+                LockSupport.parkNanos(BACKPRESSURE_NANOS);
+            }
+        }
+    }
+
+    /**
+     * Starts a follower in this process. It receives a snapshot of the
+     * primary's accounts and then every mutation from now on.
+     *
+     * @param primary the manager that reports to this log
+     * @return the follower; close it to stop following
+     * @throws IllegalArgumentException if primary does not report to this log
+     */
+    public ReplicaManager addFollower(final BankAccountManager primary) {
+        checkPrimary(primary);
+        ReplicaManager replica = new ReplicaManager();
+        replica.setSource(subscribe(primary, replica, "replication-local"));
+        return replica;
+    }
+
+    /**
+     * Accepts followers over TCP, e.g. ones opened with
+     * {@link ReplicaManager#connect(InetSocketAddress)}. Each connection
+     * receives a snapshot and then every mutation from the time it was
+     * accepted.
+     *
+     * @param primary the manager that reports to this log
+     * @param address the address to listen on; port 0 picks a free port
+     * @return the address actually listened on
+     * @throws IOException if the address cannot be bound
+     * @throws IllegalStateException if the log is already listening
+     */
+    public synchronized InetSocketAddress listen(final BankAccountManager primary,
+            final InetSocketAddress address) throws IOException {
+        checkPrimary(primary);
+        if (server != null) {
+            throw new IllegalStateException("Already listening on " + server.getLocalAddress());
+        }
+        ServerSocketChannel channel = ServerSocketChannel.open();
+        channel.bind(address);
+        server = channel;
+        Thread acceptor = new Thread(() -> accept(primary, channel), "replication-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        return (InetSocketAddress) channel.getLocalAddress();
+    }
+
+    /**
+     * Accepts connections until the server channel is closed.
+     *
+     * @param primary the manager that reports to this log
+     * @param channel the server channel
+     */
+    private void accept(final BankAccountManager primary, final ServerSocketChannel channel) {
+        while (true) {
+            SocketChannel connection;
+            try {
+                connection = channel.accept();
+            } catch (IOException e) {
+                return;
+            }
+            try {
+                connection.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            } catch (IOException e) {
+                closeQuietly(connection);
+                continue;
+            }
+            subscribe(primary, new SocketTarget(connection), "replication-socket");
+        }
+    }
+
+    /**
+     * Checks that a manager reports its mutations to this log.
+     *
+     * @param primary the manager
+     */
+    private void checkPrimary(final BankAccountManager primary) {
+        if (primary.getMutationListener() != this) {
+            throw new IllegalArgumentException("Manager does not report to this log");
+        }
+    }
+
+    /**
+     * Adds a follower that starts reading after the last entry appended
+     * so far, and starts its thread.
+     *
+     * @param primary the manager to snapshot
+     * @param target  where the follower's stream goes
+     * @param name    the thread name
+     * @return the subscription
+     */
+    private Subscription subscribe(final BankAccountManager primary,
+            final ReplicationTarget target, final String name) {
+        Subscription subscription;
+        lock.lock();
+        try {
+            subscription = new Subscription(primary, target, tail, tail.size,
+                    lastSequence, name);
+            Subscription[] current = subscriptions;
+            Subscription[] grown = Arrays.copyOf(current, current.length + 1);
+            grown[current.length] = subscription;
+            subscriptions = grown;
+        } finally {
+            lock.unlock();
+        }
+        subscription.thread.start();
+        return subscription;
+    }
+
+    /**
+     * Removes a follower from the list.
+     *
+     * @param subscription the follower
+     */
+    private void unsubscribe(final Subscription subscription) {
+        lock.lock();
+        try {
+            Subscription[] current = subscriptions;
+            Subscription[] kept = new Subscription[current.length];
+            int n = 0;
+            for (Subscription s : current) {
+                if (s != subscription) {
+                    kept[n++] = s;
+                }
+            }
+            subscriptions = Arrays.copyOf(kept, n);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * One follower's position in the log and the thread that streams to it.
+     */
+    private final class Subscription implements AutoCloseable {
+
+        /** The manager whose accounts are snapshotted. */
+        private final BankAccountManager primary;
+
+        /** Where the stream goes. */
+        private final ReplicationTarget target;
+
+        /** Streams the snapshot and then the log. */
+        private final Thread thread;
+
+        /** Chunk holding the next entry to deliver. Streaming thread only. */
+        private Chunk chunk;
+
+        /** Index of the next entry in its chunk. Streaming thread only. */
+        private int index;
+
+        /** Sequence number of the last entry delivered. */
+        private volatile long delivered;
+
+        /** Set while the streaming thread is about to park or parked. */
+        private volatile boolean sleeping;
+
+        /** Set once the follower is closed or its connection failed. */
+        private volatile boolean closed;
+
+        /**
+         * Constructs a Subscription.
+         *
+         * @param snapshotSource the manager whose accounts are snapshotted
+         * @param streamTarget   where the stream goes
+         * @param start          chunk holding the first entry to deliver
+         * @param startIndex     index of the first entry in its chunk
+         * @param startSequence  sequence number of the entry before it
+         * @param name           the thread name
+         */
+        Subscription(final BankAccountManager snapshotSource,
+                final ReplicationTarget streamTarget, final Chunk start,
+                final int startIndex, final long startSequence, final String name) {
+            this.primary = snapshotSource;
+            this.target = streamTarget;
+            this.chunk = start;
+            this.index = startIndex;
+            this.delivered = startSequence;
+            this.thread = new Thread(this::run, name);
+            this.thread.setDaemon(true);
+        }
+
+        /**
+         * Streams the snapshot and then the log until closed.
+         */
+        private void run() {
+            try {
+                snapshot();
+                while (!closed) {
+                    long now = System.currentTimeMillis();
+                    int sent = 0;
+                    long asOf = 0L;
+                    while (sent < BATCH && hasNext()) {
+                        Mutation mutation = chunk.mutations[index];
+                        long sequence = chunk.sequences[index];
+                        index++;
+                        target.apply(mutation, sequence);
+                        delivered = sequence;
+                        asOf = mutation.getTimestamp();
+                        sent++;
+                    }
+                    if (sent == BATCH) {
+                        target.progress(delivered, asOf);
+                        continue;
+                    }
+                    target.progress(delivered, sent == 0 ? now : Math.max(asOf, now));
+                    sleeping = true;
+                    if (!hasNext() && !closed) {
+                        LockSupport.parkNanos(this, HEARTBEAT_NANOS);
+                    }
+                    sleeping = false;
+                }
+            } catch (IOException | UncheckedIOException e) {
+                closed = true;
+            } finally {
+                unsubscribe(this);
+                if (target instanceof SocketTarget) {
+                    ((SocketTarget) target).close();
+                }
+            }
+        }
+
+        /**
+         * Returns whether another entry has been published, moving to the
+         * next chunk when the current one is used up.
+         *
+         * @return true if an entry is ready at chunk[index]
+         */
+        private boolean hasNext() {
+            if (index == CHUNK_SIZE) {
+                Chunk next = chunk.next;
+                if (next == null) {
+                    return false;
+                }
+                chunk = next;
+                index = 0;
+            }
+            return index < chunk.size;
+        }
+
+        /**
+         * Sends every account of the primary as a checkpoint record.
+         *
+         * @throws IOException if the target fails
+         */
+        private void snapshot() throws IOException {
+            ByteBuffer[] buffer = {ByteBuffer.allocate(RECORD_BUFFER_SIZE)};
+            try {
+                primary.getRegistry().forEach((account, id) -> {
+                    if (!(account instanceof AbstractBankAccount) || closed) {
+                        return;
+                    }
+                    byte[] owner = AccountCheckpoint.ownerBytes(account);
+                    RatePlan plan = AccountCheckpoint.ratePlanOf(account);
+                    int size = AccountCheckpoint.recordSize(owner, plan);
+                    if (size > buffer[0].capacity()) {
+                        buffer[0] = ByteBuffer.allocate(size);
+                    }
+                    ByteBuffer record = buffer[0];
+                    record.clear();
+                    AccountCheckpoint.putRecord(record, id, (AbstractBankAccount) account,
+                            owner, plan);
+                    record.flip();
+                    try {
+                        target.restore(record);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        }
+
+        /**
+         * Stops streaming and waits for the streaming thread to finish.
+         */
+        @Override
+        public void close() {
+            closed = true;
+            LockSupport.unpark(thread);
+            if (Thread.currentThread() == thread) {
+                return;
+            }
+            boolean interrupted = false;
+            while (thread.isAlive()) {
+                try {
+                    thread.join();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * ReplicationTarget that writes the stream to a socket as frames of
+     * {@code [int length][byte kind][payload]}, flushing at every
+     * progress report.
+     */
+    private static final class SocketTarget implements ReplicationTarget {
+
+        /** Initial size of the write buffer. */
+        private static final int BUFFER_SIZE = 1 << 16;
+
+        /** The connection to the follower. */
+        private final SocketChannel channel;
+
+        /** Frames not yet written. */
+        private ByteBuffer buffer;
+
+        /**
+         * Constructs a SocketTarget.
+         *
+         * @param connection the connection to the follower
+         */
+        SocketTarget(final SocketChannel connection) {
+            this.channel = connection;
+            this.buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void restore(final ByteBuffer record) throws IOException {
+            startFrame(FRAME_RECORD, record.remaining());
+            buffer.put(record);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void apply(final Mutation mutation, final long sequence) throws IOException {
+            startFrame(FRAME_MUTATION, 8 + mutation.encodedSize());
+            buffer.putLong(sequence);
+            mutation.writeTo(buffer);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void progress(final long sequence, final long asOfMillis) throws IOException {
+            startFrame(FRAME_PROGRESS, 8 + 8);
+            buffer.putLong(sequence);
+            buffer.putLong(asOfMillis);
+            flush();
+        }
+
+        /**
+         * Writes a frame header, making room for the payload first.
+         *
+         * @param kind          the frame kind
+         * @param payloadLength the payload length in bytes
+         * @throws IOException if buffered frames cannot be written
+         */
+        private void startFrame(final byte kind, final int payloadLength) throws IOException {
+            int frameLength = 4 + 1 + payloadLength;
+            if (buffer.remaining() < frameLength) {
+                flush();
+                if (buffer.capacity() < frameLength) {
+                    buffer = ByteBuffer.allocate(frameLength);
+                }
+            }
+            buffer.putInt(1 + payloadLength);
+            buffer.put(kind);
+        }
+
+        /**
+         * Writes every buffered frame to the socket.
+         *
+         * @throws IOException if the write fails
+         */
+        private void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        /**
+         * Closes the connection.
+         */
+        void close() {
+            closeQuietly(channel);
+        }
+    }
+
+    /**
+     * Closes a channel, ignoring failures.
+     *
+     * @param channel the channel
+     */
+    private static void closeQuietly(final Channel channel) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // Already closed or broken; nothing left to release
+        }
+    }
+
+    /**
+     * Stops accepting followers and stops streaming to every follower.
+     * Followers keep the state they have applied. The downstream
+     * listener is left open.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (server != null) {
+                closeQuietly(server);
+            }
+        }
+        for (Subscription subscription : subscriptions) {
+            subscription.close();
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package bankaccountadvanced;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Where a ReplicationLog delivers one follower's stream: first a
+ * snapshot of every account, then the mutations in log order, with
+ * progress reports in between. Implemented by ReplicaManager for
+ * followers in the same process and by a socket writer for followers
+ * behind a connection. Methods are called from one thread at a time.
+ * Code Reviewer: MarkSayson
+ */
+interface ReplicationTarget {
+
+    /**
+     * Receives the snapshot of one account, in AccountCheckpoint record form.
+     *
+     * @param record the record, positioned at its start and limited to its end
+     * @throws IOException if the record cannot be passed on
+     */
+    void restore(ByteBuffer record) throws IOException;
+
+    /**
+     * Receives a mutation. Mutations arrive in log order.
+     *
+     * @param mutation the mutation
+     * @param sequence the mutation's position in the log
+     * @throws IOException if the mutation cannot be passed on
+     */
+    void apply(Mutation mutation, long sequence) throws IOException;
+
+    /**
+     * Reports that every mutation the primary published up to a point in
+     * time has been delivered.
+     *
+     * @param sequence  the last mutation delivered
+     * @param asOfMillis the point in time, in epoch milliseconds
+     * @throws IOException if the report cannot be passed on
+     */
+    void progress(long sequence, long asOfMillis) throws IOException;
+}
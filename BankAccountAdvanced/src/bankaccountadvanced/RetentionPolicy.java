@@ -0,0 +1,109 @@
+package bankaccountadvanced;
+
+import java.time.Duration;
+
+/**
+ * Decides how much of an account's history a TieredTransactionLedger
+ * keeps in memory. Older entries are moved to the ledger's compressed
+ * archive on disk and remain readable there. A policy is a lower bound:
+ * entries are archived a whole block at a time, so slightly more than
+ * the policy asks for may stay in memory.
+ * Code Reviewer: MarkSayson
+ */
+public final class RetentionPolicy {
+
+    /** Heap bytes of one in-memory entry: type code, amount, timestamp. */
+    static final int BYTES_PER_ENTRY = 1 + 8 + 8;
+
+    /** Newest entries always kept in memory. */
+    private final long maxEntries;
+
+    /** Entries at most this much older than the newest are kept in memory. */
+    private final long maxAgeMillis;
+
+    /**
+     * Constructs a RetentionPolicy.
+     *
+     * @param entries newest entries kept in memory
+     * @param ageMillis age in milliseconds, relative to the newest entry,
+     *                  up to which entries are kept in memory
+     */
+    private RetentionPolicy(final long entries, final long ageMillis) {
+        this.maxEntries = entries;
+        this.maxAgeMillis = ageMillis;
+    }
+
+    /**
+     * Keeps the given number of most recent transactions in memory.
+     *
+     * @param entries the number of transactions to keep
+     * @return the policy
+     * @throws IllegalArgumentException if entries is negative
+     */
+    public static RetentionPolicy keepLast(final int entries) {
+        if (entries < 0) {
+            throw new IllegalArgumentException("Entry count must not be negative: " + entries);
+        }
+        return new RetentionPolicy(entries, Long.MAX_VALUE);
+    }
+
+    /**
+     * Keeps the transactions recorded within a period before the newest
+     * one in memory. Age is measured against the newest transaction
+     * rather than the clock, so an idle account keeps its recent history.
+     *
+     * @param age how far back to keep transactions
+     * @return the policy
+     * @throws IllegalArgumentException if age is negative
+     */
+    public static RetentionPolicy keepFor(final Duration age) {
+        if (age.isNegative()) {
+            throw new IllegalArgumentException("Age must not be negative: " + age);
+        }
+        return new RetentionPolicy(Long.MAX_VALUE, age.toMillis());
+    }
+
+    /**
+     * Keeps as many recent transactions in memory as fit in a number of
+     * bytes of heap, counting {@value #BYTES_PER_ENTRY} bytes per entry.
+     *
+     * @param bytes the heap budget for one ledger
+     * @return the policy
+     * @throws IllegalArgumentException if bytes is negative
+     */
+    public static RetentionPolicy memoryBudget(final long bytes) {
+        if (bytes < 0) {
+            throw new IllegalArgumentException("Budget must not be negative: " + bytes);
+        }
+        return new RetentionPolicy(bytes / BYTES_PER_ENTRY, Long.MAX_VALUE);
+    }
+
+    /**
+     * Returns whether a block of old entries may leave memory.
+     *
+     * @param entriesAfter    in-memory entries that would remain
+     * @param blockNewest     timestamp of the newest entry in the block
+     * @param ledgerNewest    timestamp of the newest entry in the ledger
+     * @return true if the policy no longer needs the block in memory
+     */
+    boolean allowsEviction(final long entriesAfter, final long blockNewest,
+            final long ledgerNewest) {
+        if (maxAgeMillis != Long.MAX_VALUE) {
+            return ledgerNewest - blockNewest > maxAgeMillis;
+        }
+        return entriesAfter >= maxEntries;
+    }
+
+    /**
+     * Returns a description of the policy.
+     *
+     * @return e.g. "keepLast(1000)"
+     */
+    @Override
+    public String toString() {
+        if (maxAgeMillis != Long.MAX_VALUE) {
+            return "keepFor(" + Duration.ofMillis(maxAgeMillis) + ")";
+        }
+        return "keepLast(" + maxEntries + ")";
+    }
+}
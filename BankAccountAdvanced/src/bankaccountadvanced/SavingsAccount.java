@@ -3,6 +3,9 @@ package bankaccountadvanced;
 /**
  * Represents a savings account with an owner name.
  * Extends AbstractBankAccount to inherit common bank account behavior.
+ * <p>
+ * An account with a RatePlan earns interest, credited once per day by
+ * an InterestAccrualEngine as INTEREST transactions.
  * Code Reviewer: MarkSayson
  */
 public class SavingsAccount extends AbstractBankAccount {
@@ -10,6 +13,18 @@ public class SavingsAccount extends AbstractBankAccount {
     /** Name of the account owner. */
     private String ownerName;
 
+    /** Marks an account that has never accrued interest. */
+    static final int NEVER_ACCRUED = Integer.MIN_VALUE;
+
+    /** Interest rate; null when the account earns no interest. */
+    private volatile RatePlan ratePlan;
+
+    /** Interest accrued but not yet posted, in 1/RatePlan.DAILY_DIVISOR centavo. */
+    private long accruedFraction;
+
+    /** Epoch day of the last accrual, or NEVER_ACCRUED. */
+    private int lastAccrualDay = NEVER_ACCRUED;
+
     /**
      * Constructs a SavingsAccount with the specified owner name.
      *
@@ -20,6 +35,17 @@ public class SavingsAccount extends AbstractBankAccount {
         this.ownerName = savingsAccountOwnerName;
     }
 
+    /**
+     * Constructs a SavingsAccount that records its history in the given ledger.
+     *
+     * @param savingsAccountOwnerName the name of the account owner
+     * @param ledger                  the empty ledger that stores transaction history
+     */
+    public SavingsAccount(String savingsAccountOwnerName, TransactionLedger ledger) {
+        super(ledger);
+        this.ownerName = savingsAccountOwnerName;
+    }
+
     /**
      * Returns the name of the account owner.
      *
@@ -28,4 +54,110 @@ public class SavingsAccount extends AbstractBankAccount {
     public String getOwnerName() {
         return ownerName;
     }
+
+    /**
+     * Returns the interest rate of this account.
+     *
+     * @return the rate plan, or null if the account earns no interest
+     */
+    public RatePlan getRatePlan() {
+        return ratePlan;
+    }
+
+    /**
+     * Sets the interest rate of this account, starting with the next
+     * accrual. Interest already accrued is kept.
+     *
+     * @param plan the rate plan, or null to stop earning interest
+     */
+    public void setRatePlan(RatePlan plan) {
+        this.ratePlan = plan;
+    }
+
+    /**
+     * Accrues one day's interest on the current balance and credits the
+     * whole centavos, unless the day has already been accrued. The
+     * leftover fraction of a centavo is carried to the next accrual.
+     * Durability is left to the caller, see
+     * {@link AbstractBankAccount#postInterest(long, int, long)}.
+     *
+     * @param epochDay  the day to accrue for
+     * @param timestamp the time of the posting in epoch milliseconds
+     * @return the interest credited in centavos, 0 if none
+     */
+    long accrue(int epochDay, long timestamp) {
+        RatePlan plan = ratePlan;
+        if (plan == null) {
+            return 0L;
+        }
+        getLock().lock();
+        try {
+            if (lastAccrualDay >= epochDay) {
+                return 0L;
+            }
+            long balance = getBalanceCents();
+            long fraction = accruedFraction + plan.dailyFraction(balance);
+            long cents = plan.dailyCents(balance) + fraction / RatePlan.DAILY_DIVISOR;
+            if (cents > 0L) {
+                // If the posting cannot be recorded the day stays unaccrued
+                postInterest(cents, epochDay, timestamp);
+            }
+            lastAccrualDay = epochDay;
+            accruedFraction = fraction % RatePlan.DAILY_DIVISOR;
+            return cents;
+        } finally {
+            getLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the day interest was last accrued for.
+     *
+     * @return the epoch day, or NEVER_ACCRUED
+     */
+    int getLastAccrualDay() {
+        getLock().lock();
+        try {
+            return lastAccrualDay;
+        } finally {
+            getLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the interest accrued but not yet posted.
+     *
+     * @return the fraction of a centavo, in 1/RatePlan.DAILY_DIVISOR centavo
+     */
+    long getAccruedFraction() {
+        getLock().lock();
+        try {
+            return accruedFraction;
+        } finally {
+            getLock().unlock();
+        }
+    }
+
+    /**
+     * Restores the accrual state saved in a checkpoint.
+     * Must be called while holding this account's lock.
+     *
+     * @param epochDay the day interest was last accrued for, or NEVER_ACCRUED
+     * @param fraction the interest accrued but not yet posted
+     */
+    void restoreAccrual(int epochDay, long fraction) {
+        lastAccrualDay = epochDay;
+        accruedFraction = fraction;
+    }
+
+    /**
+     * Notes that interest was accrued for a day, when replaying the
+     * posting. The carried fraction is not journaled and restarts at 0.
+     * Must be called while holding this account's lock.
+     *
+     * @param epochDay the day interest was accrued for
+     */
+    void restoreAccrualDay(int epochDay) {
+        lastAccrualDay = Math.max(lastAccrualDay, epochDay);
+    }
 }
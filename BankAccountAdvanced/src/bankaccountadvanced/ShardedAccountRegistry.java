@@ -0,0 +1,290 @@
+package bankaccountadvanced;
+
+import java.util.Arrays;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * AccountRegistry that partitions accounts across independently locked
+ * shards. Every shard owns a contiguous range of account IDs and stores
+ * its accounts in an array indexed by position in that range, so an ID
+ * maps to its shard and slot by arithmetic alone: no shared ID counter,
+ * no hash table and no boxed keys.
+ * <p>
+ * Registrations lock only the shard they go to. Each thread spreads its
+ * registrations over the shards in turn, starting from a shard picked by
+ * its thread ID, so concurrent writers mostly take different locks and
+ * the shards fill evenly. IDs therefore increase within a shard but not
+ * across the registry: a later account may receive a lower ID from
+ * another shard. Restoring an ID moves its own shard past it. Lookups
+ * never lock.
+ * Code Reviewer: MarkSayson
+ */
+public class ShardedAccountRegistry implements AccountRegistry {
+
+    /** Largest number of IDs all shards together can hand out. */
+    private static final int MAX_SLOTS = Integer.MAX_VALUE - 8;
+
+    /** Slots allocated when a shard receives its first account. */
+    private static final int INITIAL_CAPACITY = 16;
+
+    /** The shards, in ID order. */
+    private final Shard[] shards;
+
+    /** Number of IDs owned by each shard. */
+    private final int rangeSize;
+
+    /** Shard the current thread registers its next account in. */
+    private final ThreadLocal<int[]> nextShard;
+
+    /**
+     * Constructs an empty registry with the given number of shards.
+     * Shard 0 hands out IDs from 1, so a registry with one shard assigns
+     * the same IDs as a ConcurrentAccountRegistry.
+     *
+     * @param shardCount the number of shards
+     * @throws IllegalArgumentException if shardCount is not positive
+     */
+    public ShardedAccountRegistry(final int shardCount) {
+        if (shardCount <= 0) {
+            throw new IllegalArgumentException("Shard count must be positive: " + shardCount);
+        }
+        this.shards = new Shard[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new Shard();
+        }
+        this.rangeSize = MAX_SLOTS / shardCount;
+        this.nextShard = ThreadLocal.withInitial(() -> new int[] {
+            (int) (Thread.currentThread().threadId() % shardCount)
+        });
+    }
+
+    /**
+     * Accounts of one ID range. Writers hold the shard's monitor; readers
+     * read the volatile bound first, which makes every slot below it visible.
+     */
+    private static final class Shard {
+
+        /** Accounts by position in the shard's ID range. */
+        private volatile BankAccount[] slots = new BankAccount[0];
+
+        /** Slots ever used; published after the slot is written. */
+        private volatile int bound;
+
+        /** Next unused position in the range. Guarded by the monitor. */
+        private int nextSlot;
+
+        /** Number of accounts stored. */
+        private volatile int live;
+
+        /**
+         * Stores an account in a slot, growing the array if needed.
+         * Must be called while holding this shard's monitor.
+         *
+         * @param slot    the position in the shard's range
+         * @param account the account, or null to clear the slot
+         * @return the account previously in the slot
+         */
+        BankAccount put(final int slot, final BankAccount account) {
+            BankAccount[] current = slots;
+            if (slot >= current.length) {
+                if (account == null) {
+                    return null;
+                }
+                long grown = Math.max(INITIAL_CAPACITY, 2L * current.length);
+                current = Arrays.copyOf(current,
+                        (int) Math.min(MAX_SLOTS, Math.max(grown, slot + 1L)));
+            }
+            BankAccount previous = current[slot];
+            current[slot] = account;
+            slots = current;
+            if (slot >= bound) {
+                bound = slot + 1;
+            }
+            live += (account == null ? 0 : 1) - (previous == null ? 0 : 1);
+            return previous;
+        }
+
+        /**
+         * Returns the account in a slot without locking.
+         *
+         * @param slot the position in the shard's range
+         * @return the account, or null if the slot is empty
+         */
+        BankAccount get(final int slot) {
+            if (slot >= bound) {
+                return null;
+            }
+            return slots[slot];
+        }
+    }
+
+    /**
+     * Returns the number of shards.
+     *
+     * @return the shard count
+     */
+    public int getShardCount() {
+        return shards.length;
+    }
+
+    /**
+     * Returns the shard that owns an account ID.
+     *
+     * @param accountId the account ID
+     * @return the shard index, or -1 if no shard owns the ID
+     */
+    public int shardOf(final int accountId) {
+        if (accountId <= 0) {
+            return -1;
+        }
+        int shard = (accountId - 1) / rangeSize;
+        return shard < shards.length ? shard : -1;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws IllegalStateException if the chosen shard has no IDs left
+     */
+    @Override
+    public int register(final BankAccount account) {
+        int[] cursor = nextShard.get();
+        int index = cursor[0];
+        cursor[0] = index + 1 == shards.length ? 0 : index + 1;
+        Shard shard = shards[index];
+        synchronized (shard) {
+            int slot = shard.nextSlot;
+            if (slot == rangeSize) {
+                throw new IllegalStateException("Shard " + index + " has no IDs left");
+            }
+            shard.nextSlot = slot + 1;
+            shard.put(slot, account);
+            return index * rangeSize + slot + 1;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws IllegalArgumentException if no shard owns the ID
+     */
+    @Override
+    public void restore(final int accountId, final BankAccount account) {
+        int index = shardOf(accountId);
+        if (index < 0) {
+            throw new IllegalArgumentException("Account ID out of range: " + accountId);
+        }
+        Shard shard = shards[index];
+        int slot = accountId - 1 - index * rangeSize;
+        synchronized (shard) {
+            shard.put(slot, account);
+            shard.nextSlot = Math.max(shard.nextSlot, slot + 1);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws IllegalArgumentException if no shard owns the ID
+     */
+    @Override
+    public void reserve(final int accountId) {
+        int index = shardOf(accountId);
+        if (index < 0) {
+            throw new IllegalArgumentException("Account ID out of range: " + accountId);
+        }
+        Shard shard = shards[index];
+        int slot = accountId - 1 - index * rangeSize;
+        synchronized (shard) {
+            shard.nextSlot = Math.max(shard.nextSlot, slot + 1);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Each shard allocates its own range, so there is one mark per shard.
+     */
+    @Override
+    public int[] getIdHighWaterMarks() {
+        int[] marks = new int[shards.length];
+        for (int i = 0; i < shards.length; i++) {
+            Shard shard = shards[i];
+            synchronized (shard) {
+                marks[i] = shard.nextSlot == 0 ? 0 : i * rangeSize + shard.nextSlot;
+            }
+        }
+        return marks;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public BankAccount lookup(final int accountId) {
+        int index = shardOf(accountId);
+        if (index < 0) {
+            return null;
+        }
+        return shards[index].get(accountId - 1 - index * rangeSize);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public BankAccount remove(final int accountId) {
+        int index = shardOf(accountId);
+        if (index < 0) {
+            return null;
+        }
+        Shard shard = shards[index];
+        synchronized (shard) {
+            return shard.put(accountId - 1 - index * rangeSize, null);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int size() {
+        int total = 0;
+        for (Shard shard : shards) {
+            total += shard.live;
+        }
+        return total;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Visits the shards in order, so accounts are seen in ascending ID order.
+     */
+    @Override
+    public void forEach(final ObjIntConsumer<BankAccount> action) {
+        for (int i = 0; i < shards.length; i++) {
+            forEachInShard(i, action);
+        }
+    }
+
+    /**
+     * Calls the given action for every account in one shard, in ascending
+     * ID order. Shards can be visited from different threads at once.
+     *
+     * @param shardIndex the shard to visit
+     * @param action     receives each account together with its ID
+     */
+    public void forEachInShard(final int shardIndex, final ObjIntConsumer<BankAccount> action) {
+        Shard shard = shards[shardIndex];
+        int bound = shard.bound;
+        BankAccount[] slots = shard.slots;
+        int base = shardIndex * rangeSize + 1;
+        for (int slot = 0; slot < bound; slot++) {
+            BankAccount account = slots[slot];
+            if (account != null) {
+                action.accept(account, base + slot);
+            }
+        }
+    }
+}
@@ -0,0 +1,599 @@
+package bankaccountadvanced;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * TransactionLedger with a bounded in-memory tier and a compressed
+ * archive on disk. Recent entries are kept in columnar blocks like
+ * {@link ColumnarTransactionLedger}; once the {@link RetentionPolicy} no
+ * longer needs the oldest full block in memory, the block is delta and
+ * varint encoded, deflated and appended to the archive file, and its
+ * arrays are dropped. Positions never change, so every read method
+ * works across both tiers and callers cannot tell where an entry lives.
+ * <p>
+ * Reading an archived entry inflates its whole block. The last few
+ * decoded blocks are cached, so a sequential scan decodes each block
+ * once. Queries that read archived history out of order, such as
+ * iterating {@link #sortedByAmount()}, are correspondingly slower.
+ * <p>
+ * The archive only extends the in-memory history of a running ledger;
+ * it is truncated on open and deleted on {@link #close()}. History
+ * that must survive a restart comes from the journal and checkpoints.
+ * Code Reviewer: MarkSayson
+ */
+public class TieredTransactionLedger extends AbstractTransactionLedger implements Closeable {
+
+    /** Default number of entries per block. */
+    static final int DEFAULT_BLOCK_ENTRIES = 1 << 12;
+
+    /** Initial capacity of the first block. */
+    private static final int INITIAL_CAPACITY = 16;
+
+    /** Largest encoded entry: type code and two 10-byte varints. */
+    private static final int MAX_ENCODED_ENTRY = 1 + 10 + 10;
+
+    /** Number of decoded archive blocks cached. */
+    private static final int CACHE_SLOTS = 4;
+
+    /** Decides when blocks leave memory. */
+    private final RetentionPolicy policy;
+
+    /** Location of the archive file. */
+    private final Path archivePath;
+
+    /** Channel the archive is written and read through. */
+    private final FileChannel archive;
+
+    /** log2 of the number of entries per block. */
+    private final int blockShift;
+
+    /** Mask selecting the offset inside a block. */
+    private final int blockMask;
+
+    /** Type codes by block; null once a block is archived. */
+    private byte[][] types;
+
+    /** Amounts in centavos by block; null once a block is archived. */
+    private long[][] amounts;
+
+    /** Timestamps by block; null once a block is archived. */
+    private long[][] timestamps;
+
+    /** Number of entries written; published after the entry's columns. */
+    private volatile int size;
+
+    /** File offsets of the archived blocks; published after the block is written. */
+    private volatile ArchiveIndex archiveIndex;
+
+    /** Recently decoded archive blocks, by block number modulo the slot count. */
+    private final DecodedBlock[] cache;
+
+    /**
+     * Opens a ledger that archives to the given file, replacing any
+     * archive left there.
+     *
+     * @param archiveFile the file holding archived blocks
+     * @param retention   how much history to keep in memory
+     * @throws IOException if the archive file cannot be created
+     */
+    public TieredTransactionLedger(final Path archiveFile, final RetentionPolicy retention)
+            throws IOException {
+        this(archiveFile, retention, DEFAULT_BLOCK_ENTRIES);
+    }
+
+    /**
+     * Opens a ledger with a given block size.
+     *
+     * @param archiveFile  the file holding archived blocks
+     * @param retention    how much history to keep in memory
+     * @param blockEntries entries per block; must be a power of two
+     *                     of at least 16
+     * @throws IOException if the archive file cannot be created
+     */
+    TieredTransactionLedger(final Path archiveFile, final RetentionPolicy retention,
+            final int blockEntries) throws IOException {
+        super();
+        if (blockEntries < INITIAL_CAPACITY || Integer.bitCount(blockEntries) != 1) {
+            throw new IllegalArgumentException(
+                    "Block size must be a power of two of at least 16: " + blockEntries);
+        }
+        this.policy = retention;
+        this.archivePath = archiveFile;
+        this.blockShift = Integer.numberOfTrailingZeros(blockEntries);
+        this.blockMask = blockEntries - 1;
+        this.types = new byte[0][];
+        this.amounts = new long[0][];
+        this.timestamps = new long[0][];
+        this.archiveIndex = new ArchiveIndex(new long[] {0L}, 0);
+        this.cache = new DecodedBlock[CACHE_SLOTS];
+        Path parent = archiveFile.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        this.archive = FileChannel.open(archiveFile, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+    }
+
+    /**
+     * The archived blocks: block b occupies {@code [offsets[b], offsets[b + 1])}
+     * of the archive file. A new index is published for every block; it
+     * may share the offsets array with older ones, whose entries never change.
+     */
+    private static final class ArchiveIndex {
+
+        /** File offsets, one more than the number of blocks. */
+        private final long[] offsets;
+
+        /** Number of archived blocks. */
+        private final int blocks;
+
+        /**
+         * Constructs an ArchiveIndex.
+         *
+         * @param blockOffsets file offsets, one more than blockCount
+         * @param blockCount   number of archived blocks
+         */
+        ArchiveIndex(final long[] blockOffsets, final int blockCount) {
+            this.offsets = blockOffsets;
+            this.blocks = blockCount;
+        }
+    }
+
+    /**
+     * The columns of one archived block, read back from the file.
+     */
+    private static final class DecodedBlock {
+
+        /** The block number. */
+        private final int block;
+
+        /** Type codes. */
+        private final byte[] types;
+
+        /** Amounts in centavos. */
+        private final long[] amounts;
+
+        /** Timestamps in epoch milliseconds. */
+        private final long[] timestamps;
+
+        /**
+         * Constructs a DecodedBlock.
+         *
+         * @param blockNumber     the block number
+         * @param blockTypes      type codes
+         * @param blockAmounts    amounts in centavos
+         * @param blockTimestamps timestamps in epoch milliseconds
+         */
+        DecodedBlock(final int blockNumber, final byte[] blockTypes,
+                final long[] blockAmounts, final long[] blockTimestamps) {
+            this.block = blockNumber;
+            this.types = blockTypes;
+            this.amounts = blockAmounts;
+            this.timestamps = blockTimestamps;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws UncheckedIOException if a block cannot be archived
+     */
+    @Override
+    public void append(final TransactionType type, final long amountCents,
+            final long timestamp) {
+        int position = size;
+        int block = position >>> blockShift;
+        int offset = position & blockMask;
+        ensureCapacity(block, offset);
+        types[block][offset] = type.code();
+        amounts[block][offset] = amountCents;
+        timestamps[block][offset] = timestamp;
+        size = position + 1;
+        evict();
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Copies the amounts block by block and publishes all entries at once.
+     *
+     * @throws UncheckedIOException if a block cannot be archived
+     */
+    @Override
+    public void appendAll(final TransactionType[] typesToAdd,
+            final long[] amountsCents, final int count, final long timestamp) {
+        int position = size;
+        int done = 0;
+        while (done < count) {
+            int block = position >>> blockShift;
+            int offset = position & blockMask;
+            ensureCapacity(block, offset);
+            int n = Math.min(count - done, types[block].length - offset);
+            byte[] typeBlock = types[block];
+            for (int i = 0; i < n; i++) {
+                typeBlock[offset + i] = typesToAdd[done + i].code();
+            }
+            System.arraycopy(amountsCents, done, amounts[block], offset, n);
+            Arrays.fill(timestamps[block], offset, offset + n, timestamp);
+            done += n;
+            position += n;
+        }
+        size = position;
+        evict();
+    }
+
+    /**
+     * Makes room for an entry at an offset of a block, adding the block
+     * or growing the first one as needed.
+     *
+     * @param block  the block number
+     * @param offset the offset inside the block
+     */
+    private void ensureCapacity(final int block, final int offset) {
+        if (block == types.length) {
+            int capacity = block == 0 ? INITIAL_CAPACITY : blockMask + 1;
+            types = Arrays.copyOf(types, block + 1);
+            amounts = Arrays.copyOf(amounts, block + 1);
+            timestamps = Arrays.copyOf(timestamps, block + 1);
+            types[block] = new byte[capacity];
+            amounts[block] = new long[capacity];
+            timestamps[block] = new long[capacity];
+        } else if (block == 0 && offset == types[0].length) {
+            int capacity = Math.min(types[0].length * 2, blockMask + 1);
+            types[0] = Arrays.copyOf(types[0], capacity);
+            amounts[0] = Arrays.copyOf(amounts[0], capacity);
+            timestamps[0] = Arrays.copyOf(timestamps[0], capacity);
+        }
+    }
+
+    /**
+     * Archives the oldest in-memory blocks for as long as they are full
+     * and the retention policy allows it.
+     */
+    private void evict() {
+        int published = size;
+        if (published == 0) {
+            return;
+        }
+        int last = published - 1;
+        long newest = timestamps[last >>> blockShift][last & blockMask];
+        int blockEntries = blockMask + 1;
+        while (true) {
+            int block = archiveIndex.blocks;
+            long end = ((long) block + 1) << blockShift;
+            if (end > published || !policy.allowsEviction(published - end,
+                    timestamps[block][blockMask], newest)) {
+                return;
+            }
+            archiveBlock(block, blockEntries);
+        }
+    }
+
+    /**
+     * Compresses a full block, appends it to the archive file, publishes
+     * it and then drops its arrays. The buffers and the Deflater live only
+     * for the call, so a ledger that is not archiving holds none of them.
+     *
+     * @param block        the block number
+     * @param blockEntries entries in the block
+     */
+    private void archiveBlock(final int block, final int blockEntries) {
+        byte[] encoded = new byte[blockEntries * MAX_ENCODED_ENTRY];
+        int length = encode(types[block], amounts[block], timestamps[block],
+                blockEntries, encoded);
+        byte[] compressed = new byte[length / 2 + 64];
+        int compressedLength = 0;
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(encoded, 0, length);
+            deflater.finish();
+            while (!deflater.finished()) {
+                if (compressedLength == compressed.length) {
+                    compressed = Arrays.copyOf(compressed, compressed.length * 2);
+                }
+                compressedLength += deflater.deflate(compressed, compressedLength,
+                        compressed.length - compressedLength);
+            }
+        } finally {
+            deflater.end();
+        }
+        ArchiveIndex current = archiveIndex;
+        long start = current.offsets[block];
+        ByteBuffer buffer = ByteBuffer.wrap(compressed, 0, compressedLength);
+        try {
+            while (buffer.hasRemaining()) {
+                archive.write(buffer, start + buffer.position());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        long[] offsets = current.offsets;
+        if (block + 1 == offsets.length) {
+            offsets = Arrays.copyOf(offsets, Math.max(8, offsets.length * 2));
+        }
+        offsets[block + 1] = start + compressedLength;
+        archiveIndex = new ArchiveIndex(offsets, block + 1);
+        types[block] = null;
+        amounts[block] = null;
+        timestamps[block] = null;
+    }
+
+    /**
+     * Encodes a block: per entry the type code,
+     * the amount as a zig-zag varint and the timestamp as a zig-zag
+     * varint delta from the previous entry's.
+     *
+     * @param blockTypes      type codes
+     * @param blockAmounts    amounts in centavos
+     * @param blockTimestamps timestamps
+     * @param count           number of entries
+     * @param encoded         receives the encoding
+     * @return the encoded length in bytes
+     */
+    private static int encode(final byte[] blockTypes, final long[] blockAmounts,
+            final long[] blockTimestamps, final int count, final byte[] encoded) {
+        int length = 0;
+        long previous = 0L;
+        for (int i = 0; i < count; i++) {
+            encoded[length++] = blockTypes[i];
+            length = putVarLong(encoded, length, zigZag(blockAmounts[i]));
+            length = putVarLong(encoded, length, zigZag(blockTimestamps[i] - previous));
+            previous = blockTimestamps[i];
+        }
+        return length;
+    }
+
+    /**
+     * Maps a signed value to an unsigned one with small magnitudes first.
+     *
+     * @param value the signed value
+     * @return the zig-zag encoding
+     */
+    private static long zigZag(final long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    /**
+     * Writes an unsigned value seven bits per byte, low bits first.
+     *
+     * @param target   the buffer
+     * @param position where to write
+     * @param value    the value
+     * @return the position after the value
+     */
+    private static int putVarLong(final byte[] target, final int position, final long value) {
+        int at = position;
+        long rest = value;
+        while ((rest & ~0x7FL) != 0) {
+            target[at++] = (byte) ((rest & 0x7F) | 0x80);
+            rest >>>= 7;
+        }
+        target[at++] = (byte) rest;
+        return at;
+    }
+
+    /**
+     * Reverses {@link #zigZag(long)}.
+     *
+     * @param value the zig-zag encoding
+     * @return the signed value
+     */
+    private static long unZigZag(final long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * Reads a value written by {@link #putVarLong}.
+     *
+     * @param in the buffer, positioned at the value
+     * @return the value
+     */
+    private static long getVarLong(final ByteBuffer in) {
+        long value = 0L;
+        int shift = 0;
+        byte b;
+        do {
+            b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        return value;
+    }
+
+    /**
+     * Returns an archived block, reading and decoding it unless cached.
+     * Safe to call from any thread.
+     *
+     * @param block the block number
+     * @return the decoded block
+     * @throws UncheckedIOException if the archive cannot be read
+     */
+    private DecodedBlock archived(final int block) {
+        int slot = block & (CACHE_SLOTS - 1);
+        DecodedBlock cached = cache[slot];
+        if (cached != null && cached.block == block) {
+            return cached;
+        }
+        ArchiveIndex current = archiveIndex;
+        while (block >= current.blocks) {
+            // The block's arrays were dropped just after it was published
+            Thread.onSpinWait();
+            current = archiveIndex;
+        }
+        long start = current.offsets[block];
+        byte[] data = new byte[(int) (current.offsets[block + 1] - start)];
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        byte[] plain = new byte[(blockMask + 1) * MAX_ENCODED_ENTRY];
+        Inflater inflater = new Inflater();
+        try {
+            while (buffer.hasRemaining()) {
+                if (archive.read(buffer, start + buffer.position()) < 0) {
+                    throw new IOException("Archive truncated at block " + block);
+                }
+            }
+            inflater.setInput(data);
+            inflater.inflate(plain);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (DataFormatException e) {
+            throw new UncheckedIOException(new IOException("Corrupt archive block " + block, e));
+        } finally {
+            inflater.end();
+        }
+        DecodedBlock decoded = decode(block, plain);
+        cache[slot] = decoded;
+        return decoded;
+    }
+
+    /**
+     * Decodes a block written by {@link #encode}.
+     *
+     * @param block the block number
+     * @param plain the inflated bytes
+     * @return the decoded block
+     */
+    private DecodedBlock decode(final int block, final byte[] plain) {
+        int count = blockMask + 1;
+        byte[] blockTypes = new byte[count];
+        long[] blockAmounts = new long[count];
+        long[] blockTimestamps = new long[count];
+        ByteBuffer in = ByteBuffer.wrap(plain);
+        long previous = 0L;
+        for (int i = 0; i < count; i++) {
+            blockTypes[i] = in.get();
+            blockAmounts[i] = unZigZag(getVarLong(in));
+            previous += unZigZag(getVarLong(in));
+            blockTimestamps[i] = previous;
+        }
+        return new DecodedBlock(block, blockTypes, blockAmounts, blockTimestamps);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public TransactionType typeAt(final int index) {
+        checkIndex(index);
+        byte[] block = types[index >>> blockShift];
+        return TransactionType.fromCode(block != null
+                ? block[index & blockMask]
+                : archived(index >>> blockShift).types[index & blockMask]);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long amountCentsAt(final int index) {
+        checkIndex(index);
+        long[] block = amounts[index >>> blockShift];
+        return block != null
+                ? block[index & blockMask]
+                : archived(index >>> blockShift).amounts[index & blockMask];
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long timestampAt(final int index) {
+        checkIndex(index);
+        long[] block = timestamps[index >>> blockShift];
+        return block != null
+                ? block[index & blockMask]
+                : archived(index >>> blockShift).timestamps[index & blockMask];
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Reads the amount column once, in ledger order, so archived blocks
+     * are decoded once each rather than once per comparison.
+     */
+    @Override
+    public List<Transaction> sortedByAmount() {
+        int count = size;
+        long[] column = new long[count];
+        int[] order = new int[count];
+        for (int i = 0; i < count; i++) {
+            column[i] = amountCentsAt(i);
+            order[i] = i;
+        }
+        AmountIndex.mergeSort(column, order, new long[count], new int[count], 0, count);
+        return new IndexedView(this, order, count);
+    }
+
+    /**
+     * Returns the number of entries held in memory.
+     *
+     * @return the in-memory entry count
+     */
+    public int getHotEntries() {
+        return size - getArchivedEntries();
+    }
+
+    /**
+     * Returns the number of entries moved to the archive.
+     *
+     * @return the archived entry count
+     */
+    public int getArchivedEntries() {
+        return archiveIndex.blocks << blockShift;
+    }
+
+    /**
+     * Returns the size of the archive file.
+     *
+     * @return the compressed size of the archived entries in bytes
+     */
+    public long getArchiveBytes() {
+        ArchiveIndex current = archiveIndex;
+        return current.offsets[current.blocks];
+    }
+
+    /**
+     * Checks that an index refers to a published entry. Reading the
+     * volatile size first also makes that entry's columns visible.
+     *
+     * @param index the index to check
+     */
+    private void checkIndex(final int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException(
+                    "Index " + index + " out of bounds for size " + size);
+        }
+    }
+
+    /**
+     * Closes and deletes the archive file. Archived entries can no longer
+     * be read afterwards.
+     *
+     * @throws IOException if the file cannot be closed or deleted
+     */
+    @Override
+    public void close() throws IOException {
+        archive.close();
+        Files.deleteIfExists(archivePath);
+    }
+}
@@ -1,7 +1,10 @@
 package bankaccountadvanced;
 
 /**
- * Represents a bank transaction with a type and an amount.
+ * Represents a bank transaction with a type, an amount and a timestamp.
+ * A transaction read from an account's history by position, e.g. from a
+ * TransactionPage or a stream, also knows its sequence number in the
+ * account and the balance it left behind.
  * Code Reviewer: MarkSayson
  */
 public class Transaction {
@@ -9,18 +12,102 @@ public class Transaction {
     /** Type of the transaction, e.g., "Deposit" or "Withdraw". */
     private String type;
 
-    /** Amount involved in the transaction. */
-    private double amount;
+    /** Amount involved in the transaction, in centavos. */
+    private long amountCents;
+
+    /** Time of the transaction in epoch milliseconds. */
+    private long timestamp;
+
+    /** Sequence number in the account's history, or -1 if unknown. */
+    private long sequence;
+
+    /** Account balance after the transaction in centavos; 0 if the sequence is unknown. */
+    private long balanceAfterCents;
 
     /**
-     * Constructs a Transaction with the specified type and amount.
+     * Constructs a Transaction with the specified type and amount,
+     * timestamped with the current time.
+     * The amount is rounded to the nearest centavo.
      *
      * @param transactionType   the type of the transaction
      * @param transactionAmount the amount of the transaction
      */
     public Transaction(final String transactionType, final double transactionAmount) {
+        this(transactionType, Money.toCents(transactionAmount),
+                System.currentTimeMillis());
+    }
+
+    /**
+     * Constructs a Transaction with the specified type, centavo amount and time.
+     *
+     * @param transactionType the type of the transaction
+     * @param amountInCents   the amount of the transaction in centavos
+     * @param time            the time of the transaction in epoch milliseconds
+     */
+    private Transaction(final String transactionType, final long amountInCents,
+            final long time) {
+        this(transactionType, amountInCents, time, -1L, 0L);
+    }
+
+    /**
+     * Constructs a Transaction with all of its fields.
+     *
+     * @param transactionType the type of the transaction
+     * @param amountInCents   the amount of the transaction in centavos
+     * @param time            the time of the transaction in epoch milliseconds
+     * @param position        sequence number in the account, or -1
+     * @param balanceCents    balance after the transaction in centavos
+     */
+    private Transaction(final String transactionType, final long amountInCents,
+            final long time, final long position, final long balanceCents) {
         this.type = transactionType;
-        this.amount = transactionAmount;
+        this.amountCents = amountInCents;
+        this.timestamp = time;
+        this.sequence = position;
+        this.balanceAfterCents = balanceCents;
+    }
+
+    /**
+     * Creates a Transaction with the specified type and centavo amount,
+     * timestamped with the current time.
+     *
+     * @param transactionType the type of the transaction
+     * @param amountInCents   the amount of the transaction in centavos
+     * @return the new transaction
+     */
+    public static Transaction ofCents(final String transactionType,
+            final long amountInCents) {
+        return new Transaction(transactionType, amountInCents,
+                System.currentTimeMillis());
+    }
+
+    /**
+     * Creates a Transaction of a known type as recorded in a ledger.
+     *
+     * @param transactionType the type of the transaction
+     * @param amountInCents   the amount of the transaction in centavos
+     * @param time            the time of the transaction in epoch milliseconds
+     * @return the new transaction
+     */
+    public static Transaction of(final TransactionType transactionType,
+            final long amountInCents, final long time) {
+        return new Transaction(transactionType.getLabel(), amountInCents, time);
+    }
+
+    /**
+     * Creates a Transaction read from a position in an account's history.
+     *
+     * @param transactionType the type of the transaction
+     * @param amountInCents   the amount of the transaction in centavos
+     * @param time            the time of the transaction in epoch milliseconds
+     * @param position        sequence number in the account
+     * @param balanceCents    balance after the transaction in centavos
+     * @return the new transaction
+     */
+    static Transaction at(final TransactionType transactionType, final long amountInCents,
+            final long time, final long position, final long balanceCents) {
+        return new Transaction(transactionType.getLabel(), amountInCents, time,
+                position, balanceCents);
     }
 
     /**
@@ -38,7 +125,59 @@ public class Transaction {
      * @return the transaction amount
      */
     public double getAmount() {
-        return amount;
+        return Money.toAmount(amountCents);
+    }
+
+    /**
+     * Returns the amount of the transaction in centavos.
+     *
+     * @return the transaction amount in centavos
+     */
+    public long getAmountCents() {
+        return amountCents;
+    }
+
+    /**
+     * Returns the time of the transaction.
+     *
+     * @return the time in epoch milliseconds
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * Returns the sequence number of the transaction in its account's
+     * history. Sequence numbers count the account's transactions from 0.
+     *
+     * @return the sequence number, or -1 if the transaction was not read
+     *         from an account's history by position
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * Returns the account balance right after the transaction.
+     *
+     * @return the balance after the transaction
+     * @throws IllegalStateException if the sequence number is unknown
+     */
+    public double getBalanceAfter() {
+        return Money.toAmount(getBalanceAfterCents());
+    }
+
+    /**
+     * Returns the account balance right after the transaction in centavos.
+     *
+     * @return the balance after the transaction in centavos
+     * @throws IllegalStateException if the sequence number is unknown
+     */
+    public long getBalanceAfterCents() {
+        if (sequence < 0) {
+            throw new IllegalStateException("Transaction was not read from an account history");
+        }
+        return balanceAfterCents;
     }
 
     /**
@@ -49,6 +188,6 @@ public class Transaction {
      */
     @Override
     public final String toString() {
-        return type + ": Php " + amount;
+        return type + ": Php " + getAmount();
     }
 }
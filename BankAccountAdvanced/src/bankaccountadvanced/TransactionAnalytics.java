@@ -0,0 +1,475 @@
+package bankaccountadvanced;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BinaryOperator;
+import java.util.function.Supplier;
+
+/**
+ * Queries over the transaction histories of every account in a
+ * BankAccountManager, run in parallel on a ForkJoinPool.
+ * <p>
+ * Each query first snapshots the registry: for every account it notes the
+ * ledger and its current length. Ledgers are append-only, so the entries
+ * below that length never change and are scanned without locking while
+ * deposits continue. The snapshot of each account is consistent; accounts
+ * are not snapshotted at exactly the same instant.
+ * Code Reviewer: MarkSayson
+ */
+public final class TransactionAnalytics {
+
+    /** Leaf tasks per worker thread, to balance uneven histories. */
+    private static final int TASKS_PER_THREAD = 8;
+
+    /** The manager whose accounts are queried. */
+    private final BankAccountManager manager;
+
+    /** The pool the queries run on. */
+    private final ForkJoinPool pool;
+
+    /**
+     * Constructs a TransactionAnalytics.
+     *
+     * @param source   the manager whose accounts are queried
+     * @param executor the pool the queries run on
+     */
+    TransactionAnalytics(final BankAccountManager source, final ForkJoinPool executor) {
+        this.manager = source;
+        this.pool = executor;
+    }
+
+    /**
+     * The part of one account's history visible to a query.
+     */
+    private static final class AccountSnapshot {
+
+        /** ID of the account. */
+        private final int accountId;
+
+        /** The account's ledger. */
+        private final TransactionLedger ledger;
+
+        /** Number of ledger entries included in the snapshot. */
+        private final int size;
+
+        /**
+         * Constructs an AccountSnapshot.
+         *
+         * @param id     the account ID
+         * @param source the account's ledger
+         * @param length the number of entries to include
+         */
+        AccountSnapshot(final int id, final TransactionLedger source, final int length) {
+            this.accountId = id;
+            this.ledger = source;
+            this.size = length;
+        }
+
+        /**
+         * Returns whether the entry at an index matches a type filter.
+         *
+         * @param index position in the ledger
+         * @param type  the type to match, or null for any type
+         * @return true if the entry matches
+         */
+        boolean matches(final int index, final TransactionType type) {
+            return type == null || ledger.typeAt(index) == type;
+        }
+    }
+
+    /**
+     * Scans the accounts of a snapshot into a partial result.
+     *
+     * @param <R> the result type
+     */
+    @FunctionalInterface
+    private interface Scanner<R> {
+
+        /**
+         * Adds one account's history to a partial result.
+         *
+         * @param result  the partial result
+         * @param account the account to scan
+         */
+        void scan(R result, AccountSnapshot account);
+    }
+
+    /**
+     * Splits a range of accounts until it is small enough to scan.
+     *
+     * @param <R> the result type
+     */
+    private static final class ScanTask<R> extends RecursiveTask<R> {
+
+        /** Serialization version; tasks are never actually serialized. */
+        private static final long serialVersionUID = 1L;
+
+        /** All accounts in the snapshot. */
+        private final transient AccountSnapshot[] accounts;
+
+        /** First account of this task, inclusive. */
+        private final int from;
+
+        /** Last account of this task, exclusive. */
+        private final int to;
+
+        /** Largest range scanned without splitting. */
+        private final int leafSize;
+
+        /** Creates an empty partial result. */
+        private final transient Supplier<R> create;
+
+        /** Adds an account to a partial result. */
+        private final transient Scanner<R> scanner;
+
+        /** Merges two partial results. */
+        private final transient BinaryOperator<R> combine;
+
+        /**
+         * Constructs a ScanTask.
+         *
+         * @param snapshot    all accounts in the snapshot
+         * @param first       first account, inclusive
+         * @param last        last account, exclusive
+         * @param leaf        largest range scanned without splitting
+         * @param supplier    creates an empty partial result
+         * @param accountScan adds an account to a partial result
+         * @param merge       merges two partial results
+         */
+        ScanTask(final AccountSnapshot[] snapshot, final int first, final int last,
+                final int leaf, final Supplier<R> supplier,
+                final Scanner<R> accountScan, final BinaryOperator<R> merge) {
+            this.accounts = snapshot;
+            this.from = first;
+            this.to = last;
+            this.leafSize = leaf;
+            this.create = supplier;
+            this.scanner = accountScan;
+            this.combine = merge;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        protected R compute() {
+            if (to - from <= leafSize) {
+                R result = create.get();
+                for (int i = from; i < to; i++) {
+                    scanner.scan(result, accounts[i]);
+                }
+                return result;
+            }
+            int mid = (from + to) >>> 1;
+            ScanTask<R> left = new ScanTask<>(accounts, from, mid, leafSize,
+                    create, scanner, combine);
+            ScanTask<R> right = new ScanTask<>(accounts, mid, to, leafSize,
+                    create, scanner, combine);
+            left.fork();
+            R rightResult = right.compute();
+            return combine.apply(left.join(), rightResult);
+        }
+    }
+
+    /**
+     * Notes the ledger and current history length of every account,
+     * ordered by account ID.
+     *
+     * @return the snapshot
+     * @throws UnsupportedOperationException if an account's history is
+     *         not kept in a TransactionLedger
+     */
+    private AccountSnapshot[] snapshot() {
+        List<AccountSnapshot> accounts = new ArrayList<>(manager.getAccountCount());
+        manager.getRegistry().forEach((account, id) -> {
+            TransactionLedger ledger =
+                    AbstractTransactionLedger.backingLedger(account.getTransactionHistory());
+            if (ledger == null) {
+                throw new UnsupportedOperationException(
+                        "Analytics require accounts backed by a TransactionLedger");
+            }
+            accounts.add(new AccountSnapshot(id, ledger, ledger.size()));
+        });
+        accounts.sort((a, b) -> Integer.compare(a.accountId, b.accountId));
+        return accounts.toArray(new AccountSnapshot[0]);
+    }
+
+    /**
+     * Scans a snapshot of every account in parallel and merges the results.
+     *
+     * @param <R>     the result type
+     * @param create  creates an empty partial result
+     * @param scanner adds an account to a partial result
+     * @param combine merges two partial results
+     * @return the merged result
+     */
+    private <R> R scan(final Supplier<R> create, final Scanner<R> scanner,
+            final BinaryOperator<R> combine) {
+        AccountSnapshot[] accounts = snapshot();
+        int leafSize = Math.max(1,
+                accounts.length / (pool.getParallelism() * TASKS_PER_THREAD));
+        return pool.invoke(new ScanTask<>(accounts, 0, accounts.length, leafSize,
+                create, scanner, combine));
+    }
+
+    /**
+     * Finds the transactions above an amount in every account.
+     * The amount is rounded to the nearest centavo.
+     *
+     * @param amount the threshold amount
+     * @param type   the transaction type to include, or null for all types
+     * @return matching transactions by account ID, for accounts with any match
+     */
+    public Map<Integer, List<Transaction>> filterAbove(final double amount,
+            final TransactionType type) {
+        return filterAboveCents(Money.toCents(amount), type);
+    }
+
+    /**
+     * Finds the transactions above a centavo amount in every account.
+     * Each account's matches are a read-only view in ledger order.
+     *
+     * @param amountCents the threshold in centavos
+     * @param type        the transaction type to include, or null for all types
+     * @return matching transactions by account ID, for accounts with any match
+     */
+    public Map<Integer, List<Transaction>> filterAboveCents(final long amountCents,
+            final TransactionType type) {
+        return scan(TreeMap::new, (result, account) -> {
+            int[] matches = null;
+            int count = 0;
+            for (int i = 0; i < account.size; i++) {
+                if (account.ledger.amountCentsAt(i) > amountCents
+                        && account.matches(i, type)) {
+                    if (matches == null) {
+                        matches = new int[Math.min(account.size - i, 16)];
+                    } else if (count == matches.length) {
+                        matches = Arrays.copyOf(matches,
+                                Math.min(account.size, count * 2));
+                    }
+                    matches[count++] = i;
+                }
+            }
+            if (count > 0) {
+                result.put(account.accountId, new AbstractTransactionLedger.IndexedView(
+                        account.ledger, matches, count));
+            }
+        }, (left, right) -> {
+            left.putAll(right);
+            return left;
+        });
+    }
+
+    /**
+     * A transaction found by a top-N query, before it is materialized.
+     */
+    private static final class Candidate {
+
+        /** The account the transaction belongs to. */
+        private final AccountSnapshot account;
+
+        /** Position of the transaction in the account's ledger. */
+        private final int index;
+
+        /** Amount of the transaction in centavos. */
+        private final long amountCents;
+
+        /**
+         * Constructs a Candidate.
+         *
+         * @param owner    the account
+         * @param position position in the ledger
+         * @param amount   the amount in centavos
+         */
+        Candidate(final AccountSnapshot owner, final int position, final long amount) {
+            this.account = owner;
+            this.index = position;
+            this.amountCents = amount;
+        }
+
+        /**
+         * Orders candidates by amount, then by account ID and position.
+         *
+         * @param a the first candidate
+         * @param b the second candidate
+         * @return negative, zero or positive as a ranks below, with or above b
+         */
+        static int compare(final Candidate a, final Candidate b) {
+            int byAmount = Long.compare(a.amountCents, b.amountCents);
+            if (byAmount != 0) {
+                return byAmount;
+            }
+            int byAccount = Integer.compare(b.account.accountId, a.account.accountId);
+            return byAccount != 0 ? byAccount : Integer.compare(b.index, a.index);
+        }
+    }
+
+    /**
+     * Offers a candidate to a min-heap that keeps the largest n.
+     *
+     * @param heap      the heap
+     * @param n         the number of candidates to keep
+     * @param candidate the candidate
+     */
+    private static void offer(final PriorityQueue<Candidate> heap, final int n,
+            final Candidate candidate) {
+        if (heap.size() < n) {
+            heap.add(candidate);
+        } else if (Candidate.compare(candidate, heap.peek()) > 0) {
+            heap.poll();
+            heap.add(candidate);
+        }
+    }
+
+    /**
+     * Finds the largest transactions across every account.
+     * Transactions with equal amounts are ordered by account ID, then by
+     * their order in the account's history.
+     *
+     * @param n    the number of transactions to return
+     * @param type the transaction type to include, or null for all types
+     * @return up to n transactions, largest first
+     * @throws IllegalArgumentException if n is negative
+     */
+    public List<AccountTransaction> topByAmount(final int n, final TransactionType type) {
+        if (n < 0) {
+            throw new IllegalArgumentException("n must not be negative: " + n);
+        }
+        if (n == 0) {
+            return Collections.emptyList();
+        }
+        PriorityQueue<Candidate> top = scan(
+                () -> new PriorityQueue<>(Candidate::compare), (heap, account) -> {
+                    for (int i = 0; i < account.size; i++) {
+                        long amount = account.ledger.amountCentsAt(i);
+                        if ((heap.size() < n || amount >= heap.peek().amountCents)
+                                && account.matches(i, type)) {
+                            offer(heap, n, new Candidate(account, i, amount));
+                        }
+                    }
+                }, (left, right) -> {
+                    PriorityQueue<Candidate> larger = left.size() >= right.size() ? left : right;
+                    PriorityQueue<Candidate> smaller = larger == left ? right : left;
+                    for (Candidate candidate : smaller) {
+                        offer(larger, n, candidate);
+                    }
+                    return larger;
+                });
+        List<Candidate> ordered = new ArrayList<>(top);
+        ordered.sort((a, b) -> Candidate.compare(b, a));
+        List<AccountTransaction> result = new ArrayList<>(ordered.size());
+        for (Candidate candidate : ordered) {
+            result.add(new AccountTransaction(candidate.account.accountId,
+                    candidate.account.ledger.get(candidate.index)));
+        }
+        return result;
+    }
+
+    /**
+     * Per-type totals and distributions collected by one task.
+     */
+    private static final class TypeAccumulator {
+
+        /** Sum of the amounts of each type, by type code. */
+        private final long[] sums = new long[TransactionType.values().length];
+
+        /** Distribution of each type's amounts, by type code; null if none. */
+        private final AmountHistogram[] histograms =
+                new AmountHistogram[TransactionType.values().length];
+
+        /**
+         * Records one transaction.
+         *
+         * @param type        the transaction type
+         * @param amountCents the amount in centavos
+         */
+        void record(final TransactionType type, final long amountCents) {
+            int code = type.code();
+            if (histograms[code] == null) {
+                histograms[code] = new AmountHistogram();
+            }
+            sums[code] = Math.addExact(sums[code], amountCents);
+            histograms[code].record(amountCents);
+        }
+
+        /**
+         * Adds another accumulator's values to this one.
+         *
+         * @param other the accumulator to merge
+         * @return this accumulator
+         */
+        TypeAccumulator merge(final TypeAccumulator other) {
+            for (int code = 0; code < sums.length; code++) {
+                if (other.histograms[code] == null) {
+                    continue;
+                }
+                if (histograms[code] == null) {
+                    histograms[code] = other.histograms[code];
+                } else {
+                    histograms[code].add(other.histograms[code]);
+                }
+                sums[code] = Math.addExact(sums[code], other.sums[code]);
+            }
+            return this;
+        }
+    }
+
+    /**
+     * Computes count, sum, minimum, maximum and percentiles of the
+     * transaction amounts of each type across every account.
+     *
+     * @return statistics by transaction type, for types that occur
+     */
+    public Map<TransactionType, TransactionStatistics> statisticsByType() {
+        TypeAccumulator totals = scan(TypeAccumulator::new, (result, account) -> {
+            for (int i = 0; i < account.size; i++) {
+                result.record(account.ledger.typeAt(i), account.ledger.amountCentsAt(i));
+            }
+        }, TypeAccumulator::merge);
+        Map<TransactionType, TransactionStatistics> statistics =
+                new EnumMap<>(TransactionType.class);
+        for (TransactionType type : TransactionType.values()) {
+            AmountHistogram histogram = totals.histograms[type.code()];
+            if (histogram != null) {
+                statistics.put(type, new TransactionStatistics(
+                        totals.sums[type.code()], histogram));
+            }
+        }
+        return statistics;
+    }
+
+    /**
+     * Sums the transaction amounts of each account.
+     *
+     * @param type the transaction type to include, or null for all types
+     * @return the total in centavos by account ID, for accounts with any
+     *         transaction of that type
+     */
+    public Map<Integer, Long> totalCentsByAccount(final TransactionType type) {
+        return scan(HashMap::new, (Map<Integer, Long> result, AccountSnapshot account) -> {
+            long total = 0;
+            boolean any = false;
+            for (int i = 0; i < account.size; i++) {
+                if (account.matches(i, type)) {
+                    total = Math.addExact(total, account.ledger.amountCentsAt(i));
+                    any = true;
+                }
+            }
+            if (any) {
+                result.put(account.accountId, total);
+            }
+        }, (left, right) -> {
+            left.putAll(right);
+            return left;
+        });
+    }
+}
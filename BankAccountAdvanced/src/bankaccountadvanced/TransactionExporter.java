@@ -0,0 +1,272 @@
+package bankaccountadvanced;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes the transaction history of every account to a file, for
+ * {@link BankAccountManager#exportTransactions(Path, ExportFormat)}.
+ * <p>
+ * Rows are read from the ledger columns and encoded straight into a
+ * pooled buffer: numbers are formatted digit by digit and type names
+ * are copied from precomputed labels, so no Transaction or String is
+ * created per row. Each account's history is exported as of the moment
+ * the account is reached, like a TransactionAnalytics snapshot.
+ * Code Reviewer: MarkSayson
+ */
+final class TransactionExporter {
+
+    /** Identifies binary exports ("BATX"). */
+    static final int MAGIC = 0x42415458;
+
+    /** Version of the binary layout. */
+    static final int VERSION = 1;
+
+    /** Bytes of a binary account header: ID, first sequence, row count. */
+    static final int ACCOUNT_HEADER_SIZE = 4 + 8 + 4;
+
+    /** Bytes of a binary row: type code, amount, timestamp. */
+    static final int BINARY_ROW_SIZE = 1 + 8 + 8;
+
+    /** Size of the write buffers. */
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    /** Longest CSV row: five fields of at most 21 bytes, a point, two decimals, separators. */
+    private static final int MAX_CSV_ROW = 5 * 21 + 2 + 5;
+
+    /** First row of a CSV export. */
+    private static final byte[] CSV_HEADER =
+            "account_id,sequence,type,amount,timestamp\n".getBytes(StandardCharsets.US_ASCII);
+
+    /** CSV labels of the transaction types, indexed by type code. */
+    private static final byte[][] TYPE_NAMES = typeNames();
+
+    /** Write buffers shared by all exports. */
+    private static final BufferPool BUFFERS = new BufferPool(BUFFER_SIZE, 4);
+
+    /** Utility class; not instantiable. */
+    private TransactionExporter() {
+    }
+
+    /**
+     * Encodes the CSV label of every transaction type.
+     *
+     * @return the labels, indexed by type code
+     */
+    private static byte[][] typeNames() {
+        TransactionType[] types = TransactionType.values();
+        byte[][] names = new byte[types.length][];
+        for (TransactionType type : types) {
+            names[type.code()] = type.getLabel().getBytes(StandardCharsets.US_ASCII);
+        }
+        return names;
+    }
+
+    /**
+     * Writes every account's history to a file, replacing it.
+     *
+     * @param manager the manager whose accounts are exported
+     * @param file    the file to write
+     * @param format  the file format
+     * @return the number of transactions written
+     * @throws IOException if the file cannot be written
+     */
+    static long export(final BankAccountManager manager, final Path file,
+            final ExportFormat format) throws IOException {
+        ByteBuffer buffer = BUFFERS.acquire();
+        long[] rows = {0L};
+        try (FileChannel out = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            if (format == ExportFormat.CSV) {
+                buffer.put(CSV_HEADER);
+            } else {
+                buffer.putInt(MAGIC).putInt(VERSION);
+            }
+            try {
+                manager.getRegistry().forEach((account, id) -> {
+                    if (!(account instanceof AbstractBankAccount)) {
+                        return;
+                    }
+                    try {
+                        rows[0] += format == ExportFormat.CSV
+                                ? writeCsv(out, buffer, id, (AbstractBankAccount) account)
+                                : writeBinary(out, buffer, id, (AbstractBankAccount) account);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            drain(out, buffer);
+        } finally {
+            BUFFERS.release(buffer);
+        }
+        return rows[0];
+    }
+
+    /**
+     * Returns the sequence number of an account's first ledger entry and
+     * the number of entries, read together under the account's lock.
+     *
+     * @param account the account
+     * @return {first sequence, entry count}
+     */
+    private static long[] extent(final AbstractBankAccount account) {
+        account.getLock().lock();
+        try {
+            int size = account.getLedger().size();
+            return new long[] {account.getHistoryLength() - size, size};
+        } finally {
+            account.getLock().unlock();
+        }
+    }
+
+    /**
+     * Encodes one account's history as CSV rows.
+     *
+     * @param out     the file
+     * @param buffer  the write buffer
+     * @param id      the account ID
+     * @param account the account
+     * @return the number of rows written
+     * @throws IOException if a write fails
+     */
+    private static int writeCsv(final FileChannel out, final ByteBuffer buffer, final int id,
+            final AbstractBankAccount account) throws IOException {
+        long[] extent = extent(account);
+        long first = extent[0];
+        int count = (int) extent[1];
+        TransactionLedger ledger = account.getLedger();
+        byte[] bytes = buffer.array();
+        int p = buffer.position();
+        for (int i = 0; i < count; i++) {
+            if (bytes.length - p < MAX_CSV_ROW) {
+                buffer.position(p);
+                drain(out, buffer);
+                p = 0;
+            }
+            p = putLong(bytes, p, id);
+            bytes[p++] = ',';
+            p = putLong(bytes, p, first + i);
+            bytes[p++] = ',';
+            byte[] name = TYPE_NAMES[ledger.typeAt(i).code()];
+            System.arraycopy(name, 0, bytes, p, name.length);
+            p += name.length;
+            bytes[p++] = ',';
+            p = putAmount(bytes, p, ledger.amountCentsAt(i));
+            bytes[p++] = ',';
+            p = putLong(bytes, p, ledger.timestampAt(i));
+            bytes[p++] = '\n';
+        }
+        buffer.position(p);
+        return count;
+    }
+
+    /**
+     * Encodes one account's history in the binary format.
+     *
+     * @param out     the file
+     * @param buffer  the write buffer
+     * @param id      the account ID
+     * @param account the account
+     * @return the number of rows written
+     * @throws IOException if a write fails
+     */
+    private static int writeBinary(final FileChannel out, final ByteBuffer buffer, final int id,
+            final AbstractBankAccount account) throws IOException {
+        long[] extent = extent(account);
+        int count = (int) extent[1];
+        if (count == 0) {
+            return 0;
+        }
+        if (buffer.remaining() < ACCOUNT_HEADER_SIZE) {
+            drain(out, buffer);
+        }
+        buffer.putInt(id).putLong(extent[0]).putInt(count);
+        TransactionLedger ledger = account.getLedger();
+        for (int i = 0; i < count; i++) {
+            if (buffer.remaining() < BINARY_ROW_SIZE) {
+                drain(out, buffer);
+            }
+            buffer.put(ledger.typeAt(i).code())
+                    .putLong(ledger.amountCentsAt(i))
+                    .putLong(ledger.timestampAt(i));
+        }
+        return count;
+    }
+
+    /**
+     * Writes a long in decimal.
+     *
+     * @param bytes the output
+     * @param at    where to write
+     * @param value the value
+     * @return the position after the last digit
+     */
+    static int putLong(final byte[] bytes, final int at, final long value) {
+        if (value == Long.MIN_VALUE) {
+            byte[] min = Long.toString(value).getBytes(StandardCharsets.US_ASCII);
+            System.arraycopy(min, 0, bytes, at, min.length);
+            return at + min.length;
+        }
+        int p = at;
+        long v = value;
+        if (v < 0) {
+            bytes[p++] = '-';
+            v = -v;
+        }
+        int digits = 1;
+        for (long bound = 10; digits < 19 && v >= bound; bound *= 10) {
+            digits++;
+        }
+        int end = p + digits;
+        for (int i = end - 1; i >= p; i--) {
+            bytes[i] = (byte) ('0' + v % 10);
+            v /= 10;
+        }
+        return end;
+    }
+
+    /**
+     * Writes an amount in centavos as pesos with two decimals.
+     *
+     * @param bytes the output
+     * @param at    where to write
+     * @param cents the amount in centavos
+     * @return the position after the last digit
+     */
+    static int putAmount(final byte[] bytes, final int at, final long cents) {
+        int p = at;
+        if (cents < 0) {
+            bytes[p++] = '-';
+        }
+        long magnitude = Math.abs(cents / Money.CENTS_PER_PESO);
+        int fraction = (int) Math.abs(cents % Money.CENTS_PER_PESO);
+        p = putLong(bytes, p, magnitude);
+        bytes[p++] = '.';
+        bytes[p++] = (byte) ('0' + fraction / 10);
+        bytes[p++] = (byte) ('0' + fraction % 10);
+        return p;
+    }
+
+    /**
+     * Writes and clears a buffer.
+     *
+     * @param out    the file
+     * @param buffer the buffer, in write mode
+     * @throws IOException if the write fails
+     */
+    private static void drain(final FileChannel out, final ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+        buffer.clear();
+    }
+}
@@ -0,0 +1,97 @@
+package bankaccountadvanced;
+
+import java.util.List;
+
+/**
+ * Append-only storage for an account's transaction history.
+ * Appends are made by one writer at a time (the account holding its lock);
+ * reads may happen concurrently and see every entry below {@link #size()}.
+ * Code Reviewer: MarkSayson
+ */
+public interface TransactionLedger {
+
+    /**
+     * Appends a transaction to the ledger.
+     *
+     * @param type        the transaction type
+     * @param amountCents the amount in centavos
+     * @param timestamp   the time of the transaction in epoch milliseconds
+     */
+    void append(TransactionType type, long amountCents, long timestamp);
+
+    /**
+     * Appends several transactions recorded at the same time.
+     *
+     * @param types        the transaction types
+     * @param amountsCents the amounts in centavos
+     * @param count        number of transactions to take from the arrays
+     * @param timestamp    the time of the transactions in epoch milliseconds
+     */
+    void appendAll(TransactionType[] types, long[] amountsCents, int count,
+            long timestamp);
+
+    /**
+     * Returns the number of transactions in the ledger.
+     *
+     * @return the transaction count
+     */
+    int size();
+
+    /**
+     * Returns the type of the transaction at the given position.
+     *
+     * @param index position in the ledger, from 0
+     * @return the transaction type
+     */
+    TransactionType typeAt(int index);
+
+    /**
+     * Returns the amount of the transaction at the given position.
+     *
+     * @param index position in the ledger, from 0
+     * @return the amount in centavos
+     */
+    long amountCentsAt(int index);
+
+    /**
+     * Returns the timestamp of the transaction at the given position.
+     *
+     * @param index position in the ledger, from 0
+     * @return the time in epoch milliseconds
+     */
+    long timestampAt(int index);
+
+    /**
+     * Materializes the transaction at the given position.
+     *
+     * @param index position in the ledger, from 0
+     * @return a new Transaction object
+     */
+    Transaction get(int index);
+
+    /**
+     * Returns a read-only list view of the ledger. Elements are created
+     * on access, and the view grows as transactions are appended.
+     *
+     * @return the list view
+     */
+    List<Transaction> asList();
+
+    /**
+     * Returns the transactions whose amount is greater than a threshold,
+     * in ledger order, as a read-only view materialized on access.
+     *
+     * @param amountCents the threshold in centavos
+     * @return the matching transactions
+     */
+    List<Transaction> filterAbove(long amountCents);
+
+    /**
+     * Returns all transactions sorted by amount in ascending order, as a
+     * read-only view materialized on access. Transactions with equal
+     * amounts keep their ledger order.
+     *
+     * @return the sorted transactions
+     */
+    List<Transaction> sortedByAmount();
+}
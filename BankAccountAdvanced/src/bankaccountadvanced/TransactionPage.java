@@ -0,0 +1,69 @@
+package bankaccountadvanced;
+
+import java.util.List;
+
+/**
+ * One page of an account's transaction history, as returned by
+ * {@link BankAccount#getTransactionPage(long, int)}.
+ * Code Reviewer: MarkSayson
+ */
+public final class TransactionPage {
+
+    /** Read-only view of the transactions on this page. */
+    private final List<Transaction> transactions;
+
+    /** Sequence number of the first transaction on this page. */
+    private final long firstSequence;
+
+    /** Whether more transactions followed this page when it was taken. */
+    private final boolean more;
+
+    /**
+     * Constructs a TransactionPage.
+     *
+     * @param page    read-only view of the transactions on the page
+     * @param first   sequence number of the first transaction
+     * @param hasMore whether more transactions followed the page
+     */
+    TransactionPage(final List<Transaction> page, final long first, final boolean hasMore) {
+        this.transactions = page;
+        this.firstSequence = first;
+        this.more = hasMore;
+    }
+
+    /**
+     * Returns the transactions on this page, oldest first.
+     *
+     * @return a read-only list of transactions
+     */
+    public List<Transaction> getTransactions() {
+        return transactions;
+    }
+
+    /**
+     * Returns the sequence number of the first transaction on this page.
+     *
+     * @return the first sequence number
+     */
+    public long getFirstSequence() {
+        return firstSequence;
+    }
+
+    /**
+     * Returns the sequence number to request the next page with.
+     *
+     * @return the sequence number after the last transaction on this page
+     */
+    public long getNextSequence() {
+        return firstSequence + transactions.size();
+    }
+
+    /**
+     * Returns whether more transactions followed this page when it was taken.
+     *
+     * @return true if there is a next page
+     */
+    public boolean hasMore() {
+        return more;
+    }
+}
@@ -0,0 +1,87 @@
+package bankaccountadvanced;
+
+/**
+ * Summary of a set of transaction amounts: count, sum, minimum, maximum
+ * and approximate percentiles. Produced by TransactionAnalytics.
+ * Code Reviewer: MarkSayson
+ */
+public final class TransactionStatistics {
+
+    /** Sum of the amounts in centavos. */
+    private final long sumCents;
+
+    /** Distribution of the amounts in centavos. */
+    private final AmountHistogram histogram;
+
+    /**
+     * Constructs TransactionStatistics.
+     *
+     * @param sum          sum of the amounts in centavos
+     * @param distribution distribution of the amounts; not modified afterwards
+     */
+    TransactionStatistics(final long sum, final AmountHistogram distribution) {
+        this.sumCents = sum;
+        this.histogram = distribution;
+    }
+
+    /**
+     * Returns the number of transactions.
+     *
+     * @return the count
+     */
+    public long getCount() {
+        return histogram.getCount();
+    }
+
+    /**
+     * Returns the sum of the amounts.
+     *
+     * @return the sum in centavos
+     */
+    public long getSumCents() {
+        return sumCents;
+    }
+
+    /**
+     * Returns the smallest amount.
+     *
+     * @return the minimum in centavos, or 0 if there are no transactions
+     */
+    public long getMinCents() {
+        return histogram.getMin();
+    }
+
+    /**
+     * Returns the largest amount.
+     *
+     * @return the maximum in centavos, or 0 if there are no transactions
+     */
+    public long getMaxCents() {
+        return histogram.getMax();
+    }
+
+    /**
+     * Returns the amount below or at which the given percentage of
+     * transactions fall, accurate to within about 1.6%.
+     *
+     * @param percentile the percentile, from 0 to 100
+     * @return the amount in centavos, or 0 if there are no transactions
+     */
+    public long percentileCents(final double percentile) {
+        return histogram.valueAtPercentile(percentile);
+    }
+
+    /**
+     * Returns a string representation of the statistics.
+     *
+     * @return count, sum, minimum, median and maximum in pesos
+     */
+    @Override
+    public String toString() {
+        return "count=" + getCount()
+                + ", sum=Php " + Money.toAmount(sumCents)
+                + ", min=Php " + Money.toAmount(getMinCents())
+                + ", p50=Php " + Money.toAmount(percentileCents(50.0))
+                + ", max=Php " + Money.toAmount(getMaxCents());
+    }
+}
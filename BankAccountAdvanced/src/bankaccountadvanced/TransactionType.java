@@ -0,0 +1,81 @@
+package bankaccountadvanced;
+
+/**
+ * Kinds of transactions recorded in an account's history.
+ * Each type has a display label and a compact byte code used by
+ * primitive-backed ledgers.
+ * Code Reviewer: MarkSayson
+ */
+public enum TransactionType {
+
+    /** Money paid into the account. */
+    DEPOSIT("Deposit"),
+
+    /** Money taken out of the account. */
+    WITHDRAW("Withdraw"),
+
+    /** Money received from another account. */
+    TRANSFER_IN("Transfer In"),
+
+    /** Money sent to another account. */
+    TRANSFER_OUT("Transfer Out"),
+
+    /** Interest credited by the bank. */
+    INTEREST("Interest");
+
+    /** Cached values, indexed by code. */
+    private static final TransactionType[] BY_CODE = values();
+
+    /** Display label, e.g. "Deposit". */
+    private final String label;
+
+    /**
+     * Constructs a TransactionType with the given label.
+     *
+     * @param typeLabel the display label
+     */
+    TransactionType(final String typeLabel) {
+        this.label = typeLabel;
+    }
+
+    /**
+     * Returns the display label of this type.
+     *
+     * @return the label
+     */
+    public String getLabel() {
+        return label;
+    }
+
+    /**
+     * Returns whether this type adds money to the account.
+     *
+     * @return true for credits, false for debits
+     */
+    public boolean isCredit() {
+        return this == DEPOSIT || this == TRANSFER_IN || this == INTEREST;
+    }
+
+    /**
+     * Returns the compact byte code of this type.
+     *
+     * @return the code
+     */
+    public byte code() {
+        return (byte) ordinal();
+    }
+
+    /**
+     * Returns the type with the given byte code.
+     *
+     * @param code the code
+     * @return the matching type
+     * @throws IllegalArgumentException if the code is unknown
+     */
+    public static TransactionType fromCode(final byte code) {
+        if (code < 0 || code >= BY_CODE.length) {
+            throw new IllegalArgumentException("Unknown transaction type code " + code);
+        }
+        return BY_CODE[code];
+    }
+}
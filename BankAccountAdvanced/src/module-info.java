@@ -5,5 +5,7 @@
  * 
  */
 module BankAccountAdvanced {
+	exports bankaccountadvanced;
+	requires java.management;
 	requires org.junit.jupiter.api;
 }
\ No newline at end of file
@@ -0,0 +1,386 @@
+package bankaccountadvanced;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * Test class for AccountJournal and recovering a BankAccountManager from it.
+ * Code Reviewer: MarkSayson
+ */
+public class AccountJournalTest {
+
+    /** Opening balance of the first account, in centavos. */
+    private static final long OPENING_CENTS = 50_000L;
+
+    /** Deposit amount, in centavos. */
+    private static final long DEPOSIT_CENTS = 12_345L;
+
+    /** Transfer amount, in centavos. */
+    private static final long TRANSFER_CENTS = 2_000L;
+
+    /** Number of accounts in the checkpoint test. */
+    private static final int CHECKPOINT_ACCOUNTS = 200;
+
+    /** Deposits made concurrently with the checkpoint. */
+    private static final int CONCURRENT_DEPOSITS = 20_000;
+
+    /** Journal file used by each test. */
+    private Path journalPath;
+
+    /** Checkpoint directory used by each test. */
+    private Path checkpointDir;
+
+    /**
+     * Creates an empty journal location before each test.
+     *
+     * @throws IOException if the temporary file cannot be created
+     */
+    @BeforeEach
+    public void setup() throws IOException {
+        journalPath = Files.createTempFile("accounts", ".journal");
+        checkpointDir = Files.createTempDirectory("checkpoints");
+    }
+
+    /**
+     * Deletes the journal after each test.
+     *
+     * @throws IOException if the file cannot be deleted
+     */
+    @AfterEach
+    public void cleanup() throws IOException {
+        Files.deleteIfExists(journalPath);
+        for (Path file : AccountCheckpoint.list(checkpointDir)) {
+            Files.delete(file);
+        }
+        Files.deleteIfExists(checkpointDir);
+    }
+
+    /**
+     * Performs a fixed sequence of operations through a journaled manager.
+     *
+     * @param mode the durability mode to journal with
+     * @throws Exception if an operation fails
+     */
+    private void writeHistory(DurabilityMode mode) throws Exception {
+        try (AccountJournal journal = AccountJournal.open(journalPath, mode)) {
+            BankAccountManager manager =
+                    new BankAccountManager(new ConcurrentAccountRegistry(), journal);
+            SavingsAccount alice = new SavingsAccount("Alice");
+            alice.depositCents(OPENING_CENTS);
+            int aliceId = manager.addAccount(alice);
+            int bobId = manager.addAccount(new SavingsAccount("Bob"));
+            int carolId = manager.addAccount(new SavingsAccount("Carol"));
+
+            alice.depositCents(DEPOSIT_CENTS);
+            manager.transferCents(aliceId, bobId, TRANSFER_CENTS);
+            manager.getAccount(bobId).withdrawCents(1L);
+            alice.freezeAccount();
+            manager.removeAccount(carolId);
+        }
+    }
+
+    @Test
+    @DisplayName("Every durability mode recovers the same state")
+    void testRecoverAllModes() throws Exception {
+        for (DurabilityMode mode : DurabilityMode.values()) {
+            Files.deleteIfExists(journalPath);
+            writeHistory(mode);
+
+            try (AccountJournal journal = AccountJournal.open(journalPath, mode)) {
+                BankAccountManager manager = BankAccountManager.recover(journal);
+                SavingsAccount alice = (SavingsAccount) manager.getAccount(1);
+                SavingsAccount bob = (SavingsAccount) manager.getAccount(2);
+                assertEquals("Alice", alice.getOwnerName());
+                assertEquals(OPENING_CENTS + DEPOSIT_CENTS - TRANSFER_CENTS,
+                        alice.getBalanceCents());
+                assertTrue(alice.isFrozen());
+                assertEquals(TRANSFER_CENTS - 1L, bob.getBalanceCents());
+                assertFalse(bob.isFrozen());
+                assertEquals(2, bob.getTransactionHistory().size());
+                assertNull(manager.getAccount(3));
+
+                // Recovered accounts keep journaling, and IDs continue
+                bob.depositCents(1L);
+                assertEquals(4, manager.addAccount(new SavingsAccount("Dan")));
+            }
+            try (AccountJournal journal = AccountJournal.open(journalPath, mode)) {
+                BankAccountManager manager = BankAccountManager.recover(journal);
+                assertEquals(TRANSFER_CENTS, manager.getAccount(2).getBalanceCents());
+                assertEquals(3, manager.getAccountCount());
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("A torn record at the end of the journal is discarded")
+    void testTornTail() throws Exception {
+        writeHistory(DurabilityMode.GROUP_SYNC);
+        long validSize = Files.size(journalPath);
+        Files.write(journalPath, new byte[] {0, 0, 0, 40, 1, 2, 3},
+                StandardOpenOption.APPEND);
+
+        try (AccountJournal journal =
+                AccountJournal.open(journalPath, DurabilityMode.GROUP_SYNC)) {
+            assertEquals(validSize, Files.size(journalPath));
+            long lastLsn = journal.getLastLsn();
+            BankAccountManager manager = BankAccountManager.recover(journal);
+            manager.getAccount(2).depositCents(1L);
+            assertEquals(lastLsn + 1, journal.getLastLsn());
+        }
+        try (AccountJournal journal =
+                AccountJournal.open(journalPath, DurabilityMode.GROUP_SYNC)) {
+            BankAccountManager manager = BankAccountManager.recover(journal);
+            assertEquals(TRANSFER_CENTS, manager.getAccount(2).getBalanceCents());
+        }
+    }
+
+    @Test
+    @DisplayName("Checkpoint taken during deposits recovers exactly once")
+    void testCheckpointDuringDeposits() throws Exception {
+        try (AccountJournal journal =
+                AccountJournal.open(journalPath, DurabilityMode.ASYNC)) {
+            BankAccountManager manager =
+                    new BankAccountManager(new ConcurrentAccountRegistry(), journal);
+            for (int i = 0; i < CHECKPOINT_ACCOUNTS; i++) {
+                manager.addAccount(new SavingsAccount("Owner" + i));
+            }
+            Thread depositor = new Thread(() -> {
+                for (int i = 0; i < CONCURRENT_DEPOSITS; i++) {
+                    try {
+                        manager.getAccount(1 + i % CHECKPOINT_ACCOUNTS).depositCents(1L);
+                        if (i % 100 == 0) {
+                            manager.transferCents(1 + i % CHECKPOINT_ACCOUNTS,
+                                    1 + (i + 1) % CHECKPOINT_ACCOUNTS, 1L);
+                        }
+                    } catch (Exception e) {
+                        throw new IllegalStateException(e);
+                    }
+                }
+            });
+            depositor.start();
+            try (CheckpointScheduler scheduler =
+                    new CheckpointScheduler(manager, journal, checkpointDir, 2)) {
+                for (int i = 0; i < 3; i++) {
+                    scheduler.checkpointNow();
+                }
+            }
+            depositor.join();
+            manager.getAccount(1).freezeAccount();
+        }
+        assertEquals(2, AccountCheckpoint.list(checkpointDir).size());
+
+        try (AccountJournal journal =
+                AccountJournal.open(journalPath, DurabilityMode.ASYNC)) {
+            BankAccountManager manager = BankAccountManager.recover(journal, checkpointDir);
+            long total = 0L;
+            for (int id = 1; id <= CHECKPOINT_ACCOUNTS; id++) {
+                total += manager.getAccount(id).getBalanceCents();
+            }
+            assertEquals((long) CONCURRENT_DEPOSITS, total);
+            long transfers = (CONCURRENT_DEPOSITS + 99) / 100;
+            AccountStatistics statistics = manager.getStatistics();
+            assertEquals(CONCURRENT_DEPOSITS + transfers, statistics.getTotalDepositedCents());
+            assertEquals(transfers, statistics.getTotalWithdrawnCents());
+            assertEquals(CONCURRENT_DEPOSITS + 2 * transfers,
+                    statistics.getTransactionCount());
+            assertTrue(manager.getAccount(1).isFrozen());
+            assertEquals("Owner7",
+                    ((SavingsAccount) manager.getAccount(8)).getOwnerName());
+        }
+
+        // The caller chooses the registry the accounts come back on
+        try (AccountJournal journal =
+                AccountJournal.open(journalPath, DurabilityMode.ASYNC)) {
+            ShardedAccountRegistry sharded = new ShardedAccountRegistry(4);
+            BankAccountManager manager =
+                    BankAccountManager.recover(journal, checkpointDir, sharded);
+            assertSame(sharded, manager.getRegistry());
+            assertEquals(CHECKPOINT_ACCOUNTS, sharded.size());
+            long total = 0L;
+            for (int id = 1; id <= CHECKPOINT_ACCOUNTS; id++) {
+                total += manager.getAccount(id).getBalanceCents();
+            }
+            assertEquals((long) CONCURRENT_DEPOSITS, total);
+            assertThrows(IllegalArgumentException.class,
+                    () -> BankAccountManager.recover(journal, checkpointDir, sharded));
+        }
+    }
+
+    @Test
+    @DisplayName("A mutation the journal fails to record is not applied")
+    void testFailedWriteLeavesAccountsUnchanged() throws Exception {
+        AtomicBoolean failing = new AtomicBoolean();
+        MutationListener disk = new MutationListener() {
+            private long lsn;
+
+            @Override
+            public synchronized long onMutation(Mutation mutation) {
+                if (failing.get()) {
+                    throw new UncheckedIOException(new IOException("Disk full"));
+                }
+                return ++lsn;
+            }
+
+            @Override
+            public void awaitDurable(long ticket) {
+            }
+        };
+        BankAccountManager manager =
+                new BankAccountManager(new ConcurrentAccountRegistry(), disk);
+        SavingsAccount alice = new SavingsAccount("Alice");
+        int aliceId = manager.addAccount(alice);
+        int bobId = manager.addAccount(new SavingsAccount("Bob"));
+        alice.depositCents(OPENING_CENTS);
+
+        failing.set(true);
+        assertThrows(UncheckedIOException.class, () -> alice.depositCents(DEPOSIT_CENTS));
+        assertThrows(UncheckedIOException.class, () -> alice.withdrawCents(1L));
+        assertThrows(UncheckedIOException.class, () -> alice.applyBatch(new AccountOperation[] {
+            AccountOperation.depositCents(1L), AccountOperation.withdrawCents(2L)}));
+        assertThrows(UncheckedIOException.class, alice::freezeAccount);
+        assertThrows(UncheckedIOException.class,
+                () -> manager.transferCents(aliceId, bobId, TRANSFER_CENTS));
+        assertThrows(UncheckedIOException.class,
+                () -> manager.addAccount(new SavingsAccount("Carol")));
+        assertThrows(UncheckedIOException.class, () -> manager.removeAccount(bobId));
+
+        assertEquals(OPENING_CENTS, alice.getBalanceCents());
+        assertEquals(1, alice.getTransactionHistory().size());
+        assertFalse(alice.isFrozen());
+        assertEquals(0L, manager.getAccount(bobId).getBalanceCents());
+        assertEquals(2, manager.getRegistry().size());
+
+        failing.set(false);
+        manager.transferCents(aliceId, bobId, TRANSFER_CENTS);
+        assertEquals(TRANSFER_CENTS, manager.getAccount(bobId).getBalanceCents());
+
+        // A closed journal rejects the write before the balance changes
+        AccountJournal journal = AccountJournal.open(journalPath, DurabilityMode.PER_OP_SYNC);
+        BankAccountManager journaled =
+                new BankAccountManager(new ConcurrentAccountRegistry(), journal);
+        SavingsAccount carol = new SavingsAccount("Carol");
+        journaled.addAccount(carol);
+        carol.depositCents(DEPOSIT_CENTS);
+        journal.close();
+        assertThrows(IllegalStateException.class, () -> carol.depositCents(1L));
+        assertEquals(DEPOSIT_CENTS, carol.getBalanceCents());
+    }
+
+    @Test
+    @DisplayName("A checkpoint never keeps a mutation the journal can lose in a crash")
+    void testCheckpointSyncsJournal() throws Exception {
+        Path crashed = Files.createTempFile("crashed", ".journal");
+        Path recrashed = Files.createTempFile("recrashed", ".journal");
+        try {
+            // A deposit lands while the checkpoint walks the accounts; the
+            // ASYNC journal would not sync it for an hour
+            AtomicBoolean checkpointing = new AtomicBoolean();
+            SavingsAccount alice = new SavingsAccount("Alice");
+            ConcurrentAccountRegistry registry = new ConcurrentAccountRegistry() {
+                @Override
+                public void forEach(ObjIntConsumer<BankAccount> action) {
+                    if (checkpointing.getAndSet(false)) {
+                        alice.tryDepositCents(5L);
+                    }
+                    super.forEach(action);
+                }
+            };
+            try (AccountJournal journal = AccountJournal.open(journalPath,
+                    DurabilityMode.ASYNC, TimeUnit.HOURS.toMillis(1))) {
+                new BankAccountManager(registry, journal).addAccount(alice);
+                alice.depositCents(100L);
+                checkpointing.set(true);
+                AccountCheckpoint.write(new BankAccountManager(registry), journal,
+                        checkpointDir);
+                // Crash: only what reached the file survives
+                Files.copy(journalPath, crashed, StandardCopyOption.REPLACE_EXISTING);
+            }
+
+            try (AccountJournal journal =
+                    AccountJournal.open(crashed, DurabilityMode.GROUP_SYNC)) {
+                BankAccountManager manager = BankAccountManager.recover(journal, checkpointDir);
+                assertEquals(105L, manager.getAccount(1).getBalanceCents());
+                manager.getAccount(1).depositCents(1_000L);
+                Files.copy(crashed, recrashed, StandardCopyOption.REPLACE_EXISTING);
+            }
+            try (AccountJournal journal =
+                    AccountJournal.open(recrashed, DurabilityMode.GROUP_SYNC)) {
+                BankAccountManager manager = BankAccountManager.recover(journal, checkpointDir);
+                assertEquals(1_105L, manager.getAccount(1).getBalanceCents());
+            }
+        } finally {
+            Files.deleteIfExists(crashed);
+            Files.deleteIfExists(recrashed);
+        }
+    }
+
+    @Test
+    @DisplayName("Recovery from a checkpoint never reuses a removed account's ID")
+    void testCheckpointKeepsIdHighWaterMark() throws Exception {
+        int removedId;
+        try (AccountJournal journal =
+                AccountJournal.open(journalPath, DurabilityMode.GROUP_SYNC)) {
+            BankAccountManager manager =
+                    new BankAccountManager(new ConcurrentAccountRegistry(), journal);
+            manager.addAccount(new SavingsAccount("Alice"));
+            removedId = manager.addAccount(new SavingsAccount("Bob"));
+            manager.removeAccount(removedId);
+            AccountCheckpoint.write(manager, journal, checkpointDir);
+        }
+        try (AccountJournal journal =
+                AccountJournal.open(journalPath, DurabilityMode.GROUP_SYNC)) {
+            BankAccountManager manager = BankAccountManager.recover(journal, checkpointDir);
+            assertEquals(1, manager.getAccountCount());
+            assertEquals(removedId + 1, manager.addAccount(new SavingsAccount("Carol")));
+        }
+
+        Files.deleteIfExists(journalPath);
+        for (Path file : AccountCheckpoint.list(checkpointDir)) {
+            Files.delete(file);
+        }
+        int[] marks;
+        try (AccountJournal journal =
+                AccountJournal.open(journalPath, DurabilityMode.GROUP_SYNC)) {
+            BankAccountManager manager =
+                    new BankAccountManager(new ShardedAccountRegistry(2), journal);
+            for (int i = 0; i < 6; i++) {
+                manager.addAccount(new SavingsAccount("Owner" + i));
+            }
+            marks = manager.getRegistry().getIdHighWaterMarks();
+            for (int mark : marks) {
+                manager.removeAccount(mark);
+            }
+            AccountCheckpoint.write(manager, journal, checkpointDir);
+        }
+        try (AccountJournal journal =
+                AccountJournal.open(journalPath, DurabilityMode.GROUP_SYNC)) {
+            ShardedAccountRegistry registry = new ShardedAccountRegistry(2);
+            BankAccountManager manager =
+                    BankAccountManager.recover(journal, checkpointDir, registry);
+            assertEquals(6 - marks.length, manager.getAccountCount());
+            for (int i = 0; i < 4; i++) {
+                int id = manager.addAccount(new SavingsAccount("New" + i));
+                assertTrue(id > marks[registry.shardOf(id)], "reused id " + id);
+            }
+        }
+    }
+}
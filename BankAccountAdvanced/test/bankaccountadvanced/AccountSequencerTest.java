@@ -0,0 +1,127 @@
+package bankaccountadvanced;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Test class for AccountSequencer and MpscRingBuffer.
+ * Code Reviewer: MarkSayson
+ */
+public class AccountSequencerTest {
+
+    /** Number of producer threads. */
+    private static final int PRODUCERS = 8;
+
+    /** Operations each producer submits. */
+    private static final int OPERATIONS_PER_PRODUCER = 10_000;
+
+    /** Ring buffer size small enough that producers have to wait for space. */
+    private static final int SMALL_CAPACITY = 64;
+
+    @Test
+    @DisplayName("Ring buffer hands elements over in order and refuses them when full or closed")
+    void testRingBuffer() {
+        MpscRingBuffer<Integer> ring = new MpscRingBuffer<>(4);
+        assertTrue(ring.isEmpty());
+        for (int i = 0; i < 4; i++) {
+            assertTrue(ring.offer(i));
+        }
+        assertFalse(ring.offer(4));
+        List<Integer> taken = new ArrayList<>();
+        assertEquals(3, ring.drain(taken::add, 3));
+        assertTrue(ring.offer(4));
+        assertEquals(2, ring.drain(taken::add, 10));
+        assertEquals(List.of(0, 1, 2, 3, 4), taken);
+        assertTrue(ring.isEmpty());
+        ring.close();
+        assertTrue(ring.isClosed());
+        assertFalse(ring.offer(5));
+        assertThrows(IllegalArgumentException.class, () -> new MpscRingBuffer<Integer>(3));
+    }
+
+    @Test
+    @DisplayName("Concurrent producers lose no operations through the sequencer")
+    void testConcurrentProducers() throws Exception {
+        SavingsAccount account = new SavingsAccount("Merchant");
+        ExecutorService pool = Executors.newFixedThreadPool(PRODUCERS);
+        try (AccountSequencer sequencer = new AccountSequencer(account, SMALL_CAPACITY)) {
+            List<Future<List<CompletableFuture<Void>>>> producers = new ArrayList<>();
+            for (int t = 0; t < PRODUCERS; t++) {
+                producers.add(pool.submit(() -> {
+                    List<CompletableFuture<Void>> results = new ArrayList<>();
+                    for (int i = 0; i < OPERATIONS_PER_PRODUCER; i++) {
+                        results.add(sequencer.depositCents(2L));
+                        results.add(sequencer.withdrawCents(1L));
+                    }
+                    return results;
+                }));
+            }
+            for (Future<List<CompletableFuture<Void>>> producer : producers) {
+                for (CompletableFuture<Void> result : producer.get()) {
+                    result.get();
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+        assertEquals((long) PRODUCERS * OPERATIONS_PER_PRODUCER, account.getBalanceCents());
+        assertEquals(2 * PRODUCERS * OPERATIONS_PER_PRODUCER,
+                account.getTransactionHistory().size());
+    }
+
+    @Test
+    @DisplayName("Rejected operations fail their own future with the usual exception")
+    void testRejections() throws Exception {
+        SavingsAccount account = new SavingsAccount("Merchant");
+        AccountSequencer sequencer = new AccountSequencer(account);
+        try {
+            CompletableFuture<Void> deposit = sequencer.deposit(100.0);
+            CompletableFuture<Void> overdraft = sequencer.withdraw(500.0);
+            CompletableFuture<Void> negative = sequencer.depositCents(-1L);
+            CompletableFuture<Void> zero = sequencer.withdrawCents(0L);
+            CompletableFuture<Void> withdrawal = sequencer.withdraw(40.0);
+            deposit.get();
+            withdrawal.get();
+            assertFailure(InsufficientFundsException.class, "Insufficient funds", overdraft);
+            assertFailure(InvalidAmountException.class, "Deposit amount must be positive", negative);
+            assertFailure(InvalidAmountException.class, "Withdrawal amount must be positive", zero);
+            assertEquals(60.0, account.getBalance());
+
+            account.freezeAccount();
+            assertFailure(AccountFrozenException.class, "Account is frozen",
+                    sequencer.depositCents(1L));
+            account.unfreezeAccount();
+        } finally {
+            sequencer.close();
+        }
+        assertFailure(IllegalStateException.class, "Sequencer is closed",
+                sequencer.depositCents(1L));
+    }
+
+    /**
+     * Asserts that a future failed with the given exception and message.
+     *
+     * @param type    the expected exception type
+     * @param message the expected message
+     * @param future  the future
+     */
+    private static void assertFailure(final Class<? extends Exception> type,
+            final String message, final CompletableFuture<Void> future) {
+        ExecutionException failure = assertThrows(ExecutionException.class, future::get);
+        assertTrue(type.isInstance(failure.getCause()), failure.getCause().toString());
+        assertEquals(message, failure.getCause().getMessage());
+    }
+}
@@ -0,0 +1,286 @@
+package bankaccountadvanced;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Stress tests for BankAccountManager under concurrent use.
+ * Code Reviewer: MarkSayson
+ */
+public class BankAccountManagerConcurrencyTest {
+
+    /** Number of threads registering accounts at the same time. */
+    private static final int THREADS = 8;
+
+    /** Number of accounts each thread registers. */
+    private static final int ACCOUNTS_PER_THREAD = 5_000;
+
+    /** Number of accounts transfers are spread across. */
+    private static final int TRANSFER_ACCOUNTS = 4;
+
+    /** Number of transfers each thread performs. */
+    private static final int TRANSFERS_PER_THREAD = 20_000;
+
+    /** Opening balance of every account in the transfer tests. */
+    private static final double OPENING_BALANCE = 1000.0;
+
+    /** Bank account manager instance used in tests. */
+    private BankAccountManager manager;
+
+    /**
+     * Sets up test objects before each test.
+     */
+    @BeforeEach
+    public void setup() {
+        manager = new BankAccountManager();
+    }
+
+    @Test
+    @DisplayName("Concurrent addAccount never loses or duplicates IDs")
+    void testConcurrentAddAccount() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        Set<Integer> ids = ConcurrentHashMap.newKeySet();
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            futures.add(pool.submit(() -> {
+                start.await();
+                for (int i = 0; i < ACCOUNTS_PER_THREAD; i++) {
+                    SavingsAccount acc = new SavingsAccount("Owner");
+                    int id = manager.addAccount(acc);
+                    assertTrue(ids.add(id), "duplicate id " + id);
+                    assertSame(acc, manager.getAccount(id));
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> f : futures) {
+            f.get();
+        }
+        pool.shutdown();
+
+        int expected = THREADS * ACCOUNTS_PER_THREAD;
+        assertEquals(expected, ids.size());
+        assertEquals(expected, manager.getAccountCount());
+        for (int id = 1; id <= expected; id++) {
+            assertTrue(ids.contains(id), "missing id " + id);
+        }
+    }
+
+    @Test
+    @DisplayName("A sharded registry spreads concurrent registrations over its shards")
+    void testShardedRegistry() throws Exception {
+        ShardedAccountRegistry registry = new ShardedAccountRegistry(TRANSFER_ACCOUNTS);
+        BankAccountManager sharded = new BankAccountManager(registry);
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        Set<Integer> ids = ConcurrentHashMap.newKeySet();
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            futures.add(pool.submit(() -> {
+                for (int i = 0; i < ACCOUNTS_PER_THREAD; i++) {
+                    SavingsAccount acc = new SavingsAccount("Owner");
+                    int id = sharded.addAccount(acc);
+                    assertTrue(ids.add(id), "duplicate id " + id);
+                    assertSame(acc, sharded.getAccount(id));
+                }
+                return null;
+            }));
+        }
+        for (Future<?> f : futures) {
+            f.get();
+        }
+        pool.shutdown();
+
+        int expected = THREADS * ACCOUNTS_PER_THREAD;
+        assertEquals(expected, sharded.getAccountCount());
+        int[] perShard = new int[registry.getShardCount()];
+        int[] previous = {0};
+        registry.forEach((account, id) -> {
+            assertTrue(id > previous[0], "ids out of order");
+            previous[0] = id;
+            perShard[registry.shardOf(id)]++;
+        });
+        for (int count : perShard) {
+            assertEquals(expected / perShard.length, count);
+        }
+
+        int removed = previous[0];
+        BankAccount last = sharded.removeAccount(removed);
+        assertNull(sharded.getAccount(removed));
+        assertEquals(expected - 1, sharded.getAccountCount());
+        registry.restore(removed, last);
+        assertSame(last, sharded.getAccount(removed));
+        assertNull(sharded.getAccount(0));
+        assertNull(sharded.getAccount(Integer.MAX_VALUE));
+        assertThrows(IllegalArgumentException.class, () -> new ShardedAccountRegistry(0));
+    }
+
+    @Test
+    @DisplayName("A sharded registry never hands out a restored ID")
+    void testShardedRestoreThenRegister() {
+        ShardedAccountRegistry registry = new ShardedAccountRegistry(4);
+        int rangeSize = (Integer.MAX_VALUE - 8) / 4;
+        int[] restored = {3, 2 * rangeSize + 5};
+        for (int id : restored) {
+            registry.restore(id, new SavingsAccount("Restored " + id));
+        }
+        int[] highest = new int[registry.getShardCount()];
+        for (int id : restored) {
+            highest[registry.shardOf(id)] = id;
+        }
+        Set<Integer> ids = new HashSet<>();
+        for (int i = 0; i < 4 * 8; i++) {
+            int id = registry.register(new SavingsAccount("New"));
+            assertTrue(ids.add(id), "duplicate id " + id);
+            // Within its shard every new ID is past the restored ones
+            assertTrue(id > highest[registry.shardOf(id)], "reused id " + id);
+            highest[registry.shardOf(id)] = id;
+        }
+        assertEquals(4 * 8 + restored.length, registry.size());
+    }
+
+    @Test
+    @DisplayName("Remove and close take accounts out of the manager")
+    void testRemoveAndClose() {
+        SavingsAccount first = new SavingsAccount("Alice");
+        SavingsAccount second = new SavingsAccount("Bob");
+        int firstId = manager.addAccount(first);
+        int secondId = manager.addAccount(second);
+
+        assertSame(first, manager.removeAccount(firstId));
+        assertNull(manager.getAccount(firstId));
+        assertNull(manager.removeAccount(firstId));
+
+        assertSame(second, manager.closeAccount(secondId));
+        assertTrue(second.isFrozen());
+        assertEquals(0, manager.getAccountCount());
+
+        // IDs are never reused
+        assertEquals(secondId + 1, manager.addAccount(first));
+    }
+
+    @Test
+    @DisplayName("Transfer moves money and rejects bad requests")
+    void testTransfer() throws Exception {
+        SavingsAccount alice = new SavingsAccount("Alice");
+        SavingsAccount bob = new SavingsAccount("Bob");
+        int aliceId = manager.addAccount(alice);
+        int bobId = manager.addAccount(bob);
+        alice.deposit(OPENING_BALANCE);
+
+        manager.transfer(aliceId, bobId, OPENING_BALANCE / 4);
+        assertEquals(OPENING_BALANCE * 3 / 4, alice.getBalance());
+        assertEquals(OPENING_BALANCE / 4, bob.getBalance());
+        assertEquals("Transfer In",
+                bob.getTransactionHistory().get(0).getType());
+
+        assertThrows(InsufficientFundsException.class,
+                () -> manager.transfer(aliceId, bobId, OPENING_BALANCE));
+        assertThrows(InvalidAmountException.class,
+                () -> manager.transfer(aliceId, bobId, 0));
+        assertThrows(AccountNotFoundException.class,
+                () -> manager.transfer(aliceId, bobId + 1, 1));
+        bob.freezeAccount();
+        assertThrows(AccountFrozenException.class,
+                () -> manager.transfer(aliceId, bobId, 1));
+        // Rejected transfers leave both balances untouched
+        assertEquals(OPENING_BALANCE, alice.getBalance() + bob.getBalance());
+    }
+
+    @Test
+    @DisplayName("Opposing concurrent transfers neither deadlock nor lose money")
+    void testConcurrentTransfers() throws Exception {
+        for (int i = 0; i < TRANSFER_ACCOUNTS; i++) {
+            SavingsAccount acc = new SavingsAccount("Owner");
+            acc.deposit(OPENING_BALANCE);
+            manager.addAccount(acc);
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            futures.add(pool.submit(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                int[] from = new int[TRANSFERS_PER_THREAD];
+                int[] to = new int[TRANSFERS_PER_THREAD];
+                double[] amounts = new double[TRANSFERS_PER_THREAD];
+                for (int i = 0; i < TRANSFERS_PER_THREAD; i++) {
+                    from[i] = 1 + random.nextInt(TRANSFER_ACCOUNTS);
+                    to[i] = 1 + (from[i] + random.nextInt(TRANSFER_ACCOUNTS - 1))
+                            % TRANSFER_ACCOUNTS;
+                    amounts[i] = 1 + random.nextInt(100);
+                }
+                manager.transferBatch(from, to, amounts);
+                return null;
+            }));
+        }
+        for (Future<?> f : futures) {
+            f.get();
+        }
+        pool.shutdown();
+
+        double total = 0;
+        for (int id = 1; id <= TRANSFER_ACCOUNTS; id++) {
+            total += manager.getAccount(id).getBalance();
+        }
+        assertEquals(OPENING_BALANCE * TRANSFER_ACCOUNTS, total);
+    }
+
+    @Test
+    @DisplayName("The async facade runs requests on virtual threads and keeps exception semantics")
+    void testAsyncFacade() throws Exception {
+        for (int i = 0; i < TRANSFER_ACCOUNTS; i++) {
+            SavingsAccount acc = new SavingsAccount("Owner");
+            acc.deposit(OPENING_BALANCE);
+            manager.addAccount(acc);
+        }
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        try (AsyncBankAccountManager facade = new AsyncBankAccountManager(manager)) {
+            for (int i = 0; i < TRANSFERS_PER_THREAD; i++) {
+                int from = 1 + i % TRANSFER_ACCOUNTS;
+                int to = 1 + (i + 1) % TRANSFER_ACCOUNTS;
+                futures.add(facade.transfer(from, to, 1));
+                futures.add(facade.depositCents(from, 1L));
+                futures.add(facade.withdrawCents(to, 1L));
+            }
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).join();
+
+            double total = 0;
+            for (int id = 1; id <= TRANSFER_ACCOUNTS; id++) {
+                total += facade.getBalance(id).join();
+            }
+            assertEquals(OPENING_BALANCE * TRANSFER_ACCOUNTS, total);
+            // Opening deposit plus two transactions in every iteration that involves account 1
+            assertEquals(1 + TRANSFERS_PER_THREAD,
+                    facade.getTransactionPage(1, 0L, Integer.MAX_VALUE).join()
+                            .getTransactions().size());
+
+            ExecutionException rejected = assertThrows(ExecutionException.class,
+                    () -> facade.withdraw(1, OPENING_BALANCE * 2).get());
+            assertTrue(rejected.getCause() instanceof InsufficientFundsException);
+            rejected = assertThrows(ExecutionException.class,
+                    () -> facade.getBalanceCents(TRANSFER_ACCOUNTS + 1).get());
+            assertTrue(rejected.getCause() instanceof AccountNotFoundException);
+        }
+    }
+}
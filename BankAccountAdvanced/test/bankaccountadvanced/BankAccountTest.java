@@ -9,7 +9,11 @@ import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
+import java.lang.management.ManagementFactory;
+import java.time.Instant;
+import java.util.Iterator;
 import java.util.List;
+import javax.management.ObjectName;
 import org.junit.jupiter.api.Assertions;
 
 /**
@@ -278,6 +282,34 @@ public class BankAccountTest {
         assertEquals(2, filtered.size());
     }
 
+    @Test
+    @DisplayName("Filter thresholds between centavos or not finite match getAmount()")
+    void testFilterTransactionsAboveExactThreshold() throws Exception {
+        account.deposit(500.00);
+        account.deposit(500.01);
+        account.deposit(0.29);
+        List<Transaction> history = account.getTransactionHistory();
+
+        List<Transaction> filtered = manager.filterTransactionsAbove(500.005, history);
+        assertEquals(1, filtered.size());
+        assertEquals(500.01, filtered.get(0).getAmount());
+        assertEquals(1, manager.filterTransactionsAbove(500.0, history).size());
+        // Rounding the threshold to the nearest centavo would drop 500.01
+        assertEquals(1, manager.filterTransactionsAbove(500.009, history).size());
+        assertEquals(0, manager.filterTransactionsAbove(500.01, history).size());
+        // 0.29 * 100 is just below 29 in floating point
+        assertEquals(2, manager.filterTransactionsAbove(0.29, history).size());
+        assertEquals(3, manager.filterTransactionsAbove(0.285, history).size());
+
+        assertEquals(0, manager.filterTransactionsAbove(Double.NaN, history).size());
+        assertEquals(0, manager.filterTransactionsAbove(
+                Double.POSITIVE_INFINITY, history).size());
+        assertEquals(3, manager.filterTransactionsAbove(
+                Double.NEGATIVE_INFINITY, history).size());
+        assertEquals(3, manager.filterTransactionsAbove(-1e300, history).size());
+        assertEquals(0, manager.filterTransactionsAbove(1e300, history).size());
+    }
+
     @Test
     @DisplayName("Sort transactions by amount works")
     void testSortTransactionsByAmount() throws Exception {
@@ -297,6 +329,298 @@ public class BankAccountTest {
         assertNull(manager.getAccount(INVALID_AMOUNT));
     }
 
+    // Fixed-point amounts
+    @Test
+    @DisplayName("Centavo amounts add up without rounding drift")
+    void testCentavoArithmetic() throws Exception {
+        for (int i = 0; i < 10; i++) {
+            account.deposit(0.1);
+        }
+        account.depositCents(5);
+        account.withdraw(0.2);
+        assertEquals(85L, account.getBalanceCents());
+        assertEquals(0.85, account.getBalance());
+        assertEquals(10L, account.getTransactionHistory().get(0).getAmountCents());
+        assertEquals(1, manager.filterTransactionsAboveCents(
+                10L, account.getTransactionHistory()).size());
+        assertThrows(InvalidAmountException.class, () -> account.deposit(0.001));
+        assertThrows(InvalidAmountException.class,
+                () -> account.deposit(Double.NaN));
+    }
+
+    @Test
+    @DisplayName("Batches apply all or nothing, or item by item in partial mode")
+    void testApplyBatch() throws Exception {
+        account.applyBatch(new AccountOperation[] {
+            AccountOperation.deposit(DEPOSIT_AMOUNT),
+            AccountOperation.withdraw(WITHDRAW_AMOUNT),
+            AccountOperation.depositCents(25)
+        });
+        assertEquals(50025L, account.getBalanceCents());
+        assertEquals(TRANSACTION_COUNT, account.getTransactionHistory().size());
+
+        assertThrows(InsufficientFundsException.class, () -> account.applyBatch(
+                new AccountOperation[] {
+                    AccountOperation.deposit(SMALL_WITHDRAW),
+                    AccountOperation.withdraw(DEPOSIT_AMOUNT)
+                }));
+        assertThrows(InvalidAmountException.class, () -> account.applyBatch(
+                new AccountOperation[] {AccountOperation.deposit(NEGATIVE_AMOUNT)}));
+        assertEquals(50025L, account.getBalanceCents());
+        assertEquals(TRANSACTION_COUNT, account.getTransactionHistory().size());
+
+        OperationStatus[] statuses = account.applyBatchPartial(new AccountOperation[] {
+            AccountOperation.withdraw(EXCESS_WITHDRAW),
+            AccountOperation.deposit(SMALL_WITHDRAW),
+            AccountOperation.withdraw(EXCESS_WITHDRAW),
+            AccountOperation.deposit(ZERO_AMOUNT)
+        });
+        assertEquals(OperationStatus.INSUFFICIENT_FUNDS, statuses[0]);
+        assertEquals(OperationStatus.OK, statuses[1]);
+        assertEquals(OperationStatus.OK, statuses[2]);
+        assertEquals(OperationStatus.INVALID_AMOUNT, statuses[3]);
+        assertEquals(25L, account.getBalanceCents());
+        assertEquals(TRANSACTION_COUNT + 2, account.getTransactionHistory().size());
+
+        account.freezeAccount();
+        assertThrows(AccountFrozenException.class, () -> account.applyBatch(
+                new AccountOperation[] {AccountOperation.depositCents(1)}));
+        assertEquals(OperationStatus.ACCOUNT_FROZEN, account.applyBatchPartial(
+                new AccountOperation[] {AccountOperation.depositCents(1)})[0]);
+    }
+
+    @Test
+    @DisplayName("Running statistics track every transaction without a history scan")
+    void testStatistics() throws Exception {
+        assertEquals(0L, account.getStatistics().getTransactionCount());
+        account.deposit(DEPOSIT_AMOUNT);
+        account.withdraw(SMALL_WITHDRAW);
+        account.applyBatch(new AccountOperation[] {
+            AccountOperation.deposit(SMALL_200_WITHDRAW),
+            AccountOperation.withdraw(SMALL_400_WITHDRAW)
+        });
+        SavingsAccount other = new SavingsAccount("Mark");
+        int otherId = manager.addAccount(other);
+        manager.transfer(1, otherId, WITHDRAW_AMOUNT);
+        assertThrows(InsufficientFundsException.class, () -> account.withdraw(EXCESS_WITHDRAW));
+
+        AccountStatistics stats = account.getStatistics();
+        assertEquals(DEPOSIT_AMOUNT + SMALL_200_WITHDRAW, stats.getTotalDeposited());
+        assertEquals(SMALL_WITHDRAW + SMALL_400_WITHDRAW + WITHDRAW_AMOUNT,
+                stats.getTotalWithdrawn());
+        assertEquals(5L, stats.getTransactionCount());
+        assertEquals(DEPOSIT_AMOUNT, stats.getLargestTransaction());
+
+        AccountStatistics bank = manager.getStatistics();
+        assertEquals(DEPOSIT_AMOUNT + SMALL_200_WITHDRAW + WITHDRAW_AMOUNT,
+                bank.getTotalDeposited());
+        assertEquals(6L, bank.getTransactionCount());
+        assertEquals(account.getBalance() + other.getBalance(),
+                bank.getTotalDeposited() - bank.getTotalWithdrawn());
+    }
+
+    @Test
+    @DisplayName("Status-returning operations report rejections without throwing")
+    void testTryOperations() {
+        assertEquals(OperationStatus.OK, account.tryDeposit(DEPOSIT_AMOUNT));
+        assertEquals(OperationStatus.INVALID_AMOUNT, account.tryDeposit(ZERO_AMOUNT));
+        assertEquals(OperationStatus.INVALID_AMOUNT, account.tryWithdrawCents(-1L));
+        assertEquals(OperationStatus.INSUFFICIENT_FUNDS, account.tryWithdraw(DEPOSIT_AMOUNT + 1));
+        assertEquals(OperationStatus.OK, account.tryWithdraw(WITHDRAW_AMOUNT));
+        assertEquals(DEPOSIT_AMOUNT - WITHDRAW_AMOUNT, account.getBalance());
+        assertEquals(2, account.getTransactionHistory().size());
+
+        account.freezeAccount();
+        assertEquals(OperationStatus.ACCOUNT_FROZEN, account.tryDepositCents(1L));
+        assertEquals(OperationStatus.ACCOUNT_FROZEN, account.tryWithdrawCents(1L));
+        account.unfreezeAccount();
+
+        SavingsAccount other = new SavingsAccount("Mark");
+        int otherId = manager.addAccount(other);
+        assertEquals(OperationStatus.OK, manager.tryTransfer(1, otherId, SMALL_WITHDRAW));
+        assertEquals(OperationStatus.INSUFFICIENT_FUNDS,
+                manager.tryTransfer(1, otherId, DEPOSIT_AMOUNT));
+        assertEquals(OperationStatus.INVALID_AMOUNT, manager.tryTransferCents(1, otherId, 0L));
+        assertEquals(OperationStatus.ACCOUNT_NOT_FOUND,
+                manager.tryTransferCents(1, otherId + 1, 1L));
+        assertEquals(SMALL_WITHDRAW, other.getBalance());
+    }
+
+    @Test
+    @DisplayName("Metrics count outcomes, time operations and report lock waits")
+    void testMetrics() throws Exception {
+        JmxMetricsSink sink = new JmxMetricsSink(1, true);
+        manager.setMetricsSink(sink);
+        account.deposit(DEPOSIT_AMOUNT);
+        account.tryWithdraw(EXCESS_WITHDRAW * 2);
+        account.tryDeposit(ZERO_AMOUNT);
+        account.applyBatchPartial(new AccountOperation[] {AccountOperation.withdraw(SMALL_WITHDRAW)});
+        SavingsAccount other = new SavingsAccount("Mark");
+        int otherId = manager.addAccount(other);
+        manager.transfer(1, otherId, SMALL_WITHDRAW);
+        manager.getAccount(otherId);
+        manager.getAccount(otherId + 1);
+
+        assertEquals(1L, sink.getCount(MeteredOperation.DEPOSIT, OperationStatus.OK));
+        assertEquals(1L, sink.getCount(MeteredOperation.DEPOSIT, OperationStatus.INVALID_AMOUNT));
+        assertEquals(1L, sink.getCount(MeteredOperation.WITHDRAW, OperationStatus.INSUFFICIENT_FUNDS));
+        assertEquals(1L, sink.getCount(MeteredOperation.BATCH, OperationStatus.OK));
+        assertEquals(1L, sink.getCount(MeteredOperation.TRANSFER, OperationStatus.OK));
+        assertEquals(1L, sink.getCount(MeteredOperation.LOOKUP, OperationStatus.ACCOUNT_NOT_FOUND));
+        assertEquals(2L, sink.getLatency(MeteredOperation.DEPOSIT).getCount());
+        assertEquals(Long.valueOf(1L), sink.getOperationCounts().get("TRANSFER.OK"));
+
+        Thread blocked = new Thread(() -> other.tryDepositCents(1L));
+        other.getLock().lock();
+        try {
+            blocked.start();
+            while (!other.getLock().hasQueuedThreads()) {
+                Thread.onSpinWait();
+            }
+        } finally {
+            other.getLock().unlock();
+        }
+        blocked.join();
+        assertEquals(1L, sink.getLockWaitCount());
+        Assertions.assertTrue(sink.getLockWaitTotalNanos() > 0L);
+
+        String name = JmxMetricsSink.DEFAULT_NAME + ",test=metrics";
+        sink.register(name);
+        try {
+            Object waits = ManagementFactory.getPlatformMBeanServer()
+                    .getAttribute(new ObjectName(name), "LockWaitCount");
+            assertEquals(1L, waits);
+        } finally {
+            sink.unregister();
+        }
+
+        // The blocked deposit was the second successful one
+        manager.setMetricsSink(MetricsSink.noOp());
+        account.deposit(DEPOSIT_AMOUNT);
+        assertEquals(2L, sink.getCount(MeteredOperation.DEPOSIT, OperationStatus.OK));
+        sink.reset();
+        assertEquals(0, sink.getOperationCounts().size());
+
+        // The default sink times a sample but counts every operation
+        JmxMetricsSink sampled = new JmxMetricsSink();
+        manager.setMetricsSink(sampled);
+        for (int i = 0; i < 64_000; i++) {
+            account.depositCents(1L);
+        }
+        for (int i = 0; i < 100; i++) {
+            account.tryDepositCents(0L);
+        }
+        manager.setMetricsSink(MetricsSink.noOp());
+        assertEquals(64_000L, sampled.getCount(MeteredOperation.DEPOSIT, OperationStatus.OK));
+        assertEquals(100L, sampled.getCount(MeteredOperation.DEPOSIT, OperationStatus.INVALID_AMOUNT));
+        manager.setMetricsSink(sampled);
+        // Lookups are off by default
+        manager.getAccount(99);
+        manager.setMetricsSink(MetricsSink.noOp());
+        assertEquals(0L, sampled.getCount(MeteredOperation.LOOKUP, OperationStatus.ACCOUNT_NOT_FOUND));
+        Assertions.assertTrue(sampled.getLatency(MeteredOperation.DEPOSIT).getCount() < 64_000L);
+    }
+
+    @Test
+    @DisplayName("History pages and streams are snapshots that ignore later writes")
+    void testPagedHistory() throws Exception {
+        for (int i = 1; i <= 5; i++) {
+            account.depositCents(i * 100L);
+        }
+        TransactionPage first = account.getTransactionPage(0, 2);
+        assertEquals(2, first.getTransactions().size());
+        assertEquals(0L, first.getFirstSequence());
+        assertEquals(2L, first.getNextSequence());
+        Assertions.assertTrue(first.hasMore());
+        TransactionPage last = account.getTransactionPage(first.getNextSequence() + 2, 10);
+        assertEquals(1, last.getTransactions().size());
+        assertEquals(500L, last.getTransactions().get(0).getAmountCents());
+        Assertions.assertFalse(last.hasMore());
+        assertEquals(0, account.getTransactionPage(10, 10).getTransactions().size());
+        assertThrows(IllegalArgumentException.class, () -> account.getTransactionPage(-1, 1));
+
+        Iterator<Transaction> stream = account.streamTransactions().iterator();
+        account.depositCents(600L);
+        long total = 0;
+        int count = 0;
+        while (stream.hasNext()) {
+            total += stream.next().getAmountCents();
+            count++;
+        }
+        assertEquals(5, count);
+        assertEquals(1500L, total);
+        assertEquals(2, first.getTransactions().size());
+
+        long since = account.getTransactionHistory().get(5).getTimestamp();
+        Assertions.assertTrue(account.streamTransactionsSince(since)
+                .allMatch(t -> t.getTimestamp() >= since));
+        assertEquals(600L, account.streamTransactionsSince(since)
+                .reduce((a, b) -> b).get().getAmountCents());
+        assertEquals(0L, account.streamTransactionsSince(Long.MAX_VALUE).count());
+        assertEquals(6L, account.streamTransactionsSince(0L).count());
+    }
+
+    @Test
+    @DisplayName("Point-in-time balances and time ranges agree with a full replay")
+    void testPointInTimeQueries() throws Exception {
+        SavingsAccount timed = new SavingsAccount("Timed");
+        Instant before = Instant.ofEpochMilli(System.currentTimeMillis() - 1);
+        assertEquals(0L, timed.balanceCentsAt(before));
+        for (int round = 0; round < 20; round++) {
+            for (int i = 1; i <= 7; i++) {
+                timed.depositCents(round * 100L + i);
+            }
+            timed.withdrawCents(round + 1L);
+            timed.applyBatch(new AccountOperation[] {
+                AccountOperation.depositCents(5),
+                AccountOperation.withdrawCents(3)
+            });
+            Thread.sleep(2L);
+        }
+        List<Transaction> history = timed.getTransactionHistory();
+        long balance = 0L;
+        long[] after = new long[history.size()];
+        for (int i = 0; i < history.size(); i++) {
+            Transaction t = history.get(i);
+            balance += t.getType().equals("Withdraw") ? -t.getAmountCents() : t.getAmountCents();
+            after[i] = balance;
+        }
+        assertEquals(timed.getBalanceCents(), balance);
+        for (int i = 0; i < history.size(); i++) {
+            long time = history.get(i).getTimestamp();
+            int last = i;
+            while (last + 1 < history.size() && history.get(last + 1).getTimestamp() == time) {
+                last++;
+            }
+            assertEquals(after[last], timed.balanceCentsAt(Instant.ofEpochMilli(time)));
+        }
+        assertEquals(0L, timed.balanceCentsAt(before));
+        assertEquals(balance, timed.balanceCentsAt(Instant.now().plusSeconds(60)));
+
+        // Positioned reads carry sequence numbers and running balances
+        List<Transaction> streamed = timed.streamTransactions().toList();
+        for (int i = 0; i < history.size(); i++) {
+            assertEquals(i, streamed.get(i).getSequence());
+            assertEquals(after[i], streamed.get(i).getBalanceAfterCents());
+        }
+        Transaction paged = timed.getTransactionPage(37, 1).getTransactions().get(0);
+        assertEquals(after[37], paged.getBalanceAfterCents());
+        assertEquals(-1L, history.get(0).getSequence());
+        assertThrows(IllegalStateException.class, () -> history.get(0).getBalanceAfterCents());
+
+        Instant from = Instant.ofEpochMilli(history.get(30).getTimestamp());
+        Instant to = Instant.ofEpochMilli(history.get(150).getTimestamp());
+        List<Transaction> range = timed.historyBetween(from, to);
+        long expected = history.stream().filter(t -> !Instant.ofEpochMilli(t.getTimestamp())
+                .isBefore(from) && Instant.ofEpochMilli(t.getTimestamp()).isBefore(to)).count();
+        assertEquals(expected, range.size());
+        Transaction first = range.get(0);
+        assertEquals(after[(int) first.getSequence()], first.getBalanceAfterCents());
+        assertEquals(0, timed.historyBetween(to, to).size());
+        assertEquals(history.size(), timed.historyBetween(before, Instant.MAX).size());
+        assertThrows(IllegalArgumentException.class, () -> timed.historyBetween(to, from));
+    }
+
     // Exceptions
     @Test
     @DisplayName("Custom exceptions can be constructed")
@@ -0,0 +1,175 @@
+package bankaccountadvanced;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Test class for bulk account import and transaction export.
+ * Code Reviewer: MarkSayson
+ */
+public class ImportExportTest {
+
+    /** Rows in the generated import file. */
+    private static final int ROWS = 2_000;
+
+    /** File used by each test. */
+    private Path file;
+
+    /**
+     * Creates an empty file location before each test.
+     *
+     * @throws IOException if the temporary file cannot be created
+     */
+    @BeforeEach
+    public void setup() throws IOException {
+        file = Files.createTempFile("bulk", ".dat");
+    }
+
+    /**
+     * Deletes the file after each test.
+     *
+     * @throws IOException if the file cannot be deleted
+     */
+    @AfterEach
+    public void cleanup() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Test
+    @DisplayName("Import splits the file into ranges and keeps file order")
+    void testImportRanges() throws Exception {
+        StringBuilder csv = new StringBuilder();
+        for (int i = 0; i < ROWS; i++) {
+            csv.append("Owner ").append(i).append(',').append(i / 100).append('.')
+                    .append(i % 100 < 10 ? "0" : "").append(i % 100)
+                    .append(i % 7 == 0 ? "\r\n" : "\n");
+            if (i % 500 == 0) {
+                csv.append('\n');
+            }
+        }
+        csv.append("Smith, Jr.,12.5\nZero,0\nWhole,3");
+        Files.write(file, csv.toString().getBytes(StandardCharsets.UTF_8));
+
+        BankAccountManager manager = new BankAccountManager();
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            // Ranges of a few rows each put many boundaries inside rows
+            assertEquals(ROWS + 3L, AccountImporter.importCsv(manager, file, pool, 64L));
+        } finally {
+            pool.shutdown();
+        }
+        assertEquals(ROWS + 3, manager.getAccountCount());
+        for (int i = 0; i < ROWS; i++) {
+            SavingsAccount account = (SavingsAccount) manager.getAccount(i + 1);
+            assertEquals("Owner " + i, account.getOwnerName());
+            assertEquals(i, account.getBalanceCents());
+            assertEquals(i == 0 ? 0 : 1, account.getTransactionHistory().size());
+        }
+        SavingsAccount smith = (SavingsAccount) manager.getAccount(ROWS + 1);
+        assertEquals("Smith, Jr.", smith.getOwnerName());
+        assertEquals(1_250L, smith.getBalanceCents());
+        assertEquals(0L, manager.getAccount(ROWS + 2).getBalanceCents());
+        assertEquals(300L, manager.getAccount(ROWS + 3).getBalanceCents());
+    }
+
+    @Test
+    @DisplayName("A malformed row fails the import without adding accounts")
+    void testImportMalformed() throws Exception {
+        BankAccountManager manager = new BankAccountManager();
+        for (String bad : new String[] {"Alice,1.234", "Alice,-5", "Alice", ",5", "Alice,",
+                "Alice,1e3", "Alice,99999999999999999999"}) {
+            Files.write(file, ("Bob,1\n" + bad + "\nCarol,2\n").getBytes(StandardCharsets.UTF_8));
+            assertThrows(IOException.class, () -> manager.importAccounts(file));
+        }
+        assertEquals(0, manager.getAccountCount());
+    }
+
+    /**
+     * Builds a manager with a few accounts and varied history.
+     *
+     * @return the manager
+     * @throws Exception if an operation fails
+     */
+    private static BankAccountManager history() throws Exception {
+        BankAccountManager manager = new BankAccountManager();
+        int alice = manager.addAccount(new SavingsAccount("Alice"));
+        int bob = manager.addAccount(new SavingsAccount("Bob"));
+        manager.addAccount(new SavingsAccount("Idle"));
+        for (int i = 1; i <= 5_000; i++) {
+            manager.getAccount(alice).depositCents(i);
+        }
+        manager.getAccount(alice).withdrawCents(7L);
+        manager.transferCents(alice, bob, 12_345_678L);
+        manager.getAccount(bob).withdrawCents(5L);
+        return manager;
+    }
+
+    @Test
+    @DisplayName("CSV export writes every transaction as a formatted row")
+    void testExportCsv() throws Exception {
+        BankAccountManager manager = history();
+        assertEquals(5_000L + 1 + 2 + 1, manager.exportTransactions(file, ExportFormat.CSV));
+
+        List<String> expected = new ArrayList<>();
+        expected.add("account_id,sequence,type,amount,timestamp");
+        for (int id = 1; id <= 3; id++) {
+            List<Transaction> transactions = manager.getAccount(id).getTransactionHistory();
+            for (int i = 0; i < transactions.size(); i++) {
+                Transaction t = transactions.get(i);
+                expected.add(id + "," + i + "," + t.getType() + ","
+                        + String.format("%d.%02d", t.getAmountCents() / 100,
+                                t.getAmountCents() % 100)
+                        + "," + t.getTimestamp());
+            }
+        }
+        List<String> lines = Files.readAllLines(file, StandardCharsets.US_ASCII);
+        assertEquals(expected.get(0), lines.get(0));
+        expected.sort(null);
+        lines.sort(null);
+        assertEquals(expected, lines);
+        assertTrue(lines.contains("2,0,Transfer In,123456.78,"
+                + manager.getAccount(2).getTransactionHistory().get(0).getTimestamp()));
+    }
+
+    @Test
+    @DisplayName("Binary export decodes to the same history")
+    void testExportBinary() throws Exception {
+        BankAccountManager manager = history();
+        assertEquals(5_000L + 1 + 2 + 1, manager.exportTransactions(file, ExportFormat.BINARY));
+
+        ByteBuffer in = ByteBuffer.wrap(Files.readAllBytes(file));
+        assertEquals(TransactionExporter.MAGIC, in.getInt());
+        assertEquals(TransactionExporter.VERSION, in.getInt());
+        int accounts = 0;
+        while (in.hasRemaining()) {
+            int id = in.getInt();
+            assertEquals(0L, in.getLong());
+            int count = in.getInt();
+            List<Transaction> transactions = manager.getAccount(id).getTransactionHistory();
+            assertEquals(transactions.size(), count);
+            for (Transaction t : transactions) {
+                assertEquals(t.getType(), TransactionType.fromCode(in.get()).getLabel());
+                assertEquals(t.getAmountCents(), in.getLong());
+                assertEquals(t.getTimestamp(), in.getLong());
+            }
+            accounts++;
+        }
+        // The idle account has no rows and no header
+        assertEquals(2, accounts);
+    }
+}
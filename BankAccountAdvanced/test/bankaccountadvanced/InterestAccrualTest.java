@@ -0,0 +1,310 @@
+package bankaccountadvanced;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Test class for rate plans and the InterestAccrualEngine.
+ * Code Reviewer: MarkSayson
+ */
+public class InterestAccrualTest {
+
+    /** Business date of the first accrual. */
+    private static final LocalDate DAY_ONE = LocalDate.of(2024, 3, 1);
+
+    /** Accounts in the resume test; several batches per partition. */
+    private static final int RESUME_ACCOUNTS = 40_000;
+
+    /** Progress file used by each test. */
+    private Path progressFile;
+
+    /** Journal file used by each test. */
+    private Path journalPath;
+
+    /**
+     * Creates empty file locations before each test.
+     *
+     * @throws IOException if the temporary files cannot be created
+     */
+    @BeforeEach
+    public void setup() throws IOException {
+        progressFile = Files.createTempFile("accrual", ".progress");
+        Files.delete(progressFile);
+        journalPath = Files.createTempFile("accounts", ".journal");
+    }
+
+    /**
+     * Deletes the files after each test.
+     *
+     * @throws IOException if a file cannot be deleted
+     */
+    @AfterEach
+    public void cleanup() throws IOException {
+        Files.deleteIfExists(progressFile);
+        Files.deleteIfExists(journalPath);
+    }
+
+    @Test
+    @DisplayName("Rate plans compute daily interest by tier and carry fractions")
+    void testRatePlans() throws Exception {
+        // 365bp a year is exactly 1bp a day
+        RatePlan flat = RatePlan.flat(365);
+        assertEquals(100L, flat.dailyCents(1_000_000L));
+        assertEquals(0L, flat.dailyFraction(1_000_000L));
+        // Only the part above 1,000.00 earns 730bp
+        RatePlan tiered = RatePlan.tiered(new long[] {0L, 100_000L}, new int[] {0, 730});
+        assertEquals(0L, tiered.dailyCents(100_000L));
+        assertEquals(20L, tiered.dailyCents(200_000L));
+        // The largest balance does not overflow
+        assertEquals(461_168_601_842_738L, flat.dailyCents(Long.MAX_VALUE >> 1));
+        assertEquals(7_903L * 365, flat.dailyFraction(Long.MAX_VALUE >> 1));
+
+        SavingsAccount account = new SavingsAccount("Saver");
+        account.depositCents(5_000L);
+        account.setRatePlan(flat);
+        // Half a centavo a day: nothing on the first day, one on the second
+        assertEquals(0L, account.accrue(1, 1L));
+        assertEquals(0L, account.accrue(1, 1L));
+        assertEquals(1L, account.accrue(2, 2L));
+        assertEquals(5_001L, account.getBalanceCents());
+        Transaction interest = account.getTransactionHistory().get(1);
+        assertEquals("Interest", interest.getType());
+        assertEquals(1L, interest.getAmountCents());
+        assertEquals(2, account.getLastAccrualDay());
+
+        assertThrows(IllegalArgumentException.class,
+                () -> RatePlan.tiered(new long[] {1L}, new int[] {100}));
+        assertThrows(IllegalArgumentException.class,
+                () -> RatePlan.tiered(new long[] {0L, 0L}, new int[] {100, 200}));
+        assertThrows(IllegalArgumentException.class, () -> RatePlan.flat(-1));
+    }
+
+    @Test
+    @DisplayName("A run credits every account with a plan once per business date")
+    void testAccrualRun() throws Exception {
+        BankAccountManager manager = new BankAccountManager();
+        int earning = manager.addAccount(new SavingsAccount("Earning"));
+        int frozen = manager.addAccount(new SavingsAccount("Frozen"));
+        int plain = manager.addAccount(new SavingsAccount("Plain"));
+        for (int id = earning; id <= plain; id++) {
+            manager.getAccount(id).depositCents(1_000_000L);
+        }
+        ((SavingsAccount) manager.getAccount(earning)).setRatePlan(RatePlan.flat(365));
+        ((SavingsAccount) manager.getAccount(frozen)).setRatePlan(RatePlan.flat(730));
+        manager.getAccount(frozen).freezeAccount();
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try (InterestAccrualEngine engine =
+                new InterestAccrualEngine(manager, progressFile, pool)) {
+            AccrualResult first = engine.accrue(DAY_ONE);
+            assertEquals(2L, first.getAccountsCredited());
+            assertEquals(300L, first.getInterestCents());
+            assertFalse(first.isResumed());
+            assertEquals(1_000_100L, manager.getAccount(earning).getBalanceCents());
+            // Interest is owed on a frozen balance too
+            assertEquals(1_000_200L, manager.getAccount(frozen).getBalanceCents());
+            assertEquals(1_000_000L, manager.getAccount(plain).getBalanceCents());
+
+            // The same date again is already complete
+            AccrualResult again = engine.accrue(DAY_ONE);
+            assertEquals(300L, again.getInterestCents());
+            assertEquals(1_000_100L, manager.getAccount(earning).getBalanceCents());
+
+            AccrualResult next = engine.accrue(DAY_ONE.plusDays(1));
+            assertEquals(2L, next.getAccountsCredited());
+            assertEquals(1_000_200L, manager.getAccount(earning).getBalanceCents());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    @DisplayName("A run resumed from current or stale progress credits no account twice")
+    void testResume() throws Exception {
+        AtomicInteger waitsLeft = new AtomicInteger(-1);
+        MutationListener flaky = new MutationListener() {
+            private long ticket;
+
+            @Override
+            public synchronized long onMutation(final Mutation mutation) {
+                return ++ticket;
+            }
+
+            @Override
+            public void awaitDurable(final long waited) {
+                if (waitsLeft.get() >= 0 && waitsLeft.getAndDecrement() == 0) {
+                    throw new IllegalStateException("Disk gone");
+                }
+            }
+        };
+        BankAccountManager manager = new BankAccountManager(new ConcurrentAccountRegistry(), flaky);
+        for (int i = 0; i < RESUME_ACCOUNTS; i++) {
+            SavingsAccount account = new SavingsAccount("Owner " + i);
+            account.depositCents(3_650_000L);
+            account.setRatePlan(RatePlan.flat(100));
+            manager.addAccount(account);
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(1);
+        Path stale = Files.createTempFile("accrual", ".stale");
+        try (InterestAccrualEngine engine =
+                new InterestAccrualEngine(manager, progressFile, pool)) {
+            // Fail the durability wait of the fourth batch
+            waitsLeft.set(3);
+            assertThrows(IllegalStateException.class, () -> engine.accrue(DAY_ONE));
+            assertTrue(Files.exists(progressFile));
+            Files.copy(progressFile, stale, StandardCopyOption.REPLACE_EXISTING);
+            AccrualResult resumed = engine.accrue(DAY_ONE);
+            assertTrue(resumed.isResumed());
+
+            // A crash can leave progress behind the accounts; the accounts'
+            // own accrual day keeps the rerun batches from paying again
+            Files.copy(stale, progressFile, StandardCopyOption.REPLACE_EXISTING);
+            assertTrue(engine.accrue(DAY_ONE).isResumed());
+        } finally {
+            pool.shutdown();
+            Files.deleteIfExists(stale);
+        }
+        for (int id = 1; id <= RESUME_ACCOUNTS; id++) {
+            BankAccount account = manager.getAccount(id);
+            assertEquals(3_650_100L, account.getBalanceCents(), "account " + id);
+            assertEquals(2, account.getTransactionHistory().size());
+        }
+    }
+
+    @Test
+    @DisplayName("A posting the journal rejects leaves the day unaccrued")
+    void testFailedPosting() throws Exception {
+        AtomicBoolean failing = new AtomicBoolean();
+        MutationListener disk = new MutationListener() {
+            private long ticket;
+
+            @Override
+            public synchronized long onMutation(final Mutation mutation) {
+                if (failing.get()) {
+                    throw new IllegalStateException("Disk gone");
+                }
+                return ++ticket;
+            }
+
+            @Override
+            public void awaitDurable(final long waited) {
+            }
+        };
+        BankAccountManager manager = new BankAccountManager(new ConcurrentAccountRegistry(), disk);
+        SavingsAccount account = new SavingsAccount("Saver");
+        manager.addAccount(account);
+        account.depositCents(5_000L);
+        account.setRatePlan(RatePlan.flat(365));
+        // Half a centavo is carried from day 1 into day 2's posting
+        assertEquals(0L, account.accrue(1, 1L));
+        failing.set(true);
+        assertThrows(IllegalStateException.class, () -> account.accrue(2, 2L));
+        assertEquals(1, account.getLastAccrualDay());
+        assertEquals(5_000L, account.getBalanceCents());
+        failing.set(false);
+        assertEquals(1L, account.accrue(2, 2L));
+        assertEquals(2, account.getLastAccrualDay());
+        assertEquals(5_001L, account.getBalanceCents());
+    }
+
+    @Test
+    @DisplayName("Recovery replays interest and the day it was accrued for")
+    void testRecovery() throws Exception {
+        try (AccountJournal journal = AccountJournal.open(journalPath, DurabilityMode.GROUP_SYNC)) {
+            BankAccountManager manager =
+                    new BankAccountManager(new ConcurrentAccountRegistry(), journal);
+            SavingsAccount account = new SavingsAccount("Saver");
+            manager.addAccount(account);
+            account.depositCents(1_000_000L);
+            account.setRatePlan(RatePlan.flat(365));
+            try (InterestAccrualEngine engine = new InterestAccrualEngine(manager, progressFile)) {
+                engine.accrue(DAY_ONE);
+            }
+        }
+        try (AccountJournal journal = AccountJournal.open(journalPath, DurabilityMode.GROUP_SYNC)) {
+            SavingsAccount account =
+                    (SavingsAccount) BankAccountManager.recover(journal).getAccount(1);
+            assertEquals(1_000_100L, account.getBalanceCents());
+            assertEquals("Interest", account.getTransactionHistory().get(1).getType());
+            assertEquals((int) DAY_ONE.toEpochDay(), account.getLastAccrualDay());
+            account.setRatePlan(RatePlan.flat(365));
+            assertEquals(0L, account.accrue((int) DAY_ONE.toEpochDay(), 1L));
+        }
+    }
+
+    @Test
+    @DisplayName("A checkpoint keeps the rate plan, accrual day and carried fraction")
+    void testCheckpointRecovery() throws Exception {
+        Path checkpointDir = Files.createTempDirectory("checkpoints");
+        RatePlan tiered = RatePlan.tiered(new long[] {0L, 1_000_000L}, new int[] {365, 730});
+        try {
+            try (AccountJournal journal =
+                    AccountJournal.open(journalPath, DurabilityMode.GROUP_SYNC)) {
+                BankAccountManager manager =
+                        new BankAccountManager(new ConcurrentAccountRegistry(), journal);
+                SavingsAccount rich = new SavingsAccount("Rich");
+                SavingsAccount small = new SavingsAccount("Small");
+                manager.addAccount(rich);
+                manager.addAccount(small);
+                rich.depositCents(1_000_000L);
+                small.depositCents(5_000L);
+                rich.setRatePlan(RatePlan.flat(365));
+                small.setRatePlan(tiered);
+                try (InterestAccrualEngine engine =
+                        new InterestAccrualEngine(manager, progressFile)) {
+                    engine.accrue(DAY_ONE);
+                }
+                // Every posting is inside the checkpoint, none left to replay
+                AccountCheckpoint.write(manager, journal, checkpointDir);
+            }
+            Files.deleteIfExists(progressFile);
+
+            try (AccountJournal journal =
+                    AccountJournal.open(journalPath, DurabilityMode.GROUP_SYNC)) {
+                BankAccountManager manager = BankAccountManager.recover(journal, checkpointDir);
+                SavingsAccount rich = (SavingsAccount) manager.getAccount(1);
+                SavingsAccount small = (SavingsAccount) manager.getAccount(2);
+                assertEquals("flat(365bp)", rich.getRatePlan().toString());
+                assertEquals(tiered.toString(), small.getRatePlan().toString());
+                assertEquals((int) DAY_ONE.toEpochDay(), rich.getLastAccrualDay());
+                assertEquals(1_000_100L, rich.getBalanceCents());
+                assertEquals(5_000L, small.getBalanceCents());
+
+                try (InterestAccrualEngine engine =
+                        new InterestAccrualEngine(manager, progressFile)) {
+                    // Without progress the day is rerun, but no account pays twice
+                    engine.accrue(DAY_ONE);
+                    assertEquals(1_000_100L, rich.getBalanceCents());
+                    assertEquals(5_000L, small.getBalanceCents());
+
+                    // Half a centavo carried from day one completes a centavo
+                    engine.accrue(DAY_ONE.plusDays(1));
+                    assertEquals(1_000_200L, rich.getBalanceCents());
+                    assertEquals(5_001L, small.getBalanceCents());
+                }
+            }
+        } finally {
+            for (Path file : AccountCheckpoint.list(checkpointDir)) {
+                Files.delete(file);
+            }
+            Files.deleteIfExists(checkpointDir);
+        }
+    }
+}
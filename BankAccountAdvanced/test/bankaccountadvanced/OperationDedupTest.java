@@ -0,0 +1,166 @@
+package bankaccountadvanced;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Test class for idempotent operations and the OperationDedupCache.
+ * Code Reviewer: MarkSayson
+ */
+public class OperationDedupTest {
+
+    /** Threads retrying the same operations at once. */
+    private static final int THREADS = 8;
+
+    /** Distinct operations in the concurrency test. */
+    private static final int OPERATIONS = 2_000;
+
+    /** Bank account manager instance used in tests. */
+    private BankAccountManager manager;
+
+    /** ID of an account holding 100.00. */
+    private int funded;
+
+    /** ID of an empty account. */
+    private int empty;
+
+    /**
+     * Sets up test objects before each test.
+     *
+     * @throws Exception if an account cannot be funded
+     */
+    @BeforeEach
+    public void setup() throws Exception {
+        manager = new BankAccountManager();
+        funded = manager.addAccount(new SavingsAccount("Funded"));
+        empty = manager.addAccount(new SavingsAccount("Empty"));
+        manager.getAccount(funded).depositCents(10_000L);
+    }
+
+    @Test
+    @DisplayName("A retried operation returns the original outcome without reapplying it")
+    void testRetries() throws Exception {
+        for (int attempt = 0; attempt < 3; attempt++) {
+            assertSame(OperationStatus.OK, manager.tryDepositCents(1L, empty, 500L));
+            assertSame(OperationStatus.OK, manager.tryWithdrawCents(2L, funded, 1_000L));
+            assertSame(OperationStatus.OK, manager.tryTransferCents(3L, funded, empty, 2_000L));
+            assertSame(OperationStatus.ACCOUNT_NOT_FOUND, manager.tryDepositCents(4L, 99, 1L));
+        }
+        assertEquals(2_500L, manager.getAccount(empty).getBalanceCents());
+        assertEquals(7_000L, manager.getAccount(funded).getBalanceCents());
+        assertEquals(2L * 4, manager.getDedupCache().getDuplicateCount());
+
+        // A rejection is an outcome too: the retry is not applied even
+        // though it would now succeed
+        assertSame(OperationStatus.INSUFFICIENT_FUNDS,
+                manager.tryWithdrawCents(5L, empty, 100_000L));
+        manager.getAccount(empty).depositCents(100_000L);
+        assertSame(OperationStatus.INSUFFICIENT_FUNDS,
+                manager.tryWithdrawCents(5L, empty, 100_000L));
+
+        assertThrows(IllegalArgumentException.class,
+                () -> manager.tryDepositCents(1L, empty, 501L));
+        assertThrows(IllegalArgumentException.class,
+                () -> manager.tryWithdrawCents(1L, empty, 500L));
+    }
+
+    @Test
+    @DisplayName("An operation that throws is forgotten so its retry runs")
+    void testAbandoned() throws Exception {
+        assertThrows(IllegalArgumentException.class,
+                () -> manager.tryTransferCents(7L, funded, funded, 1L));
+        OperationDedupCache cache = manager.getDedupCache();
+        AtomicInteger runs = new AtomicInteger();
+        assertThrows(IllegalStateException.class, () -> cache.execute(8L, 0L, () -> {
+            runs.incrementAndGet();
+            throw new IllegalStateException("Crashed");
+        }));
+        assertSame(OperationStatus.OK, cache.execute(8L, 0L, () -> {
+            runs.incrementAndGet();
+            return OperationStatus.OK;
+        }));
+        assertSame(OperationStatus.OK, cache.execute(8L, 0L, () -> {
+            runs.incrementAndGet();
+            return OperationStatus.ACCOUNT_FROZEN;
+        }));
+        assertEquals(2, runs.get());
+    }
+
+    @Test
+    @DisplayName("Concurrent retries apply each operation exactly once")
+    void testConcurrentRetries() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<?>> results = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                results.add(pool.submit(() -> {
+                    start.await();
+                    for (long op = 0; op < OPERATIONS; op++) {
+                        assertSame(OperationStatus.OK, manager.tryDepositCents(op, empty, 1L));
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> result : results) {
+                result.get();
+            }
+        } finally {
+            pool.shutdown();
+        }
+        assertEquals(OPERATIONS, manager.getAccount(empty).getBalanceCents());
+        assertEquals((long) OPERATIONS * (THREADS - 1),
+                manager.getDedupCache().getDuplicateCount());
+    }
+
+    @Test
+    @DisplayName("The cache forgets the oldest operations by count and by age")
+    void testEviction() {
+        AtomicLong now = new AtomicLong();
+        OperationDedupCache cache = new OperationDedupCache(64, Duration.ofSeconds(10), 4,
+                now::get);
+        AtomicInteger runs = new AtomicInteger();
+        for (long op = 0; op < 1_000; op++) {
+            cache.execute(op, 0L, () -> {
+                runs.incrementAndGet();
+                return OperationStatus.OK;
+            });
+        }
+        assertEquals(64L, cache.size());
+        assertEquals(1_000L - 64, cache.getEvictionCount());
+        assertEquals(1_000, runs.get());
+        // The newest operation is remembered, the oldest was evicted
+        assertSame(OperationStatus.OK,
+                cache.execute(999L, 0L, () -> OperationStatus.ACCOUNT_FROZEN));
+        assertSame(OperationStatus.ACCOUNT_FROZEN,
+                cache.execute(0L, 0L, () -> OperationStatus.ACCOUNT_FROZEN));
+
+        now.addAndGet(Duration.ofSeconds(11).toNanos());
+        assertSame(OperationStatus.ACCOUNT_FROZEN,
+                cache.execute(999L, 0L, () -> OperationStatus.ACCOUNT_FROZEN));
+        assertTrue(cache.getExpiryCount() >= 16);
+        assertTrue(cache.size() <= 64 - 16 + 1);
+
+        assertThrows(IllegalArgumentException.class,
+                () -> new OperationDedupCache(0, Duration.ofSeconds(1)));
+        assertThrows(IllegalArgumentException.class,
+                () -> new OperationDedupCache(1, Duration.ZERO));
+    }
+}
@@ -0,0 +1,126 @@
+package bankaccountadvanced;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Test class for ReplicationLog and ReplicaManager.
+ * Code Reviewer: MarkSayson
+ */
+public class ReplicationTest {
+
+    /** Accounts created before the followers join. */
+    private static final int ACCOUNTS = 100;
+
+    /** Deposits made while the followers join. */
+    private static final int CONCURRENT_DEPOSITS = 20_000;
+
+    /** Seconds to wait for a follower to catch up. */
+    private static final long CATCH_UP_SECONDS = 10L;
+
+    /**
+     * Checks that a follower holds the same accounts as the primary.
+     *
+     * @param primary the primary manager
+     * @param replica the follower
+     * @throws Exception if a lookup fails
+     */
+    private static void assertReplicated(BankAccountManager primary, ReplicaManager replica)
+            throws Exception {
+        assertEquals(primary.getAccountCount(), replica.getAccountCount());
+        for (int id = 1; id <= primary.getAccountCount() + 1; id++) {
+            BankAccount account = primary.getAccount(id);
+            if (account == null) {
+                final int missing = id;
+                assertThrows(AccountNotFoundException.class, () -> replica.getBalance(missing));
+                continue;
+            }
+            assertEquals(account.getBalanceCents(), replica.getBalanceCents(id), "account " + id);
+            assertEquals(account.isFrozen(), replica.isFrozen(id));
+            assertEquals(account.getStatistics().getTransactionCount(),
+                    replica.getStatistics(id).getTransactionCount());
+        }
+    }
+
+    @Test
+    @DisplayName("In-process and socket followers converge on the primary")
+    void testFollowersConverge() throws Exception {
+        try (ReplicationLog log = new ReplicationLog()) {
+            BankAccountManager primary =
+                    new BankAccountManager(new ConcurrentAccountRegistry(), log);
+            for (int i = 0; i < ACCOUNTS; i++) {
+                SavingsAccount account = new SavingsAccount("Owner" + i);
+                primary.addAccount(account);
+                account.depositCents(1_000L);
+            }
+            InetSocketAddress address = log.listen(primary,
+                    new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+
+            // Followers join while deposits are in flight
+            Thread depositor = new Thread(() -> {
+                for (int i = 0; i < CONCURRENT_DEPOSITS; i++) {
+                    try {
+                        primary.getAccount(1 + i % ACCOUNTS).depositCents(1L);
+                        if (i % 100 == 0) {
+                            primary.transferCents(1 + i % ACCOUNTS,
+                                    1 + (i + 1) % ACCOUNTS, 1L);
+                        }
+                    } catch (Exception e) {
+                        throw new IllegalStateException(e);
+                    }
+                }
+            });
+            depositor.start();
+            try (ReplicaManager local = log.addFollower(primary);
+                    ReplicaManager remote = ReplicaManager.connect(address)) {
+                depositor.join();
+                primary.getAccount(1).withdrawCents(500L);
+                primary.getAccount(2).freezeAccount();
+                int createdId = primary.addAccount(new SavingsAccount("Late"));
+                primary.getAccount(createdId).depositCents(42L);
+                primary.removeAccount(3);
+
+                long sequence = log.getSequence();
+                assertTrue(local.awaitSequence(sequence, CATCH_UP_SECONDS, TimeUnit.SECONDS));
+                assertTrue(remote.awaitSequence(sequence, CATCH_UP_SECONDS, TimeUnit.SECONDS));
+                assertEquals(2, log.getFollowerCount());
+                assertReplicated(primary, local);
+                assertReplicated(primary, remote);
+                assertEquals(42L, remote.getBalanceCents(createdId));
+                assertEquals(primary.getStatistics().getTotalDepositedCents(),
+                        local.getStatistics().getTotalDepositedCents());
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Reads fail once a follower is beyond its staleness bound")
+    void testStalenessBound() throws Exception {
+        ReplicationLog log = new ReplicationLog();
+        BankAccountManager primary = new BankAccountManager(new ConcurrentAccountRegistry(), log);
+        int id = primary.addAccount(new SavingsAccount("Alice"));
+        primary.getAccount(id).depositCents(100L);
+
+        ReplicaManager replica = log.addFollower(primary);
+        assertTrue(replica.awaitSequence(log.getSequence(), CATCH_UP_SECONDS, TimeUnit.SECONDS));
+        replica.setMaxStaleness(Duration.ofMillis(50));
+        assertEquals(100L, replica.getBalanceCents(id));
+        assertTrue(replica.getStalenessMillis() <= 50L);
+
+        // Once the primary stops streaming, the follower's view ages out
+        log.close();
+        assertEquals(0, log.getFollowerCount());
+        Thread.sleep(100L);
+        assertThrows(IllegalStateException.class, () -> replica.getBalanceCents(id));
+        replica.close();
+    }
+}
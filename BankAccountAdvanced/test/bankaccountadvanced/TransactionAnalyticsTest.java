@@ -0,0 +1,130 @@
+package bankaccountadvanced;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Test class for TransactionAnalytics and AmountHistogram.
+ * Code Reviewer: MarkSayson
+ */
+public class TransactionAnalyticsTest {
+
+    /** Number of accounts created for each test. */
+    private static final int ACCOUNTS = 200;
+
+    /** Deposits made into each account. */
+    private static final int DEPOSITS = 50;
+
+    /** Bank account manager instance used in tests. */
+    private BankAccountManager manager;
+
+    /** Pool with several workers so queries really split. */
+    private ForkJoinPool pool;
+
+    /**
+     * Creates ACCOUNTS accounts; account k (from 0) receives deposits of
+     * k * 100 + 1 .. k * 100 + DEPOSITS centavos and one withdrawal of 1.
+     *
+     * @throws Exception if an operation is rejected
+     */
+    @BeforeEach
+    public void setup() throws Exception {
+        manager = new BankAccountManager();
+        pool = new ForkJoinPool(4);
+        for (int k = 0; k < ACCOUNTS; k++) {
+            SavingsAccount account = new SavingsAccount("Owner " + k);
+            for (int d = 1; d <= DEPOSITS; d++) {
+                account.depositCents(k * 100L + d);
+            }
+            account.withdrawCents(1);
+            manager.addAccount(account);
+        }
+    }
+
+    @Test
+    @DisplayName("Filter groups matches by account across every account")
+    void testFilterAbove() {
+        Map<Integer, List<Transaction>> matches = manager.analytics(pool)
+                .filterAboveCents((ACCOUNTS - 2) * 100L + DEPOSITS, TransactionType.DEPOSIT);
+        assertEquals(1, matches.size());
+        List<Transaction> last = matches.get(ACCOUNTS);
+        assertEquals(DEPOSITS, last.size());
+        assertEquals((ACCOUNTS - 1) * 100L + 1, last.get(0).getAmountCents());
+
+        Map<Integer, List<Transaction>> withdrawals = manager.analytics(pool)
+                .filterAboveCents(0, TransactionType.WITHDRAW);
+        assertEquals(ACCOUNTS, withdrawals.size());
+        assertEquals(1, withdrawals.get(1).size());
+    }
+
+    @Test
+    @DisplayName("Top-N returns the largest transactions in order")
+    void testTopByAmount() {
+        List<AccountTransaction> top = manager.analytics(pool).topByAmount(3, null);
+        assertEquals(3, top.size());
+        assertEquals(ACCOUNTS, top.get(0).getAccountId());
+        assertEquals((ACCOUNTS - 1) * 100L + DEPOSITS,
+                top.get(0).getTransaction().getAmountCents());
+        assertEquals((ACCOUNTS - 1) * 100L + DEPOSITS - 2,
+                top.get(2).getTransaction().getAmountCents());
+        assertEquals(1L, manager.analytics(pool)
+                .topByAmount(1, TransactionType.WITHDRAW).get(0)
+                .getTransaction().getAmountCents());
+        assertTrue(manager.analytics(pool).topByAmount(0, null).isEmpty());
+    }
+
+    @Test
+    @DisplayName("Statistics per type and totals per account match the data")
+    void testStatistics() {
+        Map<TransactionType, TransactionStatistics> stats =
+                manager.analytics(pool).statisticsByType();
+        assertFalse(stats.containsKey(TransactionType.TRANSFER_IN));
+        TransactionStatistics deposits = stats.get(TransactionType.DEPOSIT);
+        assertEquals((long) ACCOUNTS * DEPOSITS, deposits.getCount());
+        assertEquals(1L, deposits.getMinCents());
+        assertEquals((ACCOUNTS - 1) * 100L + DEPOSITS, deposits.getMaxCents());
+        long expectedSum = 0;
+        for (int k = 0; k < ACCOUNTS; k++) {
+            expectedSum += k * 100L * DEPOSITS + (long) DEPOSITS * (DEPOSITS + 1) / 2;
+        }
+        assertEquals(expectedSum, deposits.getSumCents());
+        long median = deposits.percentileCents(50.0);
+        assertTrue(Math.abs(median - 9_950L) <= 9_950L / 64, "median " + median);
+        assertEquals((long) ACCOUNTS, stats.get(TransactionType.WITHDRAW).getCount());
+
+        Map<Integer, Long> totals = manager.analytics(pool).totalCentsByAccount(null);
+        assertEquals(ACCOUNTS, totals.size());
+        assertEquals((long) DEPOSITS * (DEPOSITS + 1) / 2 + 1, (long) totals.get(1));
+    }
+
+    @Test
+    @DisplayName("Histogram percentiles stay within the stated relative error")
+    void testHistogram() {
+        AmountHistogram histogram = new AmountHistogram();
+        for (long v = 1; v <= 1_000_000; v++) {
+            histogram.record(v);
+        }
+        AmountHistogram other = new AmountHistogram();
+        other.record(0);
+        histogram.add(other);
+        assertEquals(1_000_001L, histogram.getCount());
+        assertEquals(0L, histogram.getMin());
+        assertEquals(1_000_000L, histogram.getMax());
+        for (double p : new double[] {1.0, 50.0, 90.0, 99.0, 99.9}) {
+            long expected = (long) (p / 100.0 * 1_000_000);
+            long actual = histogram.valueAtPercentile(p);
+            assertTrue(Math.abs(actual - expected) <= expected / 64 + 1,
+                    "p" + p + " was " + actual);
+        }
+        assertEquals(1_000_000L, histogram.valueAtPercentile(100.0));
+    }
+}
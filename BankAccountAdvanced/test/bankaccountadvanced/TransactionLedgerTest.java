@@ -0,0 +1,259 @@
+package bankaccountadvanced;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Test class for TransactionLedger implementations.
+ * Code Reviewer: MarkSayson
+ */
+public class TransactionLedgerTest {
+
+    /** Enough entries to span several storage chunks. */
+    private static final int ENTRIES = 20_000;
+
+    /** Timestamp used for appended entries. */
+    private static final long TIME = 1_700_000_000_000L;
+
+    /**
+     * Appends ENTRIES alternating deposits and withdrawals whose amount
+     * equals their position.
+     *
+     * @param ledger the ledger to fill
+     */
+    private static void fill(TransactionLedger ledger) {
+        for (int i = 0; i < ENTRIES; i++) {
+            ledger.append(i % 2 == 0 ? TransactionType.DEPOSIT : TransactionType.WITHDRAW,
+                    i, TIME + i);
+        }
+    }
+
+    @Test
+    @DisplayName("Columnar ledger stores entries across chunk boundaries")
+    void testColumnarLedger() {
+        TransactionLedger ledger = new ColumnarTransactionLedger();
+        fill(ledger);
+        assertEquals(ENTRIES, ledger.size());
+        for (int i = 0; i < ENTRIES; i++) {
+            assertEquals((long) i, ledger.amountCentsAt(i));
+            assertEquals(TIME + i, ledger.timestampAt(i));
+        }
+        assertEquals(TransactionType.WITHDRAW, ledger.typeAt(ENTRIES - 1));
+        assertThrows(IndexOutOfBoundsException.class, () -> ledger.amountCentsAt(ENTRIES));
+    }
+
+    @Test
+    @DisplayName("Bulk appends fill chunks in order")
+    void testAppendAll() {
+        TransactionLedger ledger = new ColumnarTransactionLedger();
+        ledger.append(TransactionType.DEPOSIT, 1L, TIME);
+        TransactionType[] types = new TransactionType[ENTRIES];
+        long[] amounts = new long[ENTRIES];
+        for (int i = 0; i < ENTRIES; i++) {
+            types[i] = i % 2 == 0 ? TransactionType.WITHDRAW : TransactionType.DEPOSIT;
+            amounts[i] = i;
+        }
+        ledger.appendAll(types, amounts, ENTRIES - 1, TIME + 1);
+        assertEquals(ENTRIES, ledger.size());
+        for (int i = 1; i < ENTRIES; i++) {
+            assertEquals((long) i - 1, ledger.amountCentsAt(i));
+            assertEquals(TIME + 1, ledger.timestampAt(i));
+        }
+        assertEquals(TransactionType.WITHDRAW, ledger.typeAt(ENTRIES - 1));
+    }
+
+    @Test
+    @DisplayName("Ledger list view is lazy, live and read-only")
+    void testLedgerView() {
+        TransactionLedger ledger = new ColumnarTransactionLedger();
+        List<Transaction> view = ledger.asList();
+        assertEquals(0, view.size());
+        fill(ledger);
+        assertEquals(ENTRIES, view.size());
+        Transaction tx = view.get(2);
+        assertEquals("Deposit", tx.getType());
+        assertEquals(2L, tx.getAmountCents());
+        assertEquals(TIME + 2, tx.getTimestamp());
+        assertThrows(UnsupportedOperationException.class, () -> view.add(tx));
+        assertThrows(UnsupportedOperationException.class, () -> view.remove(0));
+    }
+
+    @Test
+    @DisplayName("Mapped ledger spans segments and survives reopening")
+    void testMappedLedger() throws IOException {
+        Path dir = Files.createTempDirectory("ledger");
+        try {
+            MappedTransactionLedger ledger = new MappedTransactionLedger(dir, 4096);
+            fill(ledger);
+            assertEquals(ENTRIES, ledger.size());
+            assertEquals(TransactionType.DEPOSIT, ledger.typeAt(4096));
+            assertEquals(4097L, ledger.amountCentsAt(4097));
+            assertEquals(TIME + ENTRIES - 1, ledger.timestampAt(ENTRIES - 1));
+            assertThrows(IndexOutOfBoundsException.class, () -> ledger.typeAt(ENTRIES));
+            ledger.close();
+            ledger.close();
+            assertThrows(IllegalStateException.class, ledger::size);
+            assertThrows(IllegalStateException.class, () -> ledger.get(0));
+            assertThrows(IllegalStateException.class, () -> ledger.asList().size());
+            assertThrows(IllegalStateException.class,
+                    () -> ledger.append(TransactionType.DEPOSIT, 1L, TIME));
+
+            MappedTransactionLedger reopened = new MappedTransactionLedger(dir, 4096);
+            assertEquals(ENTRIES, reopened.size());
+            reopened.append(TransactionType.DEPOSIT, 7L, TIME);
+            assertEquals(7L, reopened.amountCentsAt(ENTRIES));
+            assertEquals(2L, reopened.amountCentsAt(2));
+            reopened.close();
+        } finally {
+            try (var files = Files.list(dir)) {
+                for (Path file : (Iterable<Path>) files::iterator) {
+                    Files.delete(file);
+                }
+            }
+            Files.delete(dir);
+        }
+    }
+
+    @Test
+    @DisplayName("Tiered ledger archives old blocks and reads across both tiers")
+    void testTieredLedger() throws Exception {
+        Path dir = Files.createTempDirectory("tiered");
+        Path file = dir.resolve("history.archive");
+        try {
+            TieredTransactionLedger ledger = new TieredTransactionLedger(file,
+                    RetentionPolicy.keepLast(1_000), 256);
+            TransactionLedger plain = new ColumnarTransactionLedger();
+            fill(ledger);
+            fill(plain);
+            assertEquals(ENTRIES, ledger.size());
+            assertTrue(ledger.getHotEntries() >= 1_000);
+            assertTrue(ledger.getHotEntries() < 1_000 + 256);
+            assertEquals(ENTRIES, ledger.getHotEntries() + ledger.getArchivedEntries());
+            assertTrue(ledger.getArchiveBytes() < 17L * ledger.getArchivedEntries());
+            for (int i = ENTRIES - 1; i >= 0; i--) {
+                assertEquals(plain.typeAt(i), ledger.typeAt(i));
+                assertEquals(plain.amountCentsAt(i), ledger.amountCentsAt(i));
+                assertEquals(plain.timestampAt(i), ledger.timestampAt(i));
+            }
+            assertSameOrder(plain.filterAbove(19_000), ledger.filterAbove(19_000));
+            assertSameOrder(plain.sortedByAmount(), ledger.sortedByAmount());
+            ledger.close();
+            assertFalse(Files.exists(file));
+
+            // Age is measured from the newest entry; entries are 1 ms apart
+            TieredTransactionLedger recent = new TieredTransactionLedger(file,
+                    RetentionPolicy.keepFor(Duration.ofMillis(5_000)), 256);
+            fill(recent);
+            assertTrue(recent.getHotEntries() >= 5_000);
+            assertTrue(recent.getHotEntries() < 5_000 + 256);
+            recent.close();
+
+            TieredTransactionLedger budget = new TieredTransactionLedger(file,
+                    RetentionPolicy.memoryBudget(17L * 2_000), 256);
+            SavingsAccount account = new SavingsAccount("Owner", budget);
+            for (int i = 1; i <= ENTRIES; i++) {
+                account.depositCents(i);
+            }
+            assertTrue(budget.getHotEntries() < 2_000 + 256);
+            TransactionPage first = account.getTransactionPage(0, 3);
+            assertEquals(3L, first.getTransactions().get(2).getAmountCents());
+            assertEquals((long) ENTRIES * (ENTRIES + 1) / 2, account.getBalanceCents());
+            assertEquals((long) ENTRIES * (ENTRIES + 1) / 2, account.streamTransactions()
+                    .mapToLong(Transaction::getAmountCents).sum());
+            budget.close();
+        } finally {
+            Files.deleteIfExists(file);
+            Files.delete(dir);
+        }
+    }
+
+    @Test
+    @DisplayName("Amount queries run on the ledger and keep ledger order for ties")
+    void testLedgerQueries() {
+        TransactionLedger ledger = new ColumnarTransactionLedger();
+        long[] amounts = {500, 100, 300, 100, 900, 300};
+        for (int i = 0; i < amounts.length; i++) {
+            ledger.append(TransactionType.DEPOSIT, amounts[i], TIME + i);
+        }
+        List<Transaction> above = ledger.filterAbove(300);
+        assertEquals(2, above.size());
+        assertEquals(500L, above.get(0).getAmountCents());
+        assertEquals(900L, above.get(1).getAmountCents());
+
+        List<Transaction> sorted = ledger.sortedByAmount();
+        assertEquals(amounts.length, sorted.size());
+        assertEquals(TIME + 1, sorted.get(0).getTimestamp());
+        assertEquals(TIME + 3, sorted.get(1).getTimestamp());
+        assertEquals(TIME + 2, sorted.get(2).getTimestamp());
+        assertEquals(TIME + 5, sorted.get(3).getTimestamp());
+        assertEquals(900L, sorted.get(5).getAmountCents());
+        assertThrows(UnsupportedOperationException.class, () -> sorted.remove(0));
+
+        BankAccountManager manager = new BankAccountManager();
+        assertNotNull(AbstractTransactionLedger.backingLedger(ledger.asList()));
+        assertNull(AbstractTransactionLedger.backingLedger(List.copyOf(ledger.asList())));
+        assertEquals(2, manager.filterTransactionsAboveCents(300, ledger.asList()).size());
+        assertEquals(2, manager.filterTransactionsAboveCents(300,
+                List.copyOf(ledger.asList())).size());
+        assertEquals(100L, manager.sortTransactionsByAmount(ledger.asList())
+                .get(0).getAmountCents());
+    }
+
+    @Test
+    @DisplayName("Amount index answers queries exactly like a full scan")
+    void testAmountIndexedLedger() {
+        TransactionLedger plain = new ColumnarTransactionLedger();
+        TransactionLedger indexed = new AmountIndexedLedger();
+        Random random = new Random(42);
+        for (int round = 0; round < 20; round++) {
+            int appends = random.nextInt(1_000);
+            for (int i = 0; i < appends; i++) {
+                long amount = 1 + random.nextInt(500);
+                plain.append(TransactionType.DEPOSIT, amount, TIME + i);
+                indexed.append(TransactionType.DEPOSIT, amount, TIME + i);
+            }
+            if (round % 5 == 4) {
+                TransactionType[] types = {TransactionType.WITHDRAW, TransactionType.WITHDRAW};
+                long[] amounts = {250L, 7L};
+                plain.appendAll(types, amounts, 2, TIME);
+                indexed.appendAll(types, amounts, 2, TIME);
+            }
+            long threshold = random.nextInt(520);
+            assertSameOrder(plain.filterAbove(threshold), indexed.filterAbove(threshold));
+            if (round % 3 == 0) {
+                assertSameOrder(plain.sortedByAmount(), indexed.sortedByAmount());
+            }
+        }
+        assertSameOrder(plain.sortedByAmount(), indexed.sortedByAmount());
+        assertSameOrder(plain.sortedByAmount(), indexed.sortedByAmount());
+        assertEquals(0, indexed.filterAbove(Long.MAX_VALUE).size());
+    }
+
+    /**
+     * Asserts that two lists hold the same transactions in the same order.
+     *
+     * @param expected the expected transactions
+     * @param actual   the actual transactions
+     */
+    private static void assertSameOrder(List<Transaction> expected, List<Transaction> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getAmountCents(), actual.get(i).getAmountCents());
+            assertEquals(expected.get(i).getTimestamp(), actual.get(i).getTimestamp());
+        }
+    }
+}